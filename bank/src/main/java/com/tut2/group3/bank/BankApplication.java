@@ -3,10 +3,12 @@ package com.tut2.group3.bank;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.TimeZone;
 
 @SpringBootApplication
+@EnableScheduling
 @MapperScan({"com.tut2.group3.bank.repository", "com.tut2.group3.bank.mapper"})
 public class BankApplication {
 
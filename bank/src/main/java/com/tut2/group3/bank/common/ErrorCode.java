@@ -11,7 +11,10 @@ public enum ErrorCode {
     NOT_FOUND(404, "Not found"),
     INTERNAL_ERROR(500, "Internal server error"),
     DEBIT_FAILED(510, "Debit failed"),
-    REFUND_FAILED(511, "Refund failed");
+    REFUND_FAILED(511, "Refund failed"),
+    AUTHORIZATION_FAILED(512, "Authorization failed"),
+    CAPTURE_FAILED(513, "Capture failed"),
+    VOID_FAILED(514, "Void failed");
 
     private final int code;
     private final String message;
@@ -1,5 +1,6 @@
 package com.tut2.group3.bank.config;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Getter;
 import lombok.Setter;
@@ -22,6 +23,35 @@ public class BankRabbitProperties {
     @NotBlank
     private String requestQueue;
 
+    /**
+     * Consume transaction requests in batches, applying a batch's debits in one database transaction
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * Most requests per batch
+     */
+    @Min(1)
+    private int batchSize = 50;
+
+    /**
+     * Longest a batch waits to fill, counted from its first request, before it is processed short
+     */
+    @Min(1)
+    private long batchWaitMs = 20;
+
+    /**
+     * How long a published transaction result is remembered so the same result is not published again
+     */
+    @Min(1)
+    private long publishDedupeWindowSeconds = 900;
+
+    /**
+     * Results remembered per window generation; when exceeded, the oldest results are forgotten early
+     */
+    @Min(1)
+    private int publishDedupeCapacity = 100_000;
+
     public String resolvedExchangeName() {
         return exchangeName == null ? "" : exchangeName;
     }
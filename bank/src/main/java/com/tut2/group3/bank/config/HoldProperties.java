@@ -0,0 +1,23 @@
+package com.tut2.group3.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "bank.holds")
+public class HoldProperties {
+
+    /**
+     * How long an authorization holds the customer's funds before it expires uncaptured
+     */
+    private long authorizationTtlMinutes = 7 * 24 * 60;
+
+    /**
+     * Captured holds moved to the store account per settlement batch
+     */
+    private int settleBatchSize = 500;
+}
@@ -0,0 +1,35 @@
+package com.tut2.group3.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "bank.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * When disabled every duplicate check goes to the database
+     */
+    private boolean enabled = true;
+
+    /**
+     * Keys each Bloom filter generation is sized for; a full generation is replaced by a fresh one
+     */
+    private int expectedKeys = 1_000_000;
+
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Recent outcomes kept in memory to answer retried requests
+     */
+    private int cacheSize = 10_000;
+
+    /**
+     * Most recent transactions loaded into the filters at startup
+     */
+    private int warmLimit = 100_000;
+}
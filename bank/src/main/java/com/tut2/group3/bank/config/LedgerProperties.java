@@ -0,0 +1,25 @@
+package com.tut2.group3.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "bank.ledger")
+public class LedgerProperties {
+
+    /**
+     * Accounts whose ledger tail is folded into their balance snapshot on each snapshot run
+     */
+    private int snapshotBatchSize = 500;
+
+    /**
+     * Snapshot runs fold only entries at least this old, so the range they lock stays behind the entries
+     * debits are appending. Correctness does not depend on it: the locked range waits for older entries
+     * that are still uncommitted.
+     */
+    private long snapshotMinEntryAgeMs = 10_000;
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
@@ -42,4 +43,26 @@ public class RabbitMQConfig {
         rabbitTemplate.setRoutingKey(properties.resolvedRoutingKey());
         return rabbitTemplate;
     }
+
+    /**
+     * Listener containers that hand a batch listener up to batch-size requests at a time, or fewer once
+     * batch-wait-ms has passed since the batch's first request. The receive timeout alone applies to each
+     * receive, so a steady trickle could hold a batch for up to batch-size times batch-wait-ms; the batch
+     * receive timeout bounds the whole batch.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                             MessageConverter messageConverter,
+                                                                             BankRabbitProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(properties.getBatchSize());
+        factory.setReceiveTimeout(properties.getBatchWaitMs());
+        factory.setBatchReceiveTimeout(properties.getBatchWaitMs());
+        factory.setPrefetchCount(Math.max(250, properties.getBatchSize()));
+        return factory;
+    }
 }
@@ -0,0 +1,31 @@
+package com.tut2.group3.bank.consumer;
+
+import com.tut2.group3.bank.dto.TransactionRequestEventDTO;
+import com.tut2.group3.bank.service.TransactionRequestHandlerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "bank.rabbitmq", name = "batch-enabled", havingValue = "true")
+public class BatchTransactionRequestConsumer {
+
+    private final TransactionRequestHandlerService handlerService;
+
+    @RabbitListener(queues = "${bank.rabbitmq.request-queue}", containerFactory = "batchListenerContainerFactory")
+    public void consumeTransactionRequests(List<TransactionRequestEventDTO> requests) {
+        log.info("Received batch of {} transaction requests", requests.size());
+        try {
+            handlerService.handleTransactionRequests(requests);
+        } catch (Exception ex) {
+            log.error("Failed to process batch of {} transaction requests due to {}",
+                    requests.size(), ex.getMessage(), ex);
+        }
+    }
+}
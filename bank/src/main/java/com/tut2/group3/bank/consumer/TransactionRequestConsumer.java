@@ -5,11 +5,13 @@ import com.tut2.group3.bank.service.TransactionRequestHandlerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "bank.rabbitmq", name = "batch-enabled", havingValue = "false", matchIfMissing = true)
 public class TransactionRequestConsumer {
 
     private final TransactionRequestHandlerService handlerService;
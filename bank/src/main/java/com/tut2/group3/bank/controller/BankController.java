@@ -2,13 +2,18 @@ package com.tut2.group3.bank.controller;
 
 import com.tut2.group3.bank.common.Result;
 import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.dto.EventDedupeStatsDTO;
 import com.tut2.group3.bank.dto.RefundRequestDTO;
 import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.producer.BankEventPublisher;
 import com.tut2.group3.bank.service.BankService;
+import com.tut2.group3.bank.service.HoldService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,6 +26,8 @@ import org.springframework.web.bind.annotation.RestController;
 public class BankController {
 
     private final BankService bankService;
+    private final BankEventPublisher bankEventPublisher;
+    private final HoldService holdService;
 
     @PostMapping("/debit")
     public Result<Transaction> handleDebit(@Valid @RequestBody DebitRequestDTO dto,
@@ -37,4 +44,31 @@ public class BankController {
         log.info("Handling refund request for orderId={}, caller={}", dto.getOrderId(), caller);
         return bankService.processRefund(dto);
     }
+
+    @PostMapping("/authorize")
+    public Result<Transaction> handleAuthorize(@Valid @RequestBody DebitRequestDTO dto,
+                                               HttpServletRequest request) {
+        String caller = (String) request.getAttribute("caller");
+        log.info("Handling authorization request for orderId={}, caller={}", dto.getOrderId(), caller);
+        return holdService.authorize(dto);
+    }
+
+    @PostMapping("/capture/{orderId}")
+    public Result<Transaction> handleCapture(@PathVariable String orderId, HttpServletRequest request) {
+        String caller = (String) request.getAttribute("caller");
+        log.info("Handling capture request for orderId={}, caller={}", orderId, caller);
+        return holdService.capture(orderId);
+    }
+
+    @PostMapping("/void/{orderId}")
+    public Result<Transaction> handleVoid(@PathVariable String orderId, HttpServletRequest request) {
+        String caller = (String) request.getAttribute("caller");
+        log.info("Handling void request for orderId={}, caller={}", orderId, caller);
+        return holdService.voidHold(orderId);
+    }
+
+    @GetMapping("/events/dedupe")
+    public Result<EventDedupeStatsDTO> eventDedupeStats() {
+        return Result.success(bankEventPublisher.dedupeStats());
+    }
 }
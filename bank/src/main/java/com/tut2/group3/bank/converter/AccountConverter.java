@@ -0,0 +1,32 @@
+package com.tut2.group3.bank.converter;
+
+import com.tut2.group3.bank.dto.AccountRequestDTO;
+import com.tut2.group3.bank.dto.AccountResponseDTO;
+import com.tut2.group3.bank.entity.Account;
+import org.springframework.stereotype.Component;
+
+/**
+ * Accounts to and from their DTOs, field by field; ids and ledger snapshot positions stay internal
+ */
+@Component
+public class AccountConverter {
+
+    public Account toAccount(AccountRequestDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        Account account = new Account();
+        account.setUserId(dto.getUserId());
+        account.setBalance(dto.getBalance());
+        account.setCurrency(dto.getCurrency());
+        return account;
+    }
+
+    public AccountResponseDTO toResponse(Account account) {
+        if (account == null) {
+            return null;
+        }
+        return new AccountResponseDTO(account.getUserId(), account.getBalance(), account.getCurrency(),
+                account.getCreatedAt());
+    }
+}
@@ -0,0 +1,38 @@
+package com.tut2.group3.bank.converter;
+
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.dto.RefundRequestDTO;
+import com.tut2.group3.bank.entity.Transaction;
+import org.springframework.stereotype.Component;
+
+/**
+ * Request DTOs to transactions, field by field; the database-generated id is never copied
+ */
+@Component
+public class TransactionConverter {
+
+    public Transaction toTransaction(DebitRequestDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        Transaction transaction = new Transaction();
+        transaction.setOrderId(dto.getOrderId());
+        transaction.setUserId(dto.getUserId());
+        transaction.setAmount(dto.getAmount());
+        transaction.setCurrency(dto.getCurrency());
+        return transaction;
+    }
+
+    public Transaction toTransaction(RefundRequestDTO dto) {
+        if (dto == null) {
+            return null;
+        }
+        Transaction transaction = new Transaction();
+        transaction.setOrderId(dto.getOrderId());
+        transaction.setUserId(dto.getUserId());
+        transaction.setAmount(dto.getAmount());
+        transaction.setCurrency(dto.getCurrency());
+        transaction.setIdempotencyKey(dto.getIdempotencyKey());
+        return transaction;
+    }
+}
@@ -0,0 +1,24 @@
+package com.tut2.group3.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of the window in which BankEventPublisher suppresses republishing the same transaction result
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventDedupeStatsDTO {
+
+    private long windowSeconds;
+    private int capacity;
+    private int trackedEvents;
+    private long memoryBytes;
+    private long duplicatesSkipped;
+    private long rotations;
+    // Rotations forced by a full table, evicting events younger than the window
+    private long capacityRotations;
+    private long evictedEvents;
+}
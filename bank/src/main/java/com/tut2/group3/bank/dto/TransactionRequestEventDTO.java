@@ -24,12 +24,16 @@ public class TransactionRequestEventDTO {
     private BigDecimal amount;
     private String currency;
     private LocalDateTime timestamp;
+    // Refunds only; without one, a repeat refund for the order is recognised by order id
+    private String idempotencyKey;
+    // Queue the requester waits on for the result; results without one go to the events queue
+    private String replyTo;
 
     public DebitRequestDTO toDebitRequest() {
         return new DebitRequestDTO(orderId, userId, amount, currency);
     }
 
     public RefundRequestDTO toRefundRequest() {
-        return new RefundRequestDTO(orderId, userId, amount, currency, null);
+        return new RefundRequestDTO(orderId, userId, amount, currency, idempotencyKey);
     }
 }
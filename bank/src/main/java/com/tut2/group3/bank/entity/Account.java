@@ -33,4 +33,8 @@ public class Account {
 
     @TableField("created_at")
     private LocalDateTime createdAt;
+
+    // Last ledger entry folded into balance; balance plus the entries after it is the current balance
+    @TableField("snapshot_entry_id")
+    private Long snapshotEntryId;
 }
@@ -0,0 +1,67 @@
+package com.tut2.group3.bank.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.tut2.group3.bank.entity.enums.HoldStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Funds set aside on a customer account for an authorized order.
+ * The money stays in the customer's ledger while the hold is authorized or captured; it only counts
+ * against what the customer can spend. A void or expiry drops the hold without any ledger write, and a
+ * captured hold is moved to the store by the next settlement batch.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("account_holds")
+public class AccountHold {
+
+    @TableId(value = "order_id", type = IdType.INPUT)
+    private String orderId;
+
+    @TableField("account_id")
+    private Long accountId;
+
+    @TableField("user_id")
+    private String userId;
+
+    @TableField("currency")
+    private String currency;
+
+    @TableField("amount")
+    private BigDecimal amount;
+
+    @TableField("status")
+    private HoldStatus status;
+
+    @TableField("authorization_transaction_id")
+    private Long authorizationTransactionId;
+
+    @TableField("capture_transaction_id")
+    private Long captureTransactionId;
+
+    @TableField("void_transaction_id")
+    private Long voidTransactionId;
+
+    @TableField("settlement_transaction_id")
+    private Long settlementTransactionId;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+
+    @TableField("expires_at")
+    private LocalDateTime expiresAt;
+}
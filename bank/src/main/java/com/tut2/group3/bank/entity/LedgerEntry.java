@@ -0,0 +1,53 @@
+package com.tut2.group3.bank.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One side of a money movement, never updated or deleted.
+ * Every transaction writes entries that sum to zero: a debit takes the amount from the customer
+ * and gives it to the store, a refund the other way round, and a settlement takes each captured
+ * order from its customer and gives the batch's total to the store in one entry.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("ledger_entries")
+public class LedgerEntry {
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("transaction_id")
+    private Long transactionId;
+
+    @TableField("account_id")
+    private Long accountId;
+
+    @TableField("order_id")
+    private String orderId;
+
+    @TableField("entry_type")
+    private TransactionType entryType;
+
+    // Positive credits the account, negative debits it
+    @TableField("amount")
+    private BigDecimal amount;
+
+    @TableField("currency")
+    private String currency;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+}
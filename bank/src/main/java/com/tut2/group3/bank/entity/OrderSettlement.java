@@ -0,0 +1,49 @@
+package com.tut2.group3.bank.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of a debited order: written with its successful debit, then increased by each
+ * successful refund, so a refund is validated against one locked row however many came before it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("order_settlements")
+public class OrderSettlement {
+
+    @TableId(value = "order_id", type = IdType.INPUT)
+    private String orderId;
+
+    @TableField("user_id")
+    private String userId;
+
+    @TableField("currency")
+    private String currency;
+
+    @TableField("debit_transaction_id")
+    private Long debitTransactionId;
+
+    @TableField("debited_amount")
+    private BigDecimal debitedAmount;
+
+    @TableField("refunded_amount")
+    private BigDecimal refundedAmount;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,21 @@
+package com.tut2.group3.bank.entity.enums;
+
+import com.baomidou.mybatisplus.annotation.EnumValue;
+
+import lombok.Getter;
+
+@Getter
+public enum HoldStatus {
+    AUTHORIZED("AUTHORIZED"),
+    CAPTURED("CAPTURED"),
+    SETTLED("SETTLED"),
+    VOIDED("VOIDED"),
+    EXPIRED("EXPIRED");
+
+    @EnumValue
+    private final String value;
+
+    HoldStatus(String value) {
+        this.value = value;
+    }
+}
@@ -7,7 +7,12 @@ import lombok.Getter;
 @Getter
 public enum TransactionType {
     DEBIT("DEBIT"),
-    REFUND("REFUND");
+    REFUND("REFUND"),
+    AUTHORIZATION("AUTHORIZATION"),
+    CAPTURE("CAPTURE"),
+    VOID("VOID"),
+    // A batch of captures moved from customers to the store; never published
+    SETTLEMENT("SETTLEMENT");
 
     @EnumValue
     private final String value;
@@ -0,0 +1,47 @@
+package com.tut2.group3.bank.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.bank.entity.AccountHold;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface AccountHoldMapper extends BaseMapper<AccountHold> {
+
+    /**
+     * The order's hold, locked so a capture and a void of the same order cannot both succeed
+     */
+    @Select("SELECT * FROM account_holds WHERE order_id = #{orderId} FOR UPDATE")
+    AccountHold lockByOrderId(@Param("orderId") String orderId);
+
+    /**
+     * Funds on the account that are held, captured or not, and not yet settled to the store
+     */
+    @Select("SELECT COALESCE(SUM(amount), 0) FROM account_holds " +
+            "WHERE account_id = #{accountId} AND status IN ('AUTHORIZED', 'CAPTURED')")
+    BigDecimal sumHeld(@Param("accountId") Long accountId);
+
+    /**
+     * The oldest captured holds, locked for one settlement batch
+     */
+    @Select("SELECT * FROM account_holds WHERE status = 'CAPTURED' ORDER BY updated_at, order_id " +
+            "LIMIT #{limit} FOR UPDATE")
+    List<AccountHold> lockCaptured(@Param("limit") int limit);
+
+    @Update("<script>" +
+            "UPDATE account_holds SET status = 'SETTLED', settlement_transaction_id = #{settlementTransactionId}, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE status = 'CAPTURED' AND order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            "</script>")
+    int markSettled(@Param("orderIds") List<String> orderIds, @Param("settlementTransactionId") Long settlementTransactionId);
+
+    @Update("UPDATE account_holds SET status = 'EXPIRED', updated_at = CURRENT_TIMESTAMP " +
+            "WHERE status = 'AUTHORIZED' AND expires_at < #{now}")
+    int expireAuthorized(@Param("now") LocalDateTime now);
+}
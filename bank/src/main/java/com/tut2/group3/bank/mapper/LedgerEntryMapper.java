@@ -0,0 +1,59 @@
+package com.tut2.group3.bank.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.bank.entity.LedgerEntry;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface LedgerEntryMapper extends BaseMapper<LedgerEntry> {
+
+    @Insert("<script>" +
+            "INSERT INTO ledger_entries (transaction_id, account_id, order_id, entry_type, amount, currency, created_at) VALUES " +
+            "<foreach collection='entries' item='entry' separator=','>" +
+            "(#{entry.transactionId}, #{entry.accountId}, #{entry.orderId}, #{entry.entryType}, " +
+            "#{entry.amount}, #{entry.currency}, #{entry.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("entries") List<LedgerEntry> entries);
+
+    /**
+     * Entries written since the account's last snapshot, locked.
+     * A locking read sees entries committed after the transaction began and waits for ones still being
+     * written, so balance checks and snapshots never miss an entry.
+     */
+    @Select("SELECT * FROM ledger_entries WHERE account_id = #{accountId} AND id > #{afterId} ORDER BY id FOR UPDATE")
+    List<LedgerEntry> lockTail(@Param("accountId") Long accountId, @Param("afterId") long afterId);
+
+    @Select("SELECT COALESCE(SUM(amount), 0) FROM ledger_entries WHERE account_id = #{accountId} AND id > #{afterId}")
+    BigDecimal sumTail(@Param("accountId") Long accountId, @Param("afterId") long afterId);
+
+    /**
+     * Highest id among the account's entries after {@code afterId} that were written by {@code writtenBy}; 0 when none were
+     */
+    @Select("SELECT COALESCE(MAX(id), 0) FROM ledger_entries " +
+            "WHERE account_id = #{accountId} AND id > #{afterId} AND created_at <= #{writtenBy}")
+    long selectMaxIdWrittenBy(@Param("accountId") Long accountId, @Param("afterId") long afterId,
+                              @Param("writtenBy") LocalDateTime writtenBy);
+
+    /**
+     * The account's entries in {@code (afterId, upToId]}, locked.
+     * The locking read waits for entries in the range still being written, which an unlocked read would miss,
+     * and its next-key locks stop at the first entry after {@code upToId}.
+     */
+    @Select("SELECT * FROM ledger_entries WHERE account_id = #{accountId} AND id > #{afterId} AND id <= #{upToId} " +
+            "ORDER BY id FOR UPDATE")
+    List<LedgerEntry> lockRange(@Param("accountId") Long accountId, @Param("afterId") long afterId,
+                                  @Param("upToId") long upToId);
+
+    @Select("SELECT a.id FROM accounts a WHERE EXISTS " +
+            "(SELECT 1 FROM ledger_entries e WHERE e.account_id = a.id AND e.id > a.snapshot_entry_id) " +
+            "LIMIT #{limit}")
+    List<Long> selectAccountIdsWithTail(@Param("limit") int limit);
+}
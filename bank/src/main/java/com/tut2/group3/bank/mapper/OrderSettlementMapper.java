@@ -0,0 +1,24 @@
+package com.tut2.group3.bank.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.bank.entity.OrderSettlement;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+
+@Mapper
+public interface OrderSettlementMapper extends BaseMapper<OrderSettlement> {
+
+    /**
+     * The order's settlement, locked so concurrent refunds of the order validate one after another
+     */
+    @Select("SELECT * FROM order_settlements WHERE order_id = #{orderId} FOR UPDATE")
+    OrderSettlement lockByOrderId(@Param("orderId") String orderId);
+
+    @Update("UPDATE order_settlements SET refunded_amount = refunded_amount + #{amount}, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE order_id = #{orderId}")
+    int addRefund(@Param("orderId") String orderId, @Param("amount") BigDecimal amount);
+}
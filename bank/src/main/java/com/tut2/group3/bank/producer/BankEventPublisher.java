@@ -1,27 +1,79 @@
 package com.tut2.group3.bank.producer;
 
 import com.tut2.group3.bank.config.BankRabbitProperties;
+import com.tut2.group3.bank.dto.EventDedupeStatsDTO;
 import com.tut2.group3.bank.dto.TransactionResultEventDTO;
 import com.tut2.group3.bank.entity.Transaction;
 import com.tut2.group3.bank.entity.enums.TransactionStatus;
 import com.tut2.group3.bank.entity.enums.TransactionType;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import com.tut2.group3.bank.utils.ExpiringHashSet;
+import com.tut2.group3.bank.utils.Hashes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+/**
+ * Publishes transaction results.
+ * A result goes to the queue named by its request's {@code replyTo}, so only the store instance waiting for it
+ * receives it. Results without a reply queue, and replies whose queue no longer exists (the requester went
+ * away), go to the events queue instead.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class BankEventPublisher {
 
     private final RabbitTemplate rabbitTemplate;
     private final BankRabbitProperties rabbitProperties;
-    private final ConcurrentMap<String, TransactionStatus> publishedTransactions = new ConcurrentHashMap<>();
+    // Hashes of the results published within the dedupe window, keyed by transaction and status
+    private final ExpiringHashSet publishedTransactions;
+    private final AtomicLong duplicatesSkipped = new AtomicLong();
+    private final AtomicLong capacityRotationsReported = new AtomicLong();
+    // Events held back while this thread processes a batch
+    private final ThreadLocal<List<PendingEvent>> batch = new ThreadLocal<>();
+    // Reply queue of the request this thread is processing
+    private final ThreadLocal<String> replyTo = new ThreadLocal<>();
+    // Returned replies are republished off the connection thread that reports them
+    private final ExecutorService returnsExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bank-event-returns");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BankEventPublisher(RabbitTemplate rabbitTemplate, BankRabbitProperties rabbitProperties) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.rabbitProperties = rabbitProperties;
+        this.publishedTransactions = new ExpiringHashSet(rabbitProperties.getPublishDedupeWindowSeconds() * 1000L,
+                rabbitProperties.getPublishDedupeCapacity(), System.currentTimeMillis());
+        rabbitTemplate.setMandatory(true);
+        rabbitTemplate.setReturnsCallback(returned -> returnsExecutor.execute(() -> republish(returned)));
+    }
+
+    /**
+     * Send the results this thread publishes to the requester's reply queue until {@link #clearReplyTo()}
+     */
+    public void setReplyTo(String queue) {
+        replyTo.set(StringUtils.hasText(queue) ? queue : null);
+    }
+
+    public void clearReplyTo() {
+        replyTo.remove();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        returnsExecutor.shutdown();
+    }
 
     public void publishTransactionResult(Transaction transaction) {
         publishTransactionResult(transaction, false);
@@ -33,9 +85,64 @@ public class BankEventPublisher {
             return;
         }
 
+        List<PendingEvent> pending = batch.get();
+        if (pending != null) {
+            pending.add(new PendingEvent(transaction, forcePublish, replyTo.get()));
+            return;
+        }
+        send(rabbitTemplate, transaction, forcePublish, replyTo.get());
+    }
+
+    /**
+     * Hold back this thread's events until {@link #flushBatch()}, so a batch's results go out only after it commits
+     */
+    public void beginBatch() {
+        batch.set(new ArrayList<>());
+    }
+
+    /**
+     * Send the held-back events together on one channel
+     */
+    public void flushBatch() {
+        List<PendingEvent> pending = batch.get();
+        batch.remove();
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        try {
+            rabbitTemplate.invoke(operations -> {
+                pending.forEach(event -> send(operations, event.transaction(), event.forcePublish(), event.replyTo()));
+                return null;
+            });
+        } catch (AmqpException ex) {
+            log.error("Failed to publish batch of {} transaction events due to {}", pending.size(), ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Drop the held-back events of a batch that rolled back
+     */
+    public void discardBatch() {
+        batch.remove();
+    }
+
+    public EventDedupeStatsDTO dedupeStats() {
+        return new EventDedupeStatsDTO(
+                publishedTransactions.getWindowMillis() / 1000,
+                publishedTransactions.getCapacity(),
+                publishedTransactions.size(),
+                publishedTransactions.sizeInBytes(),
+                duplicatesSkipped.get(),
+                publishedTransactions.getRotations(),
+                publishedTransactions.getCapacityRotations(),
+                publishedTransactions.getEvicted());
+    }
+
+    private void send(RabbitOperations operations, Transaction transaction, boolean forcePublish, String replyQueue) {
         TransactionType txType = transaction.getTxType();
         TransactionStatus status = transaction.getStatus();
         if (!forcePublish && isDuplicatePublication(transaction, status)) {
+            duplicatesSkipped.incrementAndGet();
             log.debug("Skipping duplicate event for bankTxId={} status={}", transaction.getBankTxId(), status);
             return;
         }
@@ -44,31 +151,68 @@ public class BankEventPublisher {
         TransactionResultEventDTO payload = TransactionResultEventDTO.fromTransaction(transaction, eventType);
 
         try {
-            // Publish transaction result event to RabbitMQ
-            rabbitTemplate.convertAndSend(
-                    rabbitProperties.resolvedExchangeName(),
-                    rabbitProperties.resolvedRoutingKey(),
-                    payload
-            );
-            log.info("Published transaction event eventType={} orderId={} transactionId={} status={}",
-                    eventType, transaction.getOrderId(), transaction.getId(), status);
+            // Publish transaction result event to RabbitMQ; replies go through the default exchange to their queue
+            if (replyQueue != null) {
+                operations.convertAndSend("", replyQueue, payload);
+            } else {
+                operations.convertAndSend(
+                        rabbitProperties.resolvedExchangeName(),
+                        rabbitProperties.resolvedRoutingKey(),
+                        payload
+                );
+            }
+            log.info("Published transaction event eventType={} orderId={} transactionId={} status={} to {}",
+                    eventType, transaction.getOrderId(), transaction.getId(), status,
+                    replyQueue != null ? replyQueue : rabbitProperties.resolvedRoutingKey());
         } catch (AmqpException ex) {
             log.error("Failed to publish transaction event eventType={} orderId={} transactionId={} due to {}",
                     eventType, transaction.getOrderId(), transaction.getId(), ex.getMessage(), ex);
         }
     }
 
+    /**
+     * A reply whose queue is gone, or an event nothing is bound for, goes to the events queue
+     */
+    private void republish(ReturnedMessage returned) {
+        if (rabbitProperties.resolvedRoutingKey().equals(returned.getRoutingKey())) {
+            log.error("Transaction event returned by the broker ({}); the events queue {} is missing",
+                    returned.getReplyText(), returned.getRoutingKey());
+            return;
+        }
+        log.warn("Reply queue {} is gone ({}); publishing the result to the events queue", returned.getRoutingKey(), returned.getReplyText());
+        try {
+            rabbitTemplate.send(rabbitProperties.resolvedExchangeName(), rabbitProperties.resolvedRoutingKey(), returned.getMessage());
+        } catch (AmqpException ex) {
+            log.error("Failed to republish returned transaction event due to {}", ex.getMessage(), ex);
+        }
+    }
+
     private boolean isDuplicatePublication(Transaction transaction, TransactionStatus status) {
         String txKey = transaction.getBankTxId();
         if (txKey == null || txKey.isBlank()) {
             txKey = transaction.getTxType() + ":" + transaction.getOrderId();
         }
-        TransactionStatus previousStatus = publishedTransactions.putIfAbsent(txKey, status);
-        return previousStatus != null && previousStatus == status;
+        boolean added = publishedTransactions.add(Hashes.hash64(txKey + ":" + status), System.currentTimeMillis());
+
+        long capacityRotations = publishedTransactions.getCapacityRotations();
+        long reported = capacityRotationsReported.get();
+        if (capacityRotations > reported && capacityRotationsReported.compareAndSet(reported, capacityRotations)) {
+            log.warn("Event dedupe table filled within its {} s window; results published earlier may be published again. "
+                            + "Consider raising bank.rabbitmq.publish-dedupe-capacity",
+                    publishedTransactions.getWindowMillis() / 1000);
+        }
+        return !added;
     }
 
     private String resolveEventType(TransactionType txType, TransactionStatus status) {
-        String operation = txType == TransactionType.REFUND ? "Refund" : "Debit";
+        String operation = txType == null ? "Debit" : switch (txType) {
+            case REFUND -> "Refund";
+            case AUTHORIZATION -> "Authorization";
+            case CAPTURE -> "Capture";
+            case VOID -> "Void";
+            case SETTLEMENT -> "Settlement";
+            default -> "Debit";
+        };
         if (status == TransactionStatus.SUCCEEDED) {
             return operation + "Succeeded";
         }
@@ -77,4 +221,7 @@ public class BankEventPublisher {
         }
         return operation + "Updated";
     }
+
+    private record PendingEvent(Transaction transaction, boolean forcePublish, String replyTo) {
+    }
 }
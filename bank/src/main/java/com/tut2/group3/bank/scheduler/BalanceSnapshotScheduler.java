@@ -0,0 +1,36 @@
+package com.tut2.group3.bank.scheduler;
+
+import com.tut2.group3.bank.config.LedgerProperties;
+import com.tut2.group3.bank.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Folds accounts' recent ledger entries into their balance snapshots, keeping the tails that funds
+ * checks read short. Each account is snapshotted in its own transaction so no run holds two account locks.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BalanceSnapshotScheduler {
+
+    private final LedgerService ledgerService;
+    private final LedgerProperties properties;
+
+    @Scheduled(fixedDelayString = "${bank.ledger.snapshot-interval-ms:1000}")
+    public void snapshotBalances() {
+        try {
+            int folded = 0;
+            for (Long accountId : ledgerService.accountsWithPendingEntries(properties.getSnapshotBatchSize())) {
+                folded += ledgerService.snapshot(accountId);
+            }
+            if (folded > 0) {
+                log.info("Folded {} ledger entries into balance snapshots", folded);
+            }
+        } catch (Exception e) {
+            log.error("Balance snapshot run failed, retrying next run", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.tut2.group3.bank.scheduler;
+
+import com.tut2.group3.bank.config.HoldProperties;
+import com.tut2.group3.bank.service.HoldService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settles captured holds to the store account in batches and releases authorizations that expired
+ * uncaptured. A run settles at most one batch, so a backlog drains over consecutive runs.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HoldSettlementScheduler {
+
+    private final HoldService holdService;
+    private final HoldProperties properties;
+
+    @Scheduled(fixedDelayString = "${bank.holds.settle-interval-ms:1000}")
+    public void settleHolds() {
+        try {
+            int settled = holdService.settleCaptures(properties.getSettleBatchSize());
+            if (settled > 0) {
+                log.info("Settled {} captured holds to the store", settled);
+            }
+            int expired = holdService.expireAuthorizations();
+            if (expired > 0) {
+                log.info("Released {} expired authorizations", expired);
+            }
+        } catch (Exception e) {
+            log.error("Hold settlement run failed, retrying next run", e);
+        }
+    }
+}
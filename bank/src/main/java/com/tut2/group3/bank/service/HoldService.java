@@ -0,0 +1,33 @@
+package com.tut2.group3.bank.service;
+
+import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.entity.Transaction;
+
+public interface HoldService {
+
+    /**
+     * Hold the amount on the customer's account for the order; the store account is not touched
+     */
+    Result<Transaction> authorize(DebitRequestDTO dto);
+
+    /**
+     * Commit the order's hold to the store; the money moves with the next settlement batch
+     */
+    Result<Transaction> capture(String orderId);
+
+    /**
+     * Drop the order's uncaptured hold, without any ledger entry
+     */
+    Result<Transaction> voidHold(String orderId);
+
+    /**
+     * Move up to {@code limit} captured holds to the store account; returns the holds settled
+     */
+    int settleCaptures(int limit);
+
+    /**
+     * Release authorizations left uncaptured past their expiry; returns the holds released
+     */
+    int expireAuthorizations();
+}
@@ -0,0 +1,32 @@
+package com.tut2.group3.bank.service;
+
+import com.tut2.group3.bank.entity.Transaction;
+
+/**
+ * In-memory index of transactions seen, answering duplicate checks without a query where it can.
+ * Keys it has never seen are reported as new straight away; repeats are answered from recent outcomes
+ * or looked up in the database. The database's unique constraints still reject any duplicate it misses.
+ */
+public interface IdempotencyService {
+
+    /**
+     * The order's successful debit, or null when the order has not been debited
+     */
+    Transaction findSettledDebit(String orderId);
+
+    /**
+     * The transaction recorded under the idempotency key, or null when there is none
+     */
+    Transaction findByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Whether a transaction with the idempotency key may exist; false means it definitely does not
+     */
+    boolean mayHaveIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Remember a transaction just written. Its outcome is served to retries once the surrounding
+     * database transaction commits.
+     */
+    void record(Transaction transaction);
+}
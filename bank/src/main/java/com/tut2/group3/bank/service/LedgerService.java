@@ -0,0 +1,52 @@
+package com.tut2.group3.bank.service;
+
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface LedgerService {
+
+    /**
+     * The account's balance for a funds check: its snapshot plus every entry since.
+     * The caller must hold the account's row lock.
+     */
+    BigDecimal currentBalance(Account account);
+
+    /**
+     * What the account can spend: its current balance less the funds held on it for authorized orders.
+     * The caller must hold the account's row lock.
+     */
+    BigDecimal availableBalance(Account account);
+
+    /**
+     * The account's balance read without any lock, for display and for the store's refund check
+     */
+    BigDecimal readBalance(Account account);
+
+    /**
+     * Append the balanced pair of entries moving the transaction's amount from one account to the other
+     */
+    void transfer(Transaction transaction, Account from, Account to);
+
+    /**
+     * Append a settlement batch's entries: each hold's amount taken from its customer account,
+     * and their total given to the store account in one entry
+     */
+    void settle(Transaction settlement, List<AccountHold> holds, Account store);
+
+    List<Long> accountsWithPendingEntries(int limit);
+
+    /**
+     * Fold the account's settled entries since its last snapshot into its balance, without locking its
+     * ledger tail; returns the entries folded. Entries younger than the configured minimum age stay in the tail.
+     */
+    int snapshot(Long accountId);
+
+    /**
+     * Fold every entry since the last snapshot of an account the caller has already locked, locking its tail
+     */
+    int snapshot(Account account);
+}
@@ -13,9 +13,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.List;
+
 
 public interface TransactionRequestHandlerService {
 
     void handleTransactionRequest(TransactionRequestEventDTO request);
 
+    /**
+     * Apply a batch of requests: debits together in one database transaction, falling back to one by one
+     * if the batch fails; results are published once the batch has committed
+     */
+    void handleTransactionRequests(List<TransactionRequestEventDTO> requests);
+
 }
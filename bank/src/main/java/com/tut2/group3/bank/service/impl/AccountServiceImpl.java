@@ -3,15 +3,16 @@ package com.tut2.group3.bank.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.tut2.group3.bank.common.ErrorCode;
 import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.converter.AccountConverter;
 import com.tut2.group3.bank.dto.AccountRequestDTO;
 import com.tut2.group3.bank.dto.AccountResponseDTO;
 import com.tut2.group3.bank.entity.Account;
 import com.tut2.group3.bank.exception.BusinessException;
 import com.tut2.group3.bank.mapper.AccountMapper;
 import com.tut2.group3.bank.service.AccountService;
+import com.tut2.group3.bank.service.LedgerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +24,8 @@ import java.time.LocalDateTime;
 public class AccountServiceImpl implements AccountService {
 
     private final AccountMapper accountMapper;
-    private final ModelMapper modelMapper;
+    private final AccountConverter accountConverter;
+    private final LedgerService ledgerService;
 
     @Override
     @Transactional
@@ -36,19 +38,21 @@ public class AccountServiceImpl implements AccountService {
                             dto.getUserId(), dto.getCurrency()));
         }
 
-        Account account = modelMapper.map(dto, Account.class);
+        Account account = accountConverter.toAccount(dto);
         account.setCreatedAt(LocalDateTime.now());
 
         accountMapper.insert(account);
         log.info("Account created for userId={} currency={}", dto.getUserId(), dto.getCurrency());
 
-        return Result.success(modelMapper.map(account, AccountResponseDTO.class));
+        return Result.success(accountConverter.toResponse(account));
     }
 
     @Override
     public Result<AccountResponseDTO> getAccount(String userId, String currency) {
         Account account = findAccountByUserIdAndCurrencyOrThrow(userId, currency);
-        return Result.success(modelMapper.map(account, AccountResponseDTO.class));
+        AccountResponseDTO response = accountConverter.toResponse(account);
+        response.setBalance(ledgerService.readBalance(account));
+        return Result.success(response);
     }
 
     @Override
@@ -56,13 +60,22 @@ public class AccountServiceImpl implements AccountService {
     public Result<AccountResponseDTO> updateAccount(String userId, String currency, AccountRequestDTO dto) {
         log.info("Updating account for userId={} currency={}", userId, currency);
 
-        Account account = findAccountByUserIdAndCurrencyOrThrow(userId, currency);
+        Account account = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
+                .eq(Account::getUserId, userId)
+                .eq(Account::getCurrency, currency)
+                .last("LIMIT 1 FOR UPDATE"));
+        if (account == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND,
+                    String.format("Account not found for user %s and currency %s", userId, currency));
+        }
 
+        // Fold pending ledger entries first so the new balance replaces the whole current balance
+        ledgerService.snapshot(account);
         account.setBalance(dto.getBalance());
         account.setCurrency(dto.getCurrency());
         accountMapper.updateById(account);
 
-        return Result.success(modelMapper.map(account, AccountResponseDTO.class));
+        return Result.success(accountConverter.toResponse(account));
     }
 
     @Override
@@ -3,30 +3,35 @@ package com.tut2.group3.bank.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.tut2.group3.bank.common.ErrorCode;
 import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.converter.TransactionConverter;
 import com.tut2.group3.bank.dto.DebitRequestDTO;
 import com.tut2.group3.bank.dto.RefundRequestDTO;
 import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.OrderSettlement;
 import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.HoldStatus;
 import com.tut2.group3.bank.entity.enums.TransactionStatus;
 import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.exception.BusinessException;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
 import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.OrderSettlementMapper;
 import com.tut2.group3.bank.producer.BankEventPublisher;
 import com.tut2.group3.bank.repository.TransactionRepository;
 import com.tut2.group3.bank.service.BankService;
+import com.tut2.group3.bank.service.IdempotencyService;
+import com.tut2.group3.bank.service.LedgerService;
+import com.tut2.group3.bank.utils.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
@@ -38,18 +43,20 @@ public class BankServiceImpl implements BankService {
 
     private final TransactionRepository transactionRepository;
     private final AccountMapper accountMapper;
-    private final ModelMapper modelMapper;
+    private final AccountHoldMapper accountHoldMapper;
+    private final OrderSettlementMapper orderSettlementMapper;
+    private final TransactionConverter transactionConverter;
     private final BankEventPublisher bankEventPublisher;
+    private final LedgerService ledgerService;
+    private final IdempotencyService idempotencyService;
+    private final IdGenerator idGenerator;
 
     @Override
     @Transactional
     public Result<Transaction> processDebit(DebitRequestDTO dto) {
         log.info("Received debit request for orderId={}, userId={}, amount={} {}", dto.getOrderId(), dto.getUserId(), dto.getAmount(), dto.getCurrency());
 
-        Transaction existingDebit = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
-                .eq(Transaction::getOrderId, dto.getOrderId())
-                .eq(Transaction::getTxType, TransactionType.DEBIT)
-                .eq(Transaction::getStatus, TransactionStatus.SUCCEEDED));
+        Transaction existingDebit = idempotencyService.findSettledDebit(dto.getOrderId());
         if (existingDebit != null) {
             log.warn("Duplicate debit detected for orderId={}", dto.getOrderId());
             return Result.error(ErrorCode.DEBIT_FAILED, "Order already debited");
@@ -60,15 +67,13 @@ public class BankServiceImpl implements BankService {
                 .eq(Account::getCurrency, dto.getCurrency())
                 .last("LIMIT 1 FOR UPDATE"));
 
+        // No lock: the store is credited by appending a ledger entry, so debits never queue on the store row
         Account storeAccount = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
                 .eq(Account::getUserId, STORE_USER_ID)
                 .eq(Account::getCurrency, dto.getCurrency())
-                .last("LIMIT 1 FOR UPDATE"));
-
-        Transaction transaction = createTransaction(dto, TransactionType.DEBIT, "TX");
+                .last("LIMIT 1"));
 
-        transactionRepository.insert(transaction);
-        log.info("Persisted transaction id={} with bankTxId={}", transaction.getId(), transaction.getBankTxId());
+        Transaction transaction = createTransaction(transactionConverter.toTransaction(dto), TransactionType.DEBIT, "TX");
 
         // Validate account
         if (account == null) {
@@ -86,8 +91,16 @@ public class BankServiceImpl implements BankService {
             return failTransaction(transaction, "Store account not found for currency " + dto.getCurrency(), ErrorCode.DEBIT_FAILED);
         }
 
-        // Validate sufficient balance
-        if (account.getBalance() == null || account.getBalance().compareTo(dto.getAmount()) < 0) {
+        // Checked under the account lock, which authorizations take too: an authorized order is paid by its capture,
+        // and its hold already reserves the funds
+        AccountHold hold = accountHoldMapper.selectById(dto.getOrderId());
+        if (hold != null && hold.getStatus() != HoldStatus.VOIDED && hold.getStatus() != HoldStatus.EXPIRED) {
+            return failTransaction(transaction, "Order already authorized", ErrorCode.DEBIT_FAILED);
+        }
+
+        // Validate sufficient balance; funds held for authorized orders cannot be spent
+        BigDecimal balance = ledgerService.availableBalance(account);
+        if (balance.compareTo(dto.getAmount()) < 0) {
             return failTransaction(transaction, "Insufficient funds", ErrorCode.DEBIT_FAILED);
         }
 
@@ -95,17 +108,36 @@ public class BankServiceImpl implements BankService {
         // If the number is less than 0.5, we consider the transaction a success (now set to 1, all succeed)
         boolean success = ThreadLocalRandom.current().nextDouble() < 1;
         if (success) {
-            account.setBalance(account.getBalance().subtract(dto.getAmount()));
-            accountMapper.updateById(account);
-
-            BigDecimal storeCurrentBalance = safe(storeAccount.getBalance());
-            storeAccount.setBalance(storeCurrentBalance.add(dto.getAmount()));
-            accountMapper.updateById(storeAccount);
-
+            // The transaction row is written once, with its outcome; the balances move by ledger entries alone
             transaction.setStatus(TransactionStatus.SUCCEEDED);
             transaction.setMessage("Debit succeeded");
-            transactionRepository.updateById(transaction);
-            log.info("Transaction id={} succeeded; new balance={}", transaction.getId(), account.getBalance());
+            try {
+                transactionRepository.insert(transaction);
+            } catch (DuplicateKeyException duplicateKeyException) {
+                // uk_transactions_settled_debit: another request debited the order since the check above
+                log.warn("Duplicate debit rejected by the database for orderId={}", dto.getOrderId());
+                return Result.error(ErrorCode.DEBIT_FAILED, "Order already debited");
+            }
+            try {
+                orderSettlementMapper.insert(OrderSettlement.builder()
+                        .orderId(transaction.getOrderId())
+                        .userId(transaction.getUserId())
+                        .currency(transaction.getCurrency())
+                        .debitTransactionId(transaction.getId())
+                        .debitedAmount(transaction.getAmount())
+                        .refundedAmount(BigDecimal.ZERO)
+                        .createdAt(transaction.getCreatedAt())
+                        .updatedAt(transaction.getCreatedAt())
+                        .build());
+            } catch (DuplicateKeyException duplicateKeyException) {
+                // A capture of the order opened the row first; throwing rolls back the debit row written above
+                log.warn("Debit of orderId={} rejected: the order already has a settlement row", dto.getOrderId());
+                throw new BusinessException(ErrorCode.DEBIT_FAILED, "Order already captured");
+            }
+            idempotencyService.record(transaction);
+            ledgerService.transfer(transaction, account, storeAccount);
+            log.info("Transaction id={} bankTxId={} succeeded; new balance={}",
+                    transaction.getId(), transaction.getBankTxId(), balance.subtract(dto.getAmount()));
             bankEventPublisher.publishTransactionResult(transaction);
             return Result.success(transaction);
         }
@@ -127,117 +159,92 @@ public class BankServiceImpl implements BankService {
 
         Transaction existingByKey = null;
         if (StringUtils.hasText(dto.getIdempotencyKey())) {
-            existingByKey = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
-                    .eq(Transaction::getIdempotencyKey, dto.getIdempotencyKey()));
+            existingByKey = idempotencyService.findByIdempotencyKey(dto.getIdempotencyKey());
             if (existingByKey != null) {
                 log.info("Refund idempotency hit for key={} status={}", dto.getIdempotencyKey(), existingByKey.getStatus());
-                bankEventPublisher.publishTransactionResult(existingByKey, true);
-                if (existingByKey.getStatus() == TransactionStatus.SUCCEEDED) {
-                    return Result.success(existingByKey);
-                }
-                return Result.error(ErrorCode.REFUND_FAILED,
-                        existingByKey.getMessage() != null ? existingByKey.getMessage() : ErrorCode.REFUND_FAILED.getMessage());
+                return earlierRefundOutcome(existingByKey);
             }
         }
 
-        List<Transaction> orderTransactions = transactionRepository.selectList(new LambdaQueryWrapper<Transaction>()
-                .eq(Transaction::getOrderId, dto.getOrderId())
-                .last("FOR UPDATE"));
-
-        if (CollectionUtils.isEmpty(orderTransactions)) {
-            log.warn("Refund request rejected: no transactions found for orderId={}", dto.getOrderId());
-            return refundFailure(dto, dto.getUserId(), "Original debit not found for order " + dto.getOrderId());
-        }
-
-        Transaction originalDebit = orderTransactions.stream()
-                .filter(tx -> tx.getTxType() == TransactionType.DEBIT && tx.getStatus() == TransactionStatus.SUCCEEDED)
-                .max(Comparator.comparing(Transaction::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
-                .orElse(null);
-
-        if (originalDebit == null) {
+        // One locked row carries the debit and every refund so far; concurrent refunds of the order queue here
+        OrderSettlement settlement = orderSettlementMapper.lockByOrderId(dto.getOrderId());
+        if (settlement == null) {
             log.warn("Refund request rejected: no settled debit found for orderId={}", dto.getOrderId());
-            return refundFailure(dto, dto.getUserId(), "Original transaction not settled for refund");
+            return refundFailure(dto, dto.getUserId(), "Original debit not found for order " + dto.getOrderId());
         }
 
-        if (originalDebit.getCurrency() != null && dto.getCurrency() != null
-                && !originalDebit.getCurrency().equalsIgnoreCase(dto.getCurrency())) {
+        if (settlement.getCurrency() != null && dto.getCurrency() != null
+                && !settlement.getCurrency().equalsIgnoreCase(dto.getCurrency())) {
             log.warn("Refund request rejected: currency mismatch for orderId={} original={} refund={}",
-                    dto.getOrderId(), originalDebit.getCurrency(), dto.getCurrency());
-            return refundFailure(dto, originalDebit.getUserId(), "Currency mismatch for refund");
+                    dto.getOrderId(), settlement.getCurrency(), dto.getCurrency());
+            return refundFailureUnlessStored(dto, settlement.getUserId(), "Currency mismatch for refund");
         }
 
-        BigDecimal debitAmount = safe(originalDebit.getAmount());
-        BigDecimal refundedAmount = orderTransactions.stream()
-                .filter(tx -> tx.getTxType() == TransactionType.REFUND && tx.getStatus() == TransactionStatus.SUCCEEDED)
-                .map(Transaction::getAmount)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
+        BigDecimal debitAmount = safe(settlement.getDebitedAmount());
+        BigDecimal refundedAmount = safe(settlement.getRefundedAmount());
         BigDecimal projectedRefundTotal = refundedAmount.add(dto.getAmount());
         if (projectedRefundTotal.compareTo(debitAmount) > 0) {
             log.warn("Refund request rejected: refund total would exceed debit orderId={} debitAmount={} refunded={} requested={}",
                     dto.getOrderId(), debitAmount, refundedAmount, dto.getAmount());
-            return refundFailure(dto, originalDebit.getUserId(), "Refund exceeds available balance");
+            return refundFailureUnlessStored(dto, settlement.getUserId(), "Refund exceeds available balance");
         }
 
         Account customerAccount = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
-                .eq(Account::getUserId, originalDebit.getUserId())
-                .eq(Account::getCurrency, originalDebit.getCurrency())
+                .eq(Account::getUserId, settlement.getUserId())
+                .eq(Account::getCurrency, settlement.getCurrency())
                 .last("LIMIT 1 FOR UPDATE"));
 
         if (customerAccount == null) {
-            log.warn("Refund request rejected: account not found for user {}", originalDebit.getUserId());
-            return refundFailure(dto, originalDebit.getUserId(), "Account not found for user " + originalDebit.getUserId());
+            log.warn("Refund request rejected: account not found for user {}", settlement.getUserId());
+            return refundFailureUnlessStored(dto, settlement.getUserId(), "Account not found for user " + settlement.getUserId());
         }
 
         if (customerAccount.getCurrency() != null && dto.getCurrency() != null
                 && !customerAccount.getCurrency().equalsIgnoreCase(dto.getCurrency())) {
             log.warn("Refund request rejected: account currency mismatch userId={} accountCurrency={} refundCurrency={}",
                     customerAccount.getUserId(), customerAccount.getCurrency(), dto.getCurrency());
-            return refundFailure(dto, customerAccount.getUserId(), "Account currency mismatch for refund");
+            return refundFailureUnlessStored(dto, customerAccount.getUserId(), "Account currency mismatch for refund");
         }
 
+        // No lock on the store row or its ledger tail, which every debit appends to: concurrent refunds can each
+        // pass the funds check below, but every refund is still capped by its order's debit
         Account storeAccount = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
                 .eq(Account::getUserId, STORE_USER_ID)
-                .eq(Account::getCurrency, originalDebit.getCurrency())
-                .last("LIMIT 1 FOR UPDATE"));
+                .eq(Account::getCurrency, settlement.getCurrency())
+                .last("LIMIT 1"));
 
         if (storeAccount == null) {
             log.warn("Refund request rejected: store account not found for currency {}", dto.getCurrency());
-            return refundFailure(dto, originalDebit.getUserId(), "Store account not found for currency " + dto.getCurrency());
+            return refundFailureUnlessStored(dto, settlement.getUserId(), "Store account not found for currency " + dto.getCurrency());
         }
 
-        BigDecimal storeAvailable = safe(storeAccount.getBalance());
+        BigDecimal storeAvailable = ledgerService.readBalance(storeAccount);
         if (storeAvailable.compareTo(dto.getAmount()) < 0) {
             log.warn("Refund request rejected: store account insufficient funds currency={} balance={} requested={}",
-                    storeAccount.getCurrency(), storeAccount.getBalance(), dto.getAmount());
-            return refundFailure(dto, originalDebit.getUserId(), "Store account insufficient funds");
+                    storeAccount.getCurrency(), storeAvailable, dto.getAmount());
+            return refundFailureUnlessStored(dto, settlement.getUserId(), "Store account insufficient funds");
         }
 
-        if (StringUtils.hasText(dto.getIdempotencyKey())) {
+        if (StringUtils.hasText(dto.getIdempotencyKey()) && idempotencyService.mayHaveIdempotencyKey(dto.getIdempotencyKey())) {
             Transaction duplicateAfterLock = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
                     .eq(Transaction::getIdempotencyKey, dto.getIdempotencyKey())
                     .last("FOR UPDATE"));
             if (duplicateAfterLock != null) {
                 log.info("Refund idempotency key={} already processed after lock with status={}",
                         dto.getIdempotencyKey(), duplicateAfterLock.getStatus());
-                bankEventPublisher.publishTransactionResult(duplicateAfterLock, true);
-                if (duplicateAfterLock.getStatus() == TransactionStatus.SUCCEEDED) {
-                    return Result.success(duplicateAfterLock);
-                }
-                return Result.error(ErrorCode.REFUND_FAILED,
-                        duplicateAfterLock.getMessage() != null ? duplicateAfterLock.getMessage() : ErrorCode.REFUND_FAILED.getMessage());
+                return earlierRefundOutcome(duplicateAfterLock);
             }
         }
 
-        Transaction refund = createTransaction(dto, TransactionType.REFUND, "RF");
-        refund.setUserId(originalDebit.getUserId());
+        Transaction refund = createTransaction(transactionConverter.toTransaction(dto), TransactionType.REFUND, "RF");
+        refund.setUserId(settlement.getUserId());
         refund.setIdempotencyKey(dto.getIdempotencyKey());
         refund.setStatus(TransactionStatus.SUCCEEDED);
         refund.setMessage("Refund succeeded");
 
         try {
             transactionRepository.insert(refund);
+            idempotencyService.record(refund);
             log.info("Persisted refund transaction id={} bankTxId={} orderId={} amount={}",
                     refund.getId(), refund.getBankTxId(), refund.getOrderId(), refund.getAmount());
         } catch (DuplicateKeyException duplicateKeyException) {
@@ -252,12 +259,8 @@ public class BankServiceImpl implements BankService {
             throw duplicateKeyException;
         }
 
-        BigDecimal clientCurrentBalance = safe(customerAccount.getBalance());
-        customerAccount.setBalance(clientCurrentBalance.add(dto.getAmount()));
-        accountMapper.updateById(customerAccount);
-
-        storeAccount.setBalance(storeAvailable.subtract(dto.getAmount()));
-        accountMapper.updateById(storeAccount);
+        orderSettlementMapper.addRefund(refund.getOrderId(), refund.getAmount());
+        ledgerService.transfer(refund, storeAccount, customerAccount);
 
         log.info("Refund transaction id={} succeeded; cumulative refunded={} of debit={} for orderId={}",
                 refund.getId(), projectedRefundTotal, debitAmount, dto.getOrderId());
@@ -265,8 +268,7 @@ public class BankServiceImpl implements BankService {
         return Result.success(refund);
     }
 
-    private Transaction createTransaction(Object source, TransactionType type, String prefix) {
-        Transaction transaction = modelMapper.map(source, Transaction.class);
+    private Transaction createTransaction(Transaction transaction, TransactionType type, String prefix) {
         transaction.setTxType(type);
         transaction.setStatus(TransactionStatus.REQUESTED);
         transaction.setBankTxId(generateTxId(prefix));
@@ -277,16 +279,14 @@ public class BankServiceImpl implements BankService {
     private Result<Transaction> failTransaction(Transaction transaction, String message, ErrorCode errorCode) {
         transaction.setStatus(TransactionStatus.FAILED);
         transaction.setMessage(message);
-        if (transaction.getId() != null) {
-            transactionRepository.updateById(transaction);
-        }
+        transactionRepository.insert(transaction);
         log.warn("Transaction id={} failed: {}", transaction.getId(), message);
         bankEventPublisher.publishTransactionResult(transaction);
         return Result.error(errorCode, message);
     }
 
     private String generateTxId(String prefix) {
-        return prefix + System.currentTimeMillis();
+        return idGenerator.nextId(prefix);
     }
 
     private Result<Transaction> refundFailure(RefundRequestDTO dto, String userId, String message) {
@@ -305,6 +305,33 @@ public class BankServiceImpl implements BankService {
         return Result.error(ErrorCode.REFUND_FAILED, message);
     }
 
+    /**
+     * Fail a refund that the locked settlement rejects, unless its idempotency key already has a stored outcome.
+     * The index forgets old keys, so a retry of a completed refund can get this far and fail the checks that the
+     * first attempt itself changed, such as the refund total
+     */
+    private Result<Transaction> refundFailureUnlessStored(RefundRequestDTO dto, String userId, String message) {
+        if (StringUtils.hasText(dto.getIdempotencyKey())) {
+            Transaction stored = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
+                    .eq(Transaction::getIdempotencyKey, dto.getIdempotencyKey()));
+            if (stored != null) {
+                log.info("Refund idempotency key={} found in the database after the index missed it, status={}",
+                        dto.getIdempotencyKey(), stored.getStatus());
+                return earlierRefundOutcome(stored);
+            }
+        }
+        return refundFailure(dto, userId, message);
+    }
+
+    private Result<Transaction> earlierRefundOutcome(Transaction earlier) {
+        bankEventPublisher.publishTransactionResult(earlier, true);
+        if (earlier.getStatus() == TransactionStatus.SUCCEEDED) {
+            return Result.success(earlier);
+        }
+        return Result.error(ErrorCode.REFUND_FAILED,
+                earlier.getMessage() != null ? earlier.getMessage() : ErrorCode.REFUND_FAILED.getMessage());
+    }
+
     private BigDecimal safe(BigDecimal value) {
         return value != null ? value : BigDecimal.ZERO;
     }
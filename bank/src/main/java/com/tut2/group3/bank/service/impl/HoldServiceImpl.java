@@ -0,0 +1,299 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.tut2.group3.bank.common.ErrorCode;
+import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.config.HoldProperties;
+import com.tut2.group3.bank.converter.TransactionConverter;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.OrderSettlement;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.HoldStatus;
+import com.tut2.group3.bank.entity.enums.TransactionStatus;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.exception.BusinessException;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
+import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.OrderSettlementMapper;
+import com.tut2.group3.bank.producer.BankEventPublisher;
+import com.tut2.group3.bank.repository.TransactionRepository;
+import com.tut2.group3.bank.service.HoldService;
+import com.tut2.group3.bank.service.IdempotencyService;
+import com.tut2.group3.bank.service.LedgerService;
+import com.tut2.group3.bank.utils.IdGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Authorize, capture and void.
+ * An authorization only locks the customer's account and records a hold, which the customer's available
+ * balance excludes. A void drops the hold, so an order cancelled before capture costs no ledger writes
+ * and never touches the store account. A capture marks the hold for payment and opens the order's
+ * settlement row for refunds; {@link #settleCaptures(int)} later moves a whole batch of captures to the
+ * store in one transaction with a single store entry per currency.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HoldServiceImpl implements HoldService {
+
+    private static final String STORE_USER_ID = "2";
+
+    private final TransactionRepository transactionRepository;
+    private final AccountMapper accountMapper;
+    private final AccountHoldMapper accountHoldMapper;
+    private final OrderSettlementMapper orderSettlementMapper;
+    private final TransactionConverter transactionConverter;
+    private final BankEventPublisher bankEventPublisher;
+    private final LedgerService ledgerService;
+    private final IdempotencyService idempotencyService;
+    private final IdGenerator idGenerator;
+    private final HoldProperties properties;
+
+    @Override
+    @Transactional
+    public Result<Transaction> authorize(DebitRequestDTO dto) {
+        log.info("Received authorization request for orderId={}, userId={}, amount={} {}",
+                dto.getOrderId(), dto.getUserId(), dto.getAmount(), dto.getCurrency());
+
+        Transaction transaction = createTransaction(transactionConverter.toTransaction(dto), TransactionType.AUTHORIZATION, "AU");
+        if (dto.getAmount() == null || dto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return reject(transaction, "Authorization amount must be greater than zero", ErrorCode.AUTHORIZATION_FAILED);
+        }
+        Account account = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
+                .eq(Account::getUserId, dto.getUserId())
+                .eq(Account::getCurrency, dto.getCurrency())
+                .last("LIMIT 1 FOR UPDATE"));
+        if (account == null) {
+            return failTransaction(transaction, "Account not found for user " + dto.getUserId(), ErrorCode.AUTHORIZATION_FAILED);
+        }
+
+        // Checked under the account lock, which debits take too, so neither a second authorization
+        // nor a debit of the order can slip in between
+        if (accountHoldMapper.selectById(dto.getOrderId()) != null) {
+            return reject(transaction, "Order already authorized", ErrorCode.AUTHORIZATION_FAILED);
+        }
+        if (idempotencyService.findSettledDebit(dto.getOrderId()) != null) {
+            return reject(transaction, "Order already debited", ErrorCode.AUTHORIZATION_FAILED);
+        }
+
+        BigDecimal available = ledgerService.availableBalance(account);
+        if (available.compareTo(dto.getAmount()) < 0) {
+            return failTransaction(transaction, "Insufficient funds", ErrorCode.AUTHORIZATION_FAILED);
+        }
+
+        transaction.setStatus(TransactionStatus.SUCCEEDED);
+        transaction.setMessage("Authorization succeeded");
+        transactionRepository.insert(transaction);
+        LocalDateTime now = transaction.getCreatedAt();
+        accountHoldMapper.insert(AccountHold.builder()
+                .orderId(transaction.getOrderId())
+                .accountId(account.getId())
+                .userId(transaction.getUserId())
+                .currency(transaction.getCurrency())
+                .amount(transaction.getAmount())
+                .status(HoldStatus.AUTHORIZED)
+                .authorizationTransactionId(transaction.getId())
+                .createdAt(now)
+                .updatedAt(now)
+                .expiresAt(now.plusMinutes(properties.getAuthorizationTtlMinutes()))
+                .build());
+        log.info("Authorization id={} bankTxId={} holds {} {} for orderId={}; available now {}",
+                transaction.getId(), transaction.getBankTxId(), transaction.getAmount(), transaction.getCurrency(),
+                transaction.getOrderId(), available.subtract(transaction.getAmount()));
+        bankEventPublisher.publishTransactionResult(transaction);
+        return Result.success(transaction);
+    }
+
+    @Override
+    @Transactional
+    public Result<Transaction> capture(String orderId) {
+        log.info("Received capture request for orderId={}", orderId);
+
+        AccountHold hold = accountHoldMapper.lockByOrderId(orderId);
+        Transaction capture = createTransaction(fromHold(orderId, hold), TransactionType.CAPTURE, "CP");
+        if (hold == null) {
+            return reject(capture, "No authorization found for order " + orderId, ErrorCode.CAPTURE_FAILED);
+        }
+        if (hold.getStatus() == HoldStatus.CAPTURED || hold.getStatus() == HoldStatus.SETTLED) {
+            return repeat(hold.getCaptureTransactionId(), orderId);
+        }
+        if (hold.getStatus() != HoldStatus.AUTHORIZED || hold.getExpiresAt().isBefore(capture.getCreatedAt())) {
+            String state = hold.getStatus() == HoldStatus.AUTHORIZED ? "expired" : hold.getStatus().name().toLowerCase();
+            return reject(capture, "Authorization for order " + orderId + " is " + state, ErrorCode.CAPTURE_FAILED);
+        }
+        if (idempotencyService.findSettledDebit(orderId) != null) {
+            return reject(capture, "Order already debited", ErrorCode.CAPTURE_FAILED);
+        }
+
+        capture.setStatus(TransactionStatus.SUCCEEDED);
+        capture.setMessage("Capture succeeded");
+        transactionRepository.insert(capture);
+
+        hold.setStatus(HoldStatus.CAPTURED);
+        hold.setCaptureTransactionId(capture.getId());
+        hold.setUpdatedAt(capture.getCreatedAt());
+        accountHoldMapper.updateById(hold);
+        // The order can be refunded from now on, like a debited one
+        try {
+            orderSettlementMapper.insert(OrderSettlement.builder()
+                    .orderId(orderId)
+                    .userId(hold.getUserId())
+                    .currency(hold.getCurrency())
+                    .debitTransactionId(capture.getId())
+                    .debitedAmount(hold.getAmount())
+                    .refundedAmount(BigDecimal.ZERO)
+                    .createdAt(capture.getCreatedAt())
+                    .updatedAt(capture.getCreatedAt())
+                    .build());
+        } catch (DuplicateKeyException duplicateKeyException) {
+            // A debit of the order opened the row first; throwing rolls back the capture and the hold update
+            log.warn("Capture of orderId={} rejected: the order already has a settlement row", orderId);
+            throw new BusinessException(ErrorCode.CAPTURE_FAILED, "Order already debited");
+        }
+
+        log.info("Capture id={} bankTxId={} of {} {} for orderId={}; settles with the next batch",
+                capture.getId(), capture.getBankTxId(), capture.getAmount(), capture.getCurrency(), orderId);
+        bankEventPublisher.publishTransactionResult(capture);
+        return Result.success(capture);
+    }
+
+    @Override
+    @Transactional
+    public Result<Transaction> voidHold(String orderId) {
+        log.info("Received void request for orderId={}", orderId);
+
+        AccountHold hold = accountHoldMapper.lockByOrderId(orderId);
+        Transaction voided = createTransaction(fromHold(orderId, hold), TransactionType.VOID, "VD");
+        if (hold == null) {
+            return reject(voided, "No authorization found for order " + orderId, ErrorCode.VOID_FAILED);
+        }
+        if (hold.getStatus() == HoldStatus.VOIDED) {
+            return repeat(hold.getVoidTransactionId(), orderId);
+        }
+        if (hold.getStatus() == HoldStatus.CAPTURED || hold.getStatus() == HoldStatus.SETTLED) {
+            return reject(voided, "Order " + orderId + " is already captured; refund it instead", ErrorCode.VOID_FAILED);
+        }
+
+        voided.setStatus(TransactionStatus.SUCCEEDED);
+        voided.setMessage("Void succeeded");
+        transactionRepository.insert(voided);
+
+        hold.setStatus(HoldStatus.VOIDED);
+        hold.setVoidTransactionId(voided.getId());
+        hold.setUpdatedAt(voided.getCreatedAt());
+        accountHoldMapper.updateById(hold);
+
+        log.info("Void id={} bankTxId={} released {} {} held for orderId={}",
+                voided.getId(), voided.getBankTxId(), voided.getAmount(), voided.getCurrency(), orderId);
+        bankEventPublisher.publishTransactionResult(voided);
+        return Result.success(voided);
+    }
+
+    @Override
+    @Transactional
+    public int settleCaptures(int limit) {
+        List<AccountHold> holds = accountHoldMapper.lockCaptured(limit);
+        if (holds.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<AccountHold>> byCurrency = holds.stream()
+                .collect(Collectors.groupingBy(AccountHold::getCurrency, TreeMap::new, Collectors.toList()));
+        int settled = 0;
+        for (Map.Entry<String, List<AccountHold>> group : byCurrency.entrySet()) {
+            // No lock: the store is credited by appending a ledger entry
+            Account storeAccount = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
+                    .eq(Account::getUserId, STORE_USER_ID)
+                    .eq(Account::getCurrency, group.getKey())
+                    .last("LIMIT 1"));
+            if (storeAccount == null) {
+                log.error("Store account not found for currency {}; {} captured holds left unsettled",
+                        group.getKey(), group.getValue().size());
+                continue;
+            }
+
+            Transaction settlement = new Transaction();
+            settlement.setUserId(STORE_USER_ID);
+            settlement.setCurrency(group.getKey());
+            settlement.setAmount(group.getValue().stream().map(AccountHold::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+            createTransaction(settlement, TransactionType.SETTLEMENT, "ST");
+            // A batch belongs to no single order; its entries carry the orders
+            settlement.setOrderId(settlement.getBankTxId());
+            settlement.setStatus(TransactionStatus.SUCCEEDED);
+            settlement.setMessage("Settled " + group.getValue().size() + " captures");
+            transactionRepository.insert(settlement);
+
+            ledgerService.settle(settlement, group.getValue(), storeAccount);
+            accountHoldMapper.markSettled(group.getValue().stream().map(AccountHold::getOrderId).toList(), settlement.getId());
+            settled += group.getValue().size();
+        }
+        return settled;
+    }
+
+    @Override
+    public int expireAuthorizations() {
+        return accountHoldMapper.expireAuthorized(LocalDateTime.now());
+    }
+
+    private Transaction fromHold(String orderId, AccountHold hold) {
+        Transaction transaction = new Transaction();
+        transaction.setOrderId(orderId);
+        if (hold != null) {
+            transaction.setUserId(hold.getUserId());
+            transaction.setAmount(hold.getAmount());
+            transaction.setCurrency(hold.getCurrency());
+        }
+        return transaction;
+    }
+
+    private Transaction createTransaction(Transaction transaction, TransactionType type, String prefix) {
+        transaction.setTxType(type);
+        transaction.setStatus(TransactionStatus.REQUESTED);
+        transaction.setBankTxId(idGenerator.nextId(prefix));
+        transaction.setCreatedAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    /**
+     * The earlier outcome of a repeated capture or void, published again for the caller waiting on it
+     */
+    private Result<Transaction> repeat(Long transactionId, String orderId) {
+        Transaction earlier = transactionRepository.selectById(transactionId);
+        log.info("Repeated request for orderId={} answered with transaction id={}", orderId, transactionId);
+        bankEventPublisher.publishTransactionResult(earlier, true);
+        return Result.success(earlier);
+    }
+
+    private Result<Transaction> failTransaction(Transaction transaction, String message, ErrorCode errorCode) {
+        transaction.setStatus(TransactionStatus.FAILED);
+        transaction.setMessage(message);
+        transactionRepository.insert(transaction);
+        log.warn("Transaction id={} failed: {}", transaction.getId(), message);
+        bankEventPublisher.publishTransactionResult(transaction);
+        return Result.error(errorCode, message);
+    }
+
+    /**
+     * Fail a request that names no usable hold or order; the outcome is published but not stored
+     */
+    private Result<Transaction> reject(Transaction transaction, String message, ErrorCode errorCode) {
+        transaction.setStatus(TransactionStatus.FAILED);
+        transaction.setMessage(message);
+        log.warn("{} request rejected for orderId={}: {}", transaction.getTxType(), transaction.getOrderId(), message);
+        bankEventPublisher.publishTransactionResult(transaction, true);
+        return Result.error(errorCode, message);
+    }
+}
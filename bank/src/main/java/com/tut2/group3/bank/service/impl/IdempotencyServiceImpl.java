@@ -0,0 +1,198 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.tut2.group3.bank.config.IdempotencyProperties;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.TransactionStatus;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.repository.TransactionRepository;
+import com.tut2.group3.bank.service.IdempotencyService;
+import com.tut2.group3.bank.utils.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two generations of Bloom filters hold the keys of transactions written since startup plus the most
+ * recent ones before it; when the current generation fills, it becomes the previous one and the oldest
+ * keys are forgotten. A key in neither generation is new, so the duplicate-check query is skipped.
+ * Outcomes that never change, successful debits and rows with an idempotency key, are kept in an LRU
+ * cache to answer retries. Keys forgotten or written by another instance can be reported as new; the
+ * unique constraints on settled debits and idempotency keys then reject the duplicate insert.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final String DEBIT_PREFIX = "D|";
+    private static final String KEY_PREFIX = "K|";
+
+    private final TransactionRepository transactionRepository;
+    private final IdempotencyProperties properties;
+    private final Map<String, Transaction> recentOutcomes;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    // Filters only answer "new" once they hold the recent history; until then every check queries
+    private volatile boolean warmed;
+
+    public IdempotencyServiceImpl(TransactionRepository transactionRepository, IdempotencyProperties properties) {
+        this.transactionRepository = transactionRepository;
+        this.properties = properties;
+        this.current = newFilter();
+        int cacheSize = properties.getCacheSize();
+        this.recentOutcomes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Transaction> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        List<Transaction> recent = transactionRepository.selectList(new LambdaQueryWrapper<Transaction>()
+                .orderByDesc(Transaction::getId)
+                .last("LIMIT " + properties.getWarmLimit()));
+        // Oldest first, so the newest outcomes are the last into the cache and the ones it keeps
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Transaction transaction = recent.get(i);
+            addKeys(transaction);
+            cache(transaction);
+        }
+        warmed = true;
+        log.info("Idempotency index warmed with {} recent transactions in {} ms ({} cached, {} KB of filter)",
+                recent.size(), System.currentTimeMillis() - started, recentOutcomes.size(), current.sizeInBytes() / 1024);
+    }
+
+    @Override
+    public Transaction findSettledDebit(String orderId) {
+        if (!StringUtils.hasText(orderId)) {
+            return null;
+        }
+        String key = DEBIT_PREFIX + orderId;
+        if (isActive()) {
+            if (!mightContain(key)) {
+                return null;
+            }
+            Transaction cached = recentOutcomes.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Transaction settled = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
+                .eq(Transaction::getOrderId, orderId)
+                .eq(Transaction::getTxType, TransactionType.DEBIT)
+                .eq(Transaction::getStatus, TransactionStatus.SUCCEEDED));
+        cache(settled);
+        return settled;
+    }
+
+    @Override
+    public Transaction findByIdempotencyKey(String idempotencyKey) {
+        String key = KEY_PREFIX + idempotencyKey;
+        if (isActive()) {
+            if (!mightContain(key)) {
+                return null;
+            }
+            Transaction cached = recentOutcomes.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Transaction existing = transactionRepository.selectOne(new LambdaQueryWrapper<Transaction>()
+                .eq(Transaction::getIdempotencyKey, idempotencyKey));
+        cache(existing);
+        return existing;
+    }
+
+    @Override
+    public boolean mayHaveIdempotencyKey(String idempotencyKey) {
+        return !isActive() || mightContain(KEY_PREFIX + idempotencyKey);
+    }
+
+    @Override
+    public void record(Transaction transaction) {
+        if (!properties.isEnabled() || transaction == null) {
+            return;
+        }
+        // Keys go in at once so concurrent checks in this instance already see them as possible duplicates
+        addKeys(transaction);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(transaction);
+                }
+            });
+        } else {
+            cache(transaction);
+        }
+    }
+
+    private boolean isActive() {
+        return properties.isEnabled() && warmed;
+    }
+
+    private boolean mightContain(String key) {
+        BloomFilter older = previous;
+        return current.mightContain(key) || (older != null && older.mightContain(key));
+    }
+
+    private void addKeys(Transaction transaction) {
+        if (isSettledDebit(transaction)) {
+            put(DEBIT_PREFIX + transaction.getOrderId());
+        }
+        if (StringUtils.hasText(transaction.getIdempotencyKey())) {
+            put(KEY_PREFIX + transaction.getIdempotencyKey());
+        }
+    }
+
+    private void put(String key) {
+        BloomFilter filter = current;
+        if (filter.isFull()) {
+            synchronized (this) {
+                if (current == filter) {
+                    previous = filter;
+                    current = newFilter();
+                    log.info("Idempotency filter generation full at {} keys, starting a new one", filter.keyCount());
+                }
+                filter = current;
+            }
+        }
+        filter.put(key);
+    }
+
+    private void cache(Transaction transaction) {
+        if (transaction == null || !properties.isEnabled()) {
+            return;
+        }
+        if (isSettledDebit(transaction)) {
+            recentOutcomes.put(DEBIT_PREFIX + transaction.getOrderId(), transaction);
+        }
+        if (StringUtils.hasText(transaction.getIdempotencyKey())) {
+            recentOutcomes.put(KEY_PREFIX + transaction.getIdempotencyKey(), transaction);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(properties.getExpectedKeys(), properties.getFalsePositiveRate());
+    }
+
+    private static boolean isSettledDebit(Transaction transaction) {
+        return transaction.getTxType() == TransactionType.DEBIT && transaction.getStatus() == TransactionStatus.SUCCEEDED;
+    }
+}
@@ -0,0 +1,147 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.tut2.group3.bank.config.LedgerProperties;
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.LedgerEntry;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
+import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.LedgerEntryMapper;
+import com.tut2.group3.bank.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Balances kept as an append-only ledger.
+ * Money only moves by inserting balanced entries, so a debit or refund never rewrites an account row
+ * and holds its locks for less time. An account's {@code balance} column is a snapshot covering the
+ * entries up to {@code snapshot_entry_id}; the snapshot run periodically folds newer entries into it,
+ * and funds checks read the snapshot plus that short tail.
+ * Snapshot runs never lock a ledger tail: on InnoDB a locking read of the store's tail takes gap locks that
+ * hold up every debit's store entry. They fold the entries up to the newest one older than
+ * {@code bank.ledger.snapshot-min-entry-age-ms}, locking only that range. The lock waits for an older entry
+ * whose transaction is still open, so the watermark never passes an entry that is not folded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerServiceImpl implements LedgerService {
+
+    private final LedgerEntryMapper ledgerEntryMapper;
+    private final AccountMapper accountMapper;
+    private final AccountHoldMapper accountHoldMapper;
+    private final LedgerProperties properties;
+
+    @Override
+    public BigDecimal currentBalance(Account account) {
+        BigDecimal tail = ledgerEntryMapper.lockTail(account.getId(), watermark(account)).stream()
+                .map(LedgerEntry::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return safe(account.getBalance()).add(tail);
+    }
+
+    /**
+     * Holds are read before the ledger tail: a settlement marks its holds settled and appends their entries
+     * in one commit, so reading in this order can count a settling hold twice but never miss it
+     */
+    @Override
+    public BigDecimal availableBalance(Account account) {
+        BigDecimal held = safe(accountHoldMapper.sumHeld(account.getId()));
+        return currentBalance(account).subtract(held);
+    }
+
+    @Override
+    public BigDecimal readBalance(Account account) {
+        return safe(account.getBalance()).add(safe(ledgerEntryMapper.sumTail(account.getId(), watermark(account))));
+    }
+
+    @Override
+    public void transfer(Transaction transaction, Account from, Account to) {
+        LocalDateTime now = LocalDateTime.now();
+        ledgerEntryMapper.insertBatch(List.of(
+                entry(transaction, from.getId(), transaction.getAmount().negate(), now),
+                entry(transaction, to.getId(), transaction.getAmount(), now)));
+    }
+
+    @Override
+    public void settle(Transaction settlement, List<AccountHold> holds, Account store) {
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntry> entries = new ArrayList<>(holds.size() + 1);
+        for (AccountHold hold : holds) {
+            LedgerEntry entry = entry(settlement, hold.getAccountId(), hold.getAmount().negate(), now);
+            entry.setOrderId(hold.getOrderId());
+            entries.add(entry);
+        }
+        entries.add(entry(settlement, store.getId(), settlement.getAmount(), now));
+        ledgerEntryMapper.insertBatch(entries);
+    }
+
+    @Override
+    public List<Long> accountsWithPendingEntries(int limit) {
+        return ledgerEntryMapper.selectAccountIdsWithTail(limit);
+    }
+
+    @Override
+    @Transactional
+    public int snapshot(Long accountId) {
+        Account account = accountMapper.selectOne(new LambdaQueryWrapper<Account>()
+                .eq(Account::getId, accountId)
+                .last("FOR UPDATE"));
+        if (account == null) {
+            return 0;
+        }
+        long watermark = watermark(account);
+        LocalDateTime writtenBy = LocalDateTime.now().minus(Duration.ofMillis(properties.getSnapshotMinEntryAgeMs()));
+        long upToId = ledgerEntryMapper.selectMaxIdWrittenBy(account.getId(), watermark, writtenBy);
+        return upToId > watermark ? fold(account, ledgerEntryMapper.lockRange(account.getId(), watermark, upToId)) : 0;
+    }
+
+    @Override
+    public int snapshot(Account account) {
+        return fold(account, ledgerEntryMapper.lockTail(account.getId(), watermark(account)));
+    }
+
+    private int fold(Account account, List<LedgerEntry> tail) {
+        if (tail.isEmpty()) {
+            return 0;
+        }
+        BigDecimal total = tail.stream()
+                .map(LedgerEntry::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        account.setBalance(safe(account.getBalance()).add(total));
+        account.setSnapshotEntryId(tail.get(tail.size() - 1).getId());
+        accountMapper.updateById(account);
+        log.debug("Snapshot of account {} folded {} entries; balance {}", account.getId(), tail.size(), account.getBalance());
+        return tail.size();
+    }
+
+    private LedgerEntry entry(Transaction transaction, Long accountId, BigDecimal amount, LocalDateTime now) {
+        return LedgerEntry.builder()
+                .transactionId(transaction.getId())
+                .accountId(accountId)
+                .orderId(transaction.getOrderId())
+                .entryType(transaction.getTxType())
+                .amount(amount)
+                .currency(transaction.getCurrency())
+                .createdAt(now)
+                .build();
+    }
+
+    private long watermark(Account account) {
+        return account.getSnapshotEntryId() != null ? account.getSnapshotEntryId() : 0L;
+    }
+
+    private BigDecimal safe(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -9,13 +9,20 @@ import com.tut2.group3.bank.entity.enums.TransactionType;
 import com.tut2.group3.bank.producer.BankEventPublisher;
 import com.tut2.group3.bank.repository.TransactionRepository;
 import com.tut2.group3.bank.service.BankService;
+import com.tut2.group3.bank.service.HoldService;
+import com.tut2.group3.bank.service.IdempotencyService;
 import com.tut2.group3.bank.service.TransactionRequestHandlerService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -24,26 +31,113 @@ public class TransactionRequestHandlerServiceImpl implements TransactionRequestH
     private final BankService bankService;
     private final TransactionRepository transactionRepository;
     private final BankEventPublisher bankEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyService idempotencyService;
+    private final HoldService holdService;
 
     public void handleTransactionRequest(TransactionRequestEventDTO request) {
+        TransactionType txType = validate(request);
+        if (txType != null) {
+            process(request, txType);
+        }
+    }
+
+    /**
+     * Debits are applied in account order so concurrent batches take customer row locks in the same order
+     * and cannot deadlock. Refunds lock their order's settlement row before the customer, which would break
+     * that order, so they are processed one by one after the batch.
+     */
+    @Override
+    public void handleTransactionRequests(List<TransactionRequestEventDTO> requests) {
+        List<TransactionRequestEventDTO> debits = new ArrayList<>();
+        List<TransactionRequestEventDTO> others = new ArrayList<>();
+        for (TransactionRequestEventDTO request : requests) {
+            TransactionType txType = validate(request);
+            if (txType == TransactionType.DEBIT) {
+                debits.add(request);
+            } else if (txType != null) {
+                others.add(request);
+            }
+        }
+        debits.sort(Comparator.comparing(TransactionRequestEventDTO::getUserId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(TransactionRequestEventDTO::getCurrency, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(TransactionRequestEventDTO::getOrderId, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        if (!debits.isEmpty()) {
+            bankEventPublisher.beginBatch();
+            try {
+                int succeeded = transactionTemplate.execute(status -> {
+                    int count = 0;
+                    for (TransactionRequestEventDTO debit : debits) {
+                        if (process(debit, TransactionType.DEBIT) == TransactionStatus.SUCCEEDED) {
+                            count++;
+                        }
+                    }
+                    return count;
+                });
+                bankEventPublisher.flushBatch();
+                log.info("Committed batch of {} debits: {} succeeded, {} failed or duplicate",
+                        debits.size(), succeeded, debits.size() - succeeded);
+            } catch (RuntimeException ex) {
+                bankEventPublisher.discardBatch();
+                log.warn("Batch of {} debits rolled back due to {}; processing them one by one",
+                        debits.size(), ex.getMessage());
+                for (TransactionRequestEventDTO debit : debits) {
+                    try {
+                        process(debit, TransactionType.DEBIT);
+                    } catch (RuntimeException single) {
+                        log.error("Failed to process debit orderId={} due to {}", debit.getOrderId(), single.getMessage(), single);
+                    }
+                }
+            }
+        }
+
+        for (TransactionRequestEventDTO request : others) {
+            try {
+                process(request, resolveTransactionType(normalizeEventType(request.getEventType())));
+            } catch (RuntimeException ex) {
+                log.error("Failed to process transaction request eventType={} orderId={} due to {}",
+                        request.getEventType(), request.getOrderId(), ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private TransactionType validate(TransactionRequestEventDTO request) {
         if (request == null) {
             log.warn("Received null transaction request message");
-            return;
+            return null;
         }
 
         String normalizedEventType = normalizeEventType(request.getEventType());
         TransactionType txType = resolveTransactionType(normalizedEventType);
         if (txType == null) {
             log.warn("Unsupported transaction request eventType={} orderId={}", request.getEventType(), request.getOrderId());
-            return;
         }
+        return txType;
+    }
 
-        Transaction existing = findLatestTransaction(request.getOrderId(), txType);
+    /**
+     * Returns the request's final status, or null when no outcome could be published
+     */
+    private TransactionStatus process(TransactionRequestEventDTO request, TransactionType txType) {
+        bankEventPublisher.setReplyTo(request.getReplyTo());
+        try {
+            return processRequest(request, txType);
+        } finally {
+            bankEventPublisher.clearReplyTo();
+        }
+    }
+
+    private TransactionStatus processRequest(TransactionRequestEventDTO request, TransactionType txType) {
+        // A settled debit is the only outcome that ends an order's debits, so the index can answer for it
+        Transaction existing = txType == TransactionType.DEBIT
+                ? idempotencyService.findSettledDebit(request.getOrderId())
+                : findLatestTransaction(request.getOrderId(), txType);
         if (isIdempotentHit(existing)) {
             log.info("Skipping duplicate transaction orderId={} txType={} status={}",
                     request.getOrderId(), txType, existing.getStatus());
             bankEventPublisher.publishTransactionResult(existing, true);
-            return;
+            return existing.getStatus();
         }
 
         Result<Transaction> result = dispatchToService(request, txType);
@@ -61,11 +155,12 @@ public class TransactionRequestHandlerServiceImpl implements TransactionRequestH
             } else {
                 log.debug("Result already published by service for orderId={} txId={}", transaction.getOrderId(), transaction.getId());
             }
-        } else {
-            log.warn("Unable to publish transaction result for orderId={} eventType={} status={}",
-                    request.getOrderId(), request.getEventType(),
-                    transaction != null ? transaction.getStatus() : null);
+            return transaction.getStatus();
         }
+        log.warn("Unable to publish transaction result for orderId={} eventType={} status={}",
+                request.getOrderId(), request.getEventType(),
+                transaction != null ? transaction.getStatus() : null);
+        return null;
     }
 
     private Result<Transaction> dispatchToService(TransactionRequestEventDTO request, TransactionType txType) {
@@ -76,6 +171,15 @@ public class TransactionRequestHandlerServiceImpl implements TransactionRequestH
             case REFUND -> {
                 return bankService.processRefund(request.toRefundRequest());
             }
+            case AUTHORIZATION -> {
+                return holdService.authorize(request.toDebitRequest());
+            }
+            case CAPTURE -> {
+                return holdService.capture(request.getOrderId());
+            }
+            case VOID -> {
+                return holdService.voidHold(request.getOrderId());
+            }
             default -> {
                 return Result.success();
             }
@@ -104,6 +208,9 @@ public class TransactionRequestHandlerServiceImpl implements TransactionRequestH
         return switch (normalizedEventType) {
             case "DEBITREQUEST", "DEBIT", "DEBIT_REQUEST" -> TransactionType.DEBIT;
             case "REFUNDREQUEST", "REFUND", "REFUND_REQUEST" -> TransactionType.REFUND;
+            case "AUTHORIZEREQUEST", "AUTHORIZE", "AUTHORIZE_REQUEST", "AUTHORIZATION_REQUEST" -> TransactionType.AUTHORIZATION;
+            case "CAPTUREREQUEST", "CAPTURE", "CAPTURE_REQUEST" -> TransactionType.CAPTURE;
+            case "VOIDREQUEST", "VOID", "VOID_REQUEST" -> TransactionType.VOID;
             default -> null;
         };
     }
@@ -0,0 +1,76 @@
+package com.tut2.group3.bank.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe Bloom filter over strings.
+ * {@link #mightContain(String)} never returns false for a key that was put; it returns true for
+ * a key never put with roughly the configured probability while the filter holds its expected keys.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final int expectedKeys;
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+    public BloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs positive expected keys and a rate between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+        this.expectedKeys = expectedKeys;
+    }
+
+    public void put(String key) {
+        long h1 = Hashes.hash64(key);
+        // Odd, so the probes step through every bit position
+        long h2 = Hashes.mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        keyCount.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = Hashes.hash64(key);
+        // Odd, so the probes step through every bit position
+        long h2 = Hashes.mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keys put so far, counting repeats
+     */
+    public int keyCount() {
+        return keyCount.get();
+    }
+
+    /**
+     * Whether the filter holds the keys it was sized for, past which false positives grow quickly
+     */
+    public boolean isFull() {
+        return keyCount.get() >= expectedKeys;
+    }
+
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+}
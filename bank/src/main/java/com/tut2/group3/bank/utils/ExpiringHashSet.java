@@ -0,0 +1,134 @@
+package com.tut2.group3.bank.utils;
+
+import java.util.Arrays;
+
+/**
+ * Bounded set of 64-bit hashes remembered for at least a time window.
+ * Hashes go into the current of two fixed-size open-addressing tables; once the current table is a window
+ * old, or holds its capacity, it becomes the previous table and the old previous table's hashes are
+ * evicted. Memory is fixed at two tables of primitive longs whatever the traffic.
+ * A hash collision makes two keys look the same, which for 64-bit hashes is negligible at these sizes.
+ */
+public class ExpiringHashSet {
+
+    // Marks an empty slot; a hash of 0 is stored as 1
+    private static final long EMPTY = 0L;
+
+    private final long windowMillis;
+    private final int capacity;
+    private final int mask;
+
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    private int previousSize;
+    private long currentStartedAt;
+
+    private long rotations;
+    private long capacityRotations;
+    private long evicted;
+
+    public ExpiringHashSet(long windowMillis, int capacity, long now) {
+        if (windowMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Window and capacity must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.capacity = capacity;
+        // At most half full, so probe sequences stay short
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.mask = tableSize - 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+        this.currentStartedAt = now;
+    }
+
+    /**
+     * Add the hash; returns false when it is already in the set
+     */
+    public synchronized boolean add(long hash, long now) {
+        expire(now);
+        long key = hash == EMPTY ? 1L : hash;
+        if (contains(previous, key)) {
+            return false;
+        }
+        int slot = (int) Hashes.mix(key) & mask;
+        while (current[slot] != EMPTY) {
+            if (current[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (currentSize == capacity) {
+            capacityRotations++;
+            rotate(now);
+            return add(hash, now);
+        }
+        current[slot] = key;
+        currentSize++;
+        return true;
+    }
+
+    public synchronized int size() {
+        return currentSize + previousSize;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long sizeInBytes() {
+        return 2L * (mask + 1) * Long.BYTES;
+    }
+
+    public synchronized long getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Rotations forced by a full table before its window was up; hashes evicted then were remembered
+     * for less than the window
+     */
+    public synchronized long getCapacityRotations() {
+        return capacityRotations;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    private void expire(long now) {
+        if (now - currentStartedAt >= 2 * windowMillis) {
+            rotate(now);
+            rotate(now);
+        } else if (now - currentStartedAt >= windowMillis) {
+            rotate(now);
+        }
+    }
+
+    private void rotate(long now) {
+        evicted += previousSize;
+        rotations++;
+        long[] cleared = previous;
+        Arrays.fill(cleared, EMPTY);
+        previous = current;
+        previousSize = currentSize;
+        current = cleared;
+        currentSize = 0;
+        currentStartedAt = now;
+    }
+
+    private boolean contains(long[] table, long key) {
+        int slot = (int) Hashes.mix(key) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+}
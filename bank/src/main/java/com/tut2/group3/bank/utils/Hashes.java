@@ -0,0 +1,31 @@
+package com.tut2.group3.bank.utils;
+
+public final class Hashes {
+
+    private Hashes() {
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, finished with a mix so keys differing in one char land far apart
+     */
+    public static long hash64(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
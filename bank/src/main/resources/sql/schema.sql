@@ -2,8 +2,13 @@
 -- This script drops and recreates tables to ensure clean test data on each startup
 
 -- Drop tables if they exist (reverse order due to potential foreign keys)
+DROP TABLE IF EXISTS account_holds;
+DROP TABLE IF EXISTS order_settlements;
+DROP TABLE IF EXISTS ledger_entries;
 DROP TABLE IF EXISTS transactions;
 DROP TABLE IF EXISTS accounts;
+-- Pending store credits, replaced by ledger_entries; dropped so older databases do not keep the table
+DROP TABLE IF EXISTS store_credits;
 
 -- Create accounts table for Bank microservice
 CREATE TABLE accounts (
@@ -12,6 +17,8 @@ CREATE TABLE accounts (
     balance DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
     currency VARCHAR(3) NOT NULL,
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    -- Last ledger entry folded into balance; current balance = balance + entries after it
+    snapshot_entry_id BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT uk_accounts_user_currency UNIQUE (user_id, currency),
     CONSTRAINT chk_accounts_balance_non_negative CHECK (balance >= 0),
     INDEX idx_accounts_currency (currency)
@@ -22,7 +29,7 @@ CREATE TABLE transactions (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     order_id VARCHAR(64) NOT NULL,
     user_id VARCHAR(64) NOT NULL,
-    tx_type ENUM('DEBIT', 'REFUND') NOT NULL,
+    tx_type ENUM('DEBIT', 'REFUND', 'AUTHORIZATION', 'CAPTURE', 'VOID', 'SETTLEMENT') NOT NULL,
     amount DECIMAL(19,4) NOT NULL,
     currency VARCHAR(3),
     status ENUM('REQUESTED', 'SUCCEEDED', 'FAILED') NOT NULL,
@@ -30,9 +37,61 @@ CREATE TABLE transactions (
     message VARCHAR(255),
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     idempotency_key VARCHAR(128),
+    -- Set only on successful debits, so an order can be debited successfully at most once
+    settled_debit_order_id VARCHAR(64) GENERATED ALWAYS AS
+        (CASE WHEN tx_type = 'DEBIT' AND status = 'SUCCEEDED' THEN order_id END),
     CONSTRAINT uk_transactions_bank_tx_id UNIQUE (bank_tx_id),
     CONSTRAINT uk_transactions_idempotency UNIQUE (idempotency_key),
+    CONSTRAINT uk_transactions_settled_debit UNIQUE (settled_debit_order_id),
     CONSTRAINT chk_transactions_amount_non_negative CHECK (amount >= 0),
     INDEX idx_transactions_order_id (order_id),
     INDEX idx_transactions_user_id (user_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Append-only double-entry ledger: each debit or refund writes entries summing to zero
+CREATE TABLE ledger_entries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    transaction_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    order_id VARCHAR(64) NOT NULL,
+    entry_type VARCHAR(16) NOT NULL,
+    amount DECIMAL(19,4) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_ledger_entries_account (account_id, id),
+    INDEX idx_ledger_entries_transaction (transaction_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- One row per debited or captured order: the debit or capture and the running refund total, locked to validate each refund
+CREATE TABLE order_settlements (
+    order_id VARCHAR(64) PRIMARY KEY,
+    user_id VARCHAR(64) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    debit_transaction_id BIGINT NOT NULL,
+    debited_amount DECIMAL(19,4) NOT NULL,
+    refunded_amount DECIMAL(19,4) NOT NULL DEFAULT 0.0000,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_order_settlements_refund_within_debit CHECK (refunded_amount >= 0 AND refunded_amount <= debited_amount)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Funds held on a customer account per authorized order; counted against the customer's available balance
+-- until voided, expired or settled. Captured holds are moved to the store account in settlement batches
+CREATE TABLE account_holds (
+    order_id VARCHAR(64) PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    user_id VARCHAR(64) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    amount DECIMAL(19,4) NOT NULL,
+    status ENUM('AUTHORIZED', 'CAPTURED', 'SETTLED', 'VOIDED', 'EXPIRED') NOT NULL,
+    authorization_transaction_id BIGINT NOT NULL,
+    capture_transaction_id BIGINT,
+    void_transaction_id BIGINT,
+    settlement_transaction_id BIGINT,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at DATETIME NOT NULL,
+    CONSTRAINT chk_account_holds_amount_positive CHECK (amount > 0),
+    INDEX idx_account_holds_account_status (account_id, status),
+    INDEX idx_account_holds_status (status, updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
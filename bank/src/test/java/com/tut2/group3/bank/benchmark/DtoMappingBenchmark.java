@@ -0,0 +1,86 @@
+package com.tut2.group3.bank.benchmark;
+
+import com.sun.management.ThreadMXBean;
+import com.tut2.group3.bank.converter.AccountConverter;
+import com.tut2.group3.bank.converter.TransactionConverter;
+import com.tut2.group3.bank.dto.AccountResponseDTO;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.dto.RefundRequestDTO;
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.Transaction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Per-call time and allocation of the hand-written converters against ModelMapper, configured as
+ * the bank's former ModelMapperConfig, for each mapping on the debit, refund and account paths.
+ * Both must produce the same objects before either is timed.
+ * Runs only with {@code mvn test -Pbenchmark}; size with {@code -Dbenchmark.operations}.
+ */
+@Tag("benchmark")
+class DtoMappingBenchmark {
+
+    private static final int OPERATIONS = Integer.getInteger("benchmark.operations", 1_000_000);
+
+    // Keeps the JIT from discarding mapped objects
+    private static volatile Object sink;
+
+    @Test
+    void convertersAgainstModelMapper() {
+        ModelMapper modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
+        modelMapper.createTypeMap(DebitRequestDTO.class, Transaction.class).addMappings(m -> m.skip(Transaction::setId));
+        modelMapper.createTypeMap(RefundRequestDTO.class, Transaction.class).addMappings(m -> m.skip(Transaction::setId));
+        TransactionConverter transactionConverter = new TransactionConverter();
+        AccountConverter accountConverter = new AccountConverter();
+
+        DebitRequestDTO debit = new DebitRequestDTO("order-1", "user-1", new BigDecimal("12.50"), "AUD");
+        RefundRequestDTO refund = new RefundRequestDTO("order-1", "user-1", new BigDecimal("2.50"), "AUD", "order-1-r1");
+        Account account = new Account(7L, "user-1", new BigDecimal("100.00"), "AUD", LocalDateTime.now(), 42L);
+
+        assertEquals(modelMapper.map(debit, Transaction.class), transactionConverter.toTransaction(debit));
+        assertEquals(modelMapper.map(refund, Transaction.class), transactionConverter.toTransaction(refund));
+        assertEquals(modelMapper.map(account, AccountResponseDTO.class), accountConverter.toResponse(account));
+
+        System.out.printf("%n[dto mapping] %d calls each%n", OPERATIONS);
+        compare("DebitRequestDTO -> Transaction",
+                () -> modelMapper.map(debit, Transaction.class), () -> transactionConverter.toTransaction(debit));
+        compare("RefundRequestDTO -> Transaction",
+                () -> modelMapper.map(refund, Transaction.class), () -> transactionConverter.toTransaction(refund));
+        compare("Account -> AccountResponseDTO",
+                () -> modelMapper.map(account, AccountResponseDTO.class), () -> accountConverter.toResponse(account));
+    }
+
+    private void compare(String mapping, Supplier<Object> modelMapper, Supplier<Object> converter) {
+        System.out.printf("  %s%n", mapping);
+        measure("ModelMapper", modelMapper);
+        measure("converter", converter);
+    }
+
+    private void measure(String mode, Supplier<Object> map) {
+        // Warm up so the JIT has compiled the path before measuring
+        for (int i = 0; i < OPERATIONS / 10; i++) {
+            sink = map.get();
+        }
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            sink = map.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("    %-12s %9.1f ns/call  %7d bytes/call%n",
+                mode, (double) elapsed / OPERATIONS, allocated / OPERATIONS);
+    }
+}
@@ -0,0 +1,80 @@
+package com.tut2.group3.bank.benchmark;
+
+import com.tut2.group3.bank.utils.IdGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Ids per second per thread from IdGenerator, numeric and as prefixed strings, at rising thread counts,
+ * with random UUIDs, the usual alternative, for comparison. Every thread hammers the one shared generator,
+ * so the numbers show how the lock-free counter holds up under contention.
+ * Runs only with {@code mvn test -Pbenchmark}; size with {@code -Dbenchmark.seconds} per measurement.
+ */
+@Tag("benchmark")
+class IdGeneratorBenchmark {
+
+    private static final double SECONDS = Double.parseDouble(System.getProperty("benchmark.seconds", "1"));
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    // Keeps the JIT from discarding generated ids
+    private static volatile Object sink;
+
+    @Test
+    void idsPerSecondPerThread() throws Exception {
+        IdGenerator generator = new IdGenerator(1);
+        System.out.printf("%n[id generation] %.1f s per measurement%n", SECONDS);
+        for (int threads : THREAD_COUNTS) {
+            measure("nextId()", threads, generator::nextId);
+            measure("nextId(\"TX\")", threads, () -> generator.nextId("TX"));
+            measure("UUID", threads, UUID::randomUUID);
+        }
+    }
+
+    private void measure(String mode, int threads, Supplier<Object> next) throws Exception {
+        // Warm up so the JIT has compiled the path before measuring
+        long warmupEnd = System.nanoTime() + 200_000_000L;
+        while (System.nanoTime() < warmupEnd) {
+            sink = next.get();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> workers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    long began = System.nanoTime();
+                    long end = began + (long) (SECONDS * 1_000_000_000L);
+                    long count = 0;
+                    Object last = null;
+                    while ((count & 1023) != 0 || System.nanoTime() < end) {
+                        last = next.get();
+                        count++;
+                    }
+                    sink = last;
+                    return new long[]{count, System.nanoTime() - began};
+                }));
+            }
+            start.countDown();
+            double total = 0;
+            for (Future<long[]> worker : workers) {
+                long[] result = worker.get();
+                total += result[0] / (result[1] / 1_000_000_000.0);
+            }
+            System.out.printf("  %-12s threads=%d  %,14.0f ids/s per thread  %,14.0f ids/s total%n",
+                    mode, threads, total / threads, total);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.tut2.group3.bank.benchmark;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.config.IdGeneratorConfig;
+import com.tut2.group3.bank.config.IdempotencyProperties;
+import com.tut2.group3.bank.config.LedgerProperties;
+import com.tut2.group3.bank.converter.TransactionConverter;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.dto.RefundRequestDTO;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.producer.BankEventPublisher;
+import com.tut2.group3.bank.scheduler.BalanceSnapshotScheduler;
+import com.tut2.group3.bank.service.BankService;
+import com.tut2.group3.bank.service.LedgerService;
+import com.tut2.group3.bank.service.impl.BankServiceImpl;
+import com.tut2.group3.bank.service.impl.IdempotencyServiceImpl;
+import com.tut2.group3.bank.service.impl.LedgerServiceImpl;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent debits through the ledger, spread over many customers and all on one customer, with every
+ * {@code benchmark.refund-every}-th operation a partial refund of a warm-up order and the snapshot run
+ * repeating in the background.
+ * Debits for different customers share no locked row: the store side is an appended ledger entry, and
+ * neither refunds nor snapshot runs lock the store row or its ledger tail.
+ * Debits for one customer still queue on that customer's row, which bounds the hot-customer case.
+ * Afterwards a final snapshot run must fold every entry, the store balance must match the debits less the
+ * refunds and the ledger must sum to zero.
+ * The real services, mappers and transactions are wired onto H2 in MySQL mode with the production schema.
+ * Runs only with {@code mvn test -Pbenchmark}; size with {@code -Dbenchmark.threads},
+ * {@code -Dbenchmark.operations} and {@code -Dbenchmark.customers}.
+ */
+@Tag("benchmark")
+class LedgerContentionBenchmark {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 8);
+    private static final int OPERATIONS = Integer.getInteger("benchmark.operations", 4_000);
+    private static final int CUSTOMERS = Integer.getInteger("benchmark.customers", 1_000);
+    private static final int REFUND_EVERY = Integer.getInteger("benchmark.refund-every", 4);
+    private static final int WARMUP = 200;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final BigDecimal REFUND_AMOUNT = new BigDecimal("0.01");
+    private static final String STORE_USER_ID = "2";
+
+    @Test
+    void debitsAndRefundsWithSnapshotRuns() throws Exception {
+        System.out.printf("%n[ledger contention] threads=%d operations=%d refund-every=%d%n", THREADS, OPERATIONS, REFUND_EVERY);
+        run("customers=" + CUSTOMERS, CUSTOMERS);
+        run("customers=1", 1);
+    }
+
+    private void run(String mode, int customers) throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bank-" + customers
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+        try (Connection connection = h2.getConnection()) {
+            createSchema(connection);
+            loadAccounts(connection, customers);
+        }
+
+        try (HikariDataSource dataSource = new HikariDataSource();
+             AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            dataSource.setDataSource(h2);
+            dataSource.setMaximumPoolSize(THREADS + 1);
+            context.registerBean(DataSource.class, () -> dataSource);
+            context.register(BenchmarkConfig.class);
+            context.refresh();
+            BankService bankService = context.getBean(BankService.class);
+            // No ApplicationReadyEvent outside Spring Boot; warm the idempotency index as startup would
+            context.getBean(IdempotencyServiceImpl.class).warmUp();
+
+            // Warm up on one thread so JIT and statement caches settle before measuring; these orders take the refunds
+            for (int op = 0; op < WARMUP; op++) {
+                bankService.processDebit(debit("WARMUP-" + op, op, customers));
+            }
+
+            long[] samples = new long[OPERATIONS];
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger measured = new AtomicInteger();
+            AtomicInteger debited = new AtomicInteger();
+            AtomicInteger refunded = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicInteger snapshotRuns = new AtomicInteger();
+            BalanceSnapshotScheduler snapshotScheduler = context.getBean(BalanceSnapshotScheduler.class);
+            // Short enough for the background runs to fold entries while debits and refunds are still writing
+            context.getBean(LedgerProperties.class).setSnapshotMinEntryAgeMs(1_000);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+            long started = System.nanoTime();
+            try {
+                Future<?> snapshots = executor.submit(() -> {
+                    while (running.get()) {
+                        snapshotScheduler.snapshotBalances();
+                        snapshotRuns.incrementAndGet();
+                        Thread.sleep(20);
+                    }
+                    return null;
+                });
+                List<Future<?>> workers = new ArrayList<>();
+                for (int thread = 0; thread < THREADS; thread++) {
+                    workers.add(executor.submit(() -> {
+                        int op;
+                        while ((op = next.getAndIncrement()) < OPERATIONS) {
+                            boolean refund = REFUND_EVERY > 0 && op % REFUND_EVERY == 0;
+                            long opStarted = System.nanoTime();
+                            try {
+                                Result<Transaction> result = refund
+                                        ? bankService.processRefund(refund(op, customers))
+                                        : bankService.processDebit(debit("BENCH-" + op, op, customers));
+                                if (result.getCode() != 200) {
+                                    failed.incrementAndGet();
+                                    continue;
+                                }
+                                (refund ? refunded : debited).incrementAndGet();
+                                samples[measured.getAndIncrement()] = System.nanoTime() - opStarted;
+                            } catch (RuntimeException e) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+                running.set(false);
+                snapshots.get();
+            } finally {
+                executor.shutdown();
+            }
+            long elapsedNanos = System.nanoTime() - started;
+
+            // Fold everything, however young, now that no transaction is writing
+            context.getBean(LedgerProperties.class).setSnapshotMinEntryAgeMs(0);
+            LedgerService ledgerService = context.getBean(LedgerService.class);
+            long snapshotStarted = System.nanoTime();
+            // A run takes at most bank.ledger.snapshot-batch-size accounts
+            for (int run = 0; run < 10 && !ledgerService.accountsWithPendingEntries(1).isEmpty(); run++) {
+                snapshotScheduler.snapshotBalances();
+            }
+            long snapshotMillis = (System.nanoTime() - snapshotStarted) / 1_000_000;
+
+            long[] sorted = Arrays.copyOf(samples, measured.get());
+            Arrays.sort(sorted);
+            report(mode, sorted, refunded.get(), failed.get(), elapsedNanos, snapshotRuns.get(), snapshotMillis);
+
+            // Every succeeded debit, warm-up included, and every refund must have reached the store snapshot exactly once
+            BigDecimal expected = AMOUNT.multiply(BigDecimal.valueOf(WARMUP + debited.get()))
+                    .subtract(REFUND_AMOUNT.multiply(BigDecimal.valueOf(refunded.get())));
+            assertEquals(0, expected.compareTo(queryDecimal(dataSource,
+                    "SELECT balance FROM accounts WHERE user_id = '" + STORE_USER_ID + "'")), mode + " store balance");
+            assertEquals(0, BigDecimal.ZERO.compareTo(queryDecimal(dataSource,
+                    "SELECT COALESCE(SUM(amount), 0) FROM ledger_entries")), mode + " ledger balanced");
+            assertEquals(0, BigDecimal.ZERO.compareTo(queryDecimal(dataSource,
+                    "SELECT COUNT(*) FROM ledger_entries e JOIN accounts a ON a.id = e.account_id WHERE e.id > a.snapshot_entry_id")),
+                    mode + " every entry folded");
+        }
+    }
+
+    private DebitRequestDTO debit(String orderId, int op, int customers) {
+        return new DebitRequestDTO(orderId, String.valueOf(1_000 + op % customers), AMOUNT, "AUD");
+    }
+
+    private RefundRequestDTO refund(int op, int customers) {
+        int order = op % WARMUP;
+        return new RefundRequestDTO("WARMUP-" + order, String.valueOf(1_000 + order % customers), REFUND_AMOUNT, "AUD",
+                "REFUND-" + op);
+    }
+
+    private void report(String mode, long[] sortedNanos, int refunds, int failed, long elapsedNanos,
+                        int snapshotRuns, long snapshotMillis) {
+        double throughput = sortedNanos.length / (elapsedNanos / 1_000_000_000.0);
+        System.out.printf("  %-15s ok=%6d  refunds=%5d  failed=%4d  throughput=%9.1f ops/s  p50=%7.2f ms  p99=%7.2f ms  max=%7.2f ms  snapshot runs=%d  final snapshot=%d ms%n",
+                mode, sortedNanos.length, refunds, failed, throughput,
+                sortedNanos[sortedNanos.length / 2] / 1_000_000.0,
+                sortedNanos[(int) (sortedNanos.length * 0.99)] / 1_000_000.0,
+                sortedNanos[sortedNanos.length - 1] / 1_000_000.0,
+                snapshotRuns, snapshotMillis);
+    }
+
+    /**
+     * Create the production schema from sql/schema.sql, dropping MySQL table options
+     */
+    private static void createSchema(Connection connection) throws Exception {
+        String script = new String(new ClassPathResource("sql/schema.sql").getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : withoutComments.toString().split(";")) {
+                sql = sql.trim();
+                if (!sql.isEmpty()) {
+                    statement.execute(sql.replaceAll("\\)\\s*ENGINE=[^)]*$", ")"));
+                }
+            }
+        }
+    }
+
+    private static void loadAccounts(Connection connection, int customers) throws Exception {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO accounts (user_id, balance, currency) VALUES (?, ?, 'AUD')")) {
+            insert.setString(1, STORE_USER_ID);
+            insert.setBigDecimal(2, BigDecimal.ZERO);
+            insert.addBatch();
+            for (int customer = 0; customer < customers; customer++) {
+                insert.setString(1, String.valueOf(1_000 + customer));
+                insert.setBigDecimal(2, new BigDecimal("1000000.00"));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static BigDecimal queryDecimal(DataSource dataSource, String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getBigDecimal(1);
+        }
+    }
+
+    /**
+     * Just the debit and refund paths, their mappers and transactions; RabbitMQ publishing is stubbed out
+     */
+    @Configuration
+    @EnableTransactionManagement
+    @MapperScan(basePackages = {"com.tut2.group3.bank.repository", "com.tut2.group3.bank.mapper"},
+            annotationClass = Mapper.class)
+    @Import({TransactionConverter.class, IdGeneratorConfig.class, LedgerProperties.class, IdempotencyProperties.class,
+            BankServiceImpl.class, LedgerServiceImpl.class, IdempotencyServiceImpl.class, BalanceSnapshotScheduler.class})
+    static class BenchmarkConfig {
+
+        @Bean
+        public BankEventPublisher bankEventPublisher() {
+            return Mockito.mock(BankEventPublisher.class);
+        }
+
+        @Bean
+        public SqlSessionFactory sqlSessionFactory(DataSource dataSource) throws Exception {
+            MybatisConfiguration configuration = new MybatisConfiguration();
+            configuration.setMapUnderscoreToCamelCase(true);
+
+            MybatisSqlSessionFactoryBean factory = new MybatisSqlSessionFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setConfiguration(configuration);
+            return factory.getObject();
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.tut2.group3.bank.producer;
+
+import com.tut2.group3.bank.config.BankRabbitProperties;
+import com.tut2.group3.bank.dto.TransactionResultEventDTO;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.TransactionStatus;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BankEventPublisherTest {
+
+    private static final String EVENTS_QUEUE = "bank.events.queue";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private BankEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        BankRabbitProperties properties = new BankRabbitProperties();
+        properties.setQueueName(EVENTS_QUEUE);
+        properties.setRequestQueue("bank.transaction.requests");
+        publisher = new BankEventPublisher(rabbitTemplate, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void resultGoesToTheRequestersReplyQueue() {
+        publisher.setReplyTo("store.bank-replies.a");
+        try {
+            publisher.publishTransactionResult(debit("TX1"));
+        } finally {
+            publisher.clearReplyTo();
+        }
+        publisher.publishTransactionResult(debit("TX2"));
+
+        ArgumentCaptor<TransactionResultEventDTO> reply = ArgumentCaptor.forClass(TransactionResultEventDTO.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("store.bank-replies.a"), reply.capture());
+        assertEquals("TX1", reply.getValue().getBankTxId());
+        ArgumentCaptor<TransactionResultEventDTO> event = ArgumentCaptor.forClass(TransactionResultEventDTO.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(EVENTS_QUEUE), event.capture());
+        assertEquals("TX2", event.getValue().getBankTxId());
+    }
+
+    @Test
+    void replyToAQueueThatIsGoneFallsBackToTheEventsQueue() {
+        ArgumentCaptor<RabbitTemplate.ReturnsCallback> callback = ArgumentCaptor.forClass(RabbitTemplate.ReturnsCallback.class);
+        verify(rabbitTemplate).setMandatory(true);
+        verify(rabbitTemplate).setReturnsCallback(callback.capture());
+        Message message = new Message(new byte[0], new MessageProperties());
+
+        callback.getValue().returnedMessage(new ReturnedMessage(message, 312, "NO_ROUTE", "", "store.bank-replies.gone"));
+
+        verify(rabbitTemplate, timeout(1_000)).send("", EVENTS_QUEUE, message);
+    }
+
+    @Test
+    void returnedEventForTheEventsQueueIsNotRepublished() {
+        ArgumentCaptor<RabbitTemplate.ReturnsCallback> callback = ArgumentCaptor.forClass(RabbitTemplate.ReturnsCallback.class);
+        verify(rabbitTemplate).setReturnsCallback(callback.capture());
+
+        callback.getValue().returnedMessage(new ReturnedMessage(
+                new Message(new byte[0], new MessageProperties()), 312, "NO_ROUTE", "", EVENTS_QUEUE));
+
+        verify(rabbitTemplate, after(200).never()).send(anyString(), anyString(), any(Message.class));
+    }
+
+    private Transaction debit(String bankTxId) {
+        Transaction transaction = new Transaction();
+        transaction.setOrderId("order-" + bankTxId);
+        transaction.setUserId("1");
+        transaction.setTxType(TransactionType.DEBIT);
+        transaction.setStatus(TransactionStatus.SUCCEEDED);
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCurrency("AUD");
+        transaction.setBankTxId(bankTxId);
+        return transaction;
+    }
+}
@@ -1,23 +1,33 @@
 package com.tut2.group3.bank.service.impl;
 
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.tut2.group3.bank.common.ErrorCode;
 import com.tut2.group3.bank.common.Result;
-import com.tut2.group3.bank.config.ModelMapperConfig;
+import com.tut2.group3.bank.config.IdempotencyProperties;
+import com.tut2.group3.bank.converter.TransactionConverter;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
 import com.tut2.group3.bank.dto.RefundRequestDTO;
 import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.OrderSettlement;
 import com.tut2.group3.bank.entity.Transaction;
 import com.tut2.group3.bank.entity.enums.TransactionStatus;
-import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
 import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.OrderSettlementMapper;
 import com.tut2.group3.bank.producer.BankEventPublisher;
 import com.tut2.group3.bank.repository.TransactionRepository;
+import com.tut2.group3.bank.service.LedgerService;
+import com.tut2.group3.bank.utils.IdGenerator;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.dao.DuplicateKeyException;
 
 import java.math.BigDecimal;
@@ -34,11 +44,14 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -54,30 +67,46 @@ class BankServiceImplTest {
     @Mock
     private AccountMapper accountMapper;
 
+    @Mock
+    private AccountHoldMapper accountHoldMapper;
+
+    @Mock
+    private OrderSettlementMapper orderSettlementMapper;
+
     @Mock
     private BankEventPublisher bankEventPublisher;
 
+    @Mock
+    private LedgerService ledgerService;
+
     private BankServiceImpl bankService;
 
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda wrappers resolve their columns from MyBatis-Plus table metadata
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Account.class);
+    }
+
     @BeforeEach
     void setUp() {
-        ModelMapper mapper = new ModelMapperConfig().modelMapper();
-        bankService = new BankServiceImpl(transactionRepository, accountMapper, mapper, bankEventPublisher);
+        // Not warmed up, so every duplicate check still reaches the mocked repository
+        IdempotencyServiceImpl idempotencyService = new IdempotencyServiceImpl(transactionRepository, new IdempotencyProperties());
+        bankService = new BankServiceImpl(transactionRepository, accountMapper, accountHoldMapper, orderSettlementMapper, new TransactionConverter(), bankEventPublisher, ledgerService,
+                idempotencyService, new IdGenerator(1));
     }
 
     @Test
     void testRefund_success_if_under_limit() {
         RefundRequestDTO request = refundRequest("order-123", "user-1", "AUD", "key-success", new BigDecimal("20.00"));
 
-        Transaction debit = debitTransaction("order-123", "user-1", "AUD", new BigDecimal("100.00"));
-        Transaction priorRefund = refundTransaction("order-123", "user-1", "AUD", new BigDecimal("30.00"));
+        OrderSettlement settlement = settlement("order-123", "user-1", "AUD", new BigDecimal("100.00"), new BigDecimal("30.00"));
         Account account = account("user-1", "AUD", new BigDecimal("50.00"));
         Account storeAccount = account(STORE_USER_ID, "AUD", new BigDecimal("200.00"));
 
         when(transactionRepository.selectOne(any())).thenReturn(null);
-        when(transactionRepository.selectList(any())).thenReturn(List.of(debit, priorRefund));
+        when(orderSettlementMapper.lockByOrderId("order-123")).thenReturn(settlement);
         mockAccountLookups(() -> account, () -> storeAccount);
-        when(accountMapper.updateById(any(Account.class))).thenReturn(1);
+        mockLedgerBalances();
 
         doAnswer(invocation -> {
             Transaction tx = invocation.getArgument(0);
@@ -90,11 +119,13 @@ class BankServiceImplTest {
         assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
         assertNotNull(result.getData());
         assertEquals(TransactionStatus.SUCCEEDED, result.getData().getStatus());
-        assertEquals(0, account.getBalance().compareTo(new BigDecimal("70.00")));
-        assertEquals(0, storeAccount.getBalance().compareTo(new BigDecimal("180.00")));
 
         verify(transactionRepository).insert(any(Transaction.class));
-        verify(accountMapper, times(2)).updateById(any(Account.class));
+        ArgumentCaptor<Transaction> transferCaptor = ArgumentCaptor.forClass(Transaction.class);
+        verify(ledgerService).transfer(transferCaptor.capture(), eq(storeAccount), eq(account));
+        assertEquals(0, transferCaptor.getValue().getAmount().compareTo(new BigDecimal("20.00")));
+        verify(orderSettlementMapper).addRefund("order-123", new BigDecimal("20.00"));
+        verify(accountMapper, never()).updateById(any(Account.class));
         verify(bankEventPublisher).publishTransactionResult(any(Transaction.class));
     }
 
@@ -102,16 +133,16 @@ class BankServiceImplTest {
     void testRefund_fails_if_exceeds_limit() {
         RefundRequestDTO request = refundRequest("order-456", "user-9", "AUD", "key-fail", new BigDecimal("25.00"));
 
-        Transaction debit = debitTransaction("order-456", "user-9", "AUD", new BigDecimal("100.00"));
-        Transaction priorRefund = refundTransaction("order-456", "user-9", "AUD", new BigDecimal("90.00"));
+        OrderSettlement settlement = settlement("order-456", "user-9", "AUD", new BigDecimal("100.00"), new BigDecimal("90.00"));
 
         when(transactionRepository.selectOne(any())).thenReturn(null);
-        when(transactionRepository.selectList(any())).thenReturn(List.of(debit, priorRefund));
+        when(orderSettlementMapper.lockByOrderId("order-456")).thenReturn(settlement);
 
         Result<Transaction> result = bankService.processRefund(request);
 
         assertEquals(ErrorCode.REFUND_FAILED.getCode(), result.getCode());
         verify(transactionRepository, times(0)).insert(any(Transaction.class));
+        verify(orderSettlementMapper, never()).addRefund(any(), any());
 
         ArgumentCaptor<Transaction> eventCaptor = ArgumentCaptor.forClass(Transaction.class);
         verify(bankEventPublisher).publishTransactionResult(eventCaptor.capture(), anyBoolean());
@@ -121,19 +152,62 @@ class BankServiceImplTest {
         assertEquals("Refund exceeds available balance", published.getMessage());
     }
 
+    @Test
+    void retryOfACompletedRefundWhoseKeyTheIndexForgotReturnsTheStoredRefund() {
+        // Filter generations of one key each, so two later keys push this one out of both
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setExpectedKeys(1);
+        IdempotencyServiceImpl idempotencyService = new IdempotencyServiceImpl(transactionRepository, properties);
+        when(transactionRepository.selectList(any())).thenReturn(List.of());
+        idempotencyService.warmUp();
+        bankService = new BankServiceImpl(transactionRepository, accountMapper, accountHoldMapper, orderSettlementMapper,
+                new TransactionConverter(), bankEventPublisher, ledgerService, idempotencyService, new IdGenerator(1));
+
+        Transaction completed = new Transaction();
+        completed.setId(400L);
+        completed.setOrderId("order-321");
+        completed.setUserId("user-4");
+        completed.setIdempotencyKey("key-forgotten");
+        completed.setAmount(new BigDecimal("20.00"));
+        completed.setCurrency("AUD");
+        completed.setStatus(TransactionStatus.SUCCEEDED);
+        idempotencyService.record(completed);
+        for (String later : List.of("key-later-1", "key-later-2")) {
+            Transaction other = new Transaction();
+            other.setIdempotencyKey(later);
+            idempotencyService.record(other);
+        }
+        assertFalse(idempotencyService.mayHaveIdempotencyKey("key-forgotten"));
+
+        // The first attempt already took the order's refund total to the full debit
+        when(orderSettlementMapper.lockByOrderId("order-321")).thenReturn(
+                settlement("order-321", "user-4", "AUD", new BigDecimal("20.00"), new BigDecimal("20.00")));
+        when(transactionRepository.selectOne(any())).thenReturn(completed);
+
+        Result<Transaction> result = bankService.processRefund(
+                refundRequest("order-321", "user-4", "AUD", "key-forgotten", new BigDecimal("20.00")));
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        assertEquals(400L, result.getData().getId());
+        verify(transactionRepository, never()).insert(any(Transaction.class));
+        verify(orderSettlementMapper, never()).addRefund(any(), any());
+        verify(ledgerService, never()).transfer(any(), any(), any());
+        verify(bankEventPublisher).publishTransactionResult(completed, true);
+    }
+
     @Test
     void testRefund_idempotent_for_same_key() {
         RefundRequestDTO request = refundRequest("order-789", "user-3", "AUD", "key-idem", new BigDecimal("40.00"));
 
-        Transaction debit = debitTransaction("order-789", "user-3", "AUD", new BigDecimal("100.00"));
+        OrderSettlement settlement = settlement("order-789", "user-3", "AUD", new BigDecimal("100.00"), BigDecimal.ZERO);
         Account account = account("user-3", "AUD", new BigDecimal("60.00"));
         Account storeAccount = account(STORE_USER_ID, "AUD", new BigDecimal("150.00"));
         AtomicReference<Transaction> stored = new AtomicReference<>();
 
         when(transactionRepository.selectOne(any())).thenAnswer(invocation -> stored.get());
-        when(transactionRepository.selectList(any())).thenReturn(List.of(debit));
+        when(orderSettlementMapper.lockByOrderId("order-789")).thenReturn(settlement);
         mockAccountLookups(() -> account, () -> storeAccount);
-        when(accountMapper.updateById(any(Account.class))).thenReturn(1);
+        mockLedgerBalances();
 
         doAnswer(invocation -> {
             Transaction tx = invocation.getArgument(0);
@@ -152,23 +226,24 @@ class BankServiceImplTest {
         assertEquals(firstResult.getData().getId(), secondResult.getData().getId());
 
         verify(transactionRepository).insert(any(Transaction.class));
-        verify(accountMapper, times(2)).updateById(any(Account.class));
+        verify(ledgerService, times(1)).transfer(any(Transaction.class), eq(storeAccount), eq(account));
+        verify(orderSettlementMapper, times(1)).addRefund(any(), any());
         verify(bankEventPublisher, times(1)).publishTransactionResult(any(Transaction.class));
         verify(bankEventPublisher, times(1)).publishTransactionResult(any(Transaction.class), anyBoolean());
     }
 
     @Test
     void testRefund_concurrent_requests_only_one_succeeds() throws Exception {
-        Transaction debit = debitTransaction("order-con", "user-5", "AUD", new BigDecimal("150.00"));
+        OrderSettlement settlement = settlement("order-con", "user-5", "AUD", new BigDecimal("150.00"), BigDecimal.ZERO);
         AtomicReference<Transaction> stored = new AtomicReference<>();
         AtomicBoolean firstInsert = new AtomicBoolean(true);
 
         when(transactionRepository.selectOne(any())).thenAnswer(invocation -> stored.get());
-        when(transactionRepository.selectList(any())).thenAnswer(invocation -> new ArrayList<>(List.of(debit)));
+        when(orderSettlementMapper.lockByOrderId("order-con")).thenReturn(settlement);
         mockAccountLookups(
                 () -> account("user-5", "AUD", new BigDecimal("80.00")),
                 () -> account(STORE_USER_ID, "AUD", new BigDecimal("250.00")));
-        when(accountMapper.updateById(any(Account.class))).thenReturn(1);
+        mockLedgerBalances();
 
         doAnswer(invocation -> {
             Transaction tx = invocation.getArgument(0);
@@ -205,39 +280,71 @@ class BankServiceImplTest {
             executorService.shutdown();
         }
 
-        verify(accountMapper, times(2)).updateById(any(Account.class));
+        verify(ledgerService, times(1)).transfer(any(Transaction.class), any(Account.class), any(Account.class));
         verify(bankEventPublisher, times(1)).publishTransactionResult(any(Transaction.class));
         verify(bankEventPublisher, times(1)).publishTransactionResult(any(Transaction.class), anyBoolean());
     }
 
+    @Test
+    void debitNeverLocksTheStoreAccount() {
+        Account account = account("user-1", "AUD", new BigDecimal("50.00"));
+        Account storeAccount = account(STORE_USER_ID, "AUD", new BigDecimal("200.00"));
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        mockAccountLookups(() -> account, () -> storeAccount);
+        when(ledgerService.availableBalance(account)).thenReturn(account.getBalance());
+
+        Result<Transaction> result = bankService.processDebit(new DebitRequestDTO("order-1", "user-1", new BigDecimal("20.00"), "AUD"));
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        List<String> lookups = accountLookups(2);
+        assertTrue(lookups.get(0).endsWith("FOR UPDATE"), "customer account is locked");
+        assertFalse(lookups.get(1).contains("FOR UPDATE"), "store account is read without a lock");
+        verify(ledgerService, never()).currentBalance(storeAccount);
+        verify(ledgerService, never()).availableBalance(storeAccount);
+    }
+
+    @Test
+    void refundNeverLocksTheStoreAccount() {
+        RefundRequestDTO request = refundRequest("order-123", "user-1", "AUD", "key-store", new BigDecimal("20.00"));
+        Account account = account("user-1", "AUD", new BigDecimal("50.00"));
+        Account storeAccount = account(STORE_USER_ID, "AUD", new BigDecimal("200.00"));
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(orderSettlementMapper.lockByOrderId("order-123"))
+                .thenReturn(settlement("order-123", "user-1", "AUD", new BigDecimal("100.00"), BigDecimal.ZERO));
+        mockAccountLookups(() -> account, () -> storeAccount);
+        mockLedgerBalances();
+
+        Result<Transaction> result = bankService.processRefund(request);
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        List<String> lookups = accountLookups(2);
+        assertTrue(lookups.get(0).endsWith("FOR UPDATE"), "customer account is locked");
+        assertFalse(lookups.get(1).contains("FOR UPDATE"), "store account is read without a lock");
+        // The locking tail read would hold up every debit's store entry
+        verify(ledgerService).readBalance(storeAccount);
+        verify(ledgerService, never()).currentBalance(any(Account.class));
+    }
+
     private RefundRequestDTO refundRequest(String orderId, String userId, String currency, String key, BigDecimal amount) {
         return new RefundRequestDTO(orderId, userId, amount, currency, key);
     }
 
-    private Transaction debitTransaction(String orderId, String userId, String currency, BigDecimal amount) {
-        Transaction transaction = new Transaction();
-        transaction.setId(10L);
-        transaction.setOrderId(orderId);
-        transaction.setUserId(userId);
-        transaction.setTxType(TransactionType.DEBIT);
-        transaction.setStatus(TransactionStatus.SUCCEEDED);
-        transaction.setAmount(amount);
-        transaction.setCurrency(currency);
-        transaction.setCreatedAt(LocalDateTime.now().minusMinutes(5));
-        return transaction;
+    private OrderSettlement settlement(String orderId, String userId, String currency,
+                                       BigDecimal debited, BigDecimal refunded) {
+        return OrderSettlement.builder()
+                .orderId(orderId)
+                .userId(userId)
+                .currency(currency)
+                .debitTransactionId(10L)
+                .debitedAmount(debited)
+                .refundedAmount(refunded)
+                .createdAt(LocalDateTime.now().minusMinutes(5))
+                .build();
     }
 
-    private Transaction refundTransaction(String orderId, String userId, String currency, BigDecimal amount) {
-        Transaction transaction = new Transaction();
-        transaction.setId(20L);
-        transaction.setOrderId(orderId);
-        transaction.setUserId(userId);
-        transaction.setTxType(TransactionType.REFUND);
-        transaction.setStatus(TransactionStatus.SUCCEEDED);
-        transaction.setAmount(amount);
-        transaction.setCurrency(currency);
-        transaction.setCreatedAt(LocalDateTime.now().minusMinutes(2));
-        return transaction;
+    private void mockLedgerBalances() {
+        when(ledgerService.readBalance(any(Account.class)))
+                .thenAnswer(invocation -> invocation.<Account>getArgument(0).getBalance());
     }
 
     private void mockAccountLookups(Supplier<Account> customerSupplier,
@@ -264,6 +371,15 @@ class BankServiceImplTest {
         }
     }
 
+    /**
+     * The SQL of each account lookup, in order
+     */
+    private List<String> accountLookups(int expected) {
+        ArgumentCaptor<Wrapper<Account>> captor = ArgumentCaptor.captor();
+        verify(accountMapper, times(expected)).selectOne(captor.capture());
+        return captor.getAllValues().stream().map(Wrapper::getSqlSegment).toList();
+    }
+
     private Account account(String userId, String currency, BigDecimal balance) {
         Account account = new Account();
         account.setId(100L);
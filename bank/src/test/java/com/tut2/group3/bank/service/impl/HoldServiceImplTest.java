@@ -0,0 +1,325 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.tut2.group3.bank.common.ErrorCode;
+import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.config.HoldProperties;
+import com.tut2.group3.bank.config.IdempotencyProperties;
+import com.tut2.group3.bank.converter.TransactionConverter;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.OrderSettlement;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.HoldStatus;
+import com.tut2.group3.bank.entity.enums.TransactionStatus;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.exception.BusinessException;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
+import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.OrderSettlementMapper;
+import com.tut2.group3.bank.producer.BankEventPublisher;
+import com.tut2.group3.bank.repository.TransactionRepository;
+import com.tut2.group3.bank.service.LedgerService;
+import com.tut2.group3.bank.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HoldServiceImplTest {
+
+    private static final String STORE_USER_ID = "2";
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountMapper accountMapper;
+
+    @Mock
+    private AccountHoldMapper accountHoldMapper;
+
+    @Mock
+    private OrderSettlementMapper orderSettlementMapper;
+
+    @Mock
+    private BankEventPublisher bankEventPublisher;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    private HoldServiceImpl holdService;
+
+    private BankServiceImpl bankService;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        // Not warmed up, so every duplicate check still reaches the mocked repository
+        idempotencyService = new IdempotencyServiceImpl(transactionRepository, new IdempotencyProperties());
+        holdService = new HoldServiceImpl(transactionRepository, accountMapper, accountHoldMapper, orderSettlementMapper,
+                new TransactionConverter(), bankEventPublisher, ledgerService, idempotencyService, new IdGenerator(1),
+                new HoldProperties());
+        bankService = new BankServiceImpl(transactionRepository, accountMapper, accountHoldMapper, orderSettlementMapper,
+                new TransactionConverter(), bankEventPublisher, ledgerService, idempotencyService, new IdGenerator(1));
+    }
+
+    @Test
+    void authorizeHoldsFundsWithoutTouchingTheStoreOrLedger() {
+        Account account = account(100L, "user-1", "AUD");
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account);
+        when(ledgerService.availableBalance(account)).thenReturn(new BigDecimal("80.00"));
+        assignIds();
+
+        Result<Transaction> result = holdService.authorize(
+                new DebitRequestDTO("order-1", "user-1", new BigDecimal("50.00"), "AUD"));
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        assertEquals(TransactionType.AUTHORIZATION, result.getData().getTxType());
+        assertEquals(TransactionStatus.SUCCEEDED, result.getData().getStatus());
+
+        ArgumentCaptor<AccountHold> holdCaptor = ArgumentCaptor.forClass(AccountHold.class);
+        verify(accountHoldMapper).insert(holdCaptor.capture());
+        AccountHold hold = holdCaptor.getValue();
+        assertEquals(HoldStatus.AUTHORIZED, hold.getStatus());
+        assertEquals(100L, hold.getAccountId());
+        assertEquals(0, hold.getAmount().compareTo(new BigDecimal("50.00")));
+        assertEquals(result.getData().getId(), hold.getAuthorizationTransactionId());
+        assertTrue(hold.getExpiresAt().isAfter(hold.getCreatedAt()));
+
+        // Only the customer account is looked up, and no money moves yet
+        verify(accountMapper, times(1)).selectOne(any());
+        verify(ledgerService, never()).transfer(any(), any(), any());
+        verify(bankEventPublisher).publishTransactionResult(result.getData());
+    }
+
+    @Test
+    void authorizeFailsWhenHoldsLeaveTooLittleAvailable() {
+        Account account = account(100L, "user-1", "AUD");
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account);
+        when(ledgerService.availableBalance(account)).thenReturn(new BigDecimal("20.00"));
+        assignIds();
+
+        Result<Transaction> result = holdService.authorize(
+                new DebitRequestDTO("order-1", "user-1", new BigDecimal("50.00"), "AUD"));
+
+        assertEquals(ErrorCode.AUTHORIZATION_FAILED.getCode(), result.getCode());
+        verify(accountHoldMapper, never()).insert(any(AccountHold.class));
+        verify(bankEventPublisher).publishTransactionResult(any(Transaction.class));
+    }
+
+    @Test
+    void voidReleasesTheHoldWithoutLedgerEntries() {
+        AccountHold hold = hold("order-2", "user-1", "AUD", "30.00", HoldStatus.AUTHORIZED);
+        when(accountHoldMapper.lockByOrderId("order-2")).thenReturn(hold);
+        assignIds();
+
+        Result<Transaction> result = holdService.voidHold("order-2");
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        assertEquals(TransactionType.VOID, result.getData().getTxType());
+        assertEquals(HoldStatus.VOIDED, hold.getStatus());
+        assertEquals(result.getData().getId(), hold.getVoidTransactionId());
+        verify(accountHoldMapper).updateById(hold);
+        verify(accountMapper, never()).selectOne(any());
+        verify(ledgerService, never()).transfer(any(), any(), any());
+        verify(ledgerService, never()).settle(any(), anyList(), any());
+    }
+
+    @Test
+    void voidOfCapturedHoldIsRejected() {
+        AccountHold hold = hold("order-2", "user-1", "AUD", "30.00", HoldStatus.CAPTURED);
+        when(accountHoldMapper.lockByOrderId("order-2")).thenReturn(hold);
+
+        Result<Transaction> result = holdService.voidHold("order-2");
+
+        assertEquals(ErrorCode.VOID_FAILED.getCode(), result.getCode());
+        assertEquals(HoldStatus.CAPTURED, hold.getStatus());
+        verify(transactionRepository, never()).insert(any(Transaction.class));
+        verify(accountHoldMapper, never()).updateById(any(AccountHold.class));
+    }
+
+    @Test
+    void captureMarksTheHoldAndOpensItsSettlementRow() {
+        AccountHold hold = hold("order-3", "user-1", "AUD", "40.00", HoldStatus.AUTHORIZED);
+        when(accountHoldMapper.lockByOrderId("order-3")).thenReturn(hold);
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        assignIds();
+
+        Result<Transaction> result = holdService.capture("order-3");
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        assertEquals(TransactionType.CAPTURE, result.getData().getTxType());
+        assertEquals(HoldStatus.CAPTURED, hold.getStatus());
+        assertEquals(result.getData().getId(), hold.getCaptureTransactionId());
+
+        ArgumentCaptor<OrderSettlement> settlementCaptor = ArgumentCaptor.forClass(OrderSettlement.class);
+        verify(orderSettlementMapper).insert(settlementCaptor.capture());
+        assertEquals(result.getData().getId(), settlementCaptor.getValue().getDebitTransactionId());
+        assertEquals(0, settlementCaptor.getValue().getDebitedAmount().compareTo(new BigDecimal("40.00")));
+        // The store is credited by the settlement batch, not by the capture
+        verify(ledgerService, never()).settle(any(), anyList(), any());
+    }
+
+    @Test
+    void settleCapturesWritesOneBatchPerCurrency() {
+        AccountHold audFirst = hold("order-4", "user-1", "AUD", "10.00", HoldStatus.CAPTURED);
+        AccountHold audSecond = hold("order-5", "user-3", "AUD", "15.00", HoldStatus.CAPTURED);
+        AccountHold usd = hold("order-6", "user-1", "USD", "7.00", HoldStatus.CAPTURED);
+        when(accountHoldMapper.lockCaptured(500)).thenReturn(List.of(audFirst, usd, audSecond));
+        when(accountMapper.selectOne(any())).thenReturn(account(2L, STORE_USER_ID, "AUD"), account(3L, STORE_USER_ID, "USD"));
+        assignIds();
+
+        int settled = holdService.settleCaptures(500);
+
+        assertEquals(3, settled);
+        ArgumentCaptor<Transaction> settlementCaptor = ArgumentCaptor.forClass(Transaction.class);
+        verify(ledgerService, times(2)).settle(settlementCaptor.capture(), anyList(), any(Account.class));
+        Transaction audSettlement = settlementCaptor.getAllValues().get(0);
+        assertEquals(TransactionType.SETTLEMENT, audSettlement.getTxType());
+        assertEquals(0, audSettlement.getAmount().compareTo(new BigDecimal("25.00")));
+        verify(ledgerService).settle(eq(audSettlement), eq(List.of(audFirst, audSecond)), any(Account.class));
+        verify(accountHoldMapper).markSettled(List.of("order-4", "order-5"), audSettlement.getId());
+        verify(accountHoldMapper).markSettled(List.of("order-6"), settlementCaptor.getAllValues().get(1).getId());
+        verify(bankEventPublisher, never()).publishTransactionResult(any(Transaction.class));
+    }
+
+    @Test
+    void debitOfAnAuthorizedOrderIsRejected() {
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account(100L, "user-1", "AUD"), account(2L, STORE_USER_ID, "AUD"));
+        when(accountHoldMapper.selectById("order-7")).thenReturn(hold("order-7", "user-1", "AUD", "30.00", HoldStatus.AUTHORIZED));
+
+        Result<Transaction> result = bankService.processDebit(
+                new DebitRequestDTO("order-7", "user-1", new BigDecimal("30.00"), "AUD"));
+
+        assertEquals(ErrorCode.DEBIT_FAILED.getCode(), result.getCode());
+        assertEquals("Order already authorized", result.getMessage());
+        verify(orderSettlementMapper, never()).insert(any(OrderSettlement.class));
+        verify(ledgerService, never()).availableBalance(any());
+        verify(ledgerService, never()).transfer(any(), any(), any());
+    }
+
+    @Test
+    void debitOfACapturedOrderIsRejected() {
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account(100L, "user-1", "AUD"), account(2L, STORE_USER_ID, "AUD"));
+        when(accountHoldMapper.selectById("order-8")).thenReturn(hold("order-8", "user-1", "AUD", "30.00", HoldStatus.CAPTURED));
+
+        Result<Transaction> result = bankService.processDebit(
+                new DebitRequestDTO("order-8", "user-1", new BigDecimal("30.00"), "AUD"));
+
+        assertEquals(ErrorCode.DEBIT_FAILED.getCode(), result.getCode());
+        assertEquals("Order already authorized", result.getMessage());
+        verify(orderSettlementMapper, never()).insert(any(OrderSettlement.class));
+        verify(ledgerService, never()).transfer(any(), any(), any());
+    }
+
+    @Test
+    void debitAfterAVoidedAuthorizationGoesThrough() {
+        Account account = account(100L, "user-1", "AUD");
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account, account(2L, STORE_USER_ID, "AUD"));
+        when(accountHoldMapper.selectById("order-9")).thenReturn(hold("order-9", "user-1", "AUD", "30.00", HoldStatus.VOIDED));
+        when(ledgerService.availableBalance(account)).thenReturn(new BigDecimal("80.00"));
+        assignIds();
+
+        Result<Transaction> result = bankService.processDebit(
+                new DebitRequestDTO("order-9", "user-1", new BigDecimal("30.00"), "AUD"));
+
+        assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        verify(orderSettlementMapper).insert(any(OrderSettlement.class));
+        verify(ledgerService).transfer(eq(result.getData()), eq(account), any(Account.class));
+    }
+
+    @Test
+    void debitLosingTheSettlementRowToACaptureFailsWithoutMovingMoney() {
+        Account account = account(100L, "user-1", "AUD");
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(accountMapper.selectOne(any())).thenReturn(account, account(2L, STORE_USER_ID, "AUD"));
+        when(ledgerService.availableBalance(account)).thenReturn(new BigDecimal("80.00"));
+        when(orderSettlementMapper.insert(any(OrderSettlement.class))).thenThrow(new DuplicateKeyException("PRIMARY"));
+        assignIds();
+
+        BusinessException failure = assertThrows(BusinessException.class, () -> bankService.processDebit(
+                new DebitRequestDTO("order-10", "user-1", new BigDecimal("30.00"), "AUD")));
+
+        assertEquals(ErrorCode.DEBIT_FAILED.getCode(), failure.getCode());
+        verify(ledgerService, never()).transfer(any(), any(), any());
+        verify(bankEventPublisher, never()).publishTransactionResult(any(Transaction.class));
+        // The index must not claim the rolled-back debit
+        assertNull(idempotencyService.findSettledDebit("order-10"));
+    }
+
+    @Test
+    void captureLosingTheSettlementRowToADebitFails() {
+        AccountHold hold = hold("order-11", "user-1", "AUD", "40.00", HoldStatus.AUTHORIZED);
+        when(accountHoldMapper.lockByOrderId("order-11")).thenReturn(hold);
+        when(transactionRepository.selectOne(any())).thenReturn(null);
+        when(orderSettlementMapper.insert(any(OrderSettlement.class))).thenThrow(new DuplicateKeyException("PRIMARY"));
+        assignIds();
+
+        BusinessException failure = assertThrows(BusinessException.class, () -> holdService.capture("order-11"));
+
+        assertEquals(ErrorCode.CAPTURE_FAILED.getCode(), failure.getCode());
+        verify(bankEventPublisher, never()).publishTransactionResult(any(Transaction.class));
+    }
+
+    private void assignIds() {
+        AtomicLong ids = new AtomicLong(500);
+        doAnswer(invocation -> {
+            invocation.<Transaction>getArgument(0).setId(ids.incrementAndGet());
+            return 1;
+        }).when(transactionRepository).insert(any(Transaction.class));
+    }
+
+    private AccountHold hold(String orderId, String userId, String currency, String amount, HoldStatus status) {
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(5);
+        return AccountHold.builder()
+                .orderId(orderId)
+                .accountId(100L)
+                .userId(userId)
+                .currency(currency)
+                .amount(new BigDecimal(amount))
+                .status(status)
+                .authorizationTransactionId(10L)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .expiresAt(createdAt.plusDays(7))
+                .build();
+    }
+
+    private Account account(Long id, String userId, String currency) {
+        Account account = new Account();
+        account.setId(id);
+        account.setUserId(userId);
+        account.setCurrency(currency);
+        account.setBalance(BigDecimal.ZERO);
+        return account;
+    }
+}
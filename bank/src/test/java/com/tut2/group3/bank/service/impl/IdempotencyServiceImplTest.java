@@ -0,0 +1,97 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.tut2.group3.bank.config.IdempotencyProperties;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.TransactionStatus;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setExpectedKeys(1_000);
+        properties.setCacheSize(2);
+        idempotencyService = new IdempotencyServiceImpl(transactionRepository, properties);
+    }
+
+    @Test
+    void beforeWarmUpEveryCheckQueries() {
+        assertNull(idempotencyService.findSettledDebit("order-1"));
+        assertTrue(idempotencyService.mayHaveIdempotencyKey("key-1"));
+        verify(transactionRepository).selectOne(any());
+    }
+
+    @Test
+    void newKeysSkipTheQueryAndWarmedOutcomesAreServedFromMemory() {
+        Transaction settled = transaction("order-1", TransactionType.DEBIT, TransactionStatus.SUCCEEDED, null);
+        Transaction refund = transaction("order-1", TransactionType.REFUND, TransactionStatus.SUCCEEDED, "key-1");
+        when(transactionRepository.selectList(any())).thenReturn(List.of(refund, settled));
+        idempotencyService.warmUp();
+
+        assertNull(idempotencyService.findSettledDebit("order-2"));
+        assertNull(idempotencyService.findByIdempotencyKey("key-2"));
+        assertSame(settled, idempotencyService.findSettledDebit("order-1"));
+        assertSame(refund, idempotencyService.findByIdempotencyKey("key-1"));
+        verify(transactionRepository, never()).selectOne(any());
+    }
+
+    @Test
+    void evictedOutcomesFallBackToTheDatabase() {
+        when(transactionRepository.selectList(any())).thenReturn(List.of());
+        idempotencyService.warmUp();
+        Transaction first = transaction("order-1", TransactionType.DEBIT, TransactionStatus.SUCCEEDED, null);
+        idempotencyService.record(first);
+        idempotencyService.record(transaction("order-2", TransactionType.DEBIT, TransactionStatus.SUCCEEDED, null));
+        idempotencyService.record(transaction("order-3", TransactionType.DEBIT, TransactionStatus.SUCCEEDED, null));
+        when(transactionRepository.selectOne(any())).thenReturn(first);
+
+        assertSame(first, idempotencyService.findSettledDebit("order-1"));
+        assertSame(first, idempotencyService.findSettledDebit("order-1"));
+        verify(transactionRepository, times(1)).selectOne(any());
+    }
+
+    @Test
+    void failedDebitsDoNotMarkTheOrderAsDebited() {
+        when(transactionRepository.selectList(any())).thenReturn(List.of());
+        idempotencyService.warmUp();
+        idempotencyService.record(transaction("order-1", TransactionType.DEBIT, TransactionStatus.FAILED, null));
+
+        assertNull(idempotencyService.findSettledDebit("order-1"));
+        assertFalse(idempotencyService.mayHaveIdempotencyKey("key-1"));
+        verify(transactionRepository, never()).selectOne(any());
+    }
+
+    private static Transaction transaction(String orderId, TransactionType type, TransactionStatus status, String key) {
+        Transaction transaction = new Transaction();
+        transaction.setOrderId(orderId);
+        transaction.setTxType(type);
+        transaction.setStatus(status);
+        transaction.setIdempotencyKey(key);
+        return transaction;
+    }
+}
@@ -0,0 +1,248 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.tut2.group3.bank.config.LedgerProperties;
+import com.tut2.group3.bank.entity.Account;
+import com.tut2.group3.bank.entity.AccountHold;
+import com.tut2.group3.bank.entity.LedgerEntry;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.mapper.AccountHoldMapper;
+import com.tut2.group3.bank.mapper.AccountMapper;
+import com.tut2.group3.bank.mapper.LedgerEntryMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceImplTest {
+
+    // Stands in for the ledger_entries table; not every test runs every query
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private LedgerEntryMapper ledgerEntryMapper;
+
+    @Mock
+    private AccountMapper accountMapper;
+
+    @Mock
+    private AccountHoldMapper accountHoldMapper;
+
+    private final List<LedgerEntry> ledger = new ArrayList<>();
+    // Entries whose writing transaction is still open: unlocked reads skip them, locking reads wait for the commit
+    private final Set<Long> uncommitted = new HashSet<>();
+
+    private LedgerProperties properties;
+
+    private LedgerServiceImpl ledgerService;
+
+    private Account customer;
+    private Account store;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda wrappers resolve their columns from MyBatis-Plus table metadata
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Account.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new LedgerProperties();
+        ledgerService = new LedgerServiceImpl(ledgerEntryMapper, accountMapper, accountHoldMapper, properties);
+        customer = account(1L, "100.00");
+        store = account(2L, "0.00");
+
+        when(ledgerEntryMapper.insertBatch(any())).thenAnswer(invocation -> {
+            List<LedgerEntry> entries = invocation.getArgument(0);
+            for (LedgerEntry entry : entries) {
+                entry.setId((long) ledger.size() + 1);
+                ledger.add(entry);
+            }
+            return entries.size();
+        });
+        when(ledgerEntryMapper.lockTail(anyLong(), anyLong())).thenAnswer(invocation ->
+                lockedRange(invocation.getArgument(0), invocation.getArgument(1), Long.MAX_VALUE));
+        when(ledgerEntryMapper.lockRange(anyLong(), anyLong(), anyLong())).thenAnswer(invocation ->
+                lockedRange(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(ledgerEntryMapper.sumTail(anyLong(), anyLong())).thenAnswer(invocation ->
+                sum(committedRange(invocation.getArgument(0), invocation.getArgument(1))));
+        when(ledgerEntryMapper.selectMaxIdWrittenBy(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            LocalDateTime writtenBy = invocation.getArgument(2);
+            return committedRange(invocation.getArgument(0), invocation.getArgument(1)).stream()
+                    .filter(entry -> !entry.getCreatedAt().isAfter(writtenBy))
+                    .mapToLong(LedgerEntry::getId)
+                    .max()
+                    .orElse(0L);
+        });
+    }
+
+    @Test
+    void transferMovesTheAmountFromOneBalanceToTheOther() {
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+        ledgerService.transfer(transaction(TransactionType.REFUND, "12.50"), store, customer);
+
+        assertEquals(new BigDecimal("82.50"), ledgerService.currentBalance(customer));
+        assertEquals(new BigDecimal("17.50"), ledgerService.currentBalance(store));
+        assertEquals(new BigDecimal("82.50"), ledgerService.readBalance(customer));
+        // Entries only move money, never create it
+        assertEquals(0, sum(ledger).signum());
+    }
+
+    @Test
+    void availableBalanceLeavesOutHeldFunds() {
+        when(accountHoldMapper.sumHeld(1L)).thenReturn(new BigDecimal("25.00"));
+
+        assertEquals(new BigDecimal("75.00"), ledgerService.availableBalance(customer));
+
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+
+        assertEquals(new BigDecimal("45.00"), ledgerService.availableBalance(customer));
+        assertEquals(new BigDecimal("70.00"), ledgerService.currentBalance(customer));
+    }
+
+    @Test
+    void snapshotFoldsTheTailIntoTheBalanceWithoutChangingIt() {
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "20.00"), customer, store);
+
+        assertEquals(2, ledgerService.snapshot(customer));
+
+        assertEquals(new BigDecimal("50.00"), customer.getBalance());
+        assertEquals(3L, customer.getSnapshotEntryId());
+        assertEquals(new BigDecimal("50.00"), ledgerService.currentBalance(customer));
+        assertEquals(0, ledgerService.snapshot(customer));
+
+        ledgerService.transfer(transaction(TransactionType.REFUND, "5.00"), store, customer);
+
+        // The snapshot column stays put; the new entry is the whole tail
+        assertEquals(new BigDecimal("50.00"), customer.getBalance());
+        assertEquals(new BigDecimal("55.00"), ledgerService.currentBalance(customer));
+    }
+
+    @Test
+    void scheduledSnapshotFoldsOnlyEntriesOldEnoughToBeCommitted() {
+        when(accountMapper.selectOne(any())).thenReturn(customer);
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+        ledger.forEach(entry -> entry.setCreatedAt(LocalDateTime.now().minusMinutes(1)));
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "20.00"), customer, store);
+
+        assertEquals(1, ledgerService.snapshot(1L));
+
+        assertEquals(new BigDecimal("70.00"), customer.getBalance());
+        assertEquals(1L, customer.getSnapshotEntryId());
+        assertEquals(new BigDecimal("50.00"), ledgerService.readBalance(customer));
+
+        properties.setSnapshotMinEntryAgeMs(0);
+        assertEquals(1, ledgerService.snapshot(1L));
+        assertEquals(new BigDecimal("50.00"), customer.getBalance());
+        assertEquals(3L, customer.getSnapshotEntryId());
+    }
+
+    @Test
+    void scheduledSnapshotWaitsForAnOlderEntryStillBeingWritten() {
+        when(accountMapper.selectOne(any())).thenReturn(customer);
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "20.00"), customer, store);
+        ledger.forEach(entry -> entry.setCreatedAt(LocalDateTime.now().minusMinutes(1)));
+        // The first debit's transaction is still open: an unlocked read sees only the second
+        uncommitted.add(1L);
+        assertEquals(3L, ledgerEntryMapper.selectMaxIdWrittenBy(1L, 0L, LocalDateTime.now()));
+
+        assertEquals(2, ledgerService.snapshot(1L));
+
+        assertEquals(new BigDecimal("50.00"), customer.getBalance());
+        assertEquals(3L, customer.getSnapshotEntryId());
+        assertBalanceMatchesLedger(customer, "100.00");
+    }
+
+    @Test
+    void snapshotPlusTailAlwaysEqualsOpeningBalancePlusEveryEntry() {
+        Account other = account(3L, "40.00");
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "30.00"), customer, store);
+        ledgerService.transfer(transaction(TransactionType.DEBIT, "15.00"), other, store);
+        ledgerService.snapshot(store);
+        ledgerService.settle(transaction(TransactionType.CAPTURE, "35.00"),
+                List.of(hold(1L, "order-1", "10.00"), hold(3L, "order-2", "25.00")), store);
+        ledgerService.snapshot(customer);
+        ledgerService.transfer(transaction(TransactionType.REFUND, "7.25"), store, customer);
+        ledgerService.snapshot(other);
+
+        assertBalanceMatchesLedger(customer, "100.00");
+        assertBalanceMatchesLedger(store, "0.00");
+        assertBalanceMatchesLedger(other, "40.00");
+        assertEquals(new BigDecimal("67.25"), ledgerService.readBalance(customer));
+        assertEquals(new BigDecimal("72.75"), ledgerService.readBalance(store));
+        assertEquals(new BigDecimal("0.00"), ledgerService.readBalance(other));
+    }
+
+    private void assertBalanceMatchesLedger(Account account, String opening) {
+        BigDecimal everyEntry = sum(range(account.getId(), 0L, Long.MAX_VALUE));
+        assertEquals(new BigDecimal(opening).add(everyEntry), ledgerService.readBalance(account));
+        assertEquals(ledgerService.readBalance(account), ledgerService.currentBalance(account));
+    }
+
+    private List<LedgerEntry> lockedRange(Long accountId, long afterId, long upToId) {
+        List<LedgerEntry> entries = range(accountId, afterId, upToId);
+        entries.forEach(entry -> uncommitted.remove(entry.getId()));
+        return entries;
+    }
+
+    private List<LedgerEntry> committedRange(Long accountId, long afterId) {
+        return range(accountId, afterId, Long.MAX_VALUE).stream()
+                .filter(entry -> !uncommitted.contains(entry.getId()))
+                .toList();
+    }
+
+    private List<LedgerEntry> range(Long accountId, long afterId, long upToId) {
+        return ledger.stream()
+                .filter(entry -> entry.getAccountId().equals(accountId) && entry.getId() > afterId && entry.getId() <= upToId)
+                .toList();
+    }
+
+    private static BigDecimal sum(List<LedgerEntry> entries) {
+        return entries.stream().map(LedgerEntry::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static Account account(Long id, String balance) {
+        return Account.builder()
+                .id(id)
+                .userId(String.valueOf(id))
+                .balance(new BigDecimal(balance))
+                .currency("AUD")
+                .snapshotEntryId(0L)
+                .build();
+    }
+
+    private static AccountHold hold(Long accountId, String orderId, String amount) {
+        return AccountHold.builder()
+                .accountId(accountId)
+                .orderId(orderId)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+
+    private static Transaction transaction(TransactionType type, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setTxType(type);
+        transaction.setOrderId("order-1");
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setCurrency("AUD");
+        return transaction;
+    }
+}
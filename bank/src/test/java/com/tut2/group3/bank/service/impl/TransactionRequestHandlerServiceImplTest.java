@@ -0,0 +1,134 @@
+package com.tut2.group3.bank.service.impl;
+
+import com.tut2.group3.bank.common.Result;
+import com.tut2.group3.bank.dto.DebitRequestDTO;
+import com.tut2.group3.bank.dto.TransactionRequestEventDTO;
+import com.tut2.group3.bank.entity.Transaction;
+import com.tut2.group3.bank.entity.enums.TransactionType;
+import com.tut2.group3.bank.producer.BankEventPublisher;
+import com.tut2.group3.bank.repository.TransactionRepository;
+import com.tut2.group3.bank.service.BankService;
+import com.tut2.group3.bank.service.HoldService;
+import com.tut2.group3.bank.service.IdempotencyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionRequestHandlerServiceImplTest {
+
+    @Mock
+    private BankService bankService;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BankEventPublisher bankEventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private HoldService holdService;
+
+    private TransactionRequestHandlerServiceImpl handlerService;
+
+    @BeforeEach
+    void setUp() {
+        handlerService = new TransactionRequestHandlerServiceImpl(
+                bankService, transactionRepository, bankEventPublisher, transactionTemplate, idempotencyService,
+                holdService);
+    }
+
+    @Test
+    void batchAppliesDebitsInAccountOrderAndPublishesAfterCommit() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+        when(bankService.processDebit(any())).thenAnswer(invocation ->
+                Result.success(succeeded(invocation.getArgument(0))));
+
+        handlerService.handleTransactionRequests(List.of(
+                debit("order-2", "user-2"), debit("order-1", "user-1"), debit("order-3", "user-1")));
+
+        ArgumentCaptor<DebitRequestDTO> captor = ArgumentCaptor.forClass(DebitRequestDTO.class);
+        verify(bankService, times(3)).processDebit(captor.capture());
+        assertEquals(List.of("order-1", "order-3", "order-2"),
+                captor.getAllValues().stream().map(DebitRequestDTO::getOrderId).toList());
+
+        InOrder order = inOrder(bankEventPublisher, transactionTemplate);
+        order.verify(bankEventPublisher).beginBatch();
+        order.verify(transactionTemplate).execute(any());
+        order.verify(bankEventPublisher).flushBatch();
+        verify(bankEventPublisher, never()).discardBatch();
+    }
+
+    @Test
+    void failedBatchIsDiscardedAndRetriedOneByOne() {
+        when(transactionTemplate.execute(any())).thenThrow(new IllegalStateException("deadlock"));
+        when(bankService.processDebit(any())).thenAnswer(invocation ->
+                Result.success(succeeded(invocation.getArgument(0))));
+
+        handlerService.handleTransactionRequests(List.of(debit("order-1", "user-1"), debit("order-2", "user-2")));
+
+        verify(bankEventPublisher).discardBatch();
+        verify(bankEventPublisher, never()).flushBatch();
+        verify(bankService, times(2)).processDebit(any());
+    }
+
+    @Test
+    void resultGoesToTheRequestsReplyQueue() {
+        when(bankService.processDebit(any())).thenAnswer(invocation ->
+                Result.success(succeeded(invocation.getArgument(0))));
+        TransactionRequestEventDTO request = debit("order-1", "user-1");
+        request.setReplyTo("store.bank-replies.a");
+
+        handlerService.handleTransactionRequest(request);
+
+        InOrder order = inOrder(bankEventPublisher, bankService);
+        order.verify(bankEventPublisher).setReplyTo("store.bank-replies.a");
+        order.verify(bankService).processDebit(any());
+        order.verify(bankEventPublisher).clearReplyTo();
+    }
+
+    private static TransactionRequestEventDTO debit(String orderId, String userId) {
+        return TransactionRequestEventDTO.builder()
+                .eventType("DEBIT_REQUEST")
+                .orderId(orderId)
+                .userId(userId)
+                .amount(new BigDecimal("10.00"))
+                .currency("AUD")
+                .build();
+    }
+
+    private static Transaction succeeded(DebitRequestDTO request) {
+        Transaction transaction = new Transaction();
+        transaction.setOrderId(request.getOrderId());
+        transaction.setUserId(request.getUserId());
+        transaction.setTxType(TransactionType.DEBIT);
+        transaction.setStatus(com.tut2.group3.bank.entity.enums.TransactionStatus.SUCCEEDED);
+        return transaction;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tut2.group3.bank.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringHashSetTest {
+
+    private static final long WINDOW = 1_000;
+
+    @Test
+    void hashesAreRememberedForAtLeastTheWindow() {
+        ExpiringHashSet set = new ExpiringHashSet(WINDOW, 100, 0);
+        assertTrue(set.add(42, 0));
+        assertFalse(set.add(42, 500));
+        // Moved to the previous table at the first rotation, still a duplicate
+        assertFalse(set.add(42, 1_500));
+        assertTrue(set.add(42, 3_000));
+        assertEquals(0L, set.getCapacityRotations());
+    }
+
+    @Test
+    void aFullTableRotatesEarlyAndMemoryStaysFixed() {
+        ExpiringHashSet set = new ExpiringHashSet(WINDOW, 10, 0);
+        long bytes = set.sizeInBytes();
+        for (long hash = 1; hash <= 25; hash++) {
+            assertTrue(set.add(Hashes.hash64("tx-" + hash), 0));
+        }
+
+        assertEquals(2L, set.getCapacityRotations());
+        assertEquals(10L, set.getEvicted());
+        assertEquals(15, set.size());
+        assertEquals(bytes, set.sizeInBytes());
+        assertFalse(set.add(Hashes.hash64("tx-25"), 0));
+        assertTrue(set.add(Hashes.hash64("tx-1"), 0));
+    }
+
+    @Test
+    void zeroIsAnOrdinaryHash() {
+        ExpiringHashSet set = new ExpiringHashSet(WINDOW, 10, 0);
+        assertTrue(set.add(0, 0));
+        assertFalse(set.add(0, 0));
+    }
+}
@@ -0,0 +1,72 @@
+package com.tut2.group3.bank.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdGeneratorTest {
+
+    @Test
+    void idsFromManyThreadsAreUnique() throws Exception {
+        IdGenerator generator = new IdGenerator(7);
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> seen = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertTrue(seen.add(ids[i]), "duplicate id");
+                    if (i > 0) {
+                        assertTrue(ids[i] > ids[i - 1], "ids from one thread must increase");
+                    }
+                }
+            }
+            assertEquals(threads * perThread, seen.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void stringIdsSortLikeTheNumbersAndCarryNodeAndTime() {
+        IdGenerator generator = new IdGenerator(IdGenerator.MAX_NODE_ID);
+        String first = generator.nextId("TX");
+        String second = generator.nextId("TX");
+        assertEquals(15, first.length());
+        assertTrue(first.compareTo(second) < 0);
+
+        long id = generator.nextId();
+        assertEquals(IdGenerator.MAX_NODE_ID, (int) (id >>> IdGenerator.SEQUENCE_BITS) & IdGenerator.MAX_NODE_ID);
+        assertTrue(Duration.between(IdGenerator.timestampOf(id), Instant.now()).abs().toSeconds() < 5);
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1));
+    }
+}
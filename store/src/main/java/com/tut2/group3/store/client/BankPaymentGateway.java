@@ -0,0 +1,145 @@
+package com.tut2.group3.store.client;
+
+import com.tut2.group3.store.config.PaymentProperties;
+import com.tut2.group3.store.config.RabbitMQConfig;
+import com.tut2.group3.store.dto.bank.BankRequestDto;
+import com.tut2.group3.store.dto.bank.TransactionDto;
+import com.tut2.group3.store.dto.bank.TransactionRequestEventDto;
+import com.tut2.group3.store.dto.bank.TransactionResultEventDto;
+import com.tut2.group3.store.pojo.Result;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Payments over the bank's request queue instead of its REST API.
+ * A debit or refund is published with a correlation id of its type and order id, and with this instance's
+ * reply queue, so the bank's result comes back to the instance that is waiting for it. The result carries
+ * the type and order id, so it is matched back to the waiting request by {@link #onResult}.
+ * Callers get a future that completes on one of this gateway's threads with the bank's outcome,
+ * or exceptionally with a {@link TimeoutException} once {@code store.payment.result-timeout-seconds} pass.
+ * Waiting requests live in memory only: a reply arriving after a timeout finds no request and is left to
+ * the caller of {@link #onResult} to reconcile. After a restart the reply queue is gone, and the bank
+ * sends the result to the events queue for reconciliation.
+ */
+@Slf4j
+@Component
+public class BankPaymentGateway {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final PaymentProperties properties;
+    private final String replyQueue;
+    // Completes results and timeouts, so the orders they resume never run on a listener thread
+    private final ScheduledExecutorService executor;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    public BankPaymentGateway(RabbitTemplate rabbitTemplate, PaymentProperties properties,
+                              @Qualifier("bankReplyQueue") Queue bankReplyQueue) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.replyQueue = bankReplyQueue.getName();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(properties.getResumeThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "payment-resume-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static String correlationId(String transactionType, String orderId) {
+        return transactionType + ":" + orderId;
+    }
+
+    public CompletableFuture<Result<TransactionDto>> debit(BankRequestDto request) {
+        return send("DEBIT", TransactionRequestEventDto.DEBIT_REQUEST, request);
+    }
+
+    public CompletableFuture<Result<TransactionDto>> refund(BankRequestDto request) {
+        return send("REFUND", TransactionRequestEventDto.REFUND_REQUEST, request);
+    }
+
+    /**
+     * Complete the request the result answers.
+     * Returns false when no request on this instance is waiting for it.
+     */
+    public boolean onResult(TransactionResultEventDto result) {
+        Pending waiting = pending.remove(correlationId(result.getTransactionType(), result.getOrderId()));
+        if (waiting == null) {
+            return false;
+        }
+        waiting.timeout.cancel(false);
+        Result<TransactionDto> outcome = result.isSucceeded()
+                ? Result.success(result.toTransactionDto())
+                : new Result<>(400, result.getMessage() != null ? result.getMessage() : "Bank declined the transaction",
+                        result.toTransactionDto());
+        executor.execute(() -> waiting.future.complete(outcome));
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private CompletableFuture<Result<TransactionDto>> send(String transactionType, String eventType, BankRequestDto request) {
+        String correlationId = correlationId(transactionType, request.getOrderId());
+        CompletableFuture<Result<TransactionDto>> future = new CompletableFuture<>();
+        Pending created = new Pending(future, executor.schedule(() -> expire(correlationId),
+                properties.getResultTimeoutSeconds(), TimeUnit.SECONDS));
+        Pending existing = pending.putIfAbsent(correlationId, created);
+        if (existing != null) {
+            // The bank answers one request per order and type; a repeat shares the first one's result
+            created.timeout.cancel(false);
+            return existing.future;
+        }
+
+        TransactionRequestEventDto event = TransactionRequestEventDto.builder()
+                .eventType(eventType)
+                .orderId(request.getOrderId())
+                .userId(request.getUserId())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .idempotencyKey(request.getIdempotencyKey())
+                .replyTo(replyQueue)
+                .timestamp(LocalDateTime.now())
+                .build();
+        try {
+            rabbitTemplate.convertAndSend("", RabbitMQConfig.BANK_REQUEST_QUEUE, event, message -> {
+                message.getMessageProperties().setCorrelationId(correlationId);
+                message.getMessageProperties().setReplyTo(replyQueue);
+                return message;
+            });
+        } catch (RuntimeException e) {
+            pending.remove(correlationId, created);
+            created.timeout.cancel(false);
+            throw e;
+        }
+        log.info("Published {} for order {} to the bank request queue", eventType, request.getOrderId());
+        return future;
+    }
+
+    private void expire(String correlationId) {
+        Pending expired = pending.remove(correlationId);
+        if (expired != null) {
+            log.warn("No bank result for {} within {} s", correlationId, properties.getResultTimeoutSeconds());
+            expired.future.completeExceptionally(new TimeoutException("No result from the bank for " + correlationId));
+        }
+    }
+
+    private record Pending(CompletableFuture<Result<TransactionDto>> future, ScheduledFuture<?> timeout) {
+    }
+}
@@ -0,0 +1,559 @@
+package com.tut2.group3.store.client;
+
+import com.tut2.group3.store.config.StockLeaseProperties;
+import com.tut2.group3.store.dto.warehouse.AcquireLeaseRequest;
+import com.tut2.group3.store.dto.warehouse.CheckAvailabilityRequest;
+import com.tut2.group3.store.dto.warehouse.ConfirmReservationRequest;
+import com.tut2.group3.store.dto.warehouse.ReserveStockRequest;
+import com.tut2.group3.store.dto.warehouse.SettleLeaseRequest;
+import com.tut2.group3.store.dto.warehouse.StockAvailabilityResponse;
+import com.tut2.group3.store.dto.warehouse.StockLeaseResponse;
+import com.tut2.group3.store.dto.warehouse.StockReservationResponse;
+import com.tut2.group3.store.dto.warehouse.WarehouseAllocation;
+import com.tut2.group3.store.mapper.OrderLeaseHoldMapper;
+import com.tut2.group3.store.pojo.OrderLeaseHold;
+import com.tut2.group3.store.pojo.Result;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock leased from the warehouse for hot products, sold locally without a warehouse call per order.
+ * Each lease is a block of units counted down with atomic counters: an order takes units, then either
+ * confirms them as sold or puts them back. Sold counts are settled with the warehouse in batches by
+ * {@link #maintainLeases()}, which also replaces nearly used leases and returns drained ones.
+ * A lease stays open here after it is returned or expires until its orders have all finished, and any
+ * units they confirm by then are bought back from the warehouse with a normal reservation.
+ * Every hold is also written to order_lease_holds, and settles count the sold rows there rather than the
+ * in-memory counters. An order confirmed or cancelled on another instance changes only its rows, which the
+ * holder picks up on its next run; sales of a lease whose holder restarted or died before settling them are
+ * recovered from the same rows by returning the lease, or buying them back once it has expired.
+ */
+@Slf4j
+@Component
+public class StockLeaseManager {
+
+    public static final String LEASE_ID_PREFIX = "LEASE-";
+
+    private static final String HELD = "HELD";
+    private static final String SOLD = "SOLD";
+    private static final String RELEASED = "RELEASED";
+    private static final String SETTLED = "SETTLED";
+    private static final String BOUGHT_BACK = "BOUGHT_BACK";
+    private static final int RECOVERY_BATCH_SIZE = 20;
+
+    private final WarehouseClient warehouseClient;
+    private final OrderLeaseHoldMapper orderLeaseHoldMapper;
+    private final StockLeaseProperties properties;
+    private final String holderId;
+
+    private volatile Set<Long> leaseEnabledProducts = Set.of();
+    // The lease each product is currently sold from
+    private final Map<Long, LocalLease> currentLeases = new ConcurrentHashMap<>();
+    // Every lease not yet returned, including replaced ones still draining
+    private final List<LocalLease> openLeases = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Hold>> holdsByOrder = new ConcurrentHashMap<>();
+    private final Map<Long, Object> acquireLocks = new ConcurrentHashMap<>();
+    private final Map<Long, Long> acquireBackoffUntil = new ConcurrentHashMap<>();
+
+    public StockLeaseManager(WarehouseClient warehouseClient, OrderLeaseHoldMapper orderLeaseHoldMapper,
+                             StockLeaseProperties properties) {
+        this.warehouseClient = warehouseClient;
+        this.orderLeaseHoldMapper = orderLeaseHoldMapper;
+        this.properties = properties;
+        this.holderId = properties.getHolderId() != null
+                ? properties.getHolderId()
+                : "store-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public static boolean isLeaseId(String reservationId) {
+        return reservationId != null && reservationId.startsWith(LEASE_ID_PREFIX);
+    }
+
+    /**
+     * Whether the product is sold from leased stock on this instance
+     */
+    public boolean isLeased(Long productId) {
+        return properties.isEnabled() && leaseEnabledProducts.contains(productId);
+    }
+
+    /**
+     * Units of the product still unsold in this instance's selling lease, 0 when it has none
+     */
+    public int remainingLeased(Long productId) {
+        LocalLease lease = currentLeases.get(productId);
+        return lease != null && lease.isSelling() ? lease.remaining.get() : 0;
+    }
+
+    /**
+     * Take units for an order from this instance's lease on the product.
+     * Returns the lease id, or null when the product is not leased or the lease cannot cover the
+     * quantity, in which case the caller reserves with the warehouse as usual.
+     */
+    public String tryReserve(String orderId, Long productId, int quantity) {
+        if (!isLeased(productId)) {
+            return null;
+        }
+        LocalLease lease = sellingLease(productId);
+        if (lease == null || !lease.take(quantity)) {
+            return null;
+        }
+        try {
+            orderLeaseHoldMapper.insert(new OrderLeaseHold(null, orderId, lease.leaseId, holderId, productId, quantity,
+                    HELD, lease.expiresAt, null, null));
+        } catch (Exception e) {
+            log.warn("Could not record hold of order {} on lease {}, reserving with the warehouse: {}",
+                    orderId, lease.leaseId, e.getMessage());
+            lease.putBack(quantity);
+            return null;
+        }
+        holdsByOrder.computeIfAbsent(orderId, key -> new CopyOnWriteArrayList<>()).add(new Hold(lease, quantity));
+        log.debug("Took {} units of product {} for order {} from lease {}", quantity, productId, orderId, lease.leaseId);
+        return lease.leaseId;
+    }
+
+    /**
+     * Count an order's leased units as sold; they are shipped at the warehouse on the next settle.
+     * The rows are marked first, so a settle never counts a unit the table does not show as sold.
+     * When another instance holds the lease, it moves the units on its next maintenance run.
+     */
+    public void confirm(String orderId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        orderLeaseHoldMapper.updateStatusByOrderId(orderId, HELD, SOLD);
+        List<Hold> holds = holdsByOrder.remove(orderId);
+        if (holds != null) {
+            holds.forEach(hold -> hold.lease.markSold(hold.quantity));
+        }
+    }
+
+    /**
+     * Put an order's leased units back into their leases for other orders.
+     * When another instance holds the lease, it puts them back on its next maintenance run.
+     */
+    public void release(String orderId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            orderLeaseHoldMapper.updateStatusByOrderId(orderId, HELD, RELEASED);
+        } catch (Exception e) {
+            log.warn("Could not record release of order {}'s leased units: {}", orderId, e.getMessage());
+        }
+        List<Hold> holds = holdsByOrder.remove(orderId);
+        if (holds != null) {
+            holds.forEach(hold -> hold.lease.putBack(hold.quantity));
+        }
+    }
+
+    /**
+     * Replace the set of products sold from leases.
+     * Leases on products no longer flagged stop selling and are returned once drained.
+     */
+    public void refreshLeaseEnabledProducts() {
+        Result<List<Long>> result = warehouseClient.getLeaseEnabledProducts();
+        if (result == null || result.getCode() != 200 || result.getData() == null) {
+            log.warn("Could not refresh lease-enabled products: {}", result != null ? result.getMessage() : null);
+            return;
+        }
+        leaseEnabledProducts = Set.copyOf(result.getData());
+        currentLeases.values().stream()
+                .filter(lease -> !leaseEnabledProducts.contains(lease.productId))
+                .forEach(lease -> lease.retired = true);
+    }
+
+    /**
+     * Apply orders finished on other instances, settle new sales, return drained leases, lease fresh blocks
+     * for products running low and take over unsettled sales of leases no running holder looks after.
+     * Runs on one scheduler thread, so settle bookkeeping needs no locking.
+     */
+    public void maintainLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            applyRemoteOutcomes();
+        } catch (Exception e) {
+            log.warn("Could not read orders finished on other instances: {}", e.getMessage());
+        }
+
+        for (LocalLease lease : openLeases) {
+            try {
+                if (lease.closedAtWarehouse) {
+                    settleAfterClose(lease);
+                } else if (!lease.isSelling() && lease.inFlight.get() == 0) {
+                    returnLease(lease);
+                } else if (now.isAfter(lease.expiresAt)) {
+                    expire(lease);
+                } else if (lease.sold.get() > lease.settledSold) {
+                    settleLease(lease);
+                }
+            } catch (Exception e) {
+                log.warn("Lease {} maintenance failed, retrying next run: {}", lease.leaseId, e.getMessage());
+            }
+        }
+
+        for (LocalLease lease : currentLeases.values()) {
+            if (lease.isSelling() && lease.remaining.get() < properties.getRefillBelow()) {
+                refill(lease);
+            }
+        }
+
+        try {
+            recoverUnsettledSales(now);
+        } catch (Exception e) {
+            log.warn("Could not look for unsettled lease sales: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Return every open lease with its final sold count, so unsold units go back to sale at once
+     */
+    @PreDestroy
+    public void returnAll() {
+        for (LocalLease lease : openLeases) {
+            lease.retired = true;
+            try {
+                if (lease.closedAtWarehouse) {
+                    settleAfterClose(lease);
+                } else {
+                    returnLease(lease);
+                }
+            } catch (Exception e) {
+                log.warn("Could not return lease {} on shutdown, it will expire: {}", lease.leaseId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Move the units of orders this instance holds that were confirmed or released on another instance
+     */
+    private void applyRemoteOutcomes() {
+        if (holdsByOrder.isEmpty()) {
+            return;
+        }
+        List<OrderLeaseHold> finished = orderLeaseHoldMapper.selectFinishedByOrderIds(List.copyOf(holdsByOrder.keySet()));
+        for (OrderLeaseHold row : finished) {
+            List<Hold> holds = holdsByOrder.remove(row.getOrderId());
+            if (holds == null) {
+                continue;
+            }
+            if (RELEASED.equals(row.getStatus())) {
+                holds.forEach(hold -> hold.lease.putBack(hold.quantity));
+            } else {
+                holds.forEach(hold -> hold.lease.markSold(hold.quantity));
+            }
+            log.debug("Order {} was {} on another instance", row.getOrderId(), row.getStatus());
+        }
+    }
+
+    /**
+     * Take over leases with sold rows that no holder here is settling: this holder id's leases from before
+     * a restart, and anyone's lease expired for longer than recover-after-seconds. Each is returned with its
+     * sales when the warehouse still has it open, and otherwise its sales are bought back.
+     */
+    private void recoverUnsettledSales(LocalDateTime now) {
+        List<OrderLeaseHold> orphaned = orderLeaseHoldMapper.selectUnsettledLeases(holderId,
+                now.minusSeconds(properties.getRecoverAfterSeconds()), RECOVERY_BATCH_SIZE);
+        for (OrderLeaseHold row : orphaned) {
+            if (openLeases.stream().anyMatch(lease -> lease.leaseId.equals(row.getLeaseId()))) {
+                continue;
+            }
+            LocalLease lease = LocalLease.adopted(row.getLeaseId(), row.getProductId(), row.getLeaseExpiresAt());
+            openLeases.add(lease);
+            log.warn("Recovering unsettled sales of lease {}", lease.leaseId);
+            try {
+                expire(lease);
+            } catch (Exception e) {
+                log.warn("Recovering lease {} failed, retrying next run: {}", lease.leaseId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The product's lease that is still selling, leasing a new block when there is none
+     */
+    private LocalLease sellingLease(Long productId) {
+        LocalLease lease = currentLeases.get(productId);
+        if (lease != null && lease.isSelling()) {
+            return lease;
+        }
+        synchronized (acquireLocks.computeIfAbsent(productId, key -> new Object())) {
+            lease = currentLeases.get(productId);
+            if (lease != null && lease.isSelling()) {
+                return lease;
+            }
+            if (System.currentTimeMillis() < acquireBackoffUntil.getOrDefault(productId, 0L)) {
+                return null;
+            }
+            return acquire(productId);
+        }
+    }
+
+    /**
+     * Lease a fresh block to sell from instead of a nearly used lease, which then drains and is returned
+     */
+    private void refill(LocalLease lease) {
+        synchronized (acquireLocks.computeIfAbsent(lease.productId, key -> new Object())) {
+            if (currentLeases.get(lease.productId) != lease
+                    || System.currentTimeMillis() < acquireBackoffUntil.getOrDefault(lease.productId, 0L)) {
+                return;
+            }
+            if (acquire(lease.productId) != null) {
+                lease.retired = true;
+            }
+        }
+    }
+
+    private LocalLease acquire(Long productId) {
+        Result<StockLeaseResponse> result;
+        try {
+            result = warehouseClient.acquireLease(new AcquireLeaseRequest(
+                    holderId, productId, properties.getBlockSize(), properties.getLeaseSeconds()));
+        } catch (Exception e) {
+            log.warn("Leasing product {} failed: {}", productId, e.getMessage());
+            result = null;
+        }
+        if (result == null || result.getCode() != 200 || result.getData() == null) {
+            acquireBackoffUntil.put(productId, System.currentTimeMillis() + properties.getAcquireBackoffMs());
+            return null;
+        }
+
+        StockLeaseResponse response = result.getData();
+        LocalLease lease = new LocalLease(response.getLeaseId(), productId, response.getGrantedQuantity(),
+                response.getExpiresAt().minusSeconds(properties.getDrainSeconds()), response.getExpiresAt());
+        openLeases.add(lease);
+        currentLeases.put(productId, lease);
+        log.info("Leased {} units of product {} as {} until {}",
+                lease.granted, productId, lease.leaseId, lease.expiresAt);
+        return lease;
+    }
+
+    private void settleLease(LocalLease lease) {
+        LeaseSales sales = leaseSales(lease);
+        Result<StockLeaseResponse> result = warehouseClient.settleLease(lease.leaseId, new SettleLeaseRequest(sales.total()));
+        if (result.getCode() != 200) {
+            throw new IllegalStateException(result.getMessage());
+        }
+        lease.settledSold = sales.total();
+        markSettled(sales);
+    }
+
+    private void returnLease(LocalLease lease) {
+        lease.retired = true;
+        LeaseSales sales = leaseSales(lease);
+        Result<StockLeaseResponse> result = warehouseClient.returnLease(lease.leaseId, new SettleLeaseRequest(sales.total()));
+        if (result.getCode() != 200) {
+            throw new IllegalStateException(result.getMessage());
+        }
+        lease.settledSold = sales.total();
+        lease.closedAtWarehouse = true;
+        markSettled(sales);
+        log.info("Returned lease {} with {} units sold", lease.leaseId, sales.total());
+        settleAfterClose(lease);
+    }
+
+    /**
+     * The lease's running sold total as recorded in the table, which the warehouse takes as idempotent,
+     * and the sold rows it newly covers
+     */
+    private LeaseSales leaseSales(LocalLease lease) {
+        int total = 0;
+        List<Long> unsettled = new ArrayList<>();
+        for (OrderLeaseHold row : orderLeaseHoldMapper.selectByLeaseId(lease.leaseId)) {
+            if (SOLD.equals(row.getStatus())) {
+                unsettled.add(row.getId());
+                total += row.getQuantity();
+            } else if (SETTLED.equals(row.getStatus())) {
+                total += row.getQuantity();
+            }
+        }
+        return new LeaseSales(total, unsettled);
+    }
+
+    private void markSettled(LeaseSales sales) {
+        if (!sales.unsettledIds().isEmpty()) {
+            orderLeaseHoldMapper.updateStatusByIds(sales.unsettledIds(), SOLD, SETTLED);
+        }
+    }
+
+    /**
+     * A lease past its expiry that orders still hold units of, or one taken over from an earlier holder. Its sales so far go with the return, which the
+     * warehouse accepts until its expiry sweep runs; once the sweep has put the unsettled units back on sale,
+     * the sold ones are bought back with a reservation instead
+     */
+    private void expire(LocalLease lease) {
+        log.warn("Lease {} expired with {} units still held by orders and {} sold units unsettled",
+                lease.leaseId, lease.inFlight.get(), lease.sold.get() - lease.settledSold);
+        try {
+            returnLease(lease);
+        } catch (Exception e) {
+            log.warn("Lease {} could not be returned after expiry, settling its sales by reservation: {}",
+                    lease.leaseId, e.getMessage());
+            lease.closedAtWarehouse = true;
+            settleAfterClose(lease);
+        }
+    }
+
+    /**
+     * Buy back units confirmed after the warehouse closed the lease, and drop the lease once no order holds any.
+     * In-flight units are read before the table, so a lease seen drained has no confirmation still to come.
+     */
+    private void settleAfterClose(LocalLease lease) {
+        boolean drained = lease.inFlight.get() == 0;
+        buyBack(lease);
+        if (drained) {
+            openLeases.remove(lease);
+            currentLeases.remove(lease.productId, lease);
+        }
+    }
+
+    /**
+     * Reserve and confirm the lease's unsettled sales like an order would. The sold rows are claimed one by one
+     * before reserving, so two instances never buy back the same units, and handed back if the reservation fails.
+     * A reservation that could not be confirmed is kept and only its confirmation is retried, so a failed run
+     * never reserves the units twice.
+     */
+    private void buyBack(LocalLease lease) {
+        if (lease.buyBack == null) {
+            int coveredBefore = 0;
+            List<Long> claimed = new ArrayList<>();
+            int quantity = 0;
+            for (OrderLeaseHold row : orderLeaseHoldMapper.selectByLeaseId(lease.leaseId)) {
+                if (SETTLED.equals(row.getStatus()) || BOUGHT_BACK.equals(row.getStatus())) {
+                    coveredBefore += row.getQuantity();
+                } else if (SOLD.equals(row.getStatus())
+                        && orderLeaseHoldMapper.updateStatusByIds(List.of(row.getId()), SOLD, BOUGHT_BACK) == 1) {
+                    claimed.add(row.getId());
+                    quantity += row.getQuantity();
+                }
+            }
+            if (claimed.isEmpty()) {
+                return;
+            }
+            String orderId = lease.leaseId + "-" + (coveredBefore + quantity);
+            try {
+                lease.buyBack = new BuyBack(orderId, reserve(lease, orderId, quantity), coveredBefore + quantity);
+            } catch (RuntimeException e) {
+                orderLeaseHoldMapper.updateStatusByIds(claimed, BOUGHT_BACK, SOLD);
+                throw e;
+            }
+        }
+
+        BuyBack buyBack = lease.buyBack;
+        Result<?> confirmed = warehouseClient.confirmReservation(
+                new ConfirmReservationRequest(buyBack.orderId(), buyBack.reservationId()));
+        if (confirmed.getCode() != 200) {
+            throw new IllegalStateException(confirmed.getMessage());
+        }
+        lease.settledSold = buyBack.upToSold();
+        lease.buyBack = null;
+        log.info("Settled sales of lease {} up to {} units by reservation {}",
+                lease.leaseId, buyBack.upToSold(), buyBack.reservationId());
+    }
+
+    private String reserve(LocalLease lease, String orderId, int quantity) {
+        Result<StockAvailabilityResponse> availability = warehouseClient.checkAvailability(
+                new CheckAvailabilityRequest(lease.productId, quantity));
+        if (availability.getCode() != 200 || availability.getData() == null
+                || !Boolean.TRUE.equals(availability.getData().getAvailable())) {
+            throw new IllegalStateException("No stock to cover " + quantity + " units sold from lease " + lease.leaseId);
+        }
+        List<WarehouseAllocation> allocations = availability.getData().getWarehouses().stream()
+                .filter(warehouse -> warehouse.getAllocatedQuantity() != null && warehouse.getAllocatedQuantity() > 0)
+                .map(warehouse -> new WarehouseAllocation(warehouse.getWarehouseId(), warehouse.getAllocatedQuantity()))
+                .toList();
+        Result<StockReservationResponse> reserved = warehouseClient.reserveStock(
+                new ReserveStockRequest(orderId, lease.productId, quantity, allocations));
+        if (reserved.getCode() != 200 || reserved.getData() == null) {
+            throw new IllegalStateException(reserved.getMessage());
+        }
+        return reserved.getData().getReservationId();
+    }
+
+    private record Hold(LocalLease lease, int quantity) {
+    }
+
+    private record BuyBack(String orderId, String reservationId, int upToSold) {
+    }
+
+    private record LeaseSales(int total, List<Long> unsettledIds) {
+    }
+
+    private static final class LocalLease {
+        final String leaseId;
+        final Long productId;
+        final int granted;
+        final LocalDateTime sellUntil;
+        final LocalDateTime expiresAt;
+        final AtomicInteger remaining;
+        final AtomicInteger sold = new AtomicInteger();
+        // Units taken by orders that have neither confirmed nor released them yet
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile boolean retired;
+        // Returned or expired at the warehouse; kept here only until its orders finish
+        volatile boolean closedAtWarehouse;
+        int settledSold;
+        BuyBack buyBack;
+
+        LocalLease(String leaseId, Long productId, int granted, LocalDateTime sellUntil, LocalDateTime expiresAt) {
+            this.leaseId = leaseId;
+            this.productId = productId;
+            this.granted = granted;
+            this.sellUntil = sellUntil;
+            this.expiresAt = expiresAt;
+            this.remaining = new AtomicInteger(granted);
+        }
+
+        /**
+         * A lease of an earlier holder, open here only to settle the sales recorded against it
+         */
+        static LocalLease adopted(String leaseId, Long productId, LocalDateTime expiresAt) {
+            LocalLease lease = new LocalLease(leaseId, productId, 0, expiresAt, expiresAt);
+            lease.retired = true;
+            return lease;
+        }
+
+        boolean isSelling() {
+            return !retired && LocalDateTime.now().isBefore(sellUntil);
+        }
+
+        /**
+         * Count the units in flight before checking the lease is still selling, so a lease seen
+         * drained by the maintenance run can never hand out units afterwards
+         */
+        boolean take(int quantity) {
+            inFlight.addAndGet(quantity);
+            if (isSelling()) {
+                int left = remaining.get();
+                while (left >= quantity) {
+                    if (remaining.compareAndSet(left, left - quantity)) {
+                        return true;
+                    }
+                    left = remaining.get();
+                }
+            }
+            inFlight.addAndGet(-quantity);
+            return false;
+        }
+
+        void markSold(int quantity) {
+            sold.addAndGet(quantity);
+            inFlight.addAndGet(-quantity);
+        }
+
+        void putBack(int quantity) {
+            remaining.addAndGet(quantity);
+            inFlight.addAndGet(-quantity);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tut2.group3.store.client;
+
+import com.tut2.group3.store.pojo.Result;
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Last successful response and ETag per warehouse catalog resource.
+ * Each fetch revalidates with If-None-Match, so an unchanged resource costs the warehouse a version
+ * query and the wire an empty 304 instead of the full payload.
+ */
+@Slf4j
+@Component
+public class WarehouseCatalogCache {
+
+    private final Map<String, Entry<?>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Fetch a resource, passing the cached ETag (or null) to request and serving the cached result on 304
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> fetch(String key, Function<String, ResponseEntity<Result<T>>> request) {
+        Entry<T> cached = (Entry<T>) entries.get(key);
+        ResponseEntity<Result<T>> response;
+        try {
+            response = request.apply(cached != null ? cached.etag() : null);
+        } catch (FeignException e) {
+            if (e.status() == HttpStatus.NOT_MODIFIED.value() && cached != null) {
+                log.debug("Warehouse {} not modified, serving cached copy", key);
+                return cached.result();
+            }
+            throw e;
+        }
+
+        Result<T> result = response.getBody();
+        String etag = response.getHeaders().getETag();
+        if (etag != null && result != null && Integer.valueOf(200).equals(result.getCode())) {
+            entries.put(key, new Entry<>(etag, result));
+        } else {
+            entries.remove(key);
+        }
+        return result;
+    }
+
+    private record Entry<T>(String etag, Result<T> result) {
+    }
+}
@@ -4,6 +4,8 @@ import com.tut2.group3.store.dto.warehouse.*;
 import com.tut2.group3.store.pojo.Result;
 import jakarta.validation.Valid;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -13,9 +15,11 @@ public interface WarehouseClient {
 
     /**
      * Get all products
+     * Pass the last ETag to revalidate; an unchanged catalog comes back as a 304 FeignException
      */
     @GetMapping("/api/products")
-    Result<List<ProductDto>> getAllProducts();
+    ResponseEntity<Result<List<ProductDto>>> getAllProducts(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     /**
      * Get product price by ID or name
@@ -54,6 +58,32 @@ public interface WarehouseClient {
     @PostMapping("/api/warehouse/release")
     Result<ReleaseStockResponse> releaseStock(@Valid @RequestBody ReleaseStockRequest request);
 
+    /**
+     * Ids of the hot products sold from leased stock
+     */
+    @GetMapping("/api/warehouse/leases/products")
+    Result<List<Long>> getLeaseEnabledProducts();
+
+    /**
+     * Lease a block of a hot product's stock to this store instance
+     */
+    @PostMapping("/api/warehouse/leases")
+    Result<StockLeaseResponse> acquireLease(@RequestBody AcquireLeaseRequest request);
+
+    /**
+     * Settle the units sold from a lease so far
+     */
+    @PostMapping("/api/warehouse/leases/{leaseId}/settle")
+    Result<StockLeaseResponse> settleLease(@PathVariable("leaseId") String leaseId,
+                                           @RequestBody SettleLeaseRequest request);
+
+    /**
+     * Settle a lease's final sold count and return its unsold units
+     */
+    @PostMapping("/api/warehouse/leases/{leaseId}/return")
+    Result<StockLeaseResponse> returnLease(@PathVariable("leaseId") String leaseId,
+                                           @RequestBody SettleLeaseRequest request);
+
     /**
      * Get warehouse stock information
      */
@@ -71,9 +101,12 @@ public interface WarehouseClient {
 
     /**
      * Get all warehouses
+     * Revalidates like {@link #getAllProducts}
      */
     @GetMapping("/api/warehouse/list")
-    Result<List<WarehouseDTO>> getAllWarehouses(@RequestParam(required = false) String status);
+    ResponseEntity<Result<List<WarehouseDTO>>> getAllWarehouses(
+            @RequestParam(required = false) String status,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     /**
      * Health check endpoint
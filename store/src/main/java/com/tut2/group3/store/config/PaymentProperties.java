@@ -0,0 +1,17 @@
+package com.tut2.group3.store.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "store.payment")
+@Data
+public class PaymentProperties {
+    /** Send debits and refunds to the bank over its request queue instead of calling its REST API */
+    private boolean async = false;
+    /** An order whose debit has no result from the bank within this fails and its stock is released */
+    private Integer resultTimeoutSeconds = 60;
+    /** Threads that resume orders once their payment result arrives or times out */
+    private Integer resumeThreads = 4;
+}
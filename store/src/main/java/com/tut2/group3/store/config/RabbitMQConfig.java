@@ -21,6 +21,10 @@ public class RabbitMQConfig {
     public static final String DELIVERY_STATUS_QUEUE = "delivery.status.queue";
     public static final String ORDER_FAILURE_QUEUE = "email.orderfail.queue";
     public static final String REFUND_NOTIFICATION_QUEUE = "email.refund.queue";
+    // Owned by the bank, declared here too so payment requests queue up while the bank is down
+    public static final String BANK_REQUEST_QUEUE = "bank.transaction.requests";
+    public static final String BANK_EVENTS_QUEUE = "bank.events.queue";
+    public static final String BANK_REPLY_QUEUE_PREFIX = "store.bank-replies.";
 
     // ========== Routing Keys ==========
     public static final String DELIVERY_REQUEST_ROUTING_KEY = "delivery.request";
@@ -101,6 +105,35 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * Queue for debit and refund requests to the bank
+     */
+    @Bean
+    public Queue bankRequestQueue() {
+        return QueueBuilder
+                .durable(BANK_REQUEST_QUEUE)
+                .build();
+    }
+
+    /**
+     * Queue for transaction results from the bank that no store instance is waiting for
+     */
+    @Bean
+    public Queue bankEventsQueue() {
+        return QueueBuilder
+                .durable(BANK_EVENTS_QUEUE)
+                .build();
+    }
+
+    /**
+     * This instance's own queue for the results of the payments it sends; deleted when the instance
+     * disconnects, after which the bank sends those results to the events queue instead
+     */
+    @Bean
+    public Queue bankReplyQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy(BANK_REPLY_QUEUE_PREFIX));
+    }
+
     /**
      * Bind delivery request queue to delivery exchange
      */
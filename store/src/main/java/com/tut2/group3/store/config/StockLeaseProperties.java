@@ -0,0 +1,27 @@
+package com.tut2.group3.store.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "store.lease")
+@Data
+public class StockLeaseProperties {
+    /** Sell lease-enabled products from leased stock instead of reserving per order */
+    private boolean enabled = true;
+    /** Identifies this instance as lease holder; a random id is used when unset */
+    private String holderId;
+    /** Units asked for per lease */
+    private Integer blockSize = 50;
+    /** Lease length asked for */
+    private Integer leaseSeconds = 120;
+    /** Stop selling from a lease this long before it expires, so orders holding its units can finish */
+    private Integer drainSeconds = 30;
+    /** Lease a fresh block once the current one has fewer units left than this */
+    private Integer refillBelow = 10;
+    /** Wait before asking again for a product the warehouse would not lease */
+    private Long acquireBackoffMs = 5000L;
+    /** Take over unsettled sales of another holder's lease once it has been expired this long */
+    private Integer recoverAfterSeconds = 60;
+}
@@ -0,0 +1,26 @@
+package com.tut2.group3.store.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Configuration
+@ConfigurationProperties(prefix = "store.waiting-room")
+@Data
+public class WaitingRoomProperties {
+    /** Admit orders for the flash-sale products through a waiting room */
+    private boolean enabled = true;
+    /** Flash-sale product ids */
+    private Set<Long> products = new HashSet<>();
+    /** Most shoppers admitted per product on each admission run */
+    private Integer maxAdmissionsPerRun = 20;
+    /** Shoppers waiting beyond remaining stock times this factor are turned away */
+    private Double queueFactor = 2.0;
+    /** An admitted shopper who has not placed the order within this is dropped */
+    private Integer admissionTtlSeconds = 60;
+    /** A waiting shopper who has not checked their place for this long is skipped at the head of the line */
+    private Integer abandonAfterSeconds = 30;
+}
@@ -1,12 +1,19 @@
 package com.tut2.group3.store.controller;
 
 import com.tut2.group3.store.dto.order.OrderCreateRequestDTO;
+import com.tut2.group3.store.dto.order.OrderItemRequestDTO;
+import com.tut2.group3.store.dto.order.WaitingRoomStatusDto;
 import com.tut2.group3.store.pojo.Result;
 import com.tut2.group3.store.service.OrderService;
+import com.tut2.group3.store.service.WaitingRoomService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Slf4j
 @RestController
 @RequestMapping("/order")
@@ -15,6 +22,9 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
     /**
      * Place a new order
      * 
@@ -25,12 +35,32 @@ public class OrderController {
      * 4. Send delivery request to DeliveryCo
      * 5. Confirm stock reservation
      * 
+     * Orders containing flash-sale products are only placed once the user has been admitted from
+     * each product's waiting room; until then the user's place in line is returned instead.
+     * 
      * @param orderCreateRequestDTO Order creation request containing items and user ID
-     * @return Result with order details or error message
+     * @return Result with order details, waiting room status or error message
      */
     @PostMapping("/place")
     public Result orderPlace(@RequestBody OrderCreateRequestDTO orderCreateRequestDTO) {
-        log.info("Received order placement request from user: {}", orderCreateRequestDTO.getUserId());
+        Long userId = orderCreateRequestDTO.getUserId();
+        log.info("Received order placement request from user: {}", userId);
+
+        Map<Long, Integer> gatedProducts = userId == null || orderCreateRequestDTO.getItems() == null
+                ? Map.of()
+                : orderCreateRequestDTO.getItems().stream()
+                        .filter(item -> waitingRoomService.isGated(item.getProductId()))
+                        .collect(Collectors.toMap(OrderItemRequestDTO::getProductId, OrderItemRequestDTO::getQuantity,
+                                Integer::sum, LinkedHashMap::new));
+        for (Map.Entry<Long, Integer> gated : gatedProducts.entrySet()) {
+            Long productId = gated.getKey();
+            WaitingRoomStatusDto status = waitingRoomService.enter(productId, userId, gated.getValue());
+            if (!status.isAdmitted()) {
+                log.info("User {} not admitted for product {}: {}", userId, productId, status.getStatus());
+                return waitingRoomResult(status);
+            }
+        }
+
         try {
             Result result = orderService.orderPlace(orderCreateRequestDTO);
             log.info("Order placement request processed: {}", result.getMessage());
@@ -38,9 +68,29 @@ public class OrderController {
         } catch (Exception e) {
             log.error("Error processing order placement: {}", e.getMessage(), e);
             return Result.error(500, "Internal server error: " + e.getMessage());
+        } finally {
+            gatedProducts.keySet().forEach(productId -> waitingRoomService.leave(productId, userId));
         }
     }
 
+    /**
+     * Join a flash-sale product's waiting room, or check the user's place in it
+     * 
+     * @param productId Flash-sale product ID
+     * @param userId User ID waiting to order
+     * @param quantity Units the user intends to order, held back for them once admitted
+     * @return Result with the user's waiting room status
+     */
+    @GetMapping("/waiting-room/{productId}")
+    public Result waitingRoomStatus(@PathVariable Long productId, @RequestParam Long userId,
+                                    @RequestParam(defaultValue = "1") Integer quantity) {
+        if (!waitingRoomService.isGated(productId)) {
+            return Result.success(new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.ADMITTED, null, 0L, null));
+        }
+        WaitingRoomStatusDto status = waitingRoomService.enter(productId, userId, quantity);
+        return status.isAdmitted() ? Result.success(status) : waitingRoomResult(status);
+    }
+
     /**
      * Cancel an order
      * 
@@ -102,4 +152,15 @@ public class OrderController {
             return Result.error(500, "Internal server error: " + e.getMessage());
         }
     }
+
+    private Result waitingRoomResult(WaitingRoomStatusDto status) {
+        return switch (status.getStatus()) {
+            case WaitingRoomStatusDto.QUEUED -> new Result<>(202,
+                    "You are number " + status.getPosition() + " in line for product " + status.getProductId(), status);
+            case WaitingRoomStatusDto.SOLD_OUT -> new Result<>(410,
+                    "Product " + status.getProductId() + " is sold out", status);
+            default -> new Result<>(429,
+                    "Too many shoppers are waiting for product " + status.getProductId() + ", please try again later", status);
+        };
+    }
 }
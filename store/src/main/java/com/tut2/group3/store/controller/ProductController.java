@@ -1,8 +1,8 @@
 package com.tut2.group3.store.controller;
 
-import com.tut2.group3.store.client.WarehouseClient;
 import com.tut2.group3.store.dto.warehouse.ProductDto;
 import com.tut2.group3.store.pojo.Result;
+import com.tut2.group3.store.service.ProductService;
 import feign.FeignException;
 import feign.RetryableException;
 import lombok.extern.slf4j.Slf4j;
@@ -21,7 +21,7 @@ import java.util.List;
 public class ProductController {
 
     @Autowired
-    private WarehouseClient warehouseClient;
+    private ProductService productService;
 
     /**
      * Get all products from warehouse
@@ -32,7 +32,7 @@ public class ProductController {
     public Result<List<ProductDto>> getAllProducts() {
         log.info("Received request to get all products");
         try {
-            Result<List<ProductDto>> result = warehouseClient.getAllProducts();
+            Result<List<ProductDto>> result = productService.getAllProducts();
             log.info("Successfully retrieved {} products",
                     result.getData() != null ? result.getData().size() : 0);
             return result;
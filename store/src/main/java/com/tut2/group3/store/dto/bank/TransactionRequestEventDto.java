@@ -0,0 +1,34 @@
+package com.tut2.group3.store.dto.bank;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Debit or refund request published to the bank's request queue
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionRequestEventDto {
+
+    public static final String DEBIT_REQUEST = "DEBIT_REQUEST";
+    public static final String REFUND_REQUEST = "REFUND_REQUEST";
+
+    private String eventType;
+    private String orderId;
+    private String userId;
+    private BigDecimal amount;
+    private String currency;
+    private String idempotencyKey;
+    // This instance's reply queue, so the result comes back to the instance waiting for it
+    private String replyTo;
+    private LocalDateTime timestamp;
+}
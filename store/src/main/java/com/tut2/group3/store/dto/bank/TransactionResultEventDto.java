@@ -0,0 +1,40 @@
+package com.tut2.group3.store.dto.bank;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transaction outcome the bank publishes to its events queue
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransactionResultEventDto {
+
+    private String eventType;
+    private Long transactionId;
+    private String bankTxId;
+    private String orderId;
+    private String userId;
+    private BigDecimal amount;
+    private String currency;
+    private String transactionType;  // DEBIT or REFUND
+    private String status;  // SUCCEEDED or FAILED
+    private String message;
+    private LocalDateTime createdAt;
+
+    public boolean isSucceeded() {
+        return "SUCCEEDED".equals(status);
+    }
+
+    public TransactionDto toTransactionDto() {
+        return new TransactionDto(transactionId, orderId, userId, transactionType, amount, currency, status,
+                bankTxId, message, createdAt);
+    }
+}
@@ -0,0 +1,26 @@
+package com.tut2.group3.store.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomStatusDto {
+
+    public static final String ADMITTED = "ADMITTED";
+    public static final String QUEUED = "QUEUED";
+    public static final String SOLD_OUT = "SOLD_OUT";
+    public static final String QUEUE_FULL = "QUEUE_FULL";
+
+    private Long productId;
+    private String status; // ADMITTED, QUEUED, SOLD_OUT, QUEUE_FULL
+    private Long ticket; // admission order; null when turned away
+    private Long position; // shoppers ahead plus one while QUEUED, 0 once admitted
+    private Integer remainingStock; // as of the last admission run, null before the first
+
+    public boolean isAdmitted() {
+        return ADMITTED.equals(status);
+    }
+}
@@ -0,0 +1,15 @@
+package com.tut2.group3.store.dto.warehouse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AcquireLeaseRequest {
+    private String holderId;
+    private Long productId;
+    private Integer quantity;
+    private Integer leaseSeconds;
+}
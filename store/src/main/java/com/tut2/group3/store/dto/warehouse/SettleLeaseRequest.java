@@ -0,0 +1,13 @@
+package com.tut2.group3.store.dto.warehouse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettleLeaseRequest {
+    // Running total of units sold from the lease, so a retried settle applies once
+    private Integer soldQuantity;
+}
@@ -0,0 +1,21 @@
+package com.tut2.group3.store.dto.warehouse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLeaseResponse {
+    private String leaseId;
+    private String holderId;
+    private Long warehouseId;
+    private Long productId;
+    private Integer grantedQuantity;
+    private Integer settledQuantity;
+    private String status;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,65 @@
+package com.tut2.group3.store.listener;
+
+import com.tut2.group3.store.client.BankPaymentGateway;
+import com.tut2.group3.store.config.RabbitMQConfig;
+import com.tut2.group3.store.dto.bank.TransactionResultEventDto;
+import com.tut2.group3.store.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener for transaction results from the bank, active in async payment mode
+ * Replies to this instance's requests arrive on its own reply queue and go to the payment waiting for
+ * them. Only this instance could have been waiting, so a successful debit it no longer waits for is
+ * reconciled against its order. The shared events queue carries the results no instance can claim:
+ * requests whose instance went away, and debits made through the bank's REST API
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "store.payment", name = "async", havingValue = "true")
+public class BankResultListener {
+
+    private final BankPaymentGateway bankPaymentGateway;
+    private final OrderService orderService;
+
+    @RabbitListener(queues = "#{bankReplyQueue.name}")
+    public void handleReply(TransactionResultEventDto result) {
+        log.info("Bank reply received: {} for order {} ({})",
+                result.getEventType(), result.getOrderId(), result.getStatus());
+        try {
+            if (!bankPaymentGateway.onResult(result)) {
+                reconcile(result);
+            }
+        } catch (Exception e) {
+            log.error("Failed to process bank reply for order {}: {}", result.getOrderId(), e.getMessage(), e);
+        }
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.BANK_EVENTS_QUEUE)
+    public void handleUnclaimedResult(TransactionResultEventDto result) {
+        log.info("Unclaimed bank result received: {} for order {} ({})",
+                result.getEventType(), result.getOrderId(), result.getStatus());
+        try {
+            reconcile(result);
+        } catch (Exception e) {
+            log.error("Failed to reconcile bank result for order {}: {}", result.getOrderId(), e.getMessage(), e);
+        }
+    }
+
+    private void reconcile(TransactionResultEventDto result) {
+        if ("DEBIT".equals(result.getTransactionType()) && result.isSucceeded() && isStoreOrderId(result.getOrderId())) {
+            orderService.reconcileUnclaimedDebit(Long.valueOf(result.getOrderId()), result.getTransactionId());
+        } else {
+            log.debug("No payment waiting for {} result of order {}", result.getTransactionType(), result.getOrderId());
+        }
+    }
+
+    // Debits made through the bank's REST API by other clients need not use store order ids
+    private static boolean isStoreOrderId(String orderId) {
+        return orderId != null && !orderId.isEmpty() && orderId.chars().allMatch(Character::isDigit);
+    }
+}
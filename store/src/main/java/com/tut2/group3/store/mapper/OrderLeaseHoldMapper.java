@@ -0,0 +1,46 @@
+package com.tut2.group3.store.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.store.pojo.OrderLeaseHold;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderLeaseHoldMapper extends BaseMapper<OrderLeaseHold> {
+
+    @Update("UPDATE order_lease_holds SET status = #{to} WHERE order_id = #{orderId} AND status = #{from}")
+    int updateStatusByOrderId(@Param("orderId") String orderId, @Param("from") String from, @Param("to") String to);
+
+    @Update("<script>" +
+            "UPDATE order_lease_holds SET status = #{to} WHERE status = #{from} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("from") String from, @Param("to") String to);
+
+    @Select("SELECT * FROM order_lease_holds WHERE lease_id = #{leaseId}")
+    List<OrderLeaseHold> selectByLeaseId(@Param("leaseId") String leaseId);
+
+    /**
+     * Holds of the given orders that were confirmed or released, possibly by another instance
+     */
+    @Select("<script>" +
+            "SELECT * FROM order_lease_holds WHERE status != 'HELD' AND order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            "</script>")
+    List<OrderLeaseHold> selectFinishedByOrderIds(@Param("orderIds") List<String> orderIds);
+
+    /**
+     * One row per lease with sales nobody has settled yet, held either by this holder id in an earlier
+     * run of the process or by any holder whose lease expired before expiredBefore
+     */
+    @Select("SELECT lease_id, MIN(product_id) AS product_id, MIN(lease_expires_at) AS lease_expires_at " +
+            "FROM order_lease_holds " +
+            "WHERE status = 'SOLD' AND (holder_id = #{holderId} OR lease_expires_at < #{expiredBefore}) " +
+            "GROUP BY lease_id LIMIT #{limit}")
+    List<OrderLeaseHold> selectUnsettledLeases(@Param("holderId") String holderId,
+                                               @Param("expiredBefore") LocalDateTime expiredBefore,
+                                               @Param("limit") int limit);
+}
@@ -23,6 +23,7 @@ public class Order {
     private double totalAmount;
     private String reservationId; // Warehouse reservation ID
     private String transactionId; // Bank transaction ID
+    private LocalDateTime paymentDeadline; // When an async debit stops being awaited, null for synchronous payments
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
 
@@ -0,0 +1,36 @@
+package com.tut2.group3.store.pojo;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Units an order took from a stock lease, kept so any instance can confirm or release them
+ * and so sales the holder never settled can be recovered after it is gone
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("order_lease_holds")
+public class OrderLeaseHold {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String orderId;
+    private String leaseId;
+    private String holderId;
+    private Long productId;
+    private int quantity;
+    // HELD, SOLD, RELEASED, SETTLED (shipped through the lease) or BOUGHT_BACK (shipped by reservation)
+    private String status;
+    private LocalDateTime leaseExpiresAt;
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+
+}
@@ -55,6 +55,12 @@ public class OrderTimeoutScheduler {
                 if (updateTime == null) {
                     updateTime = order.getCreateTime();
                 }
+                // An async payment is awaited until its deadline by the instance that requested it, which then
+                // fails the order by itself; the timeout only counts from the deadline, for instances that died
+                if ("PENDING_PAYMENT".equals(order.getStatus()) && order.getPaymentDeadline() != null
+                        && order.getPaymentDeadline().isAfter(updateTime)) {
+                    updateTime = order.getPaymentDeadline();
+                }
 
                 // Calculate time difference in seconds
                 long secondsPassed = java.time.Duration.between(updateTime, now).getSeconds();
@@ -0,0 +1,38 @@
+package com.tut2.group3.store.scheduler;
+
+import com.tut2.group3.store.client.StockLeaseManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps this instance's stock leases in step with the warehouse:
+ * which products are leased, and batched settles, refills and returns of the leases themselves
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockLeaseScheduler {
+
+    private final StockLeaseManager stockLeaseManager;
+
+    @Scheduled(fixedDelayString = "${store.lease.products-refresh-ms:60000}", initialDelay = 0)
+    public void refreshLeaseEnabledProducts() {
+        try {
+            stockLeaseManager.refreshLeaseEnabledProducts();
+        } catch (Exception e) {
+            log.warn("Lease-enabled product refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${store.lease.settle-interval-ms:2000}",
+               initialDelayString = "${store.lease.settle-interval-ms:2000}")
+    public void maintainLeases() {
+        try {
+            stockLeaseManager.maintainLeases();
+        } catch (Exception e) {
+            log.error("Stock lease maintenance failed", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tut2.group3.store.scheduler;
+
+import com.tut2.group3.store.service.WaitingRoomService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets the next shoppers out of the flash-sale waiting rooms as stock allows
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WaitingRoomScheduler {
+
+    private final WaitingRoomService waitingRoomService;
+
+    @Scheduled(fixedDelayString = "${store.waiting-room.admit-interval-ms:1000}")
+    public void admit() {
+        try {
+            waitingRoomService.admit();
+        } catch (Exception e) {
+            log.error("Waiting room admission run failed", e);
+        }
+    }
+}
@@ -55,4 +55,15 @@ public interface OrderService {
      * @param reason Timeout reason
      */
     void cancelOrderDueToTimeout(Long orderId, String reason);
+
+    /**
+     * Reconcile a successful debit whose order stopped waiting for it (async payment mode)
+     * - Records the payment on an order still pending payment, so the timeout scheduler refunds it if the order goes no further
+     * - Refunds the debit if the order has since failed or been cancelled
+     * - Leaves orders that recorded the payment alone
+     *
+     * @param orderId Order ID the debit was made for
+     * @param transactionId Bank transaction ID of the debit
+     */
+    void reconcileUnclaimedDebit(Long orderId, Long transactionId);
 }
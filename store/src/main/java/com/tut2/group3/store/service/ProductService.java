@@ -1,4 +1,20 @@
 package com.tut2.group3.store.service;
 
+import com.tut2.group3.store.dto.warehouse.ProductDto;
+import com.tut2.group3.store.dto.warehouse.WarehouseDTO;
+import com.tut2.group3.store.pojo.Result;
+
+import java.util.List;
+
 public interface ProductService {
+
+    /**
+     * Product catalog from the warehouse, revalidated against the last copy
+     */
+    Result<List<ProductDto>> getAllProducts();
+
+    /**
+     * Warehouse list from the warehouse, revalidated against the last copy
+     */
+    Result<List<WarehouseDTO>> getAllWarehouses(String status);
 }
@@ -0,0 +1,218 @@
+package com.tut2.group3.store.service;
+
+import com.tut2.group3.store.client.StockLeaseManager;
+import com.tut2.group3.store.client.WarehouseClient;
+import com.tut2.group3.store.config.WaitingRoomProperties;
+import com.tut2.group3.store.dto.order.WaitingRoomStatusDto;
+import com.tut2.group3.store.dto.warehouse.CheckAvailabilityRequest;
+import com.tut2.group3.store.dto.warehouse.StockAvailabilityResponse;
+import com.tut2.group3.store.pojo.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waiting room for flash-sale products.
+ * Shoppers take a numbered ticket per product and are admitted in ticket order by {@link #admit()},
+ * no faster than the stock still unsold can serve them: each admission holds back the units the shopper
+ * asked for until their order attempt is over. Everyone else gets their place in line at once,
+ * and once the line is longer than the remaining stock could ever serve, new shoppers are turned away
+ * without touching the warehouse or the order saga.
+ * Rooms live in memory per store instance; a restart simply starts a new line.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitingRoomService {
+
+    private final WarehouseClient warehouseClient;
+    private final StockLeaseManager stockLeaseManager;
+    private final WaitingRoomProperties properties;
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Whether orders for the product go through the waiting room
+     */
+    public boolean isGated(Long productId) {
+        return properties.isEnabled() && properties.getProducts().contains(productId);
+    }
+
+    /**
+     * Join the product's line for the given number of units, or check the shopper's place in it when they
+     * already hold a ticket; a waiting shopper's latest quantity is the one admitted
+     */
+    public WaitingRoomStatusDto enter(Long productId, Long userId, int quantity) {
+        Room room = rooms.computeIfAbsent(productId, Room::new);
+        Ticket ticket = room.tickets.get(userId);
+        if (ticket == null) {
+            Integer remaining = room.remainingStock;
+            if (remaining != null && room.waitingCount() >= (long) Math.ceil(remaining * properties.getQueueFactor())) {
+                String status = remaining == 0 ? WaitingRoomStatusDto.SOLD_OUT : WaitingRoomStatusDto.QUEUE_FULL;
+                return new WaitingRoomStatusDto(productId, status, null, null, remaining);
+            }
+            ticket = room.tickets.computeIfAbsent(userId, room::issue);
+        }
+        if (!ticket.admitted) {
+            ticket.quantity = Math.max(1, quantity);
+        }
+        ticket.lastSeenMillis = System.currentTimeMillis();
+        return describe(room, ticket);
+    }
+
+    /**
+     * Give up the shopper's ticket once their order attempt is over, freeing the admission for the next in line
+     */
+    public void leave(Long productId, Long userId) {
+        Room room = rooms.get(productId);
+        if (room == null) {
+            return;
+        }
+        Ticket ticket = room.tickets.remove(userId);
+        if (ticket != null) {
+            room.admitted.remove(ticket);
+        }
+    }
+
+    /**
+     * Refresh each room's remaining stock, drop admissions that were never used and admit the next
+     * shoppers in ticket order. The units of admissions outstanding count against the stock, so the room
+     * never lets in more than it can sell. A shopper whose units do not fit waits at the head of the line,
+     * keeping the order, unless nobody else is admitted: then no units will come back, so they are let in
+     * and the warehouse tells them what is left.
+     */
+    public void admit() {
+        long now = System.currentTimeMillis();
+        long admissionTtlMillis = properties.getAdmissionTtlSeconds() * 1000L;
+        long abandonMillis = properties.getAbandonAfterSeconds() * 1000L;
+
+        for (Room room : rooms.values()) {
+            Integer remaining = fetchRemainingStock(room.productId);
+            if (remaining != null) {
+                room.remainingStock = remaining;
+            }
+            if (room.remainingStock == null) {
+                continue;
+            }
+
+            room.admitted.removeIf(ticket -> {
+                if (now - ticket.admittedAtMillis <= admissionTtlMillis) {
+                    return false;
+                }
+                room.tickets.remove(ticket.userId, ticket);
+                return true;
+            });
+
+            int unitsLeft = room.remainingStock - room.admitted.stream().mapToInt(t -> t.quantity).sum();
+            int admittedNow = 0;
+            Ticket ticket;
+            // Only this run takes tickets off the line, so the head seen by peek is the one polled
+            while (admittedNow < properties.getMaxAdmissionsPerRun() && (ticket = room.waiting.peek()) != null) {
+                if (room.tickets.get(ticket.userId) != ticket) {
+                    room.admittedThrough = room.waiting.poll().number;
+                    continue;
+                }
+                if (now - ticket.lastSeenMillis > abandonMillis) {
+                    // Shopper stopped checking their place; let the next one in instead
+                    room.admittedThrough = room.waiting.poll().number;
+                    room.tickets.remove(ticket.userId, ticket);
+                    continue;
+                }
+                if (ticket.quantity > unitsLeft && !(room.admitted.isEmpty() && unitsLeft > 0)) {
+                    break;
+                }
+                room.admittedThrough = room.waiting.poll().number;
+                ticket.admittedAtMillis = now;
+                ticket.admitted = true;
+                room.admitted.add(ticket);
+                unitsLeft -= ticket.quantity;
+                admittedNow++;
+            }
+            if (admittedNow > 0) {
+                log.info("Waiting room for product {}: admitted {}, {} waiting, {} in stock",
+                        room.productId, admittedNow, room.waitingCount(), room.remainingStock);
+            }
+        }
+    }
+
+    private WaitingRoomStatusDto describe(Room room, Ticket ticket) {
+        if (ticket.admitted) {
+            return new WaitingRoomStatusDto(room.productId, WaitingRoomStatusDto.ADMITTED, ticket.number, 0L,
+                    room.remainingStock);
+        }
+        String status = Integer.valueOf(0).equals(room.remainingStock)
+                ? WaitingRoomStatusDto.SOLD_OUT
+                : WaitingRoomStatusDto.QUEUED;
+        return new WaitingRoomStatusDto(room.productId, status, ticket.number,
+                Math.max(1, ticket.number - room.admittedThrough), room.remainingStock);
+    }
+
+    /**
+     * Units still for sale: the warehouse's available stock plus what this instance holds on lease.
+     * Returns null when the warehouse cannot be asked, keeping the last known figure.
+     */
+    private Integer fetchRemainingStock(Long productId) {
+        try {
+            Result<StockAvailabilityResponse> result =
+                    warehouseClient.checkAvailability(new CheckAvailabilityRequest(productId, 1));
+            if (result == null || result.getData() == null || result.getData().getTotalAvailableQuantity() == null) {
+                log.warn("No stock figure for waiting room product {}: {}", productId,
+                        result != null ? result.getMessage() : null);
+                return null;
+            }
+            return result.getData().getTotalAvailableQuantity() + stockLeaseManager.remainingLeased(productId);
+        } catch (Exception e) {
+            log.warn("Stock refresh for waiting room product {} failed: {}", productId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Room {
+        final Long productId;
+        final AtomicLong issued = new AtomicLong();
+        final Queue<Ticket> waiting = new ConcurrentLinkedQueue<>();
+        final Set<Ticket> admitted = ConcurrentHashMap.newKeySet();
+        final Map<Long, Ticket> tickets = new ConcurrentHashMap<>();
+        // Highest ticket number that has left the line, admitted or skipped
+        volatile long admittedThrough;
+        // As of the last admission run, null before the first
+        volatile Integer remainingStock;
+
+        Room(Long productId) {
+            this.productId = productId;
+        }
+
+        // Numbering and queueing together keep the line in ticket order
+        synchronized Ticket issue(Long userId) {
+            Ticket ticket = new Ticket(userId, issued.incrementAndGet());
+            waiting.add(ticket);
+            return ticket;
+        }
+
+        long waitingCount() {
+            return issued.get() - admittedThrough;
+        }
+    }
+
+    private static final class Ticket {
+        final Long userId;
+        final long number;
+        volatile int quantity = 1;
+        volatile long lastSeenMillis;
+        volatile long admittedAtMillis;
+        volatile boolean admitted;
+
+        Ticket(Long userId, long number) {
+            this.userId = userId;
+            this.number = number;
+            this.lastSeenMillis = System.currentTimeMillis();
+        }
+    }
+}
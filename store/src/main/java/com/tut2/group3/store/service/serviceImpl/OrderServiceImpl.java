@@ -1,8 +1,12 @@
 package com.tut2.group3.store.service.serviceImpl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.tut2.group3.store.client.BankClient;
+import com.tut2.group3.store.client.BankPaymentGateway;
+import com.tut2.group3.store.client.StockLeaseManager;
 import com.tut2.group3.store.client.WarehouseClient;
+import com.tut2.group3.store.config.PaymentProperties;
 import com.tut2.group3.store.dto.bank.BankRequestDto;
 import com.tut2.group3.store.dto.bank.TransactionDto;
 import com.tut2.group3.store.dto.deliveryco.DeliveryCancellationDto;
@@ -45,7 +49,10 @@ import java.util.stream.Collectors;
 public class OrderServiceImpl implements OrderService {
 
     private final WarehouseClient warehouseClient;
+    private final StockLeaseManager stockLeaseManager;
     private final BankClient bankClient;
+    private final BankPaymentGateway bankPaymentGateway;
+    private final PaymentProperties paymentProperties;
     private final MessagePublisher messagePublisher;
     private final OrderMapper orderMapper;
     private final OrderItemMapper orderItemMapper;
@@ -70,16 +77,20 @@ public class OrderServiceImpl implements OrderService {
             // Step 1: Validate order with warehouse
             log.info("Step 1: Validating order with warehouse...");
             OrderValidationRequest validationRequest = buildValidationRequest(orderCreateRequestDTO);
-            Result<OrderValidationResponse> validationResult = warehouseClient.validateOrder(validationRequest);
-            
-            if (validationResult.getCode() != 200 || !validationResult.getData().getValid()) {
-                String errorMessage = validationResult.getData() != null ? 
-                    validationResult.getData().getMessage() : "Inventory validation failed";
-                log.error("Inventory validation failed: {}", errorMessage);
-                sendOrderFailureNotification(null, user.getEmail(), "Insufficient inventory", errorMessage);
-                return Result.error(400, errorMessage);
+            if (validationRequest.getItems().isEmpty()) {
+                log.info("All items are sold from leased stock, skipping warehouse validation");
+            } else {
+                Result<OrderValidationResponse> validationResult = warehouseClient.validateOrder(validationRequest);
+
+                if (validationResult.getCode() != 200 || !validationResult.getData().getValid()) {
+                    String errorMessage = validationResult.getData() != null ?
+                        validationResult.getData().getMessage() : "Inventory validation failed";
+                    log.error("Inventory validation failed: {}", errorMessage);
+                    sendOrderFailureNotification(null, user.getEmail(), "Insufficient inventory", errorMessage);
+                    return Result.error(400, errorMessage);
+                }
+                log.info("Inventory validation successful");
             }
-            log.info("Inventory validation successful");
 
             // Delay for testing cancel functionality
             log.info("Waiting 3 seconds before creating order...");
@@ -106,6 +117,18 @@ public class OrderServiceImpl implements OrderService {
             // Step 3: Reserve stock for each item with intelligent warehouse allocation
             reservationId = null;
             for (OrderItemRequestDTO item : orderCreateRequestDTO.getItems()) {
+                // Hot products come out of this instance's leased stock without a warehouse call
+                String leaseId = stockLeaseManager.tryReserve(String.valueOf(order.getId()),
+                    item.getProductId(), item.getQuantity());
+                if (leaseId != null) {
+                    log.info("Reserved {} units of product {} from stock lease {}",
+                        item.getQuantity(), item.getProductId(), leaseId);
+                    if (reservationId == null) {
+                        reservationId = leaseId;
+                    }
+                    continue;
+                }
+
                 // Check stock availability and get intelligent warehouse allocation
                 CheckAvailabilityRequest availabilityRequest = new CheckAvailabilityRequest(
                     item.getProductId(),
@@ -116,6 +139,7 @@ public class OrderServiceImpl implements OrderService {
                 if (availabilityResult.getCode() != 200 || availabilityResult.getData() == null || !availabilityResult.getData().getAvailable()) {
                     log.error("Stock not available for productId {}: {}", item.getProductId(),
                         availabilityResult.getData() != null ? availabilityResult.getData().getTotalAvailableQuantity() : 0);
+                    stockLeaseManager.release(String.valueOf(order.getId()));
                     updateOrderStatusImmediate(order.getId(), "FAILED");
                     sendOrderFailureNotification(order.getId(), user.getEmail(), "Insufficient inventory",
                         "Stock not available for product " + item.getProductId());
@@ -132,6 +156,7 @@ public class OrderServiceImpl implements OrderService {
 
                 if (warehouseAllocations.isEmpty()) {
                     log.error("No warehouse allocations available for productId {}", item.getProductId());
+                    stockLeaseManager.release(String.valueOf(order.getId()));
                     updateOrderStatusImmediate(order.getId(), "FAILED");
                     sendOrderFailureNotification(order.getId(), user.getEmail(), "Warehouse allocation failed",
                         "No warehouse can fulfill product " + item.getProductId());
@@ -150,14 +175,15 @@ public class OrderServiceImpl implements OrderService {
                 Result<StockReservationResponse> reserveResult = warehouseClient.reserveStock(reserveRequest);
                 if (reserveResult.getCode() != 200 || reserveResult.getData() == null) {
                     log.error("Failed to reserve stock for productId {}: {}", item.getProductId(), reserveResult.getMessage());
+                    stockLeaseManager.release(String.valueOf(order.getId()));
                     // Rollback: set FAILED, send notify, return error
                     updateOrderStatusImmediate(order.getId(), "FAILED");
                     sendOrderFailureNotification(order.getId(), user.getEmail(), "Stock reservation failed",
                         "Failed to reserve stock for product " + item.getProductId());
                     return Result.error(400, "Failed to reserve stock for productId " + item.getProductId());
                 }
-                // use the first reservationId (for order-level tracking)
-                if (reservationId == null) {
+                // use the first warehouse reservationId (for order-level tracking)
+                if (reservationId == null || StockLeaseManager.isLeaseId(reservationId)) {
                     reservationId = reserveResult.getData().getReservationId();
                 }
             }
@@ -180,6 +206,20 @@ public class OrderServiceImpl implements OrderService {
                 return Result.success("Order was cancelled during processing.", null);
             }
 
+            // Step 5 (async mode): publish the debit and return; the saga resumes when the bank answers
+            if (paymentProperties.isAsync()) {
+                log.info("Step 5: Requesting payment through the bank request queue...");
+                requestPaymentAsync(order, orderCreateRequestDTO, user, reservationId);
+                log.info("Order Status: PENDING_PAYMENT (order resumes when the payment result arrives)");
+
+                OrderResponseDto response = new OrderResponseDto();
+                response.setOrderId(order.getId());
+                response.setStatus(order.getStatus());
+                response.setTotalAmount(order.getTotalAmount());
+                response.setCreateTime(order.getCreateTime());
+                return new Result<>(202, "Order accepted. Awaiting payment.", response);
+            }
+
             // Step 5: Process payment and update status (Independent transaction - immediately visible)
             log.info("Step 5: Processing payment through bank...");
             Result<TransactionDto> paymentResult = processPaymentAndUpdateStatus(order.getId(), user);
@@ -659,6 +699,39 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    @Override
+    public void reconcileUnclaimedDebit(Long orderId, Long transactionId) {
+        Order order = orderMapper.selectById(orderId);
+        if (order == null) {
+            log.warn("Debit succeeded for unknown order {}", orderId);
+            return;
+        }
+        if (order.getTransactionId() != null) {
+            return;
+        }
+
+        if ("PENDING_PAYMENT".equals(order.getStatus())) {
+            // No saga is waiting for it (its instance restarted, or the wait timed out just now); record the
+            // payment so the timeout scheduler refunds it along with the stock if the order goes no further
+            orderMapper.update(null, new UpdateWrapper<Order>()
+                    .eq("id", orderId)
+                    .eq("status", "PENDING_PAYMENT")
+                    .isNull("transaction_id")
+                    .set("status", "PAYMENT_SUCCESSFUL")
+                    .set("transaction_id", String.valueOf(transactionId))
+                    .set("update_time", LocalDateTime.now()));
+            log.warn("Order {}: debit succeeded with no saga waiting. Order Status: PENDING_PAYMENT -> PAYMENT_SUCCESSFUL", orderId);
+        } else if ("FAILED".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus())) {
+            log.warn("Order {} is {} but its debit succeeded afterwards. Refunding...", orderId, order.getStatus());
+            User user = userMapper.selectById(order.getUserId());
+            if (user == null) {
+                log.error("User {} not found for order {}, refund needs manual handling", order.getUserId(), orderId);
+                return;
+            }
+            processRefund(order, user);
+        }
+    }
+
     @Override
     public Result getOrderById(Long orderId) {
         try {
@@ -843,8 +916,14 @@ public class OrderServiceImpl implements OrderService {
 
     // ============= Private Helper Methods =============
 
+    /**
+     * Validation request for the items not sold from leased stock.
+     * Leased units are held as reserved at the warehouse, so validating them there would fail;
+     * they are checked against the local lease when reserved instead.
+     */
     private OrderValidationRequest buildValidationRequest(OrderCreateRequestDTO request) {
         List<OrderValidationRequest.OrderItem> items = request.getItems().stream()
+                .filter(item -> !stockLeaseManager.isLeased(item.getProductId()))
                 .map(item -> new OrderValidationRequest.OrderItem(item.getProductId(), item.getQuantity()))
                 .collect(Collectors.toList());
         
@@ -915,28 +994,174 @@ public class OrderServiceImpl implements OrderService {
     }
 
     private Result<TransactionDto> processPayment(Order order, User user) {
+        return bankClient.handleDebit(buildDebitRequest(order, user));
+    }
+
+    private Result<TransactionDto> processRefund(Order order, User user) {
+        BankRequestDto refundRequest = buildRefundRequest(order, user);
+        if (paymentProperties.isAsync()) {
+            requestRefundAsync(order.getId(), user, refundRequest);
+            return Result.success("Refund requested", null);
+        }
+        return bankClient.handleRefund(refundRequest);
+    }
+
+    private BankRequestDto buildDebitRequest(Order order, User user) {
         BankRequestDto bankRequest = new BankRequestDto();
         bankRequest.setOrderId(String.valueOf(order.getId()));
         bankRequest.setUserId(String.valueOf(user.getId()));
         bankRequest.setAmount(BigDecimal.valueOf(order.getTotalAmount()));
         bankRequest.setCurrency("AUD");
-
-        return bankClient.handleDebit(bankRequest);
+        return bankRequest;
     }
 
-    private Result<TransactionDto> processRefund(Order order, User user) {
-        BankRequestDto refundRequest = new BankRequestDto();
-        refundRequest.setOrderId(String.valueOf(order.getId()));
-        refundRequest.setUserId(String.valueOf(user.getId()));
-        refundRequest.setAmount(BigDecimal.valueOf(order.getTotalAmount()));
-        refundRequest.setCurrency("AUD");
+    private BankRequestDto buildRefundRequest(Order order, User user) {
+        BankRequestDto refundRequest = buildDebitRequest(order, user);
         // Set idempotency key to prevent duplicate refunds for the same order
         refundRequest.setIdempotencyKey("REFUND-" + order.getId());
+        return refundRequest;
+    }
 
-        return bankClient.handleRefund(refundRequest);
+    /**
+     * Publish the order's debit to the bank request queue; the saga resumes in {@link #resumeAfterPayment}
+     * on a payment thread once the result arrives or times out, holding no thread while it waits
+     */
+    private void requestPaymentAsync(Order order, OrderCreateRequestDTO request, User user, String reservationId) {
+        // Stored so that every instance's timeout scheduler leaves the order to this one until the wait is over
+        LocalDateTime deadline = LocalDateTime.now().plusSeconds(paymentProperties.getResultTimeoutSeconds());
+        orderMapper.update(null, new UpdateWrapper<Order>()
+                .eq("id", order.getId())
+                .set("payment_deadline", deadline));
+        order.setPaymentDeadline(deadline);
+        bankPaymentGateway.debit(buildDebitRequest(order, user))
+                .whenComplete((paymentResult, error) ->
+                        resumeAfterPayment(order.getId(), request, user, reservationId, paymentResult, error));
+    }
+
+    /**
+     * Steps 5-7 of order placement once the bank has answered an async debit
+     */
+    void resumeAfterPayment(Long orderId, OrderCreateRequestDTO request, User user, String reservationId,
+                                    Result<TransactionDto> paymentResult, Throwable error) {
+        boolean paymentProcessed = false;
+        try {
+            if (error != null || paymentResult.getCode() != 200) {
+                String reason = error != null ? "No payment result from the bank in time" : paymentResult.getMessage();
+                log.error("Payment failed for order {}: {}", orderId, reason);
+                // Conditional, so a late result recorded by the result listener meanwhile is not overwritten
+                int failed = orderMapper.update(null, new UpdateWrapper<Order>()
+                        .eq("id", orderId)
+                        .eq("status", "PENDING_PAYMENT")
+                        .isNull("transaction_id")
+                        .set("status", "FAILED")
+                        .set("update_time", LocalDateTime.now()));
+                if (failed == 0) {
+                    failAfterLatePayment(orderId, user, reservationId);
+                    return;
+                }
+                releaseReservedStock(String.valueOf(orderId), reservationId, "Payment failed");
+                log.error("Order Status: PENDING_PAYMENT -> FAILED (Reason: Payment failed)");
+                sendOrderFailureNotification(orderId, user.getEmail(), "Payment failed", reason);
+                return;
+            }
+
+            TransactionDto transaction = paymentResult.getData();
+            int recorded = orderMapper.update(null, new UpdateWrapper<Order>()
+                    .eq("id", orderId)
+                    .eq("status", "PENDING_PAYMENT")
+                    .set("status", "PAYMENT_SUCCESSFUL")
+                    .set("transaction_id", String.valueOf(transaction.getId()))
+                    .set("update_time", LocalDateTime.now()));
+            if (recorded == 0) {
+                Order order = orderMapper.selectById(orderId);
+                log.warn("Order {} was {} before its payment arrived. Refunding...", orderId,
+                        order != null ? order.getStatus() : "deleted");
+                if (order != null) {
+                    processRefund(order, user);
+                }
+                return;
+            }
+            paymentProcessed = true;
+            log.info("Payment successful. Transaction ID: {}", transaction.getId());
+            log.info("Order Status: PENDING_PAYMENT -> PAYMENT_SUCCESSFUL");
+
+            log.info("Step 6: Sending delivery request to DeliveryCo...");
+            sendDeliveryRequestAndUpdateStatus(orderId, request, user);
+            log.info("Order Status: PAYMENT_SUCCESSFUL -> DELIVERY_REQUESTED");
+
+            log.info("Step 7: Confirming reservation with warehouse...");
+            confirmReservation(String.valueOf(orderId), reservationId);
+            log.info("Order placement completed for order {}. Awaiting delivery.", orderId);
+
+        } catch (BusinessException e) {
+            // Cancelled after the payment was recorded; the cancellation refunded it
+            log.info("Order {} placement stopped: {}", orderId, e.getMessage());
+        } catch (Exception e) {
+            log.error("Order {} failed after payment: {}", orderId, e.getMessage(), e);
+            try {
+                Order order = orderMapper.selectById(orderId);
+                if (paymentProcessed && order != null) {
+                    processRefund(order, user);
+                }
+                releaseReservedStock(String.valueOf(orderId), reservationId, "Order processing failed");
+                sendDeliveryCancellationMessage(orderId, user.getEmail(), "Order processing failed with exception");
+                updateOrderStatusImmediate(orderId, "FAILED");
+                String refundMsg = paymentProcessed ? "Payment has been refunded to your account." : "No payment was processed.";
+                sendOrderFailureNotification(orderId, user.getEmail(), "Order processing failed", refundMsg);
+            } catch (Exception rollbackEx) {
+                log.error("Error during rollback: {}", rollbackEx.getMessage(), rollbackEx);
+            }
+        }
+    }
+
+    /**
+     * The saga gave up on its payment, but the debit succeeded and was recorded before the order could be
+     * failed. Nothing will take the order further, so it is failed with its stock released and the debit
+     * refunded. An order cancelled while paying was already handled by the cancellation.
+     */
+    private void failAfterLatePayment(Long orderId, User user, String reservationId) {
+        Order order = orderMapper.selectById(orderId);
+        if (order == null || !"PAYMENT_SUCCESSFUL".equals(order.getStatus()) || order.getTransactionId() == null) {
+            return;
+        }
+        int failed = orderMapper.update(null, new UpdateWrapper<Order>()
+                .eq("id", orderId)
+                .eq("status", "PAYMENT_SUCCESSFUL")
+                .set("status", "FAILED")
+                .set("update_time", LocalDateTime.now()));
+        if (failed == 0) {
+            return;
+        }
+        log.warn("Order {}: payment arrived after the wait gave up. Order Status: PAYMENT_SUCCESSFUL -> FAILED. Refunding...", orderId);
+        releaseReservedStock(String.valueOf(orderId), reservationId, "Payment arrived too late");
+        processRefund(order, user);
+        sendOrderFailureNotification(orderId, user.getEmail(), "Payment failed",
+                "Payment was not confirmed in time. Payment has been refunded to your account.");
+    }
+
+    /**
+     * Publish a refund to the bank request queue; a refund the bank declines or never answers
+     * is reported to the customer for manual handling
+     */
+    private void requestRefundAsync(Long orderId, User user, BankRequestDto refundRequest) {
+        bankPaymentGateway.refund(refundRequest).whenComplete((refundResult, error) -> {
+            if (error == null && refundResult.getCode() == 200) {
+                log.info("Refund for order {} completed. Transaction ID: {}", orderId, refundResult.getData().getId());
+                return;
+            }
+            String reason = error != null ? "No refund result from the bank in time" : refundResult.getMessage();
+            log.error("Refund for order {} failed: {}", orderId, reason);
+            sendOrderFailureNotification(orderId, user.getEmail(), "Refund failed",
+                    "Please contact customer service. Refund error: " + reason);
+        });
     }
 
     private void confirmReservation(String orderId, String reservationId) {
+        stockLeaseManager.confirm(orderId);
+        if (StockLeaseManager.isLeaseId(reservationId)) {
+            // Every item came from leased stock; the sale is settled with the warehouse in the next batch
+            return;
+        }
         ConfirmReservationRequest confirmRequest = new ConfirmReservationRequest(orderId, reservationId);
         Result<ConfirmReservationResponse> confirmResult = warehouseClient.confirmReservation(confirmRequest);
         
@@ -946,6 +1171,10 @@ public class OrderServiceImpl implements OrderService {
     }
 
     private void releaseReservedStock(String orderId, String reservationId, String reason) {
+        stockLeaseManager.release(orderId);
+        if (StockLeaseManager.isLeaseId(reservationId)) {
+            return;
+        }
         try {
             ReleaseStockRequest releaseRequest = new ReleaseStockRequest(orderId, reservationId, reason);
             Result<ReleaseStockResponse> releaseResult = warehouseClient.releaseStock(releaseRequest);
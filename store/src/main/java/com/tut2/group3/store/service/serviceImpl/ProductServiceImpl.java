@@ -1,8 +1,31 @@
 package com.tut2.group3.store.service.serviceImpl;
 
+import com.tut2.group3.store.client.WarehouseCatalogCache;
+import com.tut2.group3.store.client.WarehouseClient;
+import com.tut2.group3.store.dto.warehouse.ProductDto;
+import com.tut2.group3.store.dto.warehouse.WarehouseDTO;
+import com.tut2.group3.store.pojo.Result;
 import com.tut2.group3.store.service.ProductService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
+@RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
+
+    private final WarehouseClient warehouseClient;
+    private final WarehouseCatalogCache warehouseCatalogCache;
+
+    @Override
+    public Result<List<ProductDto>> getAllProducts() {
+        return warehouseCatalogCache.fetch("products", warehouseClient::getAllProducts);
+    }
+
+    @Override
+    public Result<List<WarehouseDTO>> getAllWarehouses(String status) {
+        return warehouseCatalogCache.fetch("warehouses:" + status,
+                etag -> warehouseClient.getAllWarehouses(status, etag));
+    }
 }
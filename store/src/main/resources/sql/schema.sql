@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS order_lease_holds;
 DROP TABLE IF EXISTS order_item;
 DROP TABLE IF EXISTS orders;
 DROP TABLE IF EXISTS users;
@@ -18,6 +19,7 @@ CREATE TABLE orders (
     `total_amount` DECIMAL(10,2) NOT NULL,
     `reservation_id` VARCHAR(255),
     `transaction_id` VARCHAR(255),
+    `payment_deadline` DATETIME NULL,
     `create_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     `update_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     PRIMARY KEY (`id`),
@@ -36,3 +38,20 @@ CREATE TABLE order_item (
     PRIMARY KEY (`id`),
     CONSTRAINT `fk_order_item_order` FOREIGN KEY (`order_id`) REFERENCES `orders`(`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE order_lease_holds (
+    `id` BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
+    `order_id` VARCHAR(64) NOT NULL,
+    `lease_id` VARCHAR(64) NOT NULL,
+    `holder_id` VARCHAR(64) NOT NULL,
+    `product_id` BIGINT UNSIGNED NOT NULL,
+    `quantity` INT NOT NULL,
+    `status` VARCHAR(20) NOT NULL,
+    `lease_expires_at` DATETIME NOT NULL,
+    `create_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    `update_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    INDEX `idx_lease_holds_order_id` (`order_id`),
+    INDEX `idx_lease_holds_lease_id` (`lease_id`),
+    INDEX `idx_lease_holds_status_expiry` (`status`, `lease_expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,139 @@
+package com.tut2.group3.store.client;
+
+import com.tut2.group3.store.config.PaymentProperties;
+import com.tut2.group3.store.config.RabbitMQConfig;
+import com.tut2.group3.store.dto.bank.BankRequestDto;
+import com.tut2.group3.store.dto.bank.TransactionDto;
+import com.tut2.group3.store.dto.bank.TransactionRequestEventDto;
+import com.tut2.group3.store.dto.bank.TransactionResultEventDto;
+import com.tut2.group3.store.pojo.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BankPaymentGatewayTest {
+
+    private static final String REPLY_QUEUE = "store.bank-replies.test";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private BankPaymentGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        PaymentProperties properties = new PaymentProperties();
+        properties.setResultTimeoutSeconds(1);
+        properties.setResumeThreads(1);
+        gateway = new BankPaymentGateway(rabbitTemplate, properties, new Queue(REPLY_QUEUE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    void debitIsPublishedWithThisInstancesReplyQueueAndCompletedByItsResult() throws Exception {
+        CompletableFuture<Result<TransactionDto>> future = gateway.debit(request("42"));
+
+        ArgumentCaptor<TransactionRequestEventDto> event = ArgumentCaptor.forClass(TransactionRequestEventDto.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.BANK_REQUEST_QUEUE), event.capture(),
+                any(MessagePostProcessor.class));
+        assertEquals(TransactionRequestEventDto.DEBIT_REQUEST, event.getValue().getEventType());
+        assertEquals(REPLY_QUEUE, event.getValue().getReplyTo());
+
+        assertTrue(gateway.onResult(result("42", "DEBIT", "SUCCEEDED")));
+
+        Result<TransactionDto> outcome = future.get(1, TimeUnit.SECONDS);
+        assertEquals(200, outcome.getCode());
+        assertEquals(7L, outcome.getData().getId());
+    }
+
+    @Test
+    void declinedResultCompletesWithAnError() throws Exception {
+        CompletableFuture<Result<TransactionDto>> future = gateway.debit(request("43"));
+
+        TransactionResultEventDto declined = result("43", "DEBIT", "FAILED");
+        declined.setMessage("Insufficient funds");
+        assertTrue(gateway.onResult(declined));
+
+        Result<TransactionDto> outcome = future.get(1, TimeUnit.SECONDS);
+        assertEquals(400, outcome.getCode());
+        assertEquals("Insufficient funds", outcome.getMessage());
+    }
+
+    @Test
+    void repeatedSendSharesTheFirstRequestsResult() {
+        CompletableFuture<Result<TransactionDto>> first = gateway.debit(request("44"));
+        CompletableFuture<Result<TransactionDto>> repeat = gateway.debit(request("44"));
+
+        assertSame(first, repeat);
+        verify(rabbitTemplate, times(1)).convertAndSend(eq(""), eq(RabbitMQConfig.BANK_REQUEST_QUEUE),
+                any(Object.class), any(MessagePostProcessor.class));
+    }
+
+    @Test
+    void unansweredRequestTimesOutAndItsLateResultIsLeftToReconcile() {
+        CompletableFuture<Result<TransactionDto>> future = gateway.debit(request("45"));
+
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () -> future.get(3, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+
+        assertFalse(gateway.onResult(result("45", "DEBIT", "SUCCEEDED")));
+    }
+
+    @Test
+    void resultOfAnotherTypeDoesNotCompleteTheRequest() {
+        CompletableFuture<Result<TransactionDto>> future = gateway.debit(request("46"));
+
+        assertFalse(gateway.onResult(result("46", "REFUND", "SUCCEEDED")));
+        assertFalse(future.isDone());
+    }
+
+    private BankRequestDto request(String orderId) {
+        BankRequestDto request = new BankRequestDto();
+        request.setOrderId(orderId);
+        request.setUserId("1");
+        request.setAmount(new BigDecimal("25.00"));
+        request.setCurrency("AUD");
+        return request;
+    }
+
+    private TransactionResultEventDto result(String orderId, String type, String status) {
+        TransactionResultEventDto result = new TransactionResultEventDto();
+        result.setTransactionId(7L);
+        result.setOrderId(orderId);
+        result.setUserId("1");
+        result.setTransactionType(type);
+        result.setStatus(status);
+        result.setAmount(new BigDecimal("25.00"));
+        result.setCurrency("AUD");
+        return result;
+    }
+}
@@ -0,0 +1,347 @@
+package com.tut2.group3.store.client;
+
+import com.tut2.group3.store.config.StockLeaseProperties;
+import com.tut2.group3.store.dto.warehouse.AcquireLeaseRequest;
+import com.tut2.group3.store.dto.warehouse.ConfirmReservationRequest;
+import com.tut2.group3.store.dto.warehouse.ConfirmReservationResponse;
+import com.tut2.group3.store.dto.warehouse.ReserveStockRequest;
+import com.tut2.group3.store.dto.warehouse.SettleLeaseRequest;
+import com.tut2.group3.store.dto.warehouse.StockAvailabilityResponse;
+import com.tut2.group3.store.dto.warehouse.StockLeaseResponse;
+import com.tut2.group3.store.dto.warehouse.StockReservationResponse;
+import com.tut2.group3.store.dto.warehouse.WarehouseInfo;
+import com.tut2.group3.store.mapper.OrderLeaseHoldMapper;
+import com.tut2.group3.store.pojo.OrderLeaseHold;
+import com.tut2.group3.store.pojo.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockLeaseManagerTest {
+
+    private static final Long PRODUCT_ID = 7L;
+
+    @Mock
+    private WarehouseClient warehouseClient;
+
+    // Stands in for the order_lease_holds table shared by every store instance; not every test runs every query
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private OrderLeaseHoldMapper orderLeaseHoldMapper;
+
+    private final List<OrderLeaseHold> holds = new ArrayList<>();
+
+    private StockLeaseProperties properties;
+
+    private StockLeaseManager manager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockLeaseProperties();
+        properties.setHolderId("store-test");
+        properties.setBlockSize(20);
+        properties.setRefillBelow(5);
+        manager = new StockLeaseManager(warehouseClient, orderLeaseHoldMapper, properties);
+        when(warehouseClient.getLeaseEnabledProducts()).thenReturn(Result.success(List.of(PRODUCT_ID)));
+        manager.refreshLeaseEnabledProducts();
+
+        when(orderLeaseHoldMapper.insert(any(OrderLeaseHold.class))).thenAnswer(invocation -> {
+            OrderLeaseHold hold = invocation.getArgument(0);
+            hold.setId((long) holds.size() + 1);
+            holds.add(hold);
+            return 1;
+        });
+        when(orderLeaseHoldMapper.updateStatusByOrderId(anyString(), anyString(), anyString())).thenAnswer(invocation ->
+                move(holds.stream().filter(hold -> hold.getOrderId().equals(invocation.getArgument(0))).toList(),
+                        invocation.getArgument(1), invocation.getArgument(2)));
+        when(orderLeaseHoldMapper.updateStatusByIds(any(), anyString(), anyString())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return move(holds.stream().filter(hold -> ids.contains(hold.getId())).toList(),
+                    invocation.getArgument(1), invocation.getArgument(2));
+        });
+        when(orderLeaseHoldMapper.selectByLeaseId(anyString())).thenAnswer(invocation ->
+                holds.stream().filter(hold -> hold.getLeaseId().equals(invocation.getArgument(0))).toList());
+        when(orderLeaseHoldMapper.selectFinishedByOrderIds(any())).thenAnswer(invocation -> {
+            List<String> orderIds = invocation.getArgument(0);
+            return holds.stream()
+                    .filter(hold -> orderIds.contains(hold.getOrderId()) && !"HELD".equals(hold.getStatus()))
+                    .toList();
+        });
+        when(orderLeaseHoldMapper.selectUnsettledLeases(anyString(), any(), anyInt())).thenAnswer(invocation -> {
+            String holderId = invocation.getArgument(0);
+            LocalDateTime expiredBefore = invocation.getArgument(1);
+            Map<String, OrderLeaseHold> byLease = new LinkedHashMap<>();
+            holds.stream()
+                    .filter(hold -> "SOLD".equals(hold.getStatus()))
+                    .filter(hold -> hold.getHolderId().equals(holderId) || hold.getLeaseExpiresAt().isBefore(expiredBefore))
+                    .forEach(hold -> byLease.putIfAbsent(hold.getLeaseId(), hold));
+            return List.copyOf(byLease.values());
+        });
+    }
+
+    @Test
+    void ordersTakeConfirmAndReleaseUnitsOfOneLease() {
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        when(warehouseClient.settleLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+
+        assertEquals("LEASE-1", manager.tryReserve("order-1", PRODUCT_ID, 5));
+        assertEquals("LEASE-1", manager.tryReserve("order-2", PRODUCT_ID, 8));
+        assertEquals(7, manager.remainingLeased(PRODUCT_ID));
+        // More than the lease has left: the order reserves with the warehouse instead
+        assertNull(manager.tryReserve("order-3", PRODUCT_ID, 10));
+
+        manager.release("order-2");
+        manager.confirm("order-1");
+        assertEquals(15, manager.remainingLeased(PRODUCT_ID));
+
+        manager.maintainLeases();
+
+        ArgumentCaptor<SettleLeaseRequest> settle = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient).settleLease(eq("LEASE-1"), settle.capture());
+        assertEquals(5, settle.getValue().getSoldQuantity());
+        verify(warehouseClient, times(1)).acquireLease(any(AcquireLeaseRequest.class));
+    }
+
+    @Test
+    void refillSellsFromANewLeaseAndReturnsTheOldOneOnceItsOrdersFinish() {
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class))).thenReturn(
+                Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))),
+                Result.success(lease("LEASE-2", 20, LocalDateTime.now().plusMinutes(2))));
+
+        assertEquals("LEASE-1", manager.tryReserve("order-1", PRODUCT_ID, 16));
+        manager.maintainLeases();
+
+        // Four units left is below refill-below, so new orders go to the fresh lease
+        assertEquals("LEASE-2", manager.tryReserve("order-2", PRODUCT_ID, 3));
+        assertEquals(17, manager.remainingLeased(PRODUCT_ID));
+        manager.maintainLeases();
+        verify(warehouseClient, never()).returnLease(anyString(), any(SettleLeaseRequest.class));
+
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        manager.confirm("order-1");
+        manager.maintainLeases();
+
+        ArgumentCaptor<SettleLeaseRequest> returned = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient).returnLease(eq("LEASE-1"), returned.capture());
+        assertEquals(16, returned.getValue().getSoldQuantity());
+        verify(warehouseClient, never()).settleLease(anyString(), any(SettleLeaseRequest.class));
+    }
+
+    @Test
+    void leaseOfAProductNoLongerLeasedIsReturnedOnceDrained() {
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        assertEquals("LEASE-1", manager.tryReserve("order-1", PRODUCT_ID, 4));
+
+        when(warehouseClient.getLeaseEnabledProducts()).thenReturn(Result.success(List.of()));
+        manager.refreshLeaseEnabledProducts();
+        assertNull(manager.tryReserve("order-2", PRODUCT_ID, 1));
+        manager.maintainLeases();
+        verify(warehouseClient, never()).returnLease(anyString(), any(SettleLeaseRequest.class));
+
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        manager.release("order-1");
+        manager.maintainLeases();
+        manager.maintainLeases();
+
+        ArgumentCaptor<SettleLeaseRequest> returned = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient, times(1)).returnLease(eq("LEASE-1"), returned.capture());
+        assertEquals(0, returned.getValue().getSoldQuantity());
+    }
+
+    @Test
+    void expiredLeaseIsReturnedWithItsSalesAndLaterSalesAreBoughtBack() throws InterruptedException {
+        properties.setDrainSeconds(0);
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusNanos(300_000_000))));
+        manager.tryReserve("order-1", PRODUCT_ID, 3);
+        manager.tryReserve("order-2", PRODUCT_ID, 2);
+        manager.confirm("order-1");
+        Thread.sleep(400);
+
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now())));
+        manager.maintainLeases();
+
+        ArgumentCaptor<SettleLeaseRequest> returned = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient).returnLease(eq("LEASE-1"), returned.capture());
+        assertEquals(3, returned.getValue().getSoldQuantity());
+
+        // order-2 confirms after the return, so its units are reserved and shipped like a normal order's
+        stubBuyBack(2);
+        when(warehouseClient.confirmReservation(any(ConfirmReservationRequest.class)))
+                .thenReturn(Result.success(new ConfirmReservationResponse()));
+        manager.confirm("order-2");
+        manager.maintainLeases();
+
+        ArgumentCaptor<ReserveStockRequest> reserve = ArgumentCaptor.forClass(ReserveStockRequest.class);
+        verify(warehouseClient).reserveStock(reserve.capture());
+        assertEquals("LEASE-1-5", reserve.getValue().getOrderId());
+        assertEquals(2, reserve.getValue().getQuantity());
+        verify(warehouseClient).confirmReservation(new ConfirmReservationRequest("LEASE-1-5", "RES-1"));
+
+        // Drained and settled, so the lease is gone
+        manager.maintainLeases();
+        verify(warehouseClient, times(1)).returnLease(anyString(), any(SettleLeaseRequest.class));
+        verify(warehouseClient, times(1)).reserveStock(any(ReserveStockRequest.class));
+    }
+
+    @Test
+    void salesOfALeaseTheWarehouseAlreadyExpiredAreBoughtBackOnce() throws InterruptedException {
+        properties.setDrainSeconds(0);
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusNanos(300_000_000))));
+        manager.tryReserve("order-1", PRODUCT_ID, 3);
+        manager.confirm("order-1");
+        manager.tryReserve("order-2", PRODUCT_ID, 1);
+        Thread.sleep(400);
+
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.error(400, "Stock lease LEASE-1 is EXPIRED"));
+        stubBuyBack(3);
+        when(warehouseClient.confirmReservation(any(ConfirmReservationRequest.class)))
+                .thenReturn(Result.error(500, "warehouse busy"), Result.success(new ConfirmReservationResponse()));
+
+        manager.maintainLeases();
+        manager.maintainLeases();
+        manager.release("order-2");
+        manager.maintainLeases();
+        manager.maintainLeases();
+
+        // The failed confirmation is retried against the same reservation
+        verify(warehouseClient, times(1)).reserveStock(any(ReserveStockRequest.class));
+        verify(warehouseClient, times(2)).confirmReservation(new ConfirmReservationRequest("LEASE-1-3", "RES-1"));
+        verify(warehouseClient, times(1)).returnLease(anyString(), any(SettleLeaseRequest.class));
+        verify(warehouseClient).getLeaseEnabledProducts();
+        verify(warehouseClient).acquireLease(any(AcquireLeaseRequest.class));
+        verify(warehouseClient).checkAvailability(any());
+        verifyNoMoreInteractions(warehouseClient);
+    }
+
+    @Test
+    void ordersFinishedOnAnotherInstanceMoveTheHolderUnits() {
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        when(warehouseClient.settleLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        manager.tryReserve("order-1", PRODUCT_ID, 5);
+        manager.tryReserve("order-2", PRODUCT_ID, 3);
+
+        // Payment and cancellation were handled by an instance that holds no lease itself
+        StockLeaseManager other = otherInstance("store-other");
+        other.release("order-1");
+        other.confirm("order-2");
+        assertEquals(12, manager.remainingLeased(PRODUCT_ID));
+
+        manager.maintainLeases();
+
+        assertEquals(17, manager.remainingLeased(PRODUCT_ID));
+        ArgumentCaptor<SettleLeaseRequest> settle = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient).settleLease(eq("LEASE-1"), settle.capture());
+        assertEquals(3, settle.getValue().getSoldQuantity());
+        assertEquals(List.of("RELEASED", "SETTLED"), holds.stream().map(OrderLeaseHold::getStatus).toList());
+    }
+
+    @Test
+    void salesNotSettledBeforeARestartAreReturnedWithTheLease() {
+        when(warehouseClient.acquireLease(any(AcquireLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        manager.tryReserve("order-1", PRODUCT_ID, 4);
+        manager.confirm("order-1");
+
+        // The process restarts before settling; the new one keeps the configured holder id
+        StockLeaseManager restarted = otherInstance("store-test");
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.success(lease("LEASE-1", 20, LocalDateTime.now().plusMinutes(2))));
+        restarted.maintainLeases();
+        restarted.maintainLeases();
+
+        ArgumentCaptor<SettleLeaseRequest> returned = ArgumentCaptor.forClass(SettleLeaseRequest.class);
+        verify(warehouseClient, times(1)).returnLease(eq("LEASE-1"), returned.capture());
+        assertEquals(4, returned.getValue().getSoldQuantity());
+        assertEquals("SETTLED", holds.get(0).getStatus());
+    }
+
+    @Test
+    void salesOfAHolderThatDiedAreBoughtBackOnceItsLeaseExpired() {
+        properties.setRecoverAfterSeconds(0);
+        holds.add(new OrderLeaseHold(null, "order-0", "LEASE-1", "store-gone", PRODUCT_ID, 2, "SETTLED",
+                LocalDateTime.now().minusSeconds(1), null, null));
+        holds.add(new OrderLeaseHold(null, "order-1", "LEASE-1", "store-gone", PRODUCT_ID, 3, "SOLD",
+                LocalDateTime.now().minusSeconds(1), null, null));
+        holds.forEach(hold -> hold.setId((long) holds.indexOf(hold) + 1));
+
+        when(warehouseClient.returnLease(eq("LEASE-1"), any(SettleLeaseRequest.class)))
+                .thenReturn(Result.error(400, "Stock lease LEASE-1 is EXPIRED"));
+        stubBuyBack(3);
+        when(warehouseClient.confirmReservation(any(ConfirmReservationRequest.class)))
+                .thenReturn(Result.success(new ConfirmReservationResponse()));
+        manager.maintainLeases();
+        manager.maintainLeases();
+
+        ArgumentCaptor<ReserveStockRequest> reserve = ArgumentCaptor.forClass(ReserveStockRequest.class);
+        verify(warehouseClient, times(1)).reserveStock(reserve.capture());
+        assertEquals("LEASE-1-5", reserve.getValue().getOrderId());
+        assertEquals(3, reserve.getValue().getQuantity());
+        verify(warehouseClient).confirmReservation(new ConfirmReservationRequest("LEASE-1-5", "RES-1"));
+        assertEquals("BOUGHT_BACK", holds.get(1).getStatus());
+    }
+
+    private StockLeaseManager otherInstance(String holderId) {
+        StockLeaseProperties otherProperties = new StockLeaseProperties();
+        otherProperties.setHolderId(holderId);
+        otherProperties.setRecoverAfterSeconds(properties.getRecoverAfterSeconds());
+        return new StockLeaseManager(warehouseClient, orderLeaseHoldMapper, otherProperties);
+    }
+
+    private static int move(List<OrderLeaseHold> rows, String from, String to) {
+        int moved = 0;
+        for (OrderLeaseHold row : rows) {
+            if (row.getStatus().equals(from)) {
+                row.setStatus(to);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private void stubBuyBack(int quantity) {
+        when(warehouseClient.checkAvailability(any())).thenReturn(Result.success(StockAvailabilityResponse.builder()
+                .available(true)
+                .requestedQuantity(quantity)
+                .totalAvailableQuantity(100)
+                .warehouses(List.of(WarehouseInfo.builder().warehouseId(1L).allocatedQuantity(quantity).build()))
+                .build()));
+        when(warehouseClient.reserveStock(any(ReserveStockRequest.class))).thenReturn(Result.success(
+                StockReservationResponse.builder().reservationId("RES-1").build()));
+    }
+
+    private StockLeaseResponse lease(String leaseId, int granted, LocalDateTime expiresAt) {
+        return new StockLeaseResponse(leaseId, "store-test", 1L, PRODUCT_ID, granted, 0, "ACTIVE", expiresAt);
+    }
+}
@@ -0,0 +1,79 @@
+package com.tut2.group3.store.listener;
+
+import com.tut2.group3.store.client.BankPaymentGateway;
+import com.tut2.group3.store.dto.bank.TransactionResultEventDto;
+import com.tut2.group3.store.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BankResultListenerTest {
+
+    @Mock
+    private BankPaymentGateway bankPaymentGateway;
+
+    @Mock
+    private OrderService orderService;
+
+    private BankResultListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new BankResultListener(bankPaymentGateway, orderService);
+    }
+
+    @Test
+    void claimedReplyIsNotReconciled() {
+        TransactionResultEventDto result = result("42", "DEBIT", "SUCCEEDED");
+        when(bankPaymentGateway.onResult(result)).thenReturn(true);
+
+        listener.handleReply(result);
+
+        verify(orderService, never()).reconcileUnclaimedDebit(any(), any());
+    }
+
+    @Test
+    void replyThisInstanceStoppedWaitingForIsReconciled() {
+        TransactionResultEventDto result = result("42", "DEBIT", "SUCCEEDED");
+        when(bankPaymentGateway.onResult(result)).thenReturn(false);
+
+        listener.handleReply(result);
+
+        verify(orderService).reconcileUnclaimedDebit(42L, 7L);
+    }
+
+    @Test
+    void resultOnTheEventsQueueIsReconciledWithoutClaiming() {
+        listener.handleUnclaimedResult(result("43", "DEBIT", "SUCCEEDED"));
+
+        verify(orderService).reconcileUnclaimedDebit(43L, 7L);
+        verifyNoInteractions(bankPaymentGateway);
+    }
+
+    @Test
+    void onlySuccessfulDebitsOfStoreOrdersAreReconciled() {
+        listener.handleUnclaimedResult(result("44", "DEBIT", "FAILED"));
+        listener.handleUnclaimedResult(result("45", "REFUND", "SUCCEEDED"));
+        listener.handleUnclaimedResult(result("order-46", "DEBIT", "SUCCEEDED"));
+
+        verifyNoInteractions(orderService);
+    }
+
+    private TransactionResultEventDto result(String orderId, String type, String status) {
+        TransactionResultEventDto result = new TransactionResultEventDto();
+        result.setTransactionId(7L);
+        result.setOrderId(orderId);
+        result.setTransactionType(type);
+        result.setStatus(status);
+        return result;
+    }
+}
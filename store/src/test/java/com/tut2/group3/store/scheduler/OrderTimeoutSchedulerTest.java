@@ -0,0 +1,76 @@
+package com.tut2.group3.store.scheduler;
+
+import com.tut2.group3.store.mapper.OrderMapper;
+import com.tut2.group3.store.mapper.UserMapper;
+import com.tut2.group3.store.pojo.Order;
+import com.tut2.group3.store.pojo.User;
+import com.tut2.group3.store.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTimeoutSchedulerTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private UserMapper userMapper;
+    @Mock
+    private OrderService orderService;
+
+    private OrderTimeoutScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new OrderTimeoutScheduler(orderMapper, userMapper, orderService);
+    }
+
+    @Test
+    void orderWhoseDebitIsStillAwaitedIsLeftToTheRequestingInstance() {
+        LocalDateTime requested = LocalDateTime.now().minusSeconds(30);
+        when(orderMapper.selectList(any())).thenReturn(List.of(order(42L, requested, requested.plusSeconds(60))));
+
+        scheduler.checkTimeoutOrders();
+
+        verify(orderService, never()).cancelOrderDueToTimeout(anyLong(), anyString());
+    }
+
+    @Test
+    void orderPastItsPaymentDeadlineTimesOut() {
+        LocalDateTime requested = LocalDateTime.now().minusSeconds(90);
+        when(orderMapper.selectList(any())).thenReturn(List.of(order(42L, requested, requested.plusSeconds(60))));
+        when(userMapper.selectById(5L)).thenReturn(new User());
+
+        scheduler.checkTimeoutOrders();
+
+        verify(orderService).cancelOrderDueToTimeout(eq(42L), anyString());
+    }
+
+    @Test
+    void synchronousPaymentTimesOutFromItsLastUpdate() {
+        when(orderMapper.selectList(any())).thenReturn(List.of(order(42L, LocalDateTime.now().minusSeconds(20), null)));
+        when(userMapper.selectById(5L)).thenReturn(new User());
+
+        scheduler.checkTimeoutOrders();
+
+        verify(orderService).cancelOrderDueToTimeout(eq(42L), anyString());
+    }
+
+    private Order order(Long id, LocalDateTime updateTime, LocalDateTime paymentDeadline) {
+        return new Order(id, 5L, "PENDING_PAYMENT", 25.0, "RES-" + id, null, paymentDeadline, updateTime, updateTime);
+    }
+}
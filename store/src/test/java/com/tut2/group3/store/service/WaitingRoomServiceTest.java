@@ -0,0 +1,175 @@
+package com.tut2.group3.store.service;
+
+import com.tut2.group3.store.client.StockLeaseManager;
+import com.tut2.group3.store.client.WarehouseClient;
+import com.tut2.group3.store.config.WaitingRoomProperties;
+import com.tut2.group3.store.dto.order.WaitingRoomStatusDto;
+import com.tut2.group3.store.dto.warehouse.StockAvailabilityResponse;
+import com.tut2.group3.store.pojo.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WaitingRoomServiceTest {
+
+    private static final Long PRODUCT_ID = 9L;
+
+    @Mock
+    private WarehouseClient warehouseClient;
+    @Mock
+    private StockLeaseManager stockLeaseManager;
+
+    private WaitingRoomProperties properties;
+
+    private WaitingRoomService waitingRoom;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WaitingRoomProperties();
+        properties.setProducts(Set.of(PRODUCT_ID));
+        waitingRoom = new WaitingRoomService(warehouseClient, stockLeaseManager, properties);
+    }
+
+    @Test
+    void shoppersAreAdmittedInTicketOrderAsStockAllows() {
+        stockAt(1);
+        when(stockLeaseManager.remainingLeased(PRODUCT_ID)).thenReturn(1);
+
+        assertEquals(1L, waitingRoom.enter(PRODUCT_ID, 101L, 1).getTicket());
+        assertEquals(2L, waitingRoom.enter(PRODUCT_ID, 102L, 1).getTicket());
+        assertEquals(3L, waitingRoom.enter(PRODUCT_ID, 103L, 1).getTicket());
+
+        // One unit at the warehouse plus one on lease
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 101L, 1).getStatus());
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+        WaitingRoomStatusDto third = waitingRoom.enter(PRODUCT_ID, 103L, 1);
+        assertEquals(WaitingRoomStatusDto.QUEUED, third.getStatus());
+        assertEquals(1L, third.getPosition());
+        assertEquals(2, third.getRemainingStock());
+    }
+
+    @Test
+    void lineLongerThanTheStockCanServeIsCutOff() {
+        stockAt(1);
+        waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+        waitingRoom.admit();
+
+        // One shopper waiting for one unit; the line may grow to twice the stock
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 103L, 1).getStatus());
+        WaitingRoomStatusDto turnedAway = waitingRoom.enter(PRODUCT_ID, 104L, 1);
+        assertEquals(WaitingRoomStatusDto.QUEUE_FULL, turnedAway.getStatus());
+        assertNull(turnedAway.getTicket());
+
+        stockAt(0);
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.SOLD_OUT, waitingRoom.enter(PRODUCT_ID, 105L, 1).getStatus());
+        assertEquals(WaitingRoomStatusDto.SOLD_OUT, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+    }
+
+    @Test
+    void shopperWhoStoppedCheckingIsSkippedAtTheHeadOfTheLine() throws InterruptedException {
+        properties.setAbandonAfterSeconds(1);
+        stockAt(1);
+        waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+        Thread.sleep(1_100);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+        // The skipped shopper's ticket is gone, so coming back means the back of the line
+        WaitingRoomStatusDto returning = waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        assertEquals(WaitingRoomStatusDto.QUEUED, returning.getStatus());
+        assertEquals(3L, returning.getTicket());
+    }
+
+    @Test
+    void unusedAdmissionExpiresAndLetsTheNextShopperIn() throws InterruptedException {
+        properties.setAdmissionTtlSeconds(1);
+        stockAt(1);
+        waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+        waitingRoom.admit();
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+
+        Thread.sleep(1_100);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+        WaitingRoomStatusDto expired = waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        assertEquals(WaitingRoomStatusDto.QUEUED, expired.getStatus());
+        assertEquals(3L, expired.getTicket());
+    }
+
+    @Test
+    void leavingFreesTheAdmissionForTheNextShopper() {
+        stockAt(1);
+        waitingRoom.enter(PRODUCT_ID, 101L, 1);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+        waitingRoom.admit();
+        waitingRoom.admit();
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+
+        waitingRoom.leave(PRODUCT_ID, 101L);
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+    }
+
+    @Test
+    void admissionsHoldBackTheUnitsEachShopperAskedFor() {
+        stockAt(5);
+        waitingRoom.enter(PRODUCT_ID, 101L, 3);
+        waitingRoom.enter(PRODUCT_ID, 102L, 3);
+        waitingRoom.enter(PRODUCT_ID, 103L, 1);
+
+        waitingRoom.admit();
+
+        // Two units are left: the second shopper waits for three and the third stays behind them
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 101L, 3).getStatus());
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 102L, 3).getStatus());
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 103L, 1).getStatus());
+
+        waitingRoom.leave(PRODUCT_ID, 101L);
+        waitingRoom.admit();
+
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 102L, 3).getStatus());
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 103L, 1).getStatus());
+    }
+
+    @Test
+    void orderLargerThanTheStockIsLetInWhenNoUnitsAreHeldBack() {
+        stockAt(2);
+        waitingRoom.enter(PRODUCT_ID, 101L, 5);
+        waitingRoom.enter(PRODUCT_ID, 102L, 1);
+
+        waitingRoom.admit();
+
+        // Nothing would ever come back for the first shopper, so the warehouse answers them instead
+        assertEquals(WaitingRoomStatusDto.ADMITTED, waitingRoom.enter(PRODUCT_ID, 101L, 5).getStatus());
+        assertEquals(WaitingRoomStatusDto.QUEUED, waitingRoom.enter(PRODUCT_ID, 102L, 1).getStatus());
+    }
+
+    private void stockAt(int available) {
+        when(warehouseClient.checkAvailability(any())).thenReturn(Result.success(StockAvailabilityResponse.builder()
+                .available(available > 0)
+                .totalAvailableQuantity(available)
+                .build()));
+    }
+}
@@ -0,0 +1,186 @@
+package com.tut2.group3.store.service.serviceImpl;
+
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.tut2.group3.store.client.BankClient;
+import com.tut2.group3.store.client.BankPaymentGateway;
+import com.tut2.group3.store.client.StockLeaseManager;
+import com.tut2.group3.store.client.WarehouseClient;
+import com.tut2.group3.store.config.PaymentProperties;
+import com.tut2.group3.store.dto.bank.BankRequestDto;
+import com.tut2.group3.store.dto.bank.TransactionDto;
+import com.tut2.group3.store.mapper.OrderItemMapper;
+import com.tut2.group3.store.mapper.OrderMapper;
+import com.tut2.group3.store.mapper.UserMapper;
+import com.tut2.group3.store.pojo.Order;
+import com.tut2.group3.store.pojo.Result;
+import com.tut2.group3.store.pojo.User;
+import com.tut2.group3.store.service.MessagePublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    @Mock
+    private WarehouseClient warehouseClient;
+
+    @Mock
+    private StockLeaseManager stockLeaseManager;
+
+    @Mock
+    private BankClient bankClient;
+
+    @Mock
+    private BankPaymentGateway bankPaymentGateway;
+
+    @Mock
+    private MessagePublisher messagePublisher;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderItemMapper orderItemMapper;
+
+    @Mock
+    private UserMapper userMapper;
+
+    private PaymentProperties paymentProperties;
+
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        paymentProperties = new PaymentProperties();
+        orderService = new OrderServiceImpl(warehouseClient, stockLeaseManager, bankClient, bankPaymentGateway,
+                paymentProperties, messagePublisher, orderMapper, orderItemMapper, userMapper);
+    }
+
+    @Test
+    void unclaimedDebitOfPendingOrderIsRecordedForTheTimeoutScheduler() {
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "PENDING_PAYMENT", null));
+
+        orderService.reconcileUnclaimedDebit(42L, 7L);
+
+        ArgumentCaptor<UpdateWrapper<Order>> update = ArgumentCaptor.captor();
+        verify(orderMapper).update(isNull(), update.capture());
+        String sql = update.getValue().getSqlSet() + " " + update.getValue().getSqlSegment();
+        assertTrue(sql.contains("status") && sql.contains("transaction_id"), sql);
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue("PAYMENT_SUCCESSFUL"));
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue("7"));
+        verifyNoInteractions(bankClient, bankPaymentGateway);
+    }
+
+    @Test
+    void unclaimedDebitOfFailedOrderIsRefunded() {
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "FAILED", null));
+        when(userMapper.selectById(5L)).thenReturn(user());
+        when(bankClient.handleRefund(any())).thenReturn(Result.success(new TransactionDto()));
+
+        orderService.reconcileUnclaimedDebit(42L, 7L);
+
+        ArgumentCaptor<BankRequestDto> refund = ArgumentCaptor.forClass(BankRequestDto.class);
+        verify(bankClient).handleRefund(refund.capture());
+        assertEquals("42", refund.getValue().getOrderId());
+        assertEquals("REFUND-42", refund.getValue().getIdempotencyKey());
+        verify(orderMapper, never()).update(any(), any());
+    }
+
+    @Test
+    void unclaimedDebitOfCancelledOrderIsRefundedOverTheQueueInAsyncMode() {
+        paymentProperties.setAsync(true);
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "CANCELLED", null));
+        when(userMapper.selectById(5L)).thenReturn(user());
+        when(bankPaymentGateway.refund(any())).thenReturn(new CompletableFuture<>());
+
+        orderService.reconcileUnclaimedDebit(42L, 7L);
+
+        verify(bankPaymentGateway).refund(any(BankRequestDto.class));
+        verifyNoInteractions(bankClient);
+    }
+
+    @Test
+    void debitOfOrderThatAlreadyRecordedAPaymentIsIgnored() {
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "DELIVERY_REQUESTED", "7"));
+
+        orderService.reconcileUnclaimedDebit(42L, 7L);
+
+        verify(orderMapper, never()).update(any(), any());
+        verifyNoInteractions(bankClient, bankPaymentGateway, userMapper);
+    }
+
+    @Test
+    void paymentTimeoutFailsAnOrderStillWaitingAndReleasesItsStock() {
+        when(orderMapper.update(isNull(), any())).thenReturn(1);
+        when(warehouseClient.releaseStock(any())).thenReturn(Result.success(null));
+
+        orderService.resumeAfterPayment(42L, null, user(), "RES-42", null, new TimeoutException());
+
+        ArgumentCaptor<UpdateWrapper<Order>> update = ArgumentCaptor.captor();
+        verify(orderMapper).update(isNull(), update.capture());
+        String sql = update.getValue().getSqlSegment();
+        assertTrue(sql.contains("status") && sql.contains("transaction_id IS NULL"), sql);
+        assertTrue(update.getValue().getParamNameValuePairs().containsValue("FAILED"));
+        verify(warehouseClient).releaseStock(any());
+        verify(orderMapper, never()).updateById(any(Order.class));
+        verifyNoInteractions(bankClient);
+    }
+
+    @Test
+    void paymentRecordedWhileTheTimeoutWasFailingTheOrderIsRefunded() {
+        // The result listener recorded the late debit between the saga giving up and failing the order
+        when(orderMapper.update(isNull(), any())).thenReturn(0, 1);
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "PAYMENT_SUCCESSFUL", "7"));
+        when(warehouseClient.releaseStock(any())).thenReturn(Result.success(null));
+        when(bankClient.handleRefund(any())).thenReturn(Result.success(new TransactionDto()));
+
+        orderService.resumeAfterPayment(42L, null, user(), "RES-42", null, new TimeoutException());
+
+        verify(orderMapper, times(2)).update(isNull(), any());
+        verify(warehouseClient).releaseStock(any());
+        ArgumentCaptor<BankRequestDto> refund = ArgumentCaptor.forClass(BankRequestDto.class);
+        verify(bankClient).handleRefund(refund.capture());
+        assertEquals("REFUND-42", refund.getValue().getIdempotencyKey());
+        verify(orderMapper, never()).updateById(any(Order.class));
+    }
+
+    @Test
+    void paymentTimeoutOfACancelledOrderLeavesItAlone() {
+        when(orderMapper.update(isNull(), any())).thenReturn(0);
+        when(orderMapper.selectById(42L)).thenReturn(order(42L, "CANCELLED", null));
+
+        orderService.resumeAfterPayment(42L, null, user(), "RES-42", null, new TimeoutException());
+
+        verify(orderMapper, times(1)).update(isNull(), any());
+        verifyNoInteractions(warehouseClient, bankClient);
+    }
+
+    private Order order(Long id, String status, String transactionId) {
+        return new Order(id, 5L, status, 25.0, "RES-" + id, transactionId, null, LocalDateTime.now(), LocalDateTime.now());
+    }
+
+    private User user() {
+        User user = new User();
+        user.setId(5L);
+        user.setEmail("customer@example.com");
+        return user;
+    }
+}
@@ -18,7 +18,9 @@ public enum ErrorCode {
     WAREHOUSE_NOT_FOUND(604, "Warehouse not found"),
     PRODUCT_NOT_FOUND(605, "Product not found"),
     STOCK_UPDATE_FAILED(606, "Stock update failed"),
-    INVALID_QUANTITY(607, "Invalid quantity");
+    INVALID_QUANTITY(607, "Invalid quantity"),
+    LEASE_NOT_ALLOWED(608, "Product is not enabled for stock leasing"),
+    LEASE_NOT_FOUND(609, "Stock lease not found");
 
     private final int code;
     private final String message;
@@ -0,0 +1,32 @@
+package com.tut2.group3.warehouse.config;
+
+import com.tut2.group3.warehouse.utils.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+@Slf4j
+@Configuration
+public class IdGeneratorConfig {
+
+    /**
+     * Ids are unique across instances only when each is given its own warehouse.id.node-id.
+     * A node id derived from host and process can collide between instances, so it is only used
+     * under the dev profile; any other profile refuses to start without one.
+     */
+    @Bean
+    public IdGenerator idGenerator(@Value("${warehouse.id.node-id:-1}") int nodeId, Environment environment) {
+        if (nodeId < 0) {
+            if (!environment.acceptsProfiles(Profiles.of("dev"))) {
+                throw new IllegalStateException("warehouse.id.node-id (or WAREHOUSE_NODE_ID) must be set to a node id "
+                        + "unique to this instance, 0-1023, outside the dev profile");
+            }
+            nodeId = IdGenerator.deriveNodeId();
+            log.warn("warehouse.id.node-id not set, using node id {} derived from host and process", nodeId);
+        }
+        return new IdGenerator(nodeId);
+    }
+}
@@ -0,0 +1,21 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.events")
+@Data
+public class InventoryEventProperties {
+    /** Most events sent on one channel before waiting for broker confirms */
+    private Integer batchSize = 100;
+    /** How long to wait for the broker to confirm a batch */
+    private Long confirmTimeoutMs = 5000L;
+    /** How often the outbox is checked when no commit has signalled new events, e.g. for rows left by another instance */
+    private Long pollIntervalMs = 1000L;
+    /** A claimed batch neither confirmed nor released within this, e.g. because its relay died, is sent again */
+    private Long claimTimeoutMs = 30000L;
+    /** Pause before resending a batch the broker did not confirm */
+    private Long retryBackoffMs = 1000L;
+}
@@ -0,0 +1,21 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.lease")
+@Data
+public class LeaseProperties {
+    /** Lease length applied when a lease request does not ask for one */
+    private Integer defaultLeaseSeconds = 120;
+    /** Upper bound on any requested lease length */
+    private Integer maxLeaseSeconds = 600;
+    /** Upper bound on the units granted by one lease */
+    private Integer maxQuantity = 200;
+    /** Expired leases returned per transaction */
+    private Integer sweepBatchSize = 100;
+    /** Batches processed per sweep run before yielding to the next run */
+    private Integer sweepMaxBatches = 10;
+}
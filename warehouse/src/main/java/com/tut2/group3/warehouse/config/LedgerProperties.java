@@ -0,0 +1,18 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.ledger")
+@Data
+public class LedgerProperties {
+    /**
+     * Snapshots only fold ledger rows older than this, so transactions still in flight when the
+     * snapshot runs have committed before their rows fall behind a snapshot
+     */
+    private Integer settleSeconds = 60;
+    /** SKUs folded and written per snapshot insert */
+    private Integer snapshotBatchSize = 1000;
+}
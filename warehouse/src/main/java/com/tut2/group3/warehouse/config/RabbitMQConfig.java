@@ -20,14 +20,21 @@ public class RabbitMQConfig {
     // Queue names
     public static final String WAREHOUSE_DELIVERY_PICKUP_QUEUE = "warehouse.delivery.pickup";
     public static final String WAREHOUSE_ORDER_CANCELLED_QUEUE = "warehouse.order.cancelled";
+    public static final String WAREHOUSE_ORDER_CANCELLED_RETRY_QUEUE = "warehouse.order.cancelled.retry";
 
     // Routing keys
     public static final String STOCK_RESERVED_ROUTING_KEY = "warehouse.stock.reserved";
     public static final String STOCK_CONFIRMED_ROUTING_KEY = "warehouse.stock.confirmed";
     public static final String STOCK_RELEASED_ROUTING_KEY = "warehouse.stock.released";
+    public static final String STOCK_UPDATED_ROUTING_KEY = "warehouse.stock.updated";
     public static final String DELIVERY_PICKUP_CONFIRMED_ROUTING_KEY = "delivery.pickup.confirmed";
     public static final String ORDER_CANCELLED_ROUTING_KEY = "order.cancelled";
 
+    // Order cancellations are released in batches of up to this many messages
+    public static final int ORDER_CANCELLED_BATCH_SIZE = 50;
+    // Order cancellations that hit a transient database failure wait this long before they are redelivered
+    public static final int ORDER_CANCELLED_RETRY_DELAY_MS = 5000;
+
     /**
      * Warehouse exchange - for publishing events
      */
@@ -56,6 +63,20 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * Holding queue for order cancelled events to retry later. Nothing consumes it: each message expires
+     * after ORDER_CANCELLED_RETRY_DELAY_MS and is dead-lettered through the default exchange straight back
+     * to the order cancelled queue, so other consumers of order.exchange never see it twice.
+     */
+    @Bean
+    public Queue orderCancelledRetryQueue() {
+        return QueueBuilder.durable(WAREHOUSE_ORDER_CANCELLED_RETRY_QUEUE)
+                .withArgument("x-message-ttl", ORDER_CANCELLED_RETRY_DELAY_MS)
+                .withArgument("x-dead-letter-exchange", "")
+                .withArgument("x-dead-letter-routing-key", WAREHOUSE_ORDER_CANCELLED_QUEUE)
+                .build();
+    }
+
     /**
      * Dead letter exchange for failed messages
      */
@@ -82,6 +103,24 @@ public class RabbitMQConfig {
                 .with("#");
     }
 
+    /*
+     * The dead letter exchange is direct, so the "#" binding above only matches a literal "#".
+     * Dead-lettered messages keep their original routing key; bind those keys explicitly.
+     */
+    @Bean
+    public Binding deadLetterOrderCancelledBinding() {
+        return BindingBuilder.bind(deadLetterQueue())
+                .to(deadLetterExchange())
+                .with(ORDER_CANCELLED_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding deadLetterDeliveryPickupBinding() {
+        return BindingBuilder.bind(deadLetterQueue())
+                .to(deadLetterExchange())
+                .with(DELIVERY_PICKUP_CONFIRMED_ROUTING_KEY);
+    }
+
     @Bean
     public TopicExchange deliveryExchange() {
         return new TopicExchange(DELIVERY_EXCHANGE, true, false);
@@ -130,4 +169,25 @@ public class RabbitMQConfig {
         factory.setDefaultRequeueRejected(false);
         return factory;
     }
+
+    /**
+     * Batch listener factory: delivers up to ORDER_CANCELLED_BATCH_SIZE raw messages at once
+     * with manual acks, so each message can be acked or dead-lettered individually
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(ORDER_CANCELLED_BATCH_SIZE);
+        factory.setReceiveTimeout(1000L);
+        factory.setPrefetchCount(ORDER_CANCELLED_BATCH_SIZE * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(3);
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
 }
@@ -0,0 +1,20 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.datasource.replica")
+@Data
+public class ReplicaDataSourceProperties {
+    /** Replica JDBC url; read/write routing is enabled only when this is set */
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+    /** Read-only transactions fall back to the primary while measured replica lag exceeds this */
+    private Long maxLagMs = 5000L;
+    /** How often the heartbeat is written to the primary and read back from the replica */
+    private Long heartbeatIntervalMs = 1000L;
+}
@@ -0,0 +1,19 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.reservation")
+@Data
+public class ReservationProperties {
+    /** Hold applied when a reserve request does not ask for one */
+    private Integer defaultHoldSeconds = 900;
+    /** Upper bound on any requested hold */
+    private Integer maxHoldSeconds = 3600;
+    /** Expired reservations released per transaction */
+    private Integer sweepBatchSize = 500;
+    /** Batches processed per sweep run before yielding to the next run */
+    private Integer sweepMaxBatches = 20;
+}
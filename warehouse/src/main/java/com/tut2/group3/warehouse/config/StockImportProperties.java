@@ -0,0 +1,15 @@
+package com.tut2.group3.warehouse.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warehouse.import")
+@Data
+public class StockImportProperties {
+    /** Rows applied per upsert statement and transaction */
+    private Integer chunkSize = 1000;
+    /** Rejected rows listed in the response; further rejections are only counted */
+    private Integer maxRejectedReported = 1000;
+}
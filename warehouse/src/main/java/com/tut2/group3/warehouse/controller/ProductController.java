@@ -3,6 +3,7 @@ package com.tut2.group3.warehouse.controller;
 import com.tut2.group3.warehouse.common.ErrorCode;
 import com.tut2.group3.warehouse.common.Result;
 import com.tut2.group3.warehouse.dto.response.ProductPriceResponse;
+import com.tut2.group3.warehouse.dto.response.ProductSearchResponse;
 import com.tut2.group3.warehouse.dto.response.ProductWithStockDto;
 import com.tut2.group3.warehouse.entity.Product;
 import com.tut2.group3.warehouse.service.ProductService;
@@ -10,8 +11,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/products")
@@ -22,14 +25,34 @@ public class ProductController {
 
     private final ProductService productService;
 
+    /**
+     * Get the product catalog with stock
+     * Without size the whole catalog is returned; fields is a comma separated projection
+     * (id, name, description, price, stock)
+     * Answers 304 Not Modified when If-None-Match carries the current ETag
+     */
     @GetMapping
-    public Result<List<ProductWithStockDto>> getAllProducts() {
+    public Result<List<ProductWithStockDto>> getAllProducts(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
         try {
-            List<ProductWithStockDto> products = productService.getAllProductsWithStock();
+            Set<String> catalogFields = productService.resolveCatalogFields(fields);
+            List<ProductWithStockDto> products = productService.getProductCatalog(page, size, catalogFields,
+                    webRequest::checkNotModified);
+            if (products == null) {
+                return null;
+            }
             String message = products.isEmpty()
                     ? "No products available"
                     : "Found " + products.size() + " product(s)";
             return Result.success(message, products);
+        } catch (IllegalArgumentException e) {
+            return Result.error(
+                    ErrorCode.BAD_REQUEST,
+                    e.getMessage()
+            );
         } catch (Exception e) {
             log.error("Error getting all products", e);
             return Result.error(
@@ -39,6 +62,32 @@ public class ProductController {
         }
     }
 
+    /**
+     * Search products by name, best matches first
+     */
+    @GetMapping("/search")
+    public Result<ProductSearchResponse> searchProducts(
+            @RequestParam String name,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            if (name.trim().isEmpty()) {
+                return Result.error(
+                        ErrorCode.BAD_REQUEST,
+                        "Search name must not be blank"
+                );
+            }
+            ProductSearchResponse response = productService.searchProducts(name.trim(), page, size);
+            return Result.success("Found " + response.getTotalMatches() + " matching product(s)", response);
+        } catch (Exception e) {
+            log.error("Error searching products by name {}", name, e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
     @GetMapping("/price")
     public Result<ProductPriceResponse> getProductPrice(
             @RequestParam(required = false) Long id,
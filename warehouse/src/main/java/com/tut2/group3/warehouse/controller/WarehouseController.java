@@ -4,13 +4,20 @@ import com.tut2.group3.warehouse.common.ErrorCode;
 import com.tut2.group3.warehouse.common.Result;
 import com.tut2.group3.warehouse.dto.request.*;
 import com.tut2.group3.warehouse.dto.response.*;
+import com.tut2.group3.warehouse.service.InventoryLedgerService;
+import com.tut2.group3.warehouse.service.StockImportService;
+import com.tut2.group3.warehouse.service.StockLeaseService;
 import com.tut2.group3.warehouse.service.WarehouseService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -22,6 +29,9 @@ import java.util.List;
 public class WarehouseController {
 
     private final WarehouseService warehouseService;
+    private final StockImportService stockImportService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final StockLeaseService stockLeaseService;
 
     /**
      * Validate order - check if all products in the order can be fulfilled
@@ -152,6 +162,96 @@ public class WarehouseController {
         }
     }
 
+    /**
+     * Ids of the hot products that store instances sell from leased stock
+     */
+    @GetMapping("/leases/products")
+    public Result<List<Long>> getLeaseEnabledProducts() {
+        try {
+            return Result.success("Lease-enabled products retrieved", stockLeaseService.getLeaseEnabledProductIds());
+        } catch (Exception e) {
+            log.error("Error getting lease-enabled products", e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Lease a block of a hot product's stock to a store instance
+     */
+    @PostMapping("/leases")
+    public Result<StockLeaseResponse> acquireLease(
+            @Valid @RequestBody AcquireLeaseRequest request) {
+        try {
+            StockLeaseResponse response = stockLeaseService.acquireLease(request);
+            return Result.success("Stock leased successfully", response);
+        } catch (RuntimeException e) {
+            log.warn("Error leasing product {} to {}: {}", request.getProductId(), request.getHolderId(), e.getMessage());
+            return Result.error(
+                    ErrorCode.STOCK_RESERVATION_FAILED,
+                    e.getMessage()
+            );
+        } catch (Exception e) {
+            log.error("Unexpected error leasing stock", e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Settle the units sold from a lease so far
+     */
+    @PostMapping("/leases/{leaseId}/settle")
+    public Result<StockLeaseResponse> settleLease(
+            @PathVariable String leaseId,
+            @Valid @RequestBody SettleLeaseRequest request) {
+        try {
+            StockLeaseResponse response = stockLeaseService.settleLease(leaseId, request.getSoldQuantity());
+            return Result.success("Lease settled", response);
+        } catch (RuntimeException e) {
+            log.error("Error settling lease {}", leaseId, e);
+            return Result.error(
+                    ErrorCode.LEASE_NOT_FOUND,
+                    e.getMessage()
+            );
+        } catch (Exception e) {
+            log.error("Unexpected error settling lease", e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Settle a lease's final sold count and return its unsold units
+     */
+    @PostMapping("/leases/{leaseId}/return")
+    public Result<StockLeaseResponse> returnLease(
+            @PathVariable String leaseId,
+            @Valid @RequestBody SettleLeaseRequest request) {
+        try {
+            StockLeaseResponse response = stockLeaseService.returnLease(leaseId, request.getSoldQuantity());
+            return Result.success("Lease returned", response);
+        } catch (RuntimeException e) {
+            log.error("Error returning lease {}", leaseId, e);
+            return Result.error(
+                    ErrorCode.LEASE_NOT_FOUND,
+                    e.getMessage()
+            );
+        } catch (Exception e) {
+            log.error("Unexpected error returning lease", e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
     /**
      * Get warehouse stock information
      */
@@ -160,10 +260,17 @@ public class WarehouseController {
             @PathVariable Long warehouseId,
             @RequestParam(required = false) Long productId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Boolean includeTotal) {
+        if (size < 1) {
+            return Result.error(ErrorCode.BAD_REQUEST, "size must be at least 1");
+        }
         try {
+            // Offset pages keep their total by default; keyset pages skip the count unless asked
             WarehouseStockResponse response = warehouseService.getWarehouseStock(
-                    warehouseId, productId, page, size);
+                    warehouseId, productId, page, size, after,
+                    includeTotal != null ? includeTotal : after == null);
             return Result.success("Stock information retrieved", response);
         } catch (RuntimeException e) {
             log.error("Error getting warehouse stock", e);
@@ -204,14 +311,67 @@ public class WarehouseController {
         }
     }
 
+    /**
+     * Bulk stock import from a CSV or NDJSON body, applied in chunks while the body streams in
+     */
+    @PostMapping(value = "/stock/import",
+            consumes = {StockImportService.CSV, StockImportService.NDJSON, "application/ndjson"})
+    public Result<StockImportResponse> importStock(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        try {
+            StockImportResponse response = stockImportService.importStock(body, contentType);
+            return Result.success("Stock import completed", response);
+        } catch (IllegalArgumentException e) {
+            return Result.error(
+                    ErrorCode.BAD_REQUEST,
+                    e.getMessage()
+            );
+        } catch (Exception e) {
+            log.error("Unexpected error importing stock", e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Stock per warehouse and product as it stood at ts (ISO-8601 local time), rebuilt from the inventory ledger
+     */
+    @GetMapping("/stock/as-of")
+    public Result<StockAsOfResponse> getStockAsOf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime ts,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) Long productId) {
+        if (ts.isAfter(LocalDateTime.now())) {
+            return Result.error(ErrorCode.BAD_REQUEST, "ts must not be in the future");
+        }
+        try {
+            StockAsOfResponse response = inventoryLedgerService.getStockAsOf(ts, warehouseId, productId);
+            return Result.success("Stock as of " + ts + " retrieved", response);
+        } catch (Exception e) {
+            log.error("Error getting stock as of {}", ts, e);
+            return Result.error(
+                    ErrorCode.INTERNAL_ERROR,
+                    e.getMessage()
+            );
+        }
+    }
+
     /**
      * Get all warehouses
+     * Answers 304 Not Modified when If-None-Match carries the current ETag
      */
     @GetMapping("/list")
     public Result<List<WarehouseDTO>> getAllWarehouses(
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            WebRequest webRequest) {
         try {
-            List<WarehouseDTO> warehouses = warehouseService.getAllWarehouses(status);
+            List<WarehouseDTO> warehouses = warehouseService.getAllWarehouses(status, webRequest::checkNotModified);
+            if (warehouses == null) {
+                return null;
+            }
             return Result.success("Warehouses retrieved", warehouses);
         } catch (Exception e) {
             log.error("Error getting warehouses", e);
@@ -0,0 +1,57 @@
+package com.tut2.group3.warehouse.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Measures replication lag with a heartbeat row.
+ * Each probe writes the current time to replica_heartbeat on the primary and reads it back from the
+ * replica; the difference is the lag, at the resolution of the probe interval. Until the first
+ * successful probe, and whenever a probe fails, the replica counts as stale.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+
+    private volatile long lagMs = Long.MAX_VALUE;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.datasource.replica.heartbeat-interval-ms:1000}")
+    public void probe() {
+        boolean wasFresh = isReplicaFresh();
+        try {
+            primary.update("UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1", System.currentTimeMillis());
+            Long seen = replica.queryForObject("SELECT beat_millis FROM replica_heartbeat WHERE id = 1", Long.class);
+            lagMs = seen == null ? Long.MAX_VALUE : Math.max(0, System.currentTimeMillis() - seen);
+        } catch (DataAccessException e) {
+            lagMs = Long.MAX_VALUE;
+            log.warn("Replica heartbeat probe failed: {}", e.getMessage());
+        }
+
+        if (wasFresh != isReplicaFresh()) {
+            log.info(isReplicaFresh()
+                    ? "Replica within {} ms lag bound, routing read-only transactions to it"
+                    : "Replica lag over {} ms, routing read-only transactions to the primary", maxLagMs);
+        }
+    }
+
+    public boolean isReplicaFresh() {
+        return lagMs <= maxLagMs;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+}
@@ -0,0 +1,29 @@
+package com.tut2.group3.warehouse.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Inventory change published on warehouse.exchange once the transaction that made it commits.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InventoryChangeEvent {
+
+    private String eventId;
+    private InventoryEventType eventType;
+    private LocalDateTime timestamp;
+    private String orderId;
+    private String reservationId;
+    private String reason;
+    private List<InventoryLevel> levels;
+}
@@ -0,0 +1,16 @@
+package com.tut2.group3.warehouse.dto.event;
+
+import com.tut2.group3.warehouse.config.RabbitMQConfig;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum InventoryEventType {
+    STOCK_RESERVED(RabbitMQConfig.STOCK_RESERVED_ROUTING_KEY),
+    STOCK_CONFIRMED(RabbitMQConfig.STOCK_CONFIRMED_ROUTING_KEY),
+    STOCK_RELEASED(RabbitMQConfig.STOCK_RELEASED_ROUTING_KEY),
+    STOCK_UPDATED(RabbitMQConfig.STOCK_UPDATED_ROUTING_KEY);
+
+    private final String routingKey;
+}
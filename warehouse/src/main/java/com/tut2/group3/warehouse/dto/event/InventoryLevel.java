@@ -0,0 +1,35 @@
+package com.tut2.group3.warehouse.dto.event;
+
+import com.tut2.group3.warehouse.entity.Inventory;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Quantities of one (warehouse, product) inventory row right after a change.
+ * sequence is the row's version: it increases with every committed change to the row,
+ * so consumers can discard levels older than the one they already hold.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryLevel {
+
+    private Long warehouseId;
+    private Long productId;
+    private Integer availableQuantity;
+    private Integer reservedQuantity;
+    private Long sequence;
+
+    public static InventoryLevel fromInventory(Inventory inventory) {
+        return InventoryLevel.builder()
+                .warehouseId(inventory.getWarehouseId())
+                .productId(inventory.getProductId())
+                .availableQuantity(inventory.getAvailableQuantity())
+                .reservedQuantity(inventory.getReservedQuantity())
+                .sequence(inventory.getVersion() != null ? inventory.getVersion().longValue() : null)
+                .build();
+    }
+}
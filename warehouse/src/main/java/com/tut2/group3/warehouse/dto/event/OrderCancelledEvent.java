@@ -0,0 +1,16 @@
+package com.tut2.group3.warehouse.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Order cancellation consumed from warehouse.order.cancelled.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCancelledEvent {
+    private String orderId;
+    private String reason;
+}
@@ -0,0 +1,17 @@
+package com.tut2.group3.warehouse.dto.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated row: one product and its available quantity summed across all warehouses
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStockTotal {
+    private Long productId;
+    private String productName;
+    private Integer totalAvailable;
+}
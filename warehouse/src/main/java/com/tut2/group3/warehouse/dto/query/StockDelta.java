@@ -0,0 +1,17 @@
+package com.tut2.group3.warehouse.dto.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Quantity to move for one (warehouse, product) inventory row in a grouped update.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDelta {
+    private Long warehouseId;
+    private Long productId;
+    private Integer quantity;
+}
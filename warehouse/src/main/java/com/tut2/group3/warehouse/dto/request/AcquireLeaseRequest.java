@@ -0,0 +1,28 @@
+package com.tut2.group3.warehouse.dto.request;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AcquireLeaseRequest {
+    @NotBlank(message = "Holder ID is required")
+    private String holderId;
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    // Units wanted; the grant may be smaller when the deepest row holds less or warehouse.lease.max-quantity is lower
+    @NotNull(message = "Quantity is required")
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private Integer quantity;
+
+    // Optional lease length; defaults to warehouse.lease.default-lease-seconds, capped at max-lease-seconds
+    @Min(value = 1, message = "Lease must be at least 1 second")
+    private Integer leaseSeconds;
+}
@@ -28,4 +28,8 @@ public class ReserveStockRequest {
     @NotEmpty(message = "Warehouses list cannot be empty")
     @Valid
     private List<WarehouseAllocation> warehouses;
+
+    // Optional hold in seconds; defaults to warehouse.reservation.default-hold-seconds, capped at max-hold-seconds
+    @Min(value = 1, message = "Hold must be at least 1 second")
+    private Integer holdSeconds;
 }
@@ -0,0 +1,17 @@
+package com.tut2.group3.warehouse.dto.request;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettleLeaseRequest {
+    // Running total of units sold from the lease, not a delta, so a retried settle applies once
+    @NotNull(message = "Sold quantity is required")
+    @Min(value = 0, message = "Sold quantity cannot be negative")
+    private Integer soldQuantity;
+}
@@ -0,0 +1,17 @@
+package com.tut2.group3.warehouse.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a bulk stock import: quantity is added to the row's available stock.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockImportRow {
+    private Long warehouseId;
+    private Long productId;
+    private Integer quantity;
+}
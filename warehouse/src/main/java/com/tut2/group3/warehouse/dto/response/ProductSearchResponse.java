@@ -0,0 +1,29 @@
+package com.tut2.group3.warehouse.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductSearchResponse {
+    private String query;
+    private Integer totalMatches;
+    private Integer page;
+    private Integer size;
+    private List<ProductSearchHit> results;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ProductSearchHit {
+        private Long id;
+        private String name;
+    }
+}
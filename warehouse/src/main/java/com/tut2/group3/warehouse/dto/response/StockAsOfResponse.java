@@ -0,0 +1,30 @@
+package com.tut2.group3.warehouse.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockAsOfResponse {
+    private LocalDateTime asOf;
+    private LocalDateTime snapshotAt; // snapshot the answer was replayed from, null if replayed from the start
+    private List<StockLevel> stocks;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class StockLevel {
+        private Long warehouseId;
+        private Long productId;
+        private Integer availableQuantity;
+        private Integer reservedQuantity;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tut2.group3.warehouse.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockImportResponse {
+    private String format;
+    private Long totalRows;
+    private Long appliedRows;
+    private Long rejectedRows;
+    private List<ChunkProgress> chunks;
+    private List<RejectedRow> rejected;
+    private Boolean rejectedTruncated;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ChunkProgress {
+        private Integer chunk;
+        private Integer rows;
+        private Integer applied;
+        private Integer rejected;
+        private Long elapsedMs;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RejectedRow {
+        private Long line;
+        private String reason;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tut2.group3.warehouse.dto.response;
+
+import com.tut2.group3.warehouse.entity.StockLease;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockLeaseResponse {
+    private String leaseId;
+    private String holderId;
+    private Long warehouseId;
+    private Long productId;
+    private Integer grantedQuantity;
+    private Integer settledQuantity;
+    private String status;
+    private LocalDateTime expiresAt;
+
+    public static StockLeaseResponse fromLease(StockLease lease) {
+        return StockLeaseResponse.builder()
+                .leaseId(lease.getLeaseId())
+                .holderId(lease.getHolderId())
+                .warehouseId(lease.getWarehouseId())
+                .productId(lease.getProductId())
+                .grantedQuantity(lease.getGrantedQuantity())
+                .settledQuantity(lease.getSettledQuantity())
+                .status(lease.getStatus())
+                .expiresAt(lease.getExpiresAt())
+                .build();
+    }
+}
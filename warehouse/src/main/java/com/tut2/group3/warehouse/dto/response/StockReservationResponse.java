@@ -16,5 +16,6 @@ public class StockReservationResponse {
     private String orderId;
     private String reservationId;
     private List<ReservationDetail> reservations;
+    private LocalDateTime expiresAt;
     private LocalDateTime timestamp;
 }
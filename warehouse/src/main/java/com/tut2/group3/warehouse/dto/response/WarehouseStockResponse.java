@@ -1,5 +1,6 @@
 package com.tut2.group3.warehouse.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,10 +22,13 @@ public class WarehouseStockResponse {
     @NoArgsConstructor
     @AllArgsConstructor
     @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class PaginationInfo {
         private Integer page;
         private Integer size;
         private Long totalElements;
         private Integer totalPages;
+        // Pass as "after" to fetch the next keyset page; absent on the last page
+        private Long nextCursor;
     }
 }
@@ -0,0 +1,31 @@
+package com.tut2.group3.warehouse.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An inventory change event waiting to be sent, written in the transaction that raised it,
+ * claimed by a relay while it is being sent and deleted once the broker has confirmed it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("inventory_event_outbox")
+public class InventoryEventOutbox {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String eventId;
+
+    private String payload; // the InventoryChangeEvent as JSON
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime claimedAt; // set while a relay is sending the event, null otherwise
+}
@@ -0,0 +1,39 @@
+package com.tut2.group3.warehouse.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One append-only inventory movement: the change to a (warehouse, product) row's available and
+ * reserved counters. Rows are never updated, so summing them up to a time gives the stock at that time.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("inventory_ledger")
+public class InventoryLedger {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private Long warehouseId;
+
+    private Long productId;
+
+    private Integer availableDelta;
+
+    private Integer reservedDelta;
+
+    // OPENING, RESERVE, CONFIRM, RELEASE, EXPIRE, CANCEL, ADD, SET, SUBTRACT, IMPORT,
+    // LEASE, LEASE_SETTLE, LEASE_RETURN, LEASE_EXPIRE
+    private String reason;
+
+    private String orderId; // set for reservation movements; the lease id for lease movements
+
+    private LocalDateTime createdAt;
+}
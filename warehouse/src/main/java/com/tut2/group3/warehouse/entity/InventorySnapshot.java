@@ -0,0 +1,28 @@
+package com.tut2.group3.warehouse.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock of one (warehouse, product) row as of snapshotAt, folded from the ledger.
+ * A row is only written for SKUs that moved since the previous snapshot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("inventory_snapshot")
+public class InventorySnapshot {
+    private Long warehouseId;
+
+    private Long productId;
+
+    private LocalDateTime snapshotAt;
+
+    private Integer availableQuantity;
+
+    private Integer reservedQuantity;
+}
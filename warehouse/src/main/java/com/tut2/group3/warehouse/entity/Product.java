@@ -22,6 +22,8 @@ public class Product {
 
     private BigDecimal price;
 
+    private Boolean leaseEnabled; // hot SKU whose stock is leased out to store instances in blocks
+
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
 
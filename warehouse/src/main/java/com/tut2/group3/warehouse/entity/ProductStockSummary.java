@@ -0,0 +1,26 @@
+package com.tut2.group3.warehouse.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-product stock projection, kept in step with inventory inside the same transaction.
+ * availableQuantity is the sum of inventory.available_quantity over all warehouses.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("product_stock_summary")
+public class ProductStockSummary {
+    @TableId(type = IdType.INPUT)
+    private Long productId;
+
+    private Integer availableQuantity;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
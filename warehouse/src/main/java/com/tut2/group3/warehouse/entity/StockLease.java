@@ -0,0 +1,44 @@
+package com.tut2.group3.warehouse.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A block of one inventory row's stock leased to a store instance for a hot SKU.
+ * The holder sells from the block locally and settles its running sold count; the rest is
+ * returned by the holder or by expiry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("stock_lease")
+public class StockLease {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String leaseId;
+
+    private String holderId; // store instance holding the lease
+
+    private Long warehouseId;
+
+    private Long productId;
+
+    private Integer grantedQuantity;
+
+    private Integer settledQuantity; // units the holder has reported sold so far
+
+    private String status; // ACTIVE, RETURNED, EXPIRED
+
+    private LocalDateTime expiresAt;
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
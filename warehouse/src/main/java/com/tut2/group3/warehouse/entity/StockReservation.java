@@ -23,7 +23,9 @@ public class StockReservation {
 
     private Integer quantity;
 
-    private String status; // RESERVED, CONFIRMED, RELEASED
+    private String status; // RESERVED, CONFIRMED, RELEASED, EXPIRED
+
+    private LocalDateTime expiresAt; // null for holds created before reservation expiry existed
 
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
@@ -0,0 +1,40 @@
+package com.tut2.group3.warehouse.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * Cheap version stamps for the catalog resources, used as ETags
+ */
+@Mapper
+public interface CatalogVersionMapper {
+
+    /**
+     * Count one stock change on a counter slot.
+     * The counter is striped over several rows so concurrent writers rarely wait on the same row.
+     */
+    @Update("UPDATE catalog_version SET version = version + 1 WHERE resource = 'products' AND slot = #{slot}")
+    int bump(@Param("slot") int slot);
+
+    /**
+     * Stock and product change count; moves whenever /api/products would.
+     * Product rows bump their counters by trigger, so edits within the same second still change the tag.
+     */
+    @Select("SELECT COALESCE(SUM(version), 0) FROM catalog_version " +
+            "WHERE resource IN ('products', 'product_rows', 'product_deletes')")
+    long selectProductCatalogVersion();
+
+    /**
+     * Change count of one resource's counter, e.g. product_rows or product_deletes
+     */
+    @Select("SELECT COALESCE(SUM(version), 0) FROM catalog_version WHERE resource = #{resource}")
+    long selectResourceVersion(@Param("resource") String resource);
+
+    /**
+     * Warehouse change count, bumped by trigger on every warehouse row change
+     */
+    @Select("SELECT COALESCE(SUM(version), 0) FROM catalog_version WHERE resource = 'warehouses'")
+    long selectWarehouseListVersion();
+}
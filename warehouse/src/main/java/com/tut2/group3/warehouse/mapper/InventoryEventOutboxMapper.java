@@ -0,0 +1,42 @@
+package com.tut2.group3.warehouse.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.entity.InventoryEventOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface InventoryEventOutboxMapper extends BaseMapper<InventoryEventOutbox> {
+
+    /**
+     * Lock the oldest events, in id order, for the short transaction that claims them
+     */
+    @Select("SELECT id, event_id, payload, created_at, claimed_at FROM inventory_event_outbox " +
+            "ORDER BY id LIMIT #{limit} FOR UPDATE")
+    List<InventoryEventOutbox> lockOldest(@Param("limit") Integer limit);
+
+    @Update("<script>" +
+            "UPDATE inventory_event_outbox SET claimed_at = #{claimedAt} WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Update("<script>" +
+            "UPDATE inventory_event_outbox SET claimed_at = NULL WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int releaseClaim(@Param("ids") Collection<Long> ids);
+
+    @Delete("<script>" +
+            "DELETE FROM inventory_event_outbox WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteSent(@Param("ids") Collection<Long> ids);
+}
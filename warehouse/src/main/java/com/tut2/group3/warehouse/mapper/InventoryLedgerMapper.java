@@ -0,0 +1,46 @@
+package com.tut2.group3.warehouse.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.entity.InventoryLedger;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface InventoryLedgerMapper extends BaseMapper<InventoryLedger> {
+
+    /**
+     * Append many ledger rows in one statement.
+     * Must be called in the same transaction as the inventory update it records.
+     */
+    @Insert("<script>" +
+            "INSERT INTO inventory_ledger (warehouse_id, product_id, available_delta, reserved_delta, reason, order_id, created_at) VALUES " +
+            "<foreach collection='entries' item='e' separator=','>" +
+            "(#{e.warehouseId}, #{e.productId}, #{e.availableDelta}, #{e.reservedDelta}, #{e.reason}, #{e.orderId}, #{e.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("entries") List<InventoryLedger> entries);
+
+    /**
+     * Net movement per (warehouse, product) for ledger rows with from &lt; created_at &lt;= to.
+     * A null from sums from the start of the ledger; warehouseId and productId optionally narrow the rows.
+     * Only warehouseId, productId, availableDelta and reservedDelta are populated.
+     */
+    @Select("<script>" +
+            "SELECT warehouse_id, product_id, " +
+            "SUM(available_delta) AS available_delta, SUM(reserved_delta) AS reserved_delta " +
+            "FROM inventory_ledger WHERE created_at &lt;= #{to}" +
+            "<if test='from != null'> AND created_at &gt; #{from}</if>" +
+            "<if test='warehouseId != null'> AND warehouse_id = #{warehouseId}</if>" +
+            "<if test='productId != null'> AND product_id = #{productId}</if>" +
+            " GROUP BY warehouse_id, product_id" +
+            "</script>")
+    List<InventoryLedger> sumMovements(@Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("warehouseId") Long warehouseId,
+                                       @Param("productId") Long productId);
+}
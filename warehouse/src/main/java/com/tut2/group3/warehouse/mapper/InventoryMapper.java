@@ -1,11 +1,19 @@
 package com.tut2.group3.warehouse.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.dto.query.ProductStockTotal;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.response.StockInfo;
 import com.tut2.group3.warehouse.entity.Inventory;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface InventoryMapper extends BaseMapper<Inventory> {
 
@@ -24,27 +32,114 @@ public interface InventoryMapper extends BaseMapper<Inventory> {
                      @Param("version") Integer version);
 
     /**
-     * Confirm stock reservation
+     * The product's inventory row with the most available stock, to carve a lease from
      */
-    @Update("UPDATE inventory SET reserved_quantity = reserved_quantity - #{quantity}, " +
-            "version = version + 1 " +
-            "WHERE warehouse_id = #{warehouseId} AND product_id = #{productId} " +
-            "AND reserved_quantity >= #{quantity} AND version = #{version}")
-    int confirmReservation(@Param("warehouseId") Long warehouseId,
-                           @Param("productId") Long productId,
-                           @Param("quantity") Integer quantity,
-                           @Param("version") Integer version);
+    @Select("SELECT id, warehouse_id, product_id, available_quantity, reserved_quantity, version " +
+            "FROM inventory WHERE product_id = #{productId} AND available_quantity > 0 " +
+            "ORDER BY available_quantity DESC LIMIT 1")
+    Inventory selectDeepestRow(@Param("productId") Long productId);
 
     /**
-     * Release reserved stock back to available
+     * Deduct confirmed reservations from reserved stock for many (warehouse, product) rows in one statement.
+     * Same contract as {@link #releaseStockBatch}.
      */
-    @Update("UPDATE inventory SET available_quantity = available_quantity + #{quantity}, " +
-            "reserved_quantity = reserved_quantity - #{quantity}, " +
-            "version = version + 1 " +
-            "WHERE warehouse_id = #{warehouseId} AND product_id = #{productId} " +
-            "AND reserved_quantity >= #{quantity} AND version = #{version}")
-    int releaseStock(@Param("warehouseId") Long warehouseId,
-                     @Param("productId") Long productId,
-                     @Param("quantity") Integer quantity,
-                     @Param("version") Integer version);
+    @Update("<script>" +
+            "UPDATE inventory i JOIN (" +
+            "<foreach collection='deltas' item='d' separator=' UNION ALL '>" +
+            "SELECT #{d.warehouseId} AS warehouse_id, #{d.productId} AS product_id, #{d.quantity} AS quantity" +
+            "</foreach>" +
+            ") d ON i.warehouse_id = d.warehouse_id AND i.product_id = d.product_id " +
+            "SET i.reserved_quantity = i.reserved_quantity - d.quantity, " +
+            "i.version = i.version + 1 " +
+            "WHERE i.reserved_quantity >= d.quantity" +
+            "</script>")
+    int confirmReservationBatch(@Param("deltas") List<StockDelta> deltas);
+
+    /**
+     * Release reserved stock back to available for many (warehouse, product) rows in one statement.
+     * Each delta must be for a distinct row; returns the number of rows matched, which is less than
+     * the number of deltas if any row is missing or holds less reserved stock than requested.
+     */
+    @Update("<script>" +
+            "UPDATE inventory i JOIN (" +
+            "<foreach collection='deltas' item='d' separator=' UNION ALL '>" +
+            "SELECT #{d.warehouseId} AS warehouse_id, #{d.productId} AS product_id, #{d.quantity} AS quantity" +
+            "</foreach>" +
+            ") d ON i.warehouse_id = d.warehouse_id AND i.product_id = d.product_id " +
+            "SET i.available_quantity = i.available_quantity + d.quantity, " +
+            "i.reserved_quantity = i.reserved_quantity - d.quantity, " +
+            "i.version = i.version + 1 " +
+            "WHERE i.reserved_quantity >= d.quantity" +
+            "</script>")
+    int releaseStockBatch(@Param("deltas") List<StockDelta> deltas);
+
+    /**
+     * Add to available stock for many (warehouse, product) rows in one statement, creating missing rows.
+     * The increment is applied by the database, so it cannot overwrite concurrent reservations.
+     */
+    @Insert("<script>" +
+            "INSERT INTO inventory (warehouse_id, product_id, available_quantity, reserved_quantity, version) VALUES " +
+            "<foreach collection='deltas' item='d' separator=','>(#{d.warehouseId}, #{d.productId}, #{d.quantity}, 0, 0)</foreach>" +
+            " ON DUPLICATE KEY UPDATE available_quantity = available_quantity + VALUES(available_quantity), " +
+            "version = version + 1" +
+            "</script>")
+    int addAvailableBatch(@Param("deltas") List<StockDelta> deltas);
+
+    /**
+     * Read inventory rows for a set of (warehouse, product) pairs in one query
+     */
+    @Select("<script>" +
+            "SELECT id, warehouse_id, product_id, available_quantity, reserved_quantity, version " +
+            "FROM inventory WHERE (warehouse_id, product_id) IN " +
+            "<foreach collection='rows' item='r' open='(' separator=',' close=')'>(#{r.warehouseId}, #{r.productId})</foreach>" +
+            " ORDER BY warehouse_id, product_id" +
+            "</script>")
+    List<Inventory> selectByRows(@Param("rows") Collection<StockDelta> rows);
+
+    /**
+     * Read one page of a warehouse's stock with product names joined in, ordered by product id.
+     * With afterProductId set this is a keyset page that seeks along uk_warehouse_product;
+     * otherwise offset is used. Fetch one row more than the page size to learn whether another page follows.
+     */
+    @Select("<script>" +
+            "SELECT i.product_id, COALESCE(p.name, 'Unknown') AS product_name, " +
+            "i.available_quantity, i.reserved_quantity, " +
+            "i.available_quantity + i.reserved_quantity AS total_quantity " +
+            "FROM inventory i LEFT JOIN product p ON p.id = i.product_id " +
+            "WHERE i.warehouse_id = #{warehouseId}" +
+            "<if test='productId != null'> AND i.product_id = #{productId}</if>" +
+            "<if test='afterProductId != null'> AND i.product_id &gt; #{afterProductId}</if>" +
+            " ORDER BY i.product_id" +
+            "<choose>" +
+            "<when test='afterProductId != null'> LIMIT #{limit}</when>" +
+            "<otherwise> LIMIT #{offset}, #{limit}</otherwise>" +
+            "</choose>" +
+            "</script>")
+    List<StockInfo> selectWarehouseStock(@Param("warehouseId") Long warehouseId,
+                                         @Param("productId") Long productId,
+                                         @Param("afterProductId") Long afterProductId,
+                                         @Param("offset") Long offset,
+                                         @Param("limit") Integer limit);
+
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM inventory WHERE warehouse_id = #{warehouseId}" +
+            "<if test='productId != null'> AND product_id = #{productId}</if>" +
+            "</script>")
+    long countWarehouseStock(@Param("warehouseId") Long warehouseId,
+                             @Param("productId") Long productId);
+
+    /**
+     * Sum available stock across all warehouses for a set of products in one round trip.
+     * Products that do not exist are simply absent from the result; existing products
+     * without any positive inventory come back with a total of 0.
+     */
+    @Select("<script>" +
+            "SELECT p.id AS product_id, p.name AS product_name, " +
+            "COALESCE(SUM(CASE WHEN i.available_quantity > 0 THEN i.available_quantity ELSE 0 END), 0) AS total_available " +
+            "FROM product p LEFT JOIN inventory i ON i.product_id = p.id " +
+            "WHERE p.id IN " +
+            "<foreach collection='productIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "GROUP BY p.id, p.name" +
+            "</script>")
+    List<ProductStockTotal> sumAvailableByProductIds(@Param("productIds") Collection<Long> productIds);
 }
@@ -0,0 +1,66 @@
+package com.tut2.group3.warehouse.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.entity.InventoryLedger;
+import com.tut2.group3.warehouse.entity.InventorySnapshot;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface InventorySnapshotMapper extends BaseMapper<InventorySnapshot> {
+
+    /**
+     * Time of the most recent snapshot run at or before ts, or null if there is none
+     */
+    @Select("SELECT MAX(snapshot_at) FROM inventory_snapshot WHERE snapshot_at <= #{ts}")
+    LocalDateTime selectLatestSnapshotAt(@Param("ts") LocalDateTime ts);
+
+    /**
+     * Each SKU's most recent snapshot at or before ts, optionally narrowed to one warehouse and/or product.
+     * Served from the (warehouse_id, product_id, snapshot_at) primary key.
+     */
+    @Select("<script>" +
+            "SELECT s.warehouse_id, s.product_id, s.snapshot_at, s.available_quantity, s.reserved_quantity " +
+            "FROM inventory_snapshot s JOIN (" +
+            "SELECT warehouse_id, product_id, MAX(snapshot_at) AS snapshot_at FROM inventory_snapshot " +
+            "WHERE snapshot_at &lt;= #{ts}" +
+            "<if test='warehouseId != null'> AND warehouse_id = #{warehouseId}</if>" +
+            "<if test='productId != null'> AND product_id = #{productId}</if>" +
+            " GROUP BY warehouse_id, product_id" +
+            ") latest ON latest.warehouse_id = s.warehouse_id AND latest.product_id = s.product_id " +
+            "AND latest.snapshot_at = s.snapshot_at" +
+            "</script>")
+    List<InventorySnapshot> selectLatestAsOf(@Param("ts") LocalDateTime ts,
+                                             @Param("warehouseId") Long warehouseId,
+                                             @Param("productId") Long productId);
+
+    /**
+     * The most recent snapshot at or before ts for each of the given SKUs
+     */
+    @Select("<script>" +
+            "SELECT s.warehouse_id, s.product_id, s.snapshot_at, s.available_quantity, s.reserved_quantity " +
+            "FROM inventory_snapshot s JOIN (" +
+            "SELECT warehouse_id, product_id, MAX(snapshot_at) AS snapshot_at FROM inventory_snapshot " +
+            "WHERE snapshot_at &lt;= #{ts} AND (warehouse_id, product_id) IN " +
+            "<foreach collection='rows' item='r' open='(' separator=',' close=')'>(#{r.warehouseId}, #{r.productId})</foreach>" +
+            " GROUP BY warehouse_id, product_id" +
+            ") latest ON latest.warehouse_id = s.warehouse_id AND latest.product_id = s.product_id " +
+            "AND latest.snapshot_at = s.snapshot_at" +
+            "</script>")
+    List<InventorySnapshot> selectLatestAsOfForRows(@Param("ts") LocalDateTime ts,
+                                                    @Param("rows") Collection<InventoryLedger> rows);
+
+    @Insert("<script>" +
+            "INSERT INTO inventory_snapshot (warehouse_id, product_id, snapshot_at, available_quantity, reserved_quantity) VALUES " +
+            "<foreach collection='snapshots' item='s' separator=','>" +
+            "(#{s.warehouseId}, #{s.productId}, #{s.snapshotAt}, #{s.availableQuantity}, #{s.reservedQuantity})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("snapshots") List<InventorySnapshot> snapshots);
+}
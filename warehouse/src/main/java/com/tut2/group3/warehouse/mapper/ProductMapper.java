@@ -3,7 +3,27 @@ package com.tut2.group3.warehouse.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.tut2.group3.warehouse.entity.Product;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface ProductMapper extends BaseMapper<Product> {
+
+    /**
+     * Return which of the given product ids exist, without loading the products
+     */
+    @Select("<script>" +
+            "SELECT id FROM product WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Long> selectExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Ids of the products whose stock is leased to store instances
+     */
+    @Select("SELECT id FROM product WHERE lease_enabled = TRUE ORDER BY id")
+    List<Long> selectLeaseEnabledIds();
 }
@@ -0,0 +1,77 @@
+package com.tut2.group3.warehouse.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.dto.response.ProductWithStockDto;
+import com.tut2.group3.warehouse.entity.ProductStockSummary;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface ProductStockSummaryMapper extends BaseMapper<ProductStockSummary> {
+
+    /**
+     * Apply a change in available quantity to a product's summary row, in the same transaction as the
+     * inventory update it mirrors.
+     * Every product gets its row when it is inserted (trigger trg_product_insert_summary) or seeded by data.sql,
+     * so the hot path is a plain row update and never has to create rows under concurrent writers.
+     */
+    default int applyAvailableDelta(Long productId, Integer delta) {
+        int updated = addAvailable(productId, delta);
+        if (updated == 0) {
+            throw new IllegalStateException("No stock summary row for product " + productId);
+        }
+        return updated;
+    }
+
+    /**
+     * Batch form of {@link #applyAvailableDelta}, keyed by product id.
+     */
+    default int applyAvailableDeltas(Map<Long, Integer> deltas) {
+        int updated = addAvailableBatch(deltas);
+        if (updated < deltas.size()) {
+            throw new IllegalStateException("Missing stock summary rows for some of products " + deltas.keySet());
+        }
+        return updated;
+    }
+
+    @Update("UPDATE product_stock_summary SET available_quantity = available_quantity + #{delta} " +
+            "WHERE product_id = #{productId}")
+    int addAvailable(@Param("productId") Long productId,
+                     @Param("delta") Integer delta);
+
+    @Update("<script>" +
+            "UPDATE product_stock_summary s JOIN (" +
+            "<foreach collection='deltas' index='productId' item='delta' separator=' UNION ALL '>" +
+            "SELECT #{productId} AS product_id, #{delta} AS delta" +
+            "</foreach>" +
+            ") d ON s.product_id = d.product_id " +
+            "SET s.available_quantity = s.available_quantity + d.delta" +
+            "</script>")
+    int addAvailableBatch(@Param("deltas") Map<Long, Integer> deltas);
+
+    /**
+     * Read a catalog page from product joined with the summary.
+     * Only the requested columns are selected; the summary join is skipped when stock is not requested.
+     * A null limit returns the whole catalog.
+     */
+    @Select("<script>" +
+            "SELECT p.id" +
+            "<if test='fields.contains(\"name\")'>, p.name</if>" +
+            "<if test='fields.contains(\"description\")'>, p.description</if>" +
+            "<if test='fields.contains(\"price\")'>, p.price</if>" +
+            "<if test='fields.contains(\"stock\")'>, COALESCE(s.available_quantity, 0) AS stock</if>" +
+            " FROM product p" +
+            "<if test='fields.contains(\"stock\")'> LEFT JOIN product_stock_summary s ON s.product_id = p.id</if>" +
+            " ORDER BY p.id" +
+            "<if test='limit != null'> LIMIT #{offset}, #{limit}</if>" +
+            "</script>")
+    List<ProductWithStockDto> selectCatalog(@Param("fields") Collection<String> fields,
+                                            @Param("offset") Long offset,
+                                            @Param("limit") Integer limit);
+}
@@ -0,0 +1,55 @@
+package com.tut2.group3.warehouse.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tut2.group3.warehouse.entity.StockLease;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface StockLeaseMapper extends BaseMapper<StockLease> {
+
+    /**
+     * Lock a lease for a settle or return
+     */
+    @Select("SELECT id, lease_id, holder_id, warehouse_id, product_id, granted_quantity, settled_quantity, " +
+            "status, expires_at FROM stock_lease WHERE lease_id = #{leaseId} FOR UPDATE")
+    StockLease lockByLeaseId(@Param("leaseId") String leaseId);
+
+    /**
+     * Record the holder's running sold count on an ACTIVE lease, optionally closing it in the same statement
+     */
+    @Update("UPDATE stock_lease SET settled_quantity = #{settledQuantity}, status = #{status} " +
+            "WHERE id = #{id} AND status = 'ACTIVE'")
+    int updateSettled(@Param("id") Long id,
+                      @Param("settledQuantity") Integer settledQuantity,
+                      @Param("status") String status);
+
+    /**
+     * Lock a batch of expired ACTIVE leases, oldest expiry first.
+     * Served by idx_status_expires; leases locked by a concurrent sweeper or settle are skipped.
+     */
+    @Select("SELECT id, lease_id, holder_id, warehouse_id, product_id, granted_quantity, settled_quantity, " +
+            "status, expires_at FROM stock_lease " +
+            "WHERE status = 'ACTIVE' AND expires_at <= #{now} " +
+            "ORDER BY expires_at LIMIT #{limit} " +
+            "FOR UPDATE SKIP LOCKED")
+    List<StockLease> lockExpired(@Param("now") LocalDateTime now,
+                                 @Param("limit") Integer limit);
+
+    /**
+     * Move a set of ACTIVE leases to a new status
+     */
+    @Update("<script>" +
+            "UPDATE stock_lease SET status = #{status} " +
+            "WHERE status = 'ACTIVE' AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateActiveStatusByIds(@Param("ids") Collection<Long> ids,
+                                @Param("status") String status);
+}
@@ -3,7 +3,75 @@ package com.tut2.group3.warehouse.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.tut2.group3.warehouse.entity.StockReservation;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface StockReservationMapper extends BaseMapper<StockReservation> {
+
+    /**
+     * Lock an order's RESERVED rows for a confirm or release
+     */
+    @Select("SELECT id, order_id, warehouse_id, product_id, quantity, status, expires_at " +
+            "FROM stock_reservation WHERE order_id = #{orderId} AND status = 'RESERVED' " +
+            "FOR UPDATE")
+    List<StockReservation> lockReservedByOrderId(@Param("orderId") String orderId);
+
+    /**
+     * Move all of an order's RESERVED rows to a new status
+     */
+    @Update("UPDATE stock_reservation SET status = #{status} " +
+            "WHERE order_id = #{orderId} AND status = 'RESERVED'")
+    int updateReservedStatusByOrderId(@Param("orderId") String orderId,
+                                      @Param("status") String status);
+
+    /**
+     * Lock the RESERVED rows of several orders at once
+     */
+    @Select("<script>" +
+            "SELECT id, order_id, warehouse_id, product_id, quantity, status, expires_at " +
+            "FROM stock_reservation WHERE status = 'RESERVED' AND order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            " FOR UPDATE" +
+            "</script>")
+    List<StockReservation> lockReservedByOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    /**
+     * Move the RESERVED rows of several orders to a new status
+     */
+    @Update("<script>" +
+            "UPDATE stock_reservation SET status = #{status} " +
+            "WHERE status = 'RESERVED' AND order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            "</script>")
+    int updateReservedStatusByOrderIds(@Param("orderIds") Collection<String> orderIds,
+                                       @Param("status") String status);
+
+    /**
+     * Lock a batch of expired RESERVED rows, oldest expiry first.
+     * Served by idx_status_expires; rows locked by a concurrent sweeper or confirm are skipped.
+     */
+    @Select("SELECT id, order_id, warehouse_id, product_id, quantity, status, expires_at " +
+            "FROM stock_reservation " +
+            "WHERE status = 'RESERVED' AND expires_at <= #{now} " +
+            "ORDER BY expires_at LIMIT #{limit} " +
+            "FOR UPDATE SKIP LOCKED")
+    List<StockReservation> lockExpired(@Param("now") LocalDateTime now,
+                                       @Param("limit") Integer limit);
+
+    /**
+     * Move a set of RESERVED rows to a new status.
+     */
+    @Update("<script>" +
+            "UPDATE stock_reservation SET status = #{status} " +
+            "WHERE status = 'RESERVED' AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateReservedStatusByIds(@Param("ids") Collection<Long> ids,
+                                  @Param("status") String status);
 }
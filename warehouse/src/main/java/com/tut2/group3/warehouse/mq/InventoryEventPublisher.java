@@ -0,0 +1,182 @@
+package com.tut2.group3.warehouse.mq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tut2.group3.warehouse.config.InventoryEventProperties;
+import com.tut2.group3.warehouse.config.RabbitMQConfig;
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.entity.InventoryEventOutbox;
+import com.tut2.group3.warehouse.mapper.InventoryEventOutboxMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends inventory change events through a transactional outbox.
+ * An event is written to inventory_event_outbox by the transaction that raised it, so it is stored exactly
+ * when the stock change commits. A relay thread claims the oldest rows in a short transaction, sends them on
+ * one channel and waits for publisher confirms outside any transaction, then deletes them in another short
+ * one; stock writes never wait on the broker. The relay is woken by each commit and otherwise polls.
+ * Nothing is lost on a full queue, a broker outage or a restart: unsent rows wait in the table, and a claim
+ * left by a relay that died is taken over once it is older than {@code warehouse.events.claim-timeout-ms}.
+ * Delivery is at least once, since a batch confirmed just before the instance stops may still be in the
+ * table and is sent again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final InventoryEventOutboxMapper outboxMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final InventoryEventProperties properties;
+
+    private final Semaphore wakeups = new Semaphore(0);
+    private Thread relay;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        relay = new Thread(this::relayLoop, "inventory-event-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        relay.interrupt();
+        relay.join(properties.getConfirmTimeoutMs() * 2);
+    }
+
+    /**
+     * Write the event to the outbox inside the transaction that raised it, and wake the relay once that commits;
+     * events raised outside a transaction are written and relayed at once
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onInventoryChange(InventoryChangeEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize inventory event " + event.getEventId(), e);
+        }
+        outboxMapper.insert(new InventoryEventOutbox(null, event.getEventId(), payload, LocalDateTime.now(), null));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeups.release();
+                }
+            });
+        } else {
+            wakeups.release();
+        }
+    }
+
+    /**
+     * Send the oldest outbox events and delete them once the broker confirms them; returns the rows handled.
+     * Events the broker does not confirm are released for the next attempt.
+     */
+    public int relayBatch() {
+        List<InventoryEventOutbox> rows = transactionTemplate.execute(status -> claimOldest());
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = rows.stream().map(InventoryEventOutbox::getId).toList();
+        List<InventoryChangeEvent> events = new ArrayList<>(rows.size());
+        for (InventoryEventOutbox row : rows) {
+            try {
+                events.add(objectMapper.readValue(row.getPayload(), InventoryChangeEvent.class));
+            } catch (JsonProcessingException e) {
+                log.error("Dropping unreadable inventory event {} from the outbox", row.getEventId(), e);
+            }
+        }
+        if (!events.isEmpty()) {
+            try {
+                sendBatch(events);
+            } catch (RuntimeException e) {
+                transactionTemplate.executeWithoutResult(status -> outboxMapper.releaseClaim(ids));
+                throw e;
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> outboxMapper.deleteSent(ids));
+        log.debug("Published {} inventory events", events.size());
+        return rows.size();
+    }
+
+    /**
+     * Claim the leading run of unclaimed rows. While another relay's claim on the oldest row is live, nothing
+     * is claimed, so batches still go out one at a time in id order.
+     */
+    private List<InventoryEventOutbox> claimOldest() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(Duration.ofMillis(properties.getClaimTimeoutMs()));
+        List<InventoryEventOutbox> claimable = new ArrayList<>();
+        for (InventoryEventOutbox row : outboxMapper.lockOldest(properties.getBatchSize())) {
+            if (row.getClaimedAt() != null && !row.getClaimedAt().isBefore(staleBefore)) {
+                break;
+            }
+            claimable.add(row);
+        }
+        if (!claimable.isEmpty()) {
+            outboxMapper.claim(claimable.stream().map(InventoryEventOutbox::getId).toList(), now);
+        }
+        return claimable;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                if (relayBatch() < properties.getBatchSize()) {
+                    // Caught up: wait for the next commit, or poll for rows other instances left behind
+                    wakeups.tryAcquire(properties.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+                    wakeups.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                // The batch was released and stays in the outbox; it is resent first
+                log.warn("Inventory event batch not confirmed, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(properties.getRetryBackoffMs());
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void sendBatch(List<InventoryChangeEvent> batch) {
+        rabbitTemplate.invoke(operations -> {
+            for (InventoryChangeEvent event : batch) {
+                operations.convertAndSend(RabbitMQConfig.WAREHOUSE_EXCHANGE,
+                        event.getEventType().getRoutingKey(), event);
+            }
+            operations.waitForConfirmsOrDie(properties.getConfirmTimeoutMs());
+            return null;
+        });
+    }
+}
@@ -2,20 +2,33 @@ package com.tut2.group3.warehouse.mq;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.tut2.group3.warehouse.dto.request.ReleaseStockRequest;
+import com.rabbitmq.client.Channel;
+import com.tut2.group3.warehouse.config.RabbitMQConfig;
+import com.tut2.group3.warehouse.dto.event.OrderCancelledEvent;
 import com.tut2.group3.warehouse.service.WarehouseService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageListener {
 
     private final WarehouseService warehouseService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper;
+    private final RabbitTemplate rabbitTemplate;
 
     /**
      * Listen for delivery pickup confirmation events
@@ -46,39 +59,98 @@ public class MessageListener {
     }
 
     /**
-     * Listen for order cancelled events
-     * Automatically release reserved stock for cancelled orders
+     * Listen for order cancelled events in batches
+     * Releases the reserved stock of every order in the batch in one transaction. Unparseable messages are
+     * dead-lettered on their own; if the batch fails, each message is retried alone so that only the
+     * failing ones are dead-lettered. A message that fails because the database is unavailable is parked
+     * on the retry queue, which hands it back after a delay instead of redelivering it at once.
      */
-    @RabbitListener(queues = "warehouse.order.cancelled")
-    public void handleOrderCancelled(String message) {
-        try {
-            log.info("Received order cancelled event: {}", message);
+    @RabbitListener(queues = RabbitMQConfig.WAREHOUSE_ORDER_CANCELLED_QUEUE,
+                    containerFactory = "batchRabbitListenerContainerFactory")
+    public void handleOrderCancelled(List<Message> messages, Channel channel) throws IOException {
+        log.info("Received {} order cancelled events", messages.size());
 
-            JsonNode jsonNode = objectMapper.readTree(message);
-            String orderId = jsonNode.get("orderId").asText();
-            String reason = jsonNode.has("reason")
-                    ? jsonNode.get("reason").asText()
-                    : "ORDER_CANCELLED";
+        // Parsed events and their messages keyed by delivery tag
+        Map<Long, OrderCancelledEvent> events = new LinkedHashMap<>();
+        Map<Long, Message> messagesByTag = new LinkedHashMap<>();
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            OrderCancelledEvent event = parseOrderCancelled(message);
+            if (event == null) {
+                channel.basicNack(deliveryTag, false, false);
+            } else {
+                events.put(deliveryTag, event);
+                messagesByTag.put(deliveryTag, message);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
 
-            // Generate a reservation ID for the cancellation
-            String reservationId = "AUTO-RELEASE-" + System.currentTimeMillis();
+        try {
+            warehouseService.releaseCancelledOrders(reasonsByOrderId(events.values()));
+            for (long deliveryTag : events.keySet()) {
+                channel.basicAck(deliveryTag, false);
+            }
+            return;
+        } catch (Exception e) {
+            log.warn("Batch release of {} cancelled orders failed, retrying one by one", events.size(), e);
+        }
 
-            // Create release request
-            ReleaseStockRequest releaseRequest = new ReleaseStockRequest(
-                    orderId,
-                    reservationId,
-                    reason
-            );
+        for (Map.Entry<Long, OrderCancelledEvent> entry : events.entrySet()) {
+            long deliveryTag = entry.getKey();
+            OrderCancelledEvent event = entry.getValue();
+            try {
+                warehouseService.releaseCancelledOrders(reasonsByOrderId(List.of(event)));
+                channel.basicAck(deliveryTag, false);
+            } catch (TransientDataAccessException e) {
+                // The database is unavailable rather than the message being bad: keep it for later
+                log.warn("Transient failure releasing stock for cancelled order {}, retrying in {} ms",
+                        event.getOrderId(), RabbitMQConfig.ORDER_CANCELLED_RETRY_DELAY_MS, e);
+                retryLater(messagesByTag.get(deliveryTag), deliveryTag, channel);
+            } catch (Exception e) {
+                log.error("Failed to release stock for cancelled order {}, dead-lettering", event.getOrderId(), e);
+                channel.basicNack(deliveryTag, false, false);
+            }
+        }
+    }
 
-            // Release the stock
-            warehouseService.releaseStock(releaseRequest);
+    /**
+     * Move the message to the retry queue and ack it. If the broker will not take it, it is requeued instead,
+     * which is no tighter a loop than the broker being down already makes it.
+     */
+    private void retryLater(Message message, long deliveryTag, Channel channel) throws IOException {
+        try {
+            rabbitTemplate.send("", RabbitMQConfig.WAREHOUSE_ORDER_CANCELLED_RETRY_QUEUE, message);
+        } catch (Exception e) {
+            log.warn("Could not park order cancelled event for retry, requeueing", e);
+            channel.basicNack(deliveryTag, false, true);
+            return;
+        }
+        channel.basicAck(deliveryTag, false);
+    }
 
-            log.info("Successfully released stock for cancelled order {}", orderId);
+    private OrderCancelledEvent parseOrderCancelled(Message message) {
+        try {
+            OrderCancelledEvent event = objectMapper.readValue(message.getBody(), OrderCancelledEvent.class);
+            if (event.getOrderId() == null || event.getOrderId().isBlank()) {
+                log.error("Order cancelled event without orderId, dead-lettering: {}",
+                        new String(message.getBody(), StandardCharsets.UTF_8));
+                return null;
+            }
+            return event;
+        } catch (IOException e) {
+            log.error("Unparseable order cancelled event, dead-lettering: {}",
+                    new String(message.getBody(), StandardCharsets.UTF_8), e);
+            return null;
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing order cancelled event", e);
-            // Don't throw exception to avoid infinite retry loop
-            // The message will be sent to DLQ after max retries
+    private Map<String, String> reasonsByOrderId(Collection<OrderCancelledEvent> events) {
+        Map<String, String> reasons = new LinkedHashMap<>();
+        for (OrderCancelledEvent event : events) {
+            reasons.put(event.getOrderId(), event.getReason() != null ? event.getReason() : "ORDER_CANCELLED");
         }
+        return reasons;
     }
 }
@@ -0,0 +1,29 @@
+package com.tut2.group3.warehouse.scheduler;
+
+import com.tut2.group3.warehouse.service.InventoryLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Folds the inventory ledger into per-SKU snapshots so point-in-time stock queries
+ * only replay the ledger written since the last run
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventorySnapshotScheduler {
+
+    private final InventoryLedgerService inventoryLedgerService;
+
+    @Scheduled(fixedDelayString = "${warehouse.ledger.snapshot-interval-ms:300000}",
+               initialDelayString = "${warehouse.ledger.snapshot-interval-ms:300000}")
+    public void takeSnapshot() {
+        try {
+            inventoryLedgerService.takeSnapshot();
+        } catch (Exception e) {
+            log.error("Inventory snapshot failed", e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.tut2.group3.warehouse.scheduler;
+
+import com.tut2.group3.warehouse.config.ReservationProperties;
+import com.tut2.group3.warehouse.service.WarehouseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Returns stock held by expired reservations to sale.
+ * Covers orders whose saga never reached confirm or release, e.g. when the store crashed mid-order.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReservationExpiryScheduler {
+
+    private final WarehouseService warehouseService;
+    private final ReservationProperties reservationProperties;
+
+    /**
+     * Releases expired reservations in bounded batches, one transaction per batch,
+     * stopping once the backlog is drained or the per-run batch limit is reached
+     */
+    @Scheduled(fixedDelayString = "${warehouse.reservation.sweep-interval-ms:10000}",
+               initialDelayString = "${warehouse.reservation.sweep-interval-ms:10000}")
+    public void releaseExpiredReservations() {
+        int batchSize = reservationProperties.getSweepBatchSize();
+        int released = 0;
+        try {
+            for (int batch = 0; batch < reservationProperties.getSweepMaxBatches(); batch++) {
+                int count = warehouseService.releaseExpiredReservations(batchSize);
+                released += count;
+                if (count < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Reservation expiry sweep failed after releasing {} reservations", released, e);
+            return;
+        }
+        if (released > 0) {
+            log.info("Reservation expiry sweep released {} reservations", released);
+        }
+    }
+}
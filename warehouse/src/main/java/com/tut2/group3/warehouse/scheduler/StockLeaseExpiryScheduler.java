@@ -0,0 +1,43 @@
+package com.tut2.group3.warehouse.scheduler;
+
+import com.tut2.group3.warehouse.config.LeaseProperties;
+import com.tut2.group3.warehouse.service.StockLeaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Returns the unsold units of expired stock leases to sale.
+ * Covers store instances that stopped before returning their leases, e.g. after a crash.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockLeaseExpiryScheduler {
+
+    private final StockLeaseService stockLeaseService;
+    private final LeaseProperties leaseProperties;
+
+    @Scheduled(fixedDelayString = "${warehouse.lease.sweep-interval-ms:10000}",
+               initialDelayString = "${warehouse.lease.sweep-interval-ms:10000}")
+    public void expireLeases() {
+        int batchSize = leaseProperties.getSweepBatchSize();
+        int expired = 0;
+        try {
+            for (int batch = 0; batch < leaseProperties.getSweepMaxBatches(); batch++) {
+                int count = stockLeaseService.expireLeases(batchSize);
+                expired += count;
+                if (count < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Lease expiry sweep failed after expiring {} leases", expired, e);
+            return;
+        }
+        if (expired > 0) {
+            log.info("Lease expiry sweep expired {} leases", expired);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.tut2.group3.warehouse.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over product names.
+ *
+ * Every name is lower-cased and broken into overlapping 3-character grams; each gram keeps a
+ * sorted posting list of document ordinals. A query of 3+ characters intersects the posting
+ * lists of its own trigrams and verifies the survivors with a substring check, so it has the
+ * same matching semantics as {@code LIKE '%query%'} without touching the database.
+ * Shorter queries scan the live names directly.
+ *
+ * Updates append a new ordinal and tombstone the old one; the index compacts itself once
+ * tombstones outnumber live entries. Reads and writes are guarded by a read/write lock.
+ */
+public class ProductNameIndex {
+
+    /** Match tiers, best first */
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+
+    private static final int MIN_COMPACTION_TOMBSTONES = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private String[] displayNames = new String[1024];
+    private int size;
+    private int tombstones;
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Insert or replace the name indexed for a product
+     */
+    public void put(long productId, String name) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            if (name == null) {
+                return;
+            }
+            addInternal(productId, name);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a product from the index
+     */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atomically replace the whole index content
+     */
+    public void rebuild(Map<Long, String> namesById) {
+        lock.writeLock().lock();
+        try {
+            clear(Math.max(namesById.size(), 16));
+            namesById.forEach((id, name) -> {
+                if (name != null) {
+                    addInternal(id, name);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the ids currently indexed
+     */
+    public Set<Long> productIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(ordinalById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find products whose name contains the query, ranked by relevance:
+     * exact match, then prefix, then word prefix, then any substring; shorter names and lower ids first
+     *
+     * @param page 1-based page number
+     * @param pageSize number of hits per page
+     */
+    public SearchResult search(String query, int page, int pageSize) {
+        String normalized = normalize(query);
+        int safePage = Math.max(page, 1);
+        int safeSize = Math.max(pageSize, 1);
+        if (normalized.isEmpty()) {
+            return new SearchResult(0, List.of());
+        }
+        long wanted = (long) safePage * safeSize;
+        int keep = (int) Math.min(wanted, Integer.MAX_VALUE);
+
+        lock.readLock().lock();
+        try {
+            Comparator<Hit> ranking = Comparator.comparingInt(Hit::tier)
+                    .thenComparingInt(Hit::length)
+                    .thenComparingLong(Hit::productId);
+            // Max-heap on ranking holding the best "keep" hits seen so far
+            PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(keep, 1024) + 1, ranking.reversed());
+            int total = 0;
+
+            if (normalized.length() < 3) {
+                for (int ordinal = 0; ordinal < size; ordinal++) {
+                    if (offer(best, keep, ranking, ordinal, normalized)) {
+                        total++;
+                    }
+                }
+            } else {
+                int[] candidates = candidates(normalized);
+                for (int ordinal : candidates) {
+                    if (offer(best, keep, ranking, ordinal, normalized)) {
+                        total++;
+                    }
+                }
+            }
+
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(ranking);
+            int from = (int) Math.min((long) (safePage - 1) * safeSize, ranked.size());
+            return new SearchResult(total, List.copyOf(ranked.subList(from, ranked.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean offer(PriorityQueue<Hit> best, int keep, Comparator<Hit> ranking, int ordinal, String query) {
+        String name = names[ordinal];
+        if (name == null) {
+            return false;
+        }
+        int position = name.indexOf(query);
+        if (position < 0) {
+            return false;
+        }
+        Hit hit = new Hit(ids[ordinal], displayNames[ordinal], tier(name, query, position), name.length());
+        if (best.size() < keep) {
+            best.add(hit);
+        } else if (ranking.compare(hit, best.peek()) < 0) {
+            best.poll();
+            best.add(hit);
+        }
+        return true;
+    }
+
+    private int tier(String name, String query, int firstPosition) {
+        if (firstPosition == 0) {
+            return name.length() == query.length() ? EXACT : PREFIX;
+        }
+        for (int position = firstPosition; position >= 0; position = name.indexOf(query, position + 1)) {
+            if (!Character.isLetterOrDigit(name.charAt(position - 1))) {
+                return WORD_PREFIX;
+            }
+        }
+        return SUBSTRING;
+    }
+
+    /**
+     * Intersect the posting lists of every distinct trigram in the query, rarest first
+     */
+    private int[] candidates(String query) {
+        Set<Long> grams = trigrams(query);
+        Postings[] lists = new Postings[grams.size()];
+        int index = 0;
+        for (Long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists[index++] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists[0].docs, lists[0].size);
+        int resultSize = result.length;
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            resultSize = intersect(result, resultSize, lists[i]);
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Intersect sorted arrays in place, galloping through the longer list
+     */
+    private static int intersect(int[] target, int targetSize, Postings other) {
+        int kept = 0;
+        int cursor = 0;
+        for (int i = 0; i < targetSize && cursor < other.size; i++) {
+            int doc = target[i];
+            int found = Arrays.binarySearch(other.docs, cursor, other.size, doc);
+            if (found >= 0) {
+                target[kept++] = doc;
+                cursor = found + 1;
+            } else {
+                cursor = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    private void addInternal(long productId, String name) {
+        String normalized = normalize(name);
+        ensureCapacity(size + 1);
+        int ordinal = size++;
+        ids[ordinal] = productId;
+        names[ordinal] = normalized;
+        displayNames[ordinal] = name;
+        ordinalById.put(productId, ordinal);
+        // Ordinals only grow, so appending keeps every posting list sorted
+        long[] grams = trigramArray(normalized);
+        for (int i = 0; i < grams.length; i++) {
+            if (i > 0 && grams[i] == grams[i - 1]) {
+                continue;
+            }
+            postings.computeIfAbsent(grams[i], key -> new Postings()).add(ordinal);
+        }
+    }
+
+    private void removeInternal(long productId) {
+        Integer ordinal = ordinalById.remove(productId);
+        if (ordinal != null) {
+            names[ordinal] = null;
+            displayNames[ordinal] = null;
+            tombstones++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones < MIN_COMPACTION_TOMBSTONES || tombstones < size - tombstones) {
+            return;
+        }
+        long[] liveIds = new long[size - tombstones];
+        String[] liveNames = new String[size - tombstones];
+        int live = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            if (names[ordinal] != null) {
+                liveIds[live] = ids[ordinal];
+                liveNames[live] = displayNames[ordinal];
+                live++;
+            }
+        }
+        clear(Math.max(live, 16));
+        for (int i = 0; i < live; i++) {
+            addInternal(liveIds[i], liveNames[i]);
+        }
+    }
+
+    private void clear(int capacity) {
+        ids = new long[capacity];
+        names = new String[capacity];
+        displayNames = new String[capacity];
+        size = 0;
+        tombstones = 0;
+        ordinalById.clear();
+        postings.clear();
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        displayNames = Arrays.copyOf(displayNames, capacity);
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<Long> trigrams(String value) {
+        Set<Long> grams = new HashSet<>();
+        for (long gram : trigramArray(value)) {
+            grams.add(gram);
+        }
+        return grams;
+    }
+
+    /**
+     * Trigrams packed as three 16-bit chars per long, sorted so duplicates are adjacent
+     */
+    private static long[] trigramArray(String value) {
+        int count = Math.max(value.length() - 2, 0);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        return grams;
+    }
+
+    /**
+     * Growable sorted list of ordinals
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size << 1);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    public record Hit(long productId, String name, int tier, int length) {
+    }
+
+    public record SearchResult(int total, List<Hit> hits) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.tut2.group3.warehouse.service;
+
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.dto.event.InventoryEventType;
+import com.tut2.group3.warehouse.mapper.CatalogVersionMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weak ETags for the product catalog and warehouse list.
+ * Tags come from small version queries, so a client revalidating an unchanged resource costs no payload query.
+ * Callers must read the tag in the same read-only transaction as the payload it describes.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogVersionService {
+
+    /** Rows in catalog_version; must match the seeded slots */
+    static final int VERSION_SLOTS = 16;
+
+    private final CatalogVersionMapper catalogVersionMapper;
+
+    public String productCatalogETag() {
+        return "W/\"products-" + catalogVersionMapper.selectProductCatalogVersion() + "\"";
+    }
+
+    public String warehouseListETag() {
+        return "W/\"warehouses-" + catalogVersionMapper.selectWarehouseListVersion() + "\"";
+    }
+
+    /**
+     * Move the catalog version inside the transaction of each stock change, so the change and the new tag
+     * commit together and a failed bump rolls the change back.
+     * Confirms only reduce reserved stock, which the catalog does not show.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangeEvent event) {
+        if (event.getEventType() == InventoryEventType.STOCK_CONFIRMED) {
+            return;
+        }
+        catalogVersionMapper.bump(ThreadLocalRandom.current().nextInt(VERSION_SLOTS));
+    }
+}
@@ -0,0 +1,191 @@
+package com.tut2.group3.warehouse.service;
+
+import com.tut2.group3.warehouse.config.LedgerProperties;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.response.StockAsOfResponse;
+import com.tut2.group3.warehouse.entity.InventoryLedger;
+import com.tut2.group3.warehouse.entity.InventorySnapshot;
+import com.tut2.group3.warehouse.entity.StockLease;
+import com.tut2.group3.warehouse.entity.StockReservation;
+import com.tut2.group3.warehouse.mapper.InventoryLedgerMapper;
+import com.tut2.group3.warehouse.mapper.InventorySnapshotMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only inventory ledger and point-in-time stock.
+ * Every inventory mutation appends its movements here in the same transaction. Periodic snapshots fold
+ * the ledger per SKU, so stock as of any time is the latest snapshot before it plus the ledger rows
+ * written since that snapshot, never a scan of the full history.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryLedgerService {
+
+    private static final Comparator<InventoryLedger> BY_ROW =
+            Comparator.comparing(InventoryLedger::getWarehouseId).thenComparing(InventoryLedger::getProductId);
+
+    private final InventoryLedgerMapper inventoryLedgerMapper;
+    private final InventorySnapshotMapper inventorySnapshotMapper;
+    private final LedgerProperties ledgerProperties;
+
+    /**
+     * Record reservation movements, one ledger row per reservation.
+     * RESERVE moves available to reserved, CONFIRM ships reserved stock, and RELEASE, EXPIRE and CANCEL
+     * move reserved back to available.
+     */
+    public void recordReservations(List<StockReservation> reservations, String reason) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryLedger> entries = new ArrayList<>(reservations.size());
+        for (StockReservation reservation : reservations) {
+            int quantity = reservation.getQuantity();
+            int availableDelta = switch (reason) {
+                case "RESERVE" -> -quantity;
+                case "CONFIRM" -> 0;
+                case "RELEASE", "EXPIRE", "CANCEL" -> quantity;
+                default -> throw new IllegalArgumentException("Unknown reservation ledger reason: " + reason);
+            };
+            int reservedDelta = "RESERVE".equals(reason) ? quantity : -quantity;
+            entries.add(new InventoryLedger(null, reservation.getWarehouseId(), reservation.getProductId(),
+                    availableDelta, reservedDelta, reason, reservation.getOrderId(), now));
+        }
+        inventoryLedgerMapper.insertBatch(entries);
+    }
+
+    /**
+     * Record stock lease movements, one ledger row per lease with the lease id in place of an order id.
+     * LEASE moves available to reserved, LEASE_SETTLE ships units the holder sold, and LEASE_RETURN and
+     * LEASE_EXPIRE move the unsold remainder back to available. Leases with nothing to move are skipped.
+     */
+    public void recordLeaseMovements(List<StockLease> leases, ToIntFunction<StockLease> quantityOf, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryLedger> entries = new ArrayList<>(leases.size());
+        for (StockLease lease : leases) {
+            int quantity = quantityOf.applyAsInt(lease);
+            if (quantity == 0) {
+                continue;
+            }
+            int availableDelta = switch (reason) {
+                case "LEASE" -> -quantity;
+                case "LEASE_SETTLE" -> 0;
+                case "LEASE_RETURN", "LEASE_EXPIRE" -> quantity;
+                default -> throw new IllegalArgumentException("Unknown lease ledger reason: " + reason);
+            };
+            int reservedDelta = "LEASE".equals(reason) ? quantity : -quantity;
+            entries.add(new InventoryLedger(null, lease.getWarehouseId(), lease.getProductId(),
+                    availableDelta, reservedDelta, reason, lease.getLeaseId(), now));
+        }
+        if (!entries.isEmpty()) {
+            inventoryLedgerMapper.insertBatch(entries);
+        }
+    }
+
+    /**
+     * Record direct changes to available stock (stock updates and imports), one ledger row per delta
+     */
+    public void recordAvailableChanges(List<StockDelta> deltas, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryLedger> entries = deltas.stream()
+                .filter(delta -> delta.getQuantity() != 0)
+                .map(delta -> new InventoryLedger(null, delta.getWarehouseId(), delta.getProductId(),
+                        delta.getQuantity(), 0, reason, null, now))
+                .toList();
+        if (!entries.isEmpty()) {
+            inventoryLedgerMapper.insertBatch(entries);
+        }
+    }
+
+    /**
+     * Stock per (warehouse, product) as of ts, optionally narrowed to one warehouse and/or product.
+     * Every snapshot run writes a row for each SKU that moved since the previous run, so the ledger rows
+     * still to replay all lie between the latest snapshot run at or before ts and ts itself.
+     */
+    @Transactional(readOnly = true)
+    public StockAsOfResponse getStockAsOf(LocalDateTime ts, Long warehouseId, Long productId) {
+        LocalDateTime snapshotAt = inventorySnapshotMapper.selectLatestSnapshotAt(ts);
+
+        Map<String, StockAsOfResponse.StockLevel> levels = new HashMap<>();
+        if (snapshotAt != null) {
+            for (InventorySnapshot snapshot : inventorySnapshotMapper.selectLatestAsOf(ts, warehouseId, productId)) {
+                levels.put(rowKey(snapshot.getWarehouseId(), snapshot.getProductId()),
+                        new StockAsOfResponse.StockLevel(snapshot.getWarehouseId(), snapshot.getProductId(),
+                                snapshot.getAvailableQuantity(), snapshot.getReservedQuantity()));
+            }
+        }
+        for (InventoryLedger movement : inventoryLedgerMapper.sumMovements(snapshotAt, ts, warehouseId, productId)) {
+            StockAsOfResponse.StockLevel level = levels.computeIfAbsent(
+                    rowKey(movement.getWarehouseId(), movement.getProductId()),
+                    key -> new StockAsOfResponse.StockLevel(movement.getWarehouseId(), movement.getProductId(), 0, 0));
+            level.setAvailableQuantity(level.getAvailableQuantity() + movement.getAvailableDelta());
+            level.setReservedQuantity(level.getReservedQuantity() + movement.getReservedDelta());
+        }
+
+        List<StockAsOfResponse.StockLevel> stocks = new ArrayList<>(levels.values());
+        stocks.sort(Comparator.comparing(StockAsOfResponse.StockLevel::getWarehouseId)
+                .thenComparing(StockAsOfResponse.StockLevel::getProductId));
+        return StockAsOfResponse.builder()
+                .asOf(ts)
+                .snapshotAt(snapshotAt)
+                .stocks(stocks)
+                .build();
+    }
+
+    /**
+     * Fold the ledger rows written since the previous snapshot into new per-SKU snapshots at
+     * now minus the settle window. Returns the number of SKUs snapshotted.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int takeSnapshot() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(ledgerProperties.getSettleSeconds());
+        LocalDateTime previous = inventorySnapshotMapper.selectLatestSnapshotAt(cutoff);
+        if (previous != null && !cutoff.isAfter(previous)) {
+            return 0;
+        }
+
+        List<InventoryLedger> movements = new ArrayList<>(
+                inventoryLedgerMapper.sumMovements(previous, cutoff, null, null));
+        movements.sort(BY_ROW);
+
+        int batchSize = ledgerProperties.getSnapshotBatchSize();
+        for (int from = 0; from < movements.size(); from += batchSize) {
+            List<InventoryLedger> batch = movements.subList(from, Math.min(from + batchSize, movements.size()));
+            Map<String, InventorySnapshot> bases = previous == null
+                    ? Map.of()
+                    : inventorySnapshotMapper.selectLatestAsOfForRows(previous, batch).stream()
+                            .collect(Collectors.toMap(s -> rowKey(s.getWarehouseId(), s.getProductId()),
+                                    Function.identity()));
+
+            List<InventorySnapshot> snapshots = new ArrayList<>(batch.size());
+            for (InventoryLedger movement : batch) {
+                InventorySnapshot base = bases.get(rowKey(movement.getWarehouseId(), movement.getProductId()));
+                snapshots.add(new InventorySnapshot(movement.getWarehouseId(), movement.getProductId(), cutoff,
+                        (base != null ? base.getAvailableQuantity() : 0) + movement.getAvailableDelta(),
+                        (base != null ? base.getReservedQuantity() : 0) + movement.getReservedDelta()));
+            }
+            inventorySnapshotMapper.insertBatch(snapshots);
+        }
+
+        log.info("Inventory snapshot at {} covered {} SKUs", cutoff, movements.size());
+        return movements.size();
+    }
+
+    private static String rowKey(Long warehouseId, Long productId) {
+        return warehouseId + ":" + productId;
+    }
+}
@@ -0,0 +1,206 @@
+package com.tut2.group3.warehouse.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.tut2.group3.warehouse.dto.response.ProductSearchResponse;
+import com.tut2.group3.warehouse.entity.Product;
+import com.tut2.group3.warehouse.mapper.CatalogVersionMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.search.ProductNameIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Owns the in-memory product name index: builds it once the application is ready,
+ * folds in product changes and deletions, and answers name searches from memory.
+ * Every product insert, update and delete moves a catalog_version counter by trigger, so a cheap check of
+ * those counters starts a catch-up as soon as a product is written; the timed refresh and reconcile runs
+ * remain as a backstop.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchService {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    static final String PRODUCT_ROWS = "product_rows";
+    static final String PRODUCT_DELETES = "product_deletes";
+
+    private final ProductMapper productMapper;
+    private final CatalogVersionMapper catalogVersionMapper;
+    private final ProductNameIndex index = new ProductNameIndex();
+
+    private volatile boolean ready;
+    private volatile LocalDateTime watermark;
+    // Product counters as of the last catch-up
+    private volatile long seenRowsVersion;
+    private volatile long seenDeletesVersion;
+
+    /**
+     * Build the index from the product table, streaming id and name in keyset batches
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long started = System.currentTimeMillis();
+        // Read before loading, so a product written during the load is caught up afterwards
+        seenRowsVersion = catalogVersionMapper.selectResourceVersion(PRODUCT_ROWS);
+        seenDeletesVersion = catalogVersionMapper.selectResourceVersion(PRODUCT_DELETES);
+        Map<Long, String> names = new HashMap<>();
+        LocalDateTime latest = null;
+        long lastId = 0;
+        while (true) {
+            List<Product> batch = productMapper.selectList(new LambdaQueryWrapper<Product>()
+                    .select(Product::getId, Product::getName, Product::getUpdatedAt)
+                    .gt(Product::getId, lastId)
+                    .orderByAsc(Product::getId)
+                    .last("LIMIT " + LOAD_BATCH_SIZE));
+            for (Product product : batch) {
+                names.put(product.getId(), product.getName());
+                latest = later(latest, product.getUpdatedAt());
+            }
+            if (batch.size() < LOAD_BATCH_SIZE) {
+                break;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        index.rebuild(names);
+        watermark = latest;
+        ready = true;
+        log.info("Product name index built with {} products in {} ms", names.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Catch up with product writes as soon as their counters move: inserts and updates are refreshed
+     * from updated_at, and deletes are reconciled against the table
+     */
+    @Scheduled(fixedDelayString = "${warehouse.search.change-check-interval-ms:1000}",
+            initialDelayString = "${warehouse.search.change-check-interval-ms:1000}")
+    public void followProductChanges() {
+        if (!ready) {
+            return;
+        }
+        try {
+            long rowsVersion = catalogVersionMapper.selectResourceVersion(PRODUCT_ROWS);
+            long deletesVersion = catalogVersionMapper.selectResourceVersion(PRODUCT_DELETES);
+            if (rowsVersion != seenRowsVersion) {
+                seenRowsVersion = rowsVersion;
+                refreshIndex();
+            }
+            if (deletesVersion != seenDeletesVersion) {
+                seenDeletesVersion = deletesVersion;
+                reconcileRemovals();
+            }
+        } catch (Exception e) {
+            log.error("Failed to check product change counters", e);
+        }
+    }
+
+    /**
+     * Pick up products created or renamed since the last refresh
+     */
+    @Scheduled(fixedDelayString = "${warehouse.search.refresh-interval-ms:30000}",
+            initialDelayString = "${warehouse.search.refresh-interval-ms:30000}")
+    public void refreshIndex() {
+        if (!ready) {
+            return;
+        }
+        try {
+            LambdaQueryWrapper<Product> query = new LambdaQueryWrapper<Product>()
+                    .select(Product::getId, Product::getName, Product::getUpdatedAt);
+            if (watermark != null) {
+                // Timestamps have second precision, so re-read the boundary second; put is idempotent
+                query.ge(Product::getUpdatedAt, watermark);
+            }
+            LocalDateTime latest = watermark;
+            List<Product> changed = productMapper.selectList(query);
+            for (Product product : changed) {
+                index.put(product.getId(), product.getName());
+                latest = later(latest, product.getUpdatedAt());
+            }
+            watermark = latest;
+            if (!changed.isEmpty()) {
+                log.debug("Refreshed {} product(s) in name index", changed.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh product name index", e);
+        }
+    }
+
+    /**
+     * Drop products deleted since the index was built. A delete leaves no updated_at behind for
+     * {@link #refreshIndex()} to pick up, so the indexed ids are checked against the table's ids instead,
+     * on a slower cadence since it scans every id
+     */
+    @Scheduled(fixedDelayString = "${warehouse.search.reconcile-interval-ms:600000}",
+            initialDelayString = "${warehouse.search.reconcile-interval-ms:600000}")
+    public void reconcileRemovals() {
+        if (!ready) {
+            return;
+        }
+        try {
+            // Taken before the scan, so a product indexed while it runs is never taken for a deleted one
+            Set<Long> missing = index.productIds();
+            long lastId = 0;
+            while (true) {
+                List<Product> batch = productMapper.selectList(new LambdaQueryWrapper<Product>()
+                        .select(Product::getId)
+                        .gt(Product::getId, lastId)
+                        .orderByAsc(Product::getId)
+                        .last("LIMIT " + LOAD_BATCH_SIZE));
+                for (Product product : batch) {
+                    missing.remove(product.getId());
+                }
+                if (batch.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            missing.forEach(index::remove);
+            if (!missing.isEmpty()) {
+                log.info("Removed {} deleted product(s) from name index", missing.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to reconcile product name index with the product table", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Relevance-ranked, paginated name search served from memory
+     */
+    public ProductSearchResponse search(String query, int page, int size) {
+        ProductNameIndex.SearchResult result = index.search(query, page, size);
+        return ProductSearchResponse.builder()
+                .query(query)
+                .totalMatches(result.total())
+                .page(Math.max(page, 1))
+                .size(Math.max(size, 1))
+                .results(result.hits().stream()
+                        .map(hit -> ProductSearchResponse.ProductSearchHit.builder()
+                                .id(hit.productId())
+                                .name(hit.name())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private static LocalDateTime later(LocalDateTime current, LocalDateTime candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+}
@@ -1,17 +1,25 @@
 package com.tut2.group3.warehouse.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tut2.group3.warehouse.dto.response.ProductPriceResponse;
+import com.tut2.group3.warehouse.dto.response.ProductSearchResponse;
 import com.tut2.group3.warehouse.dto.response.ProductWithStockDto;
-import com.tut2.group3.warehouse.entity.Inventory;
 import com.tut2.group3.warehouse.entity.Product;
-import com.tut2.group3.warehouse.mapper.InventoryMapper;
 import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,8 +27,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductService {
 
+    public static final Set<String> CATALOG_FIELDS = Set.of("id", "name", "description", "price", "stock");
+    private static final int MAX_CATALOG_PAGE_SIZE = 500;
+
     private final ProductMapper productMapper;
-    private final InventoryMapper inventoryMapper;
+    private final ProductStockSummaryMapper productStockSummaryMapper;
+    private final CatalogVersionService catalogVersionService;
+    private final ProductSearchService productSearchService;
 
     /**
      * Get product by ID
@@ -50,11 +63,62 @@ public class ProductService {
 
     /**
      * Search products by name (fuzzy search)
+     * Served from the in-memory name index, best matches first; falls back to SQL until the index is built.
+     * Returns at most MAX_CATALOG_PAGE_SIZE products, so a one-letter query cannot load the whole table.
      */
     public List<Product> searchProductsByName(String name) {
         log.info("Searching products by name: {}", name);
+        if (!productSearchService.isReady()) {
+            return searchProductsByNameInDatabase(name);
+        }
+        ProductSearchResponse matches = productSearchService.search(name, 1, MAX_CATALOG_PAGE_SIZE);
+        List<Long> ids = matches.getResults().stream()
+                .map(ProductSearchResponse.ProductSearchHit::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Product> productsById = productMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Relevance-ranked, paginated product name search for type-ahead lookups
+     */
+    public ProductSearchResponse searchProducts(String name, int page, int size) {
+        log.debug("Searching products by name: {} page={} size={}", name, page, size);
+        int safeSize = Math.min(Math.max(size, 1), MAX_CATALOG_PAGE_SIZE);
+        if (productSearchService.isReady()) {
+            return productSearchService.search(name, page, safeSize);
+        }
+        Page<Product> result = productMapper.selectPage(new Page<>(Math.max(page, 1), safeSize),
+                new LambdaQueryWrapper<Product>()
+                        .select(Product::getId, Product::getName)
+                        .like(Product::getName, name)
+                        .orderByAsc(Product::getId));
+        return ProductSearchResponse.builder()
+                .query(name)
+                .totalMatches((int) result.getTotal())
+                .page(Math.max(page, 1))
+                .size(safeSize)
+                .results(result.getRecords().stream()
+                        .map(product -> ProductSearchResponse.ProductSearchHit.builder()
+                                .id(product.getId())
+                                .name(product.getName())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private List<Product> searchProductsByNameInDatabase(String name) {
         LambdaQueryWrapper<Product> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.like(Product::getName, name);
+        queryWrapper.like(Product::getName, name)
+                .orderByAsc(Product::getId)
+                .last("LIMIT " + MAX_CATALOG_PAGE_SIZE);
         return productMapper.selectList(queryWrapper);
     }
 
@@ -102,36 +166,65 @@ public class ProductService {
 
     /**
      * Get all products with stock information
-     * Stock is calculated from inventory table (availableQuantity only)
-     * This matches the checkAvailability logic to show only purchasable stock
+     * Stock comes from product_stock_summary (availableQuantity only), which is kept in step
+     * with inventory, so the catalog never aggregates inventory per product
      */
+    @Transactional(readOnly = true)
     public List<ProductWithStockDto> getAllProductsWithStock() {
-        log.info("Querying all products with stock information");
-        List<Product> products = productMapper.selectList(null);
-
-        return products.stream()
-                .map(product -> {
-                    // Calculate available stock from all warehouses for this product
-                    LambdaQueryWrapper<Inventory> inventoryQuery = new LambdaQueryWrapper<>();
-                    inventoryQuery.eq(Inventory::getProductId, product.getId());
-                    List<Inventory> inventories = inventoryMapper.selectList(inventoryQuery);
-
-                    // Sum up only availableQuantity from all warehouses
-                    // This matches the checkAvailability logic
-                    int availableStock = inventories.stream()
-                            .mapToInt(inv ->
-                                inv.getAvailableQuantity() != null ? inv.getAvailableQuantity() : 0
-                            )
-                            .sum();
-
-                    return ProductWithStockDto.builder()
-                            .id(product.getId())
-                            .name(product.getName())
-                            .description(product.getDescription())
-                            .price(product.getPrice())
-                            .stock(availableStock)
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return getProductCatalog(null, null, CATALOG_FIELDS);
+    }
+
+    /**
+     * Get a page of the product catalog with only the requested fields populated
+     *
+     * @param page   1-based page number, ignored when size is null
+     * @param size   page size, or null for the whole catalog
+     * @param fields subset of {@link #CATALOG_FIELDS} to return; id is always included
+     */
+    @Transactional(readOnly = true)
+    public List<ProductWithStockDto> getProductCatalog(Integer page, Integer size, Set<String> fields) {
+        log.info("Querying product catalog page={} size={} fields={}", page, size, fields);
+        Integer limit = null;
+        long offset = 0;
+        if (size != null) {
+            limit = Math.min(Math.max(size, 1), MAX_CATALOG_PAGE_SIZE);
+            offset = (long) (Math.max(page != null ? page : 1, 1) - 1) * limit;
+        }
+        return productStockSummaryMapper.selectCatalog(fields, offset, limit);
+    }
+
+    /**
+     * Conditional form of {@link #getProductCatalog}: returns null without querying the catalog when
+     * notModified accepts the current catalog ETag. Tag and page are read in one transaction so they match.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductWithStockDto> getProductCatalog(Integer page, Integer size, Set<String> fields,
+                                                       Predicate<String> notModified) {
+        if (notModified.test(catalogVersionService.productCatalogETag())) {
+            return null;
+        }
+        return getProductCatalog(page, size, fields);
+    }
+
+    /**
+     * Parse a comma separated field list into catalog fields, defaulting to all of them
+     */
+    public Set<String> resolveCatalogFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return CATALOG_FIELDS;
+        }
+        Set<String> resolved = new HashSet<>();
+        resolved.add("id");
+        for (String field : fields.split(",")) {
+            String trimmed = field.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!CATALOG_FIELDS.contains(trimmed)) {
+                throw new IllegalArgumentException("Unknown product field: " + trimmed);
+            }
+            resolved.add(trimmed);
+        }
+        return resolved;
     }
 }
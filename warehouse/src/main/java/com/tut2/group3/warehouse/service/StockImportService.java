@@ -0,0 +1,272 @@
+package com.tut2.group3.warehouse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tut2.group3.warehouse.config.StockImportProperties;
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.dto.event.InventoryEventType;
+import com.tut2.group3.warehouse.dto.event.InventoryLevel;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.request.StockImportRow;
+import com.tut2.group3.warehouse.dto.response.StockImportResponse;
+import com.tut2.group3.warehouse.entity.Warehouse;
+import com.tut2.group3.warehouse.mapper.InventoryMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
+import com.tut2.group3.warehouse.mapper.WarehouseMapper;
+import com.tut2.group3.warehouse.utils.IdGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk stock import.
+ * The body is read line by line and applied in chunks, each chunk as one multi-row upsert in its
+ * own transaction, so memory use is bounded by the chunk size rather than the file size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockImportService {
+
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final String CSV_HEADER = "warehouseId,productId,quantity";
+
+    private final InventoryMapper inventoryMapper;
+    private final ProductMapper productMapper;
+    private final WarehouseMapper warehouseMapper;
+    private final ProductStockSummaryMapper productStockSummaryMapper;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final StockImportProperties importProperties;
+    private final ObjectMapper objectMapper;
+    private final IdGenerator idGenerator;
+
+    /**
+     * Import stock from a CSV or NDJSON stream. Each row adds its quantity to available stock.
+     * Rows that cannot be parsed or refer to unknown warehouses or products are rejected individually;
+     * a chunk that fails in the database is rejected as a whole and the import carries on.
+     */
+    public StockImportResponse importStock(InputStream body, String contentType) throws IOException {
+        String format = resolveFormat(contentType);
+        ImportProgress progress = new ImportProgress(format);
+
+        Set<Long> warehouseIds = warehouseMapper.selectList(null).stream()
+                .map(Warehouse::getId)
+                .collect(Collectors.toSet());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<ParsedRow> chunk = new ArrayList<>(importProperties.getChunkSize());
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (lineNumber == 1 && CSV.equals(format) && line.replace(" ", "").equalsIgnoreCase(CSV_HEADER)) {
+                continue;
+            }
+
+            progress.totalRows++;
+            StockImportRow row;
+            try {
+                row = CSV.equals(format) ? parseCsv(line) : objectMapper.readValue(line, StockImportRow.class);
+            } catch (Exception e) {
+                progress.reject(lineNumber, "Unparseable row");
+                continue;
+            }
+
+            String problem = validate(row, warehouseIds);
+            if (problem != null) {
+                progress.reject(lineNumber, problem);
+                continue;
+            }
+
+            chunk.add(new ParsedRow(lineNumber, row));
+            if (chunk.size() >= importProperties.getChunkSize()) {
+                applyChunk(chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, progress);
+        }
+
+        log.info("Stock import finished: {} rows, {} applied, {} rejected in {} chunks",
+                progress.totalRows, progress.appliedRows, progress.rejectedRows, progress.chunks.size());
+        return progress.toResponse();
+    }
+
+    private String resolveFormat(String contentType) {
+        String mediaType = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase();
+        return switch (mediaType) {
+            case CSV -> CSV;
+            case NDJSON, "application/ndjson" -> NDJSON;
+            default -> throw new IllegalArgumentException("Unsupported import format: " + contentType);
+        };
+    }
+
+    private StockImportRow parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 3) {
+            throw new IllegalArgumentException("Expected 3 columns");
+        }
+        return new StockImportRow(
+                Long.parseLong(columns[0].trim()),
+                Long.parseLong(columns[1].trim()),
+                Integer.parseInt(columns[2].trim()));
+    }
+
+    private String validate(StockImportRow row, Set<Long> warehouseIds) {
+        if (row.getWarehouseId() == null || row.getProductId() == null || row.getQuantity() == null) {
+            return "warehouseId, productId and quantity are required";
+        }
+        if (row.getQuantity() < 0) {
+            return "Quantity must not be negative";
+        }
+        if (!warehouseIds.contains(row.getWarehouseId())) {
+            return "Warehouse not found";
+        }
+        return null;
+    }
+
+    /**
+     * Apply one chunk: drop rows for unknown products, merge duplicate rows, then upsert inventory,
+     * update the product summary, append to the ledger and raise one STOCK_UPDATED event in a single transaction
+     */
+    private void applyChunk(List<ParsedRow> chunk, ImportProgress progress) {
+        long started = System.currentTimeMillis();
+        int applied = 0;
+
+        Set<Long> productIds = chunk.stream().map(r -> r.row().getProductId()).collect(Collectors.toSet());
+        Set<Long> knownProducts = new HashSet<>(productMapper.selectExistingIds(productIds));
+
+        Map<String, StockDelta> merged = new LinkedHashMap<>();
+        List<ParsedRow> accepted = new ArrayList<>(chunk.size());
+        for (ParsedRow parsed : chunk) {
+            StockImportRow row = parsed.row();
+            if (!knownProducts.contains(row.getProductId())) {
+                progress.reject(parsed.line(), "Product not found");
+                continue;
+            }
+            accepted.add(parsed);
+            StockDelta delta = merged.computeIfAbsent(row.getWarehouseId() + ":" + row.getProductId(),
+                    key -> new StockDelta(row.getWarehouseId(), row.getProductId(), 0));
+            delta.setQuantity(delta.getQuantity() + row.getQuantity());
+        }
+
+        if (!merged.isEmpty()) {
+            List<StockDelta> deltas = new ArrayList<>(merged.values());
+            deltas.sort(Comparator.comparing(StockDelta::getWarehouseId).thenComparing(StockDelta::getProductId));
+            try {
+                transactionTemplate.executeWithoutResult(status -> applyDeltas(deltas));
+                applied = accepted.size();
+                progress.appliedRows += applied;
+            } catch (RuntimeException e) {
+                log.error("Stock import chunk {} failed", progress.chunks.size() + 1, e);
+                for (ParsedRow parsed : accepted) {
+                    progress.reject(parsed.line(), "Chunk failed: " + e.getMessage());
+                }
+            }
+        }
+
+        int rejected = progress.chunkRejections;
+        progress.chunkRejections = 0;
+        StockImportResponse.ChunkProgress chunkProgress = StockImportResponse.ChunkProgress.builder()
+                .chunk(progress.chunks.size() + 1)
+                .rows(applied + rejected)
+                .applied(applied)
+                .rejected(rejected)
+                .elapsedMs(System.currentTimeMillis() - started)
+                .build();
+        progress.chunks.add(chunkProgress);
+        log.info("Stock import chunk {}: {} applied, {} rejected in {} ms ({} rows applied so far)",
+                chunkProgress.getChunk(), applied, rejected, chunkProgress.getElapsedMs(),
+                progress.appliedRows);
+    }
+
+    private void applyDeltas(List<StockDelta> deltas) {
+        inventoryMapper.addAvailableBatch(deltas);
+
+        Map<Long, Integer> productDeltas = new LinkedHashMap<>();
+        for (StockDelta delta : deltas) {
+            productDeltas.merge(delta.getProductId(), delta.getQuantity(), Integer::sum);
+        }
+        productStockSummaryMapper.applyAvailableDeltas(productDeltas);
+        inventoryLedgerService.recordAvailableChanges(deltas, "IMPORT");
+
+        List<InventoryLevel> levels = inventoryMapper.selectByRows(deltas).stream()
+                .map(InventoryLevel::fromInventory)
+                .toList();
+        applicationEventPublisher.publishEvent(InventoryChangeEvent.builder()
+                .eventId(idGenerator.nextId("EVT-"))
+                .eventType(InventoryEventType.STOCK_UPDATED)
+                .timestamp(LocalDateTime.now())
+                .reason("IMPORT")
+                .levels(levels)
+                .build());
+    }
+
+    private record ParsedRow(long line, StockImportRow row) {
+    }
+
+    /**
+     * Running totals for one import; rows rejected before reaching a chunk are counted against the next chunk
+     */
+    private class ImportProgress {
+        private final String format;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<StockImportResponse.ChunkProgress> chunks = new ArrayList<>();
+        private final List<StockImportResponse.RejectedRow> rejected = new ArrayList<>();
+        private long totalRows;
+        private long appliedRows;
+        private long rejectedRows;
+        private int chunkRejections;
+
+        private ImportProgress(String format) {
+            this.format = format;
+        }
+
+        private void reject(long line, String reason) {
+            rejectedRows++;
+            chunkRejections++;
+            if (rejected.size() < importProperties.getMaxRejectedReported()) {
+                rejected.add(new StockImportResponse.RejectedRow(line, reason));
+            }
+        }
+
+        private StockImportResponse toResponse() {
+            return StockImportResponse.builder()
+                    .format(format)
+                    .totalRows(totalRows)
+                    .appliedRows(appliedRows)
+                    .rejectedRows(rejectedRows)
+                    .chunks(chunks)
+                    .rejected(rejected)
+                    .rejectedTruncated(rejectedRows > rejected.size())
+                    .startedAt(startedAt)
+                    .completedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
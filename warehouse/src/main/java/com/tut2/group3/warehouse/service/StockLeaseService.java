@@ -0,0 +1,274 @@
+package com.tut2.group3.warehouse.service;
+
+import com.tut2.group3.warehouse.common.ErrorCode;
+import com.tut2.group3.warehouse.config.LeaseProperties;
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.dto.event.InventoryEventType;
+import com.tut2.group3.warehouse.dto.event.InventoryLevel;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.request.AcquireLeaseRequest;
+import com.tut2.group3.warehouse.dto.response.StockLeaseResponse;
+import com.tut2.group3.warehouse.entity.Inventory;
+import com.tut2.group3.warehouse.entity.Product;
+import com.tut2.group3.warehouse.entity.StockLease;
+import com.tut2.group3.warehouse.mapper.InventoryMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
+import com.tut2.group3.warehouse.mapper.StockLeaseMapper;
+import com.tut2.group3.warehouse.utils.IdGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leases blocks of hot-SKU stock to store instances so they can sell without a reserve round trip per order.
+ * A lease is carved from one inventory row like a reservation: granted units move from available to reserved.
+ * The holder settles its running sold count in batches, which ships those units, and whatever is still
+ * unsold goes back to available when the holder returns the lease or it expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockLeaseService {
+
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+
+    private final ProductMapper productMapper;
+    private final InventoryMapper inventoryMapper;
+    private final StockLeaseMapper stockLeaseMapper;
+    private final ProductStockSummaryMapper productStockSummaryMapper;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final LeaseProperties leaseProperties;
+    private final IdGenerator idGenerator;
+
+    @Transactional(readOnly = true)
+    public List<Long> getLeaseEnabledProductIds() {
+        return productMapper.selectLeaseEnabledIds();
+    }
+
+    /**
+     * Lease up to the requested quantity from the product's deepest inventory row.
+     * The grant is capped by that row's available stock and by warehouse.lease.max-quantity.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public StockLeaseResponse acquireLease(AcquireLeaseRequest request) {
+        Product product = productMapper.selectById(request.getProductId());
+        if (product == null) {
+            throw new RuntimeException(ErrorCode.PRODUCT_NOT_FOUND.getMessage());
+        }
+        if (!Boolean.TRUE.equals(product.getLeaseEnabled())) {
+            throw new RuntimeException(ErrorCode.LEASE_NOT_ALLOWED.getMessage());
+        }
+
+        int wanted = Math.min(request.getQuantity(), leaseProperties.getMaxQuantity());
+        for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
+            Inventory row = inventoryMapper.selectDeepestRow(request.getProductId());
+            if (row == null) {
+                throw new RuntimeException(ErrorCode.INSUFFICIENT_STOCK.getMessage());
+            }
+
+            int granted = Math.min(wanted, row.getAvailableQuantity());
+            if (inventoryMapper.reserveStock(row.getWarehouseId(), row.getProductId(), granted, row.getVersion()) > 0) {
+                return grant(request, row.getWarehouseId(), granted);
+            }
+
+            log.warn("Optimistic lock failed leasing product {} from warehouse {}, attempt {}/{}",
+                    request.getProductId(), row.getWarehouseId(), attempt + 1, MAX_RETRY_ATTEMPTS);
+            try {
+                Thread.sleep(50 * (attempt + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new RuntimeException(ErrorCode.STOCK_RESERVATION_FAILED.getMessage() + ": inventory busy, please retry");
+    }
+
+    private StockLeaseResponse grant(AcquireLeaseRequest request, Long warehouseId, int granted) {
+        productStockSummaryMapper.applyAvailableDelta(request.getProductId(), -granted);
+
+        StockLease lease = new StockLease();
+        lease.setLeaseId(idGenerator.nextId("LEASE-"));
+        lease.setHolderId(request.getHolderId());
+        lease.setWarehouseId(warehouseId);
+        lease.setProductId(request.getProductId());
+        lease.setGrantedQuantity(granted);
+        lease.setSettledQuantity(0);
+        lease.setStatus("ACTIVE");
+        lease.setExpiresAt(LocalDateTime.now().plusSeconds(resolveLeaseSeconds(request.getLeaseSeconds())));
+        stockLeaseMapper.insert(lease);
+        inventoryLedgerService.recordLeaseMovements(List.of(lease), StockLease::getGrantedQuantity, "LEASE");
+
+        publishInventoryEvent(InventoryEventType.STOCK_RESERVED, lease.getLeaseId(), "LEASE",
+                loadLevels(List.of(new StockDelta(warehouseId, request.getProductId(), granted))));
+
+        log.info("Leased {} units of product {} from warehouse {} to {} until {}",
+                granted, request.getProductId(), warehouseId, request.getHolderId(), lease.getExpiresAt());
+        return StockLeaseResponse.fromLease(lease);
+    }
+
+    private int resolveLeaseSeconds(Integer requestedLeaseSeconds) {
+        if (requestedLeaseSeconds == null) {
+            return leaseProperties.getDefaultLeaseSeconds();
+        }
+        return Math.min(requestedLeaseSeconds, leaseProperties.getMaxLeaseSeconds());
+    }
+
+    /**
+     * Ship the units sold since the last settle. soldQuantity is the holder's running total,
+     * so a retried or out-of-order settle never ships a unit twice.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public StockLeaseResponse settleLease(String leaseId, int soldQuantity) {
+        StockLease lease = lockActive(leaseId, soldQuantity);
+        settle(lease, soldQuantity, "ACTIVE");
+        return StockLeaseResponse.fromLease(lease);
+    }
+
+    /**
+     * Settle the final sold count and hand the unsold remainder back to available stock
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public StockLeaseResponse returnLease(String leaseId, int soldQuantity) {
+        StockLease lease = lockActive(leaseId, soldQuantity);
+        settle(lease, soldQuantity, "RETURNED");
+        returnUnsold(List.of(lease), "LEASE_RETURN", "LEASE_RETURNED");
+        log.info("Lease {} returned by {}: {} of {} units sold",
+                leaseId, lease.getHolderId(), lease.getSettledQuantity(), lease.getGrantedQuantity());
+        return StockLeaseResponse.fromLease(lease);
+    }
+
+    /**
+     * Return one batch of expired leases.
+     * Locks up to batchSize expired ACTIVE leases, marks them EXPIRED and returns their unsettled units
+     * to available stock with one grouped inventory update and one summary update.
+     * Returns the number of leases expired; a value below batchSize means the backlog is drained.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int expireLeases(int batchSize) {
+        List<StockLease> expired = stockLeaseMapper.lockExpired(LocalDateTime.now(), batchSize);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = expired.stream().map(StockLease::getId).toList();
+        if (stockLeaseMapper.updateActiveStatusByIds(ids, "EXPIRED") != ids.size()) {
+            throw new RuntimeException("Expired leases changed while being returned");
+        }
+        returnUnsold(expired, "LEASE_EXPIRE", "LEASE_EXPIRED");
+
+        log.info("Returned unsold stock of {} expired leases", expired.size());
+        return expired.size();
+    }
+
+    private StockLease lockActive(String leaseId, int soldQuantity) {
+        StockLease lease = stockLeaseMapper.lockByLeaseId(leaseId);
+        if (lease == null) {
+            throw new RuntimeException(ErrorCode.LEASE_NOT_FOUND.getMessage());
+        }
+        if (!"ACTIVE".equals(lease.getStatus())) {
+            throw new RuntimeException("Stock lease " + leaseId + " is " + lease.getStatus());
+        }
+        if (soldQuantity > lease.getGrantedQuantity()) {
+            throw new RuntimeException(ErrorCode.INVALID_QUANTITY.getMessage() + ": sold " + soldQuantity
+                    + " of a lease granting " + lease.getGrantedQuantity());
+        }
+        return lease;
+    }
+
+    /**
+     * Move the lease's settled count up to soldQuantity and ship the difference out of reserved stock,
+     * setting the lease status in the same update
+     */
+    private void settle(StockLease lease, int soldQuantity, String status) {
+        int settled = Math.max(soldQuantity, lease.getSettledQuantity());
+        int newlySold = settled - lease.getSettledQuantity();
+        if (newlySold == 0 && "ACTIVE".equals(status)) {
+            return;
+        }
+
+        if (stockLeaseMapper.updateSettled(lease.getId(), settled, status) != 1) {
+            throw new RuntimeException("Stock lease " + lease.getLeaseId() + " changed while being settled");
+        }
+        lease.setSettledQuantity(settled);
+        lease.setStatus(status);
+        if (newlySold == 0) {
+            return;
+        }
+
+        List<StockDelta> rows = List.of(new StockDelta(lease.getWarehouseId(), lease.getProductId(), newlySold));
+        if (inventoryMapper.confirmReservationBatch(rows) != 1) {
+            throw new RuntimeException("Failed to settle lease: inventory out of step with lease");
+        }
+        inventoryLedgerService.recordLeaseMovements(List.of(lease), settledLease -> newlySold, "LEASE_SETTLE");
+        publishInventoryEvent(InventoryEventType.STOCK_CONFIRMED, lease.getLeaseId(), "LEASE_SETTLE", loadLevels(rows));
+    }
+
+    /**
+     * Move the unsettled units of closed leases from reserved back to available, one grouped update for
+     * inventory and one for the summary
+     */
+    private void returnUnsold(List<StockLease> leases, String ledgerReason, String eventReason) {
+        Map<String, StockDelta> byRow = new LinkedHashMap<>();
+        for (StockLease lease : leases) {
+            int unsold = lease.getGrantedQuantity() - lease.getSettledQuantity();
+            if (unsold > 0) {
+                StockDelta delta = byRow.computeIfAbsent(lease.getWarehouseId() + ":" + lease.getProductId(),
+                        key -> new StockDelta(lease.getWarehouseId(), lease.getProductId(), 0));
+                delta.setQuantity(delta.getQuantity() + unsold);
+            }
+        }
+        if (byRow.isEmpty()) {
+            return;
+        }
+
+        List<StockDelta> deltas = new ArrayList<>(byRow.values());
+        deltas.sort(Comparator.comparing(StockDelta::getWarehouseId).thenComparing(StockDelta::getProductId));
+        if (inventoryMapper.releaseStockBatch(deltas) != deltas.size()) {
+            throw new RuntimeException("Failed to return leased stock: inventory out of step with leases");
+        }
+
+        Map<Long, Integer> productDeltas = new LinkedHashMap<>();
+        for (StockDelta delta : deltas) {
+            productDeltas.merge(delta.getProductId(), delta.getQuantity(), Integer::sum);
+        }
+        productStockSummaryMapper.applyAvailableDeltas(productDeltas);
+        inventoryLedgerService.recordLeaseMovements(leases,
+                lease -> lease.getGrantedQuantity() - lease.getSettledQuantity(), ledgerReason);
+
+        publishInventoryEvent(InventoryEventType.STOCK_RELEASED,
+                leases.size() == 1 ? leases.get(0).getLeaseId() : null, eventReason, loadLevels(deltas));
+    }
+
+    private List<InventoryLevel> loadLevels(List<StockDelta> rows) {
+        return inventoryMapper.selectByRows(rows).stream()
+                .map(InventoryLevel::fromInventory)
+                .toList();
+    }
+
+    /**
+     * Raise an inventory change event carrying the lease id as its reservation id;
+     * it is sent to warehouse.exchange only after the transaction commits
+     */
+    private void publishInventoryEvent(InventoryEventType eventType, String leaseId, String reason,
+                                       List<InventoryLevel> levels) {
+        applicationEventPublisher.publishEvent(InventoryChangeEvent.builder()
+                .eventId(idGenerator.nextId("EVT-"))
+                .eventType(eventType)
+                .timestamp(LocalDateTime.now())
+                .reservationId(leaseId)
+                .reason(reason)
+                .levels(levels)
+                .build());
+    }
+}
@@ -1,8 +1,13 @@
 package com.tut2.group3.warehouse.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tut2.group3.warehouse.common.ErrorCode;
+import com.tut2.group3.warehouse.config.ReservationProperties;
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.dto.event.InventoryEventType;
+import com.tut2.group3.warehouse.dto.event.InventoryLevel;
+import com.tut2.group3.warehouse.dto.query.ProductStockTotal;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
 import com.tut2.group3.warehouse.dto.request.*;
 import com.tut2.group3.warehouse.dto.response.*;
 import com.tut2.group3.warehouse.entity.Inventory;
@@ -11,18 +16,29 @@ import com.tut2.group3.warehouse.entity.StockReservation;
 import com.tut2.group3.warehouse.entity.Warehouse;
 import com.tut2.group3.warehouse.mapper.InventoryMapper;
 import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
 import com.tut2.group3.warehouse.mapper.StockReservationMapper;
 import com.tut2.group3.warehouse.mapper.WarehouseMapper;
+import com.tut2.group3.warehouse.utils.IdGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -33,11 +49,16 @@ public class WarehouseService {
     private final ProductMapper productMapper;
     private final InventoryMapper inventoryMapper;
     private final StockReservationMapper stockReservationMapper;
-    private final RabbitTemplate rabbitTemplate;
+    private final ProductStockSummaryMapper productStockSummaryMapper;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final CatalogVersionService catalogVersionService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ReservationProperties reservationProperties;
+    private final IdGenerator idGenerator;
 
-    private static final String EXCHANGE_NAME = "warehouse.exchange";
     private static final int MAX_RETRY_ATTEMPTS = 3;
 
+    @Transactional(readOnly = true)
     public StockAvailabilityResponse checkAvailability(CheckAvailabilityRequest request) {
         log.info("Checking stock availability for product {} with quantity {}",
                 request.getProductId(), request.getQuantity());
@@ -140,7 +161,8 @@ public class WarehouseService {
             throw new RuntimeException("Total allocated quantity does not match requested quantity");
         }
 
-        String reservationId = "RES-" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        String reservationId = idGenerator.nextId("RES-");
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(resolveHoldSeconds(request.getHoldSeconds()));
         List<ReservationDetail> reservationDetails = new ArrayList<>();
 
         // Reserve stock from each warehouse
@@ -149,7 +171,8 @@ public class WarehouseService {
                     request.getOrderId(),
                     allocation.getWarehouseId(),
                     request.getProductId(),
-                    allocation.getQuantity()
+                    allocation.getQuantity(),
+                    expiresAt
             );
 
             if (!reserved) {
@@ -167,22 +190,36 @@ public class WarehouseService {
                     .build());
         }
 
-        // Publish stock reserved event
-        publishStockReservedEvent(request.getOrderId(), reservationId, request.getProductId(),
-                request.getQuantity(), request.getWarehouses());
+        List<StockDelta> rows = request.getWarehouses().stream()
+                .map(allocation -> new StockDelta(allocation.getWarehouseId(), request.getProductId(), allocation.getQuantity()))
+                .toList();
+        publishInventoryEvent(InventoryEventType.STOCK_RESERVED, request.getOrderId(), reservationId, null,
+                loadLevels(rows));
 
         return StockReservationResponse.builder()
                 .orderId(request.getOrderId())
                 .reservationId(reservationId)
                 .reservations(reservationDetails)
+                .expiresAt(expiresAt)
                 .timestamp(LocalDateTime.now())
                 .build();
     }
 
+    /**
+     * Resolve the hold for a reservation, falling back to the configured default and capping at the maximum
+     */
+    private int resolveHoldSeconds(Integer requestedHoldSeconds) {
+        if (requestedHoldSeconds == null) {
+            return reservationProperties.getDefaultHoldSeconds();
+        }
+        return Math.min(requestedHoldSeconds, reservationProperties.getMaxHoldSeconds());
+    }
+
     /**
      * Reserve stock from a specific warehouse with retry logic
      */
-    private boolean reserveStockFromWarehouse(String orderId, Long warehouseId, Long productId, int quantity) {
+    private boolean reserveStockFromWarehouse(String orderId, Long warehouseId, Long productId, int quantity,
+                                              LocalDateTime expiresAt) {
         for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
             // Get current inventory with version
             LambdaQueryWrapper<Inventory> queryWrapper = new LambdaQueryWrapper<>();
@@ -205,6 +242,8 @@ public class WarehouseService {
             int updated = inventoryMapper.reserveStock(warehouseId, productId, quantity, inventory.getVersion());
 
             if (updated > 0) {
+                productStockSummaryMapper.applyAvailableDelta(productId, -quantity);
+
                 // Create reservation record
                 StockReservation reservation = new StockReservation();
                 reservation.setOrderId(orderId);
@@ -212,7 +251,9 @@ public class WarehouseService {
                 reservation.setProductId(productId);
                 reservation.setQuantity(quantity);
                 reservation.setStatus("RESERVED");
+                reservation.setExpiresAt(expiresAt);
                 stockReservationMapper.insert(reservation);
+                inventoryLedgerService.recordReservations(List.of(reservation), "RESERVE");
 
                 log.info("Successfully reserved {} units from warehouse {} for order {}",
                         quantity, warehouseId, orderId);
@@ -241,40 +282,36 @@ public class WarehouseService {
     public ConfirmReservationResponse confirmReservation(ConfirmReservationRequest request) {
         log.info("Confirming reservation for order {}", request.getOrderId());
 
-        // Find all reservations for this order
-        LambdaQueryWrapper<StockReservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(StockReservation::getOrderId, request.getOrderId())
-                   .eq(StockReservation::getStatus, "RESERVED");
-
-        List<StockReservation> reservations = stockReservationMapper.selectList(queryWrapper);
+        // Lock the order's open reservations, then flip them and settle inventory as whole sets
+        List<StockReservation> reservations = stockReservationMapper.lockReservedByOrderId(request.getOrderId());
 
         if (reservations.isEmpty()) {
             throw new RuntimeException(ErrorCode.RESERVATION_NOT_FOUND.getMessage());
         }
 
-        List<ReservationDetail> details = new ArrayList<>();
+        markReservations(request.getOrderId(), reservations, "CONFIRMED");
 
-        for (StockReservation reservation : reservations) {
-            // Update reservation status
-            reservation.setStatus("CONFIRMED");
-            stockReservationMapper.updateById(reservation);
-
-            // Confirm in inventory (deduct from reserved quantity)
-            confirmReservationInInventory(reservation.getWarehouseId(),
-                    reservation.getProductId(), reservation.getQuantity());
+        List<StockDelta> deltas = aggregateByInventoryRow(reservations);
+        if (inventoryMapper.confirmReservationBatch(deltas) != deltas.size()) {
+            throw new RuntimeException("Failed to confirm reservation: inventory out of step with reservations");
+        }
+        inventoryLedgerService.recordReservations(reservations, "CONFIRM");
 
-            Warehouse warehouse = warehouseMapper.selectById(reservation.getWarehouseId());
+        Map<Long, Warehouse> warehouses = loadWarehouses(reservations);
+        List<ReservationDetail> details = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            Warehouse warehouse = warehouses.get(reservation.getWarehouseId());
             details.add(ReservationDetail.builder()
                     .warehouseId(reservation.getWarehouseId())
-                    .warehouseName(warehouse.getName())
+                    .warehouseName(warehouse != null ? warehouse.getName() : null)
                     .productId(reservation.getProductId())
                     .quantity(reservation.getQuantity())
                     .status("CONFIRMED")
                     .build());
         }
 
-        // Publish stock confirmed event
-        publishStockConfirmedEvent(request.getOrderId(), request.getReservationId(), details);
+        publishInventoryEvent(InventoryEventType.STOCK_CONFIRMED, request.getOrderId(), request.getReservationId(), null,
+                loadLevels(deltas));
 
         return ConfirmReservationResponse.builder()
                 .orderId(request.getOrderId())
@@ -285,37 +322,6 @@ public class WarehouseService {
                 .build();
     }
 
-    /**
-     * Confirm reservation in inventory
-     */
-    private void confirmReservationInInventory(Long warehouseId, Long productId, int quantity) {
-        for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
-            LambdaQueryWrapper<Inventory> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(Inventory::getWarehouseId, warehouseId)
-                       .eq(Inventory::getProductId, productId);
-
-            Inventory inventory = inventoryMapper.selectOne(queryWrapper);
-            if (inventory == null) {
-                throw new RuntimeException("Inventory not found");
-            }
-
-            int updated = inventoryMapper.confirmReservation(warehouseId, productId, quantity, inventory.getVersion());
-
-            if (updated > 0) {
-                return;
-            }
-
-            try {
-                Thread.sleep(50 * (attempt + 1));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Failed to confirm reservation");
-            }
-        }
-
-        throw new RuntimeException("Failed to confirm reservation after retries");
-    }
-
     /**
      * Release reserved stock
      */
@@ -323,38 +329,30 @@ public class WarehouseService {
     public ReleaseStockResponse releaseStock(ReleaseStockRequest request) {
         log.info("Releasing stock for order {}, reason: {}", request.getOrderId(), request.getReason());
 
-        // Find all reservations for this order
-        LambdaQueryWrapper<StockReservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(StockReservation::getOrderId, request.getOrderId())
-                   .eq(StockReservation::getStatus, "RESERVED");
-
-        List<StockReservation> reservations = stockReservationMapper.selectList(queryWrapper);
+        // Lock the order's open reservations, then flip them and return stock as whole sets
+        List<StockReservation> reservations = stockReservationMapper.lockReservedByOrderId(request.getOrderId());
 
         if (reservations.isEmpty()) {
             throw new RuntimeException(ErrorCode.RESERVATION_NOT_FOUND.getMessage());
         }
 
-        List<ReleaseStockResponse.WarehouseReleaseInfo> releaseInfos = new ArrayList<>();
+        markReservations(request.getOrderId(), reservations, "RELEASED");
+        List<StockDelta> deltas = returnReservedStock(reservations);
+        inventoryLedgerService.recordReservations(reservations, "RELEASE");
 
+        LocalDateTime releasedAt = LocalDateTime.now();
+        List<ReleaseStockResponse.WarehouseReleaseInfo> releaseInfos = new ArrayList<>();
         for (StockReservation reservation : reservations) {
-            // Update reservation status
-            reservation.setStatus("RELEASED");
-            stockReservationMapper.updateById(reservation);
-
-            // Release stock in inventory
-            releaseStockInInventory(reservation.getWarehouseId(),
-                    reservation.getProductId(), reservation.getQuantity());
-
             releaseInfos.add(ReleaseStockResponse.WarehouseReleaseInfo.builder()
                     .warehouseId(reservation.getWarehouseId())
                     .productId(reservation.getProductId())
                     .quantity(reservation.getQuantity())
-                    .releasedAt(LocalDateTime.now())
+                    .releasedAt(releasedAt)
                     .build());
         }
 
-        // Publish stock released event
-        publishStockReleasedEvent(request.getOrderId(), request.getReservationId(), request.getReason());
+        publishInventoryEvent(InventoryEventType.STOCK_RELEASED, request.getOrderId(), request.getReservationId(),
+                request.getReason(), loadLevels(deltas));
 
         return ReleaseStockResponse.builder()
                 .orderId(request.getOrderId())
@@ -365,77 +363,174 @@ public class WarehouseService {
     }
 
     /**
-     * Release stock in inventory
+     * Release the open reservations of a batch of cancelled orders in one transaction.
+     * All orders' rows are locked, flipped and returned to stock with set-based statements; orders with
+     * nothing left RESERVED (already released, confirmed or expired) are skipped.
+     * Returns the ids of the orders whose stock was released.
      */
-    private void releaseStockInInventory(Long warehouseId, Long productId, int quantity) {
-        for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
-            LambdaQueryWrapper<Inventory> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(Inventory::getWarehouseId, warehouseId)
-                       .eq(Inventory::getProductId, productId);
+    @Transactional(rollbackFor = Exception.class)
+    public Set<String> releaseCancelledOrders(Map<String, String> reasonsByOrderId) {
+        if (reasonsByOrderId.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-            Inventory inventory = inventoryMapper.selectOne(queryWrapper);
-            if (inventory == null) {
-                throw new RuntimeException("Inventory not found");
-            }
+        List<StockReservation> reservations = stockReservationMapper.lockReservedByOrderIds(reasonsByOrderId.keySet());
+        if (reservations.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-            int updated = inventoryMapper.releaseStock(warehouseId, productId, quantity, inventory.getVersion());
+        Set<String> orderIds = reservations.stream()
+                .map(StockReservation::getOrderId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (stockReservationMapper.updateReservedStatusByOrderIds(orderIds, "RELEASED") != reservations.size()) {
+            throw new RuntimeException("Reservations for cancelled orders changed while being released");
+        }
+        List<StockDelta> deltas = returnReservedStock(reservations);
+        inventoryLedgerService.recordReservations(reservations, "CANCEL");
 
-            if (updated > 0) {
-                return;
-            }
+        Map<String, InventoryLevel> levels = loadLevels(deltas).stream()
+                .collect(Collectors.toMap(level -> level.getWarehouseId() + ":" + level.getProductId(),
+                        Function.identity()));
+        publishReleasedPerOrder(reservations, levels, reasonsByOrderId::get);
 
-            try {
-                Thread.sleep(50 * (attempt + 1));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Failed to release stock");
-            }
+        log.info("Released stock for {} cancelled orders ({} reservations)", orderIds.size(), reservations.size());
+        return orderIds;
+    }
+
+    /**
+     * Release one batch of expired reservations.
+     * Locks up to batchSize expired rows, marks them EXPIRED and returns their quantities to
+     * available stock with one grouped inventory update and one summary update.
+     * Returns the number of reservations released; a value below batchSize means the backlog is drained.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int releaseExpiredReservations(int batchSize) {
+        List<StockReservation> expired = stockReservationMapper.lockExpired(LocalDateTime.now(), batchSize);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = expired.stream().map(StockReservation::getId).toList();
+        if (stockReservationMapper.updateReservedStatusByIds(ids, "EXPIRED") != ids.size()) {
+            throw new RuntimeException("Expired reservations changed while being released");
+        }
+        List<StockDelta> deltas = returnReservedStock(expired);
+        inventoryLedgerService.recordReservations(expired, "EXPIRE");
+
+        Map<String, InventoryLevel> levels = loadLevels(deltas).stream()
+                .collect(Collectors.toMap(level -> level.getWarehouseId() + ":" + level.getProductId(),
+                        Function.identity()));
+        int orders = publishReleasedPerOrder(expired, levels, orderId -> "RESERVATION_EXPIRED");
+
+        log.info("Released {} expired reservations across {} orders", expired.size(), orders);
+        return expired.size();
+    }
+
+    /**
+     * Publish one STOCK_RELEASED event per order, each carrying the levels of the rows that order touched.
+     * Returns the number of orders.
+     */
+    private int publishReleasedPerOrder(List<StockReservation> reservations, Map<String, InventoryLevel> levels,
+                                        Function<String, String> reasonForOrder) {
+        Map<String, Set<String>> rowsByOrder = new LinkedHashMap<>();
+        for (StockReservation reservation : reservations) {
+            rowsByOrder.computeIfAbsent(reservation.getOrderId(), key -> new LinkedHashSet<>())
+                    .add(reservation.getWarehouseId() + ":" + reservation.getProductId());
+        }
+        rowsByOrder.forEach((orderId, rowKeys) -> publishInventoryEvent(InventoryEventType.STOCK_RELEASED,
+                orderId, null, reasonForOrder.apply(orderId), rowKeys.stream().map(levels::get).toList()));
+        return rowsByOrder.size();
+    }
+
+    /**
+     * Flip all of an order's locked RESERVED rows to the given status in one statement
+     */
+    private void markReservations(String orderId, List<StockReservation> reservations, String status) {
+        if (stockReservationMapper.updateReservedStatusByOrderId(orderId, status) != reservations.size()) {
+            throw new RuntimeException("Reservations for order " + orderId + " changed while being updated");
         }
+    }
+
+    /**
+     * Move reserved quantities back to available, one grouped update for inventory and one for the summary
+     */
+    private List<StockDelta> returnReservedStock(List<StockReservation> reservations) {
+        List<StockDelta> deltas = aggregateByInventoryRow(reservations);
+        if (inventoryMapper.releaseStockBatch(deltas) != deltas.size()) {
+            throw new RuntimeException("Failed to release stock: inventory out of step with reservations");
+        }
+
+        Map<Long, Integer> productDeltas = new LinkedHashMap<>();
+        for (StockDelta delta : deltas) {
+            productDeltas.merge(delta.getProductId(), delta.getQuantity(), Integer::sum);
+        }
+        productStockSummaryMapper.applyAvailableDeltas(productDeltas);
+        return deltas;
+    }
 
-        throw new RuntimeException("Failed to release stock after retries");
+    /**
+     * Sum reservation quantities per (warehouse, product), ordered by that key so concurrent
+     * batches lock inventory rows in the same order
+     */
+    private List<StockDelta> aggregateByInventoryRow(List<StockReservation> reservations) {
+        Map<String, StockDelta> deltas = new LinkedHashMap<>();
+        for (StockReservation reservation : reservations) {
+            StockDelta delta = deltas.computeIfAbsent(
+                    reservation.getWarehouseId() + ":" + reservation.getProductId(),
+                    key -> new StockDelta(reservation.getWarehouseId(), reservation.getProductId(), 0));
+            delta.setQuantity(delta.getQuantity() + reservation.getQuantity());
+        }
+        List<StockDelta> ordered = new ArrayList<>(deltas.values());
+        ordered.sort(Comparator.comparing(StockDelta::getWarehouseId).thenComparing(StockDelta::getProductId));
+        return ordered;
+    }
+
+    private Map<Long, Warehouse> loadWarehouses(List<StockReservation> reservations) {
+        Set<Long> warehouseIds = reservations.stream()
+                .map(StockReservation::getWarehouseId)
+                .collect(Collectors.toSet());
+        return warehouseMapper.selectBatchIds(warehouseIds).stream()
+                .collect(Collectors.toMap(Warehouse::getId, Function.identity()));
     }
 
     /**
-     * Get warehouse stock information
+     * Get warehouse stock information.
+     * When afterProductId is given the page starts after that product (keyset paging), otherwise at the
+     * 1-based page number. The COUNT(*) behind totalElements only runs when includeTotal is true.
      */
-    public WarehouseStockResponse getWarehouseStock(Long warehouseId, Long productId, int page, int size) {
+    @Transactional(readOnly = true)
+    public WarehouseStockResponse getWarehouseStock(Long warehouseId, Long productId, int page, int size,
+                                                    Long afterProductId, boolean includeTotal) {
         Warehouse warehouse = warehouseMapper.selectById(warehouseId);
         if (warehouse == null) {
             throw new RuntimeException(ErrorCode.WAREHOUSE_NOT_FOUND.getMessage());
         }
 
-        LambdaQueryWrapper<Inventory> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Inventory::getWarehouseId, warehouseId);
-
-        if (productId != null) {
-            queryWrapper.eq(Inventory::getProductId, productId);
+        long offset = afterProductId == null ? (long) Math.max(page - 1, 0) * size : 0;
+        List<StockInfo> stockInfos = new ArrayList<>(
+                inventoryMapper.selectWarehouseStock(warehouseId, productId, afterProductId, offset, size + 1));
+        boolean hasNext = stockInfos.size() > size;
+        if (hasNext) {
+            stockInfos.remove(size);
         }
 
-        Page<Inventory> pageRequest = new Page<>(page, size);
-        Page<Inventory> inventoryPage = inventoryMapper.selectPage(pageRequest, queryWrapper);
-
-        List<StockInfo> stockInfos = new ArrayList<>();
-        for (Inventory inventory : inventoryPage.getRecords()) {
-            Product product = productMapper.selectById(inventory.getProductId());
-            stockInfos.add(StockInfo.builder()
-                    .productId(inventory.getProductId())
-                    .productName(product != null ? product.getName() : "Unknown")
-                    .availableQuantity(inventory.getAvailableQuantity())
-                    .reservedQuantity(inventory.getReservedQuantity())
-                    .totalQuantity(inventory.getAvailableQuantity() + inventory.getReservedQuantity())
-                    .build());
+        WarehouseStockResponse.PaginationInfo.PaginationInfoBuilder pagination = WarehouseStockResponse.PaginationInfo.builder()
+                .size(size)
+                .nextCursor(hasNext ? stockInfos.get(stockInfos.size() - 1).getProductId() : null);
+        if (afterProductId == null) {
+            pagination.page(page);
+        }
+        if (includeTotal) {
+            long total = inventoryMapper.countWarehouseStock(warehouseId, productId);
+            pagination.totalElements(total)
+                    .totalPages((int) ((total + size - 1) / size));
         }
 
         return WarehouseStockResponse.builder()
                 .warehouseId(warehouseId)
                 .warehouseName(warehouse.getName())
                 .stocks(stockInfos)
-                .pagination(WarehouseStockResponse.PaginationInfo.builder()
-                        .page(page)
-                        .size(size)
-                        .totalElements(inventoryPage.getTotal())
-                        .totalPages((int) inventoryPage.getPages())
-                        .build())
+                .pagination(pagination.build())
                 .build();
     }
 
@@ -485,7 +580,16 @@ public class WarehouseService {
         }
 
         inventory.setAvailableQuantity(newQuantity);
-        inventoryMapper.updateById(inventory);
+        if (inventoryMapper.updateById(inventory) == 0) {
+            throw new RuntimeException(ErrorCode.STOCK_UPDATE_FAILED.getMessage() + ": concurrent modification, please retry");
+        }
+        StockDelta delta = new StockDelta(request.getWarehouseId(), request.getProductId(), newQuantity - previousQuantity);
+        if (newQuantity != previousQuantity) {
+            productStockSummaryMapper.applyAvailableDelta(request.getProductId(), delta.getQuantity());
+            inventoryLedgerService.recordAvailableChanges(List.of(delta), request.getOperation().toUpperCase());
+        }
+        publishInventoryEvent(InventoryEventType.STOCK_UPDATED, null, null, request.getOperation().toUpperCase(),
+                loadLevels(List.of(delta)));
 
         return UpdateStockResponse.builder()
                 .warehouseId(request.getWarehouseId())
@@ -497,9 +601,22 @@ public class WarehouseService {
                 .build();
     }
 
+    /**
+     * Conditional form of {@link #getAllWarehouses(String)}: returns null without listing warehouses when
+     * notModified accepts the current list ETag
+     */
+    @Transactional(readOnly = true)
+    public List<WarehouseDTO> getAllWarehouses(String status, Predicate<String> notModified) {
+        if (notModified.test(catalogVersionService.warehouseListETag())) {
+            return null;
+        }
+        return getAllWarehouses(status);
+    }
+
     /**
      * Get all warehouses
      */
+    @Transactional(readOnly = true)
     public List<WarehouseDTO> getAllWarehouses(String status) {
         LambdaQueryWrapper<Warehouse> queryWrapper = new LambdaQueryWrapper<>();
         if (status != null && !status.isEmpty()) {
@@ -519,19 +636,29 @@ public class WarehouseService {
     /**
      * Validate order - check if all products in the order can be fulfilled
      */
+    @Transactional(readOnly = true)
     public OrderValidationResponse validateOrder(OrderValidationRequest request) {
         log.info("Validating order {} with {} items", request.getOrderId(), request.getItems().size());
 
+        // Fetch product existence and summed availability for the whole cart in one query
+        Set<Long> productIds = request.getItems().stream()
+                .map(OrderValidationRequest.OrderItem::getProductId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, ProductStockTotal> stockTotals = productIds.isEmpty()
+                ? Collections.emptyMap()
+                : inventoryMapper.sumAvailableByProductIds(productIds).stream()
+                        .collect(Collectors.toMap(ProductStockTotal::getProductId, Function.identity()));
+
         List<OrderValidationResponse.ProductValidationResult> productResults = new ArrayList<>();
         boolean allProductsAvailable = true;
         String validationCode = "SUCCESS";
         String message = "All products are available";
 
         for (OrderValidationRequest.OrderItem item : request.getItems()) {
-            // Verify product exists
-            Product product = productMapper.selectById(item.getProductId());
+            ProductStockTotal stockTotal = stockTotals.get(item.getProductId());
 
-            if (product == null) {
+            if (stockTotal == null) {
                 productResults.add(OrderValidationResponse.ProductValidationResult.builder()
                         .productId(item.getProductId())
                         .productName("Unknown")
@@ -546,18 +673,7 @@ public class WarehouseService {
                 continue;
             }
 
-            // Check stock availability across all warehouses
-            LambdaQueryWrapper<Inventory> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(Inventory::getProductId, item.getProductId())
-                       .gt(Inventory::getAvailableQuantity, 0);
-
-            List<Inventory> inventories = inventoryMapper.selectList(queryWrapper);
-
-            // Calculate total available quantity
-            int totalAvailable = inventories.stream()
-                    .mapToInt(Inventory::getAvailableQuantity)
-                    .sum();
-
+            int totalAvailable = stockTotal.getTotalAvailable() != null ? stockTotal.getTotalAvailable() : 0;
             boolean productAvailable = totalAvailable >= item.getQuantity();
 
             if (!productAvailable) {
@@ -568,7 +684,7 @@ public class WarehouseService {
 
             productResults.add(OrderValidationResponse.ProductValidationResult.builder()
                     .productId(item.getProductId())
-                    .productName(product.getName())
+                    .productName(stockTotal.getProductName())
                     .requestedQuantity(item.getQuantity())
                     .availableQuantity(totalAvailable)
                     .available(productAvailable)
@@ -585,50 +701,28 @@ public class WarehouseService {
                 .build();
     }
 
-    // Event publishing methods
-    private void publishStockReservedEvent(String orderId, String reservationId, Long productId,
-                                          int quantity, List<WarehouseAllocation> warehouses) {
-        try {
-            String eventId = "EVT-" + System.currentTimeMillis();
-            String message = String.format(
-                "{\"eventId\":\"%s\",\"eventType\":\"STOCK_RESERVED\",\"timestamp\":\"%s\"," +
-                "\"orderId\":\"%s\",\"reservationId\":\"%s\",\"productId\":%d,\"quantity\":%d}",
-                eventId, LocalDateTime.now(), orderId, reservationId, productId, quantity
-            );
-            rabbitTemplate.convertAndSend(EXCHANGE_NAME, "warehouse.stock.reserved", message);
-            log.info("Published STOCK_RESERVED event for order {}", orderId);
-        } catch (Exception e) {
-            log.error("Failed to publish STOCK_RESERVED event", e);
-        }
-    }
-
-    private void publishStockConfirmedEvent(String orderId, String reservationId, List<ReservationDetail> details) {
-        try {
-            String eventId = "EVT-" + System.currentTimeMillis();
-            String message = String.format(
-                "{\"eventId\":\"%s\",\"eventType\":\"STOCK_CONFIRMED\",\"timestamp\":\"%s\"," +
-                "\"orderId\":\"%s\",\"reservationId\":\"%s\"}",
-                eventId, LocalDateTime.now(), orderId, reservationId
-            );
-            rabbitTemplate.convertAndSend(EXCHANGE_NAME, "warehouse.stock.confirmed", message);
-            log.info("Published STOCK_CONFIRMED event for order {}", orderId);
-        } catch (Exception e) {
-            log.error("Failed to publish STOCK_CONFIRMED event", e);
-        }
+    /**
+     * Read the post-change quantities of the given inventory rows, within the current transaction
+     */
+    private List<InventoryLevel> loadLevels(List<StockDelta> rows) {
+        return inventoryMapper.selectByRows(rows).stream()
+                .map(InventoryLevel::fromInventory)
+                .toList();
     }
 
-    private void publishStockReleasedEvent(String orderId, String reservationId, String reason) {
-        try {
-            String eventId = "EVT-" + System.currentTimeMillis();
-            String message = String.format(
-                "{\"eventId\":\"%s\",\"eventType\":\"STOCK_RELEASED\",\"timestamp\":\"%s\"," +
-                "\"orderId\":\"%s\",\"reservationId\":\"%s\",\"reason\":\"%s\"}",
-                eventId, LocalDateTime.now(), orderId, reservationId, reason
-            );
-            rabbitTemplate.convertAndSend(EXCHANGE_NAME, "warehouse.stock.released", message);
-            log.info("Published STOCK_RELEASED event for order {}", orderId);
-        } catch (Exception e) {
-            log.error("Failed to publish STOCK_RELEASED event", e);
-        }
+    /**
+     * Raise an inventory change event; it is sent to warehouse.exchange only after the transaction commits
+     */
+    private void publishInventoryEvent(InventoryEventType eventType, String orderId, String reservationId,
+                                       String reason, List<InventoryLevel> levels) {
+        applicationEventPublisher.publishEvent(InventoryChangeEvent.builder()
+                .eventId(idGenerator.nextId("EVT-"))
+                .eventType(eventType)
+                .timestamp(LocalDateTime.now())
+                .orderId(orderId)
+                .reservationId(reservationId)
+                .reason(reason)
+                .levels(levels)
+                .build());
     }
 }
@@ -0,0 +1,85 @@
+package com.tut2.group3.warehouse.utils;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free Snowflake-style id generator: unique per node and ordered by creation time.
+ * Each id packs 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a 12-bit sequence
+ * within the millisecond. Time and sequence advance together in one atomic counter, so callers never
+ * block: past 4096 ids in a millisecond the counter carries into the next millisecond ahead of the
+ * clock, and if the clock steps back the counter simply keeps counting, so ids never repeat.
+ * Only a node restarted while running ahead of the clock, which takes over 4 million ids a second
+ * sustained, could reissue ids.
+ * As strings, ids are fixed-width Crockford base32, which sorts in the same order as the numbers.
+ */
+public class IdGenerator {
+
+    public static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    private final long nodeBits;
+    // Milliseconds since the epoch shifted left by SEQUENCE_BITS, plus the sequence
+    private final AtomicLong state = new AtomicLong();
+
+    public IdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Node id derived from the host name and process id, for nodes not given one explicitly.
+     * Two nodes can derive the same id; set one per node where ids must never collide.
+     */
+    public static int deriveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        return Math.floorMod((host + "/" + ManagementFactory.getRuntimeMXBean().getName()).hashCode(), MAX_NODE_ID + 1);
+    }
+
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = now > current ? now : current + 1;
+        } while (!state.compareAndSet(current, next));
+        long sequenceMask = (1L << SEQUENCE_BITS) - 1;
+        return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & sequenceMask);
+    }
+
+    /**
+     * Next id as fixed-width base32 after the prefix, e.g. {@code TX06A3V9Q1K0G1F}
+     */
+    public String nextId(String prefix) {
+        long id = nextId();
+        char[] chars = new char[prefix.length() + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        for (int i = chars.length - 1; i >= prefix.length(); i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * When the id was generated, to the millisecond
+     */
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS);
+    }
+}
@@ -18,6 +18,9 @@ INSERT IGNORE INTO product (id, name, description, price) VALUES
 (7, 'Webcam', '1080p HD webcam', 79.99),
 (8, 'Desk Lamp', 'LED desk lamp with adjustable brightness', 45.99);
 
+-- High-demand SKUs sold from stock leased to store instances
+UPDATE product SET lease_enabled = TRUE WHERE id IN (2, 6);
+
 -- Insert sample inventory (skip if already exists)
 -- Central Warehouse
 INSERT IGNORE INTO inventory (warehouse_id, product_id, available_quantity, reserved_quantity) VALUES
@@ -43,9 +46,36 @@ INSERT IGNORE INTO inventory (warehouse_id, product_id, available_quantity, rese
 (3, 7, 110, 7),   -- Webcam
 (3, 8, 200, 10);  -- Desk Lamp
 
+-- Fill the per-product stock summary from the seeded inventory; the product insert trigger created the rows
+INSERT INTO product_stock_summary (product_id, available_quantity)
+SELECT * FROM (
+    SELECT p.id, COALESCE(SUM(i.available_quantity), 0) AS total
+    FROM product p LEFT JOIN inventory i ON i.product_id = p.id
+    GROUP BY p.id
+) AS seeded
+ON DUPLICATE KEY UPDATE available_quantity = seeded.total;
+
+-- Open the inventory ledger with the seeded counters, dated before any real movement
+INSERT INTO inventory_ledger (warehouse_id, product_id, available_delta, reserved_delta, reason, created_at)
+SELECT i.warehouse_id, i.product_id, i.available_quantity, i.reserved_quantity, 'OPENING', '2000-01-01 00:00:00'
+FROM inventory i
+WHERE NOT EXISTS (SELECT 1 FROM inventory_ledger l
+                  WHERE l.warehouse_id = i.warehouse_id AND l.product_id = i.product_id);
+
 -- Insert sample stock reservations (skip if already exists)
 INSERT IGNORE INTO stock_reservation (id, order_id, warehouse_id, product_id, quantity, status) VALUES
 (1, 'ORD-20251012-001', 1, 1, 2, 'RESERVED'),
 (2, 'ORD-20251012-002', 1, 2, 5, 'CONFIRMED'),
 (3, 'ORD-20251012-003', 2, 4, 1, 'RESERVED'),
 (4, 'ORD-20251012-004', 3, 5, 3, 'RELEASED');
+
+-- Seed the replica heartbeat row
+INSERT IGNORE INTO replica_heartbeat (id, beat_millis) VALUES (1, 0);
+
+-- Seed the catalog version slots (CatalogVersionService.VERSION_SLOTS) and the product row and warehouse counters
+INSERT IGNORE INTO catalog_version (resource, slot, version) VALUES
+('products', 0, 0), ('products', 1, 0), ('products', 2, 0), ('products', 3, 0),
+('products', 4, 0), ('products', 5, 0), ('products', 6, 0), ('products', 7, 0),
+('products', 8, 0), ('products', 9, 0), ('products', 10, 0), ('products', 11, 0),
+('products', 12, 0), ('products', 13, 0), ('products', 14, 0), ('products', 15, 0),
+('product_rows', 0, 0), ('product_deletes', 0, 0), ('warehouses', 0, 0);
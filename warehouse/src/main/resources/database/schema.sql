@@ -5,9 +5,16 @@ USE warehouse;
 
 -- Drop existing tables to ensure clean state
 DROP TABLE IF EXISTS stock_reservation;
+DROP TABLE IF EXISTS stock_lease;
+DROP TABLE IF EXISTS product_stock_summary;
 DROP TABLE IF EXISTS inventory;
 DROP TABLE IF EXISTS product;
 DROP TABLE IF EXISTS warehouse;
+DROP TABLE IF EXISTS replica_heartbeat;
+DROP TABLE IF EXISTS inventory_ledger;
+DROP TABLE IF EXISTS inventory_snapshot;
+DROP TABLE IF EXISTS catalog_version;
+DROP TABLE IF EXISTS inventory_event_outbox;
 
 -- Warehouse Table
 CREATE TABLE warehouse (
@@ -26,9 +33,12 @@ CREATE TABLE product (
     name VARCHAR(200) NOT NULL,
     description TEXT,
     price DECIMAL(10,2) NOT NULL,
+    -- Hot SKU whose stock is leased to store instances in blocks instead of reserved per order
+    lease_enabled BOOLEAN NOT NULL DEFAULT FALSE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    INDEX idx_name (name)
+    INDEX idx_name (name),
+    INDEX idx_updated_at (updated_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Inventory Table
@@ -58,12 +68,125 @@ CREATE TABLE stock_reservation (
     product_id BIGINT NOT NULL,
     quantity INT NOT NULL,
     status VARCHAR(20) NOT NULL DEFAULT 'RESERVED',
+    expires_at TIMESTAMP NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (warehouse_id) REFERENCES warehouse(id) ON DELETE CASCADE,
     FOREIGN KEY (product_id) REFERENCES product(id) ON DELETE CASCADE,
     INDEX idx_order_id (order_id),
-    INDEX idx_status (status),
+    -- Serves both status lookups and the expiry sweeper's range scan on RESERVED rows
+    INDEX idx_status_expires (status, expires_at),
     INDEX idx_warehouse_id (warehouse_id),
     CHECK (quantity > 0)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- StockLease Table
+-- A block of one inventory row's stock held by a store instance, which sells from it locally.
+-- Granted units sit in reserved_quantity until the holder settles them as sold or they are returned;
+-- whatever is unsettled at expires_at goes back to available stock.
+CREATE TABLE stock_lease (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    lease_id VARCHAR(64) NOT NULL,
+    holder_id VARCHAR(100) NOT NULL,
+    warehouse_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    granted_quantity INT NOT NULL,
+    settled_quantity INT NOT NULL DEFAULT 0,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (warehouse_id) REFERENCES warehouse(id) ON DELETE CASCADE,
+    FOREIGN KEY (product_id) REFERENCES product(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_lease_id (lease_id),
+    -- Serves the expiry sweeper's range scan on ACTIVE leases
+    INDEX idx_status_expires (status, expires_at),
+    CHECK (settled_quantity >= 0 AND settled_quantity <= granted_quantity)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ProductStockSummary Table
+-- Per-product available stock summed over all warehouses, maintained in the same
+-- transaction as every inventory change so the catalog never has to aggregate inventory
+CREATE TABLE product_stock_summary (
+    product_id BIGINT PRIMARY KEY,
+    available_quantity INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (product_id) REFERENCES product(id) ON DELETE CASCADE,
+    CHECK (available_quantity >= 0)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ReplicaHeartbeat Table
+-- Single row written on the primary and read back from the replica to measure replication lag
+-- when read/write routing is enabled
+CREATE TABLE replica_heartbeat (
+    id TINYINT PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- InventoryLedger Table
+-- Append-only record of every change to inventory counters. Times are written by the application
+-- as local DATETIME so they compare directly with as-of query times. No foreign keys: the history
+-- outlives the rows it describes.
+CREATE TABLE inventory_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    warehouse_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    available_delta INT NOT NULL,
+    reserved_delta INT NOT NULL,
+    reason VARCHAR(16) NOT NULL,
+    order_id VARCHAR(100) NULL,
+    created_at DATETIME(3) NOT NULL,
+    -- Snapshot folding and as-of replay read a created_at window
+    INDEX idx_created_at (created_at),
+    INDEX idx_row_created (warehouse_id, product_id, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- InventorySnapshot Table
+-- Per-SKU stock folded from the ledger, written periodically for SKUs that moved since the last run
+CREATE TABLE inventory_snapshot (
+    warehouse_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    snapshot_at DATETIME(3) NOT NULL,
+    available_quantity INT NOT NULL,
+    reserved_quantity INT NOT NULL,
+    PRIMARY KEY (warehouse_id, product_id, snapshot_at),
+    INDEX idx_snapshot_at (snapshot_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- CatalogVersion Table
+-- Change counters behind the /api/products and /api/warehouses ETags. Stock changes bump a random
+-- 'products' slot inside their own transaction, so concurrent writers rarely update the same row;
+-- the version is the sum over the resource's slots. Product and warehouse rows bump theirs by trigger;
+-- product_rows and product_deletes also tell the product name index when to catch up.
+CREATE TABLE catalog_version (
+    resource VARCHAR(20) NOT NULL,
+    slot TINYINT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (resource, slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Every product starts with a stock summary row, so inventory changes only ever update it
+CREATE TRIGGER trg_product_insert_summary AFTER INSERT ON product FOR EACH ROW
+    INSERT INTO product_stock_summary (product_id, available_quantity) VALUES (NEW.id, 0);
+CREATE TRIGGER trg_product_insert_version AFTER INSERT ON product FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'product_rows' AND slot = 0;
+CREATE TRIGGER trg_product_update_version AFTER UPDATE ON product FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'product_rows' AND slot = 0;
+CREATE TRIGGER trg_product_delete_version AFTER DELETE ON product FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'product_deletes' AND slot = 0;
+CREATE TRIGGER trg_warehouse_insert_version AFTER INSERT ON warehouse FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'warehouses' AND slot = 0;
+CREATE TRIGGER trg_warehouse_update_version AFTER UPDATE ON warehouse FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'warehouses' AND slot = 0;
+CREATE TRIGGER trg_warehouse_delete_version AFTER DELETE ON warehouse FOR EACH ROW
+    UPDATE catalog_version SET version = version + 1 WHERE resource = 'warehouses' AND slot = 0;
+
+-- InventoryEventOutbox Table
+-- Inventory change events not yet confirmed by the broker, written with the stock change that raised them
+CREATE TABLE inventory_event_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_id VARCHAR(64) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    claimed_at DATETIME(3) NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,115 @@
+package com.tut2.group3.warehouse.benchmark;
+
+import com.tut2.group3.warehouse.search.ProductNameIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compares the in-memory trigram index against the SQL {@code LIKE '%name%'} path.
+ * Runs only with {@code mvn test -Pbenchmark}; H2 in MySQL mode stands in for MySQL.
+ */
+@Tag("benchmark")
+class ProductNameSearchBenchmark {
+
+    private static final String[] QUERIES = {
+            "mouse", "wireless key", "lamp", "cable", "pro mon", "ultra", "x9", "studio micro", "hub 7", "zzz"
+    };
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    private static final int PAGE_SIZE = 20;
+
+    @ParameterizedTest
+    @ValueSource(ints = {100_000, 1_000_000})
+    void compareIndexWithSqlLike(int productCount) throws Exception {
+        Map<Long, String> names = WarehouseDatasetGenerator.productNames(productCount, 42);
+
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:h2:mem:search" + productCount + ";MODE=MySQL;DB_CLOSE_DELAY=-1")) {
+            loadProducts(connection, names);
+
+            long buildStarted = System.nanoTime();
+            ProductNameIndex index = new ProductNameIndex();
+            index.rebuild(names);
+            long buildMillis = (System.nanoTime() - buildStarted) / 1_000_000;
+
+            try (PreparedStatement like = connection.prepareStatement(
+                    "SELECT id, name FROM product WHERE name LIKE ? ORDER BY id LIMIT " + PAGE_SIZE)) {
+                long[] sqlNanos = measure(query -> {
+                    like.setString(1, "%" + query + "%");
+                    try (ResultSet rs = like.executeQuery()) {
+                        while (rs.next()) {
+                            rs.getLong(1);
+                        }
+                    }
+                });
+                long[] indexNanos = measure(query -> index.search(query, 1, PAGE_SIZE));
+
+                System.out.printf("%n[product name search] products=%,d index build=%d ms%n", productCount, buildMillis);
+                report("SQL LIKE", sqlNanos);
+                report("Trigram index", indexNanos);
+            }
+        }
+    }
+
+    private void loadProducts(Connection connection, Map<Long, String> names) throws Exception {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("CREATE TABLE product (id BIGINT PRIMARY KEY, name VARCHAR(200) NOT NULL)");
+            ddl.execute("CREATE INDEX idx_name ON product (name)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO product (id, name) VALUES (?, ?)")) {
+            int pending = 0;
+            for (Map.Entry<Long, String> entry : names.entrySet()) {
+                insert.setLong(1, entry.getKey());
+                insert.setString(2, entry.getValue());
+                insert.addBatch();
+                if (++pending % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private long[] measure(QueryRunner runner) throws Exception {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String query : QUERIES) {
+                runner.run(query);
+            }
+        }
+        long[] samples = new long[MEASURED_ROUNDS * QUERIES.length];
+        int sample = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (String query : QUERIES) {
+                long started = System.nanoTime();
+                runner.run(query);
+                samples[sample++] = System.nanoTime() - started;
+            }
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private void report(String label, long[] sortedNanos) {
+        double mean = Arrays.stream(sortedNanos).average().orElse(0) / 1_000;
+        System.out.printf("  %-14s mean=%10.1f us  p50=%10.1f us  p99=%10.1f us%n", label, mean,
+                sortedNanos[sortedNanos.length / 2] / 1_000.0,
+                sortedNanos[(int) (sortedNanos.length * 0.99)] / 1_000.0);
+    }
+
+    @FunctionalInterface
+    private interface QueryRunner {
+        void run(String query) throws Exception;
+    }
+}
@@ -0,0 +1,256 @@
+package com.tut2.group3.warehouse.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic warehouse datasets for benchmarks.
+ * The same seed and sizes always give the same products, stock and request mix, so runs are comparable
+ * across commits. Demand is Zipf-distributed over products: a handful of hot SKUs take most requests,
+ * and those SKUs are stocked deep in every warehouse, while the long tail sits in a few warehouses each.
+ * Popularity follows product id, so product 1 is the hottest SKU.
+ */
+public class WarehouseDatasetGenerator {
+
+    private static final String[] ADJECTIVES = {
+            "Wireless", "Mechanical", "Portable", "Ergonomic", "Compact", "Premium", "Smart", "Ultra",
+            "Rugged", "Slim", "Gaming", "Studio", "Travel", "Classic", "Pro", "Mini"
+    };
+    private static final String[] NOUNS = {
+            "Laptop", "Mouse", "Keyboard", "Monitor", "Headphones", "USB Cable", "Webcam", "Desk Lamp",
+            "Speaker", "Charger", "Router", "Tablet", "Microphone", "Dock", "Stand", "Hub"
+    };
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int HOT_STOCK = 1_000_000;
+    private static final Pattern CREATE_TABLE = Pattern.compile("CREATE TABLE (\\w+)");
+    private static final Pattern INLINE_INDEX = Pattern.compile("\\b(INDEX|UNIQUE KEY) (\\w+)");
+
+    private final long seed;
+    private final int productCount;
+    private final int warehouseCount;
+    private final int hotProductCount;
+    private final int stockedPercent;
+    private final double[] demandCdf;
+
+    /**
+     * @param hotFraction    share of products treated as hot SKUs, stocked in every warehouse
+     * @param stockedPercent chance in percent that a long-tail product is stocked in a given warehouse
+     * @param zipfExponent   skew of demand over products; around 1 is typical of retail catalogs
+     */
+    public WarehouseDatasetGenerator(long seed, int productCount, int warehouseCount,
+                                     double hotFraction, int stockedPercent, double zipfExponent) {
+        this.seed = seed;
+        this.productCount = productCount;
+        this.warehouseCount = warehouseCount;
+        this.hotProductCount = Math.max(1, (int) (productCount * hotFraction));
+        this.stockedPercent = stockedPercent;
+        this.demandCdf = zipfCdf(productCount, zipfExponent);
+    }
+
+    /**
+     * Defaults used by the benchmark suite: 1% hot SKUs, long tail in 10% of warehouses, Zipf exponent 1.1
+     */
+    public static WarehouseDatasetGenerator standard(int productCount, int warehouseCount) {
+        return new WarehouseDatasetGenerator(42, productCount, warehouseCount, 0.01, 10, 1.1);
+    }
+
+    /**
+     * Product names shaped like "Wireless Mouse K42"; deterministic for a given seed
+     */
+    public static Map<Long, String> productNames(int count, long seed) {
+        Random random = new Random(seed);
+        Map<Long, String> names = new HashMap<>(count * 2);
+        for (long id = 1; id <= count; id++) {
+            names.put(id, ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " "
+                    + (char) ('A' + random.nextInt(26)) + random.nextInt(100));
+        }
+        return names;
+    }
+
+    /**
+     * Create the production schema from database/schema.sql on an H2 database in MySQL mode.
+     * Skips the database statements, drops MySQL table options and prefixes inline index names with
+     * their table, since H2 scopes index names to the schema rather than the table.
+     */
+    public static void createSchema(Connection connection) throws Exception {
+        String script = new String(new ClassPathResource("database/schema.sql").getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : withoutComments.toString().split(";")) {
+                sql = sql.trim();
+                if (sql.isEmpty() || sql.startsWith("CREATE DATABASE") || sql.startsWith("USE ")) {
+                    continue;
+                }
+                Matcher table = CREATE_TABLE.matcher(sql);
+                if (table.find()) {
+                    sql = INLINE_INDEX.matcher(sql).replaceAll("$1 " + table.group(1) + "_$2")
+                            .replaceAll("\\)\\s*ENGINE=[^)]*$", ")");
+                }
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Insert warehouses, products, inventory, the per-product stock summary and the catalog version slots
+     */
+    public void load(Connection connection) throws Exception {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO warehouse (id, name, address, status) VALUES (?, ?, ?, 'ACTIVE')")) {
+                for (int w = 1; w <= warehouseCount; w++) {
+                    insert.setLong(1, w);
+                    insert.setString(2, "Warehouse " + w);
+                    insert.setString(3, w + " Benchmark Rd");
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            Map<Long, String> names = productNames(productCount, seed);
+            Random prices = new Random(seed + 1);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO product (id, name, price) VALUES (?, ?, ?)")) {
+                for (long id = 1; id <= productCount; id++) {
+                    insert.setLong(1, id);
+                    insert.setString(2, names.get(id));
+                    insert.setBigDecimal(3, BigDecimal.valueOf(100 + prices.nextInt(99_900), 2));
+                    insert.addBatch();
+                    if (id % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+
+            int[] available = new int[productCount + 1];
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO inventory (warehouse_id, product_id, available_quantity, reserved_quantity, version) " +
+                    "VALUES (?, ?, ?, 0, 0)")) {
+                int pending = 0;
+                for (long productId = 1; productId <= productCount; productId++) {
+                    for (long warehouseId : warehousesStocking(productId)) {
+                        int quantity = stockLevel(productId, warehouseId);
+                        available[(int) productId] += quantity;
+                        insert.setLong(1, warehouseId);
+                        insert.setLong(2, productId);
+                        insert.setInt(3, quantity);
+                        insert.addBatch();
+                        if (++pending % INSERT_BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO product_stock_summary (product_id, available_quantity) VALUES (?, ?) "
+                            + "ON DUPLICATE KEY UPDATE available_quantity = VALUES(available_quantity)")) {
+                for (int productId = 1; productId <= productCount; productId++) {
+                    insert.setLong(1, productId);
+                    insert.setInt(2, available[productId]);
+                    insert.addBatch();
+                    if (productId % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                for (int slot = 0; slot < 16; slot++) {
+                    statement.addBatch("INSERT INTO catalog_version (resource, slot, version) VALUES ('products', " + slot + ", 0)");
+                }
+                for (String resource : new String[] {"product_rows", "product_deletes", "warehouses"}) {
+                    statement.addBatch("INSERT INTO catalog_version (resource, slot, version) VALUES ('" + resource + "', 0, 0)");
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Warehouses holding a product: every warehouse for hot SKUs, a pseudo-random subset for the rest
+     */
+    public long[] warehousesStocking(long productId) {
+        List<Long> warehouses = new ArrayList<>();
+        for (long warehouseId = 1; warehouseId <= warehouseCount; warehouseId++) {
+            if (isHot(productId) || Math.floorMod(mix(productId, warehouseId), 100) < stockedPercent) {
+                warehouses.add(warehouseId);
+            }
+        }
+        if (warehouses.isEmpty()) {
+            warehouses.add(1L + Math.floorMod(mix(productId, 0), warehouseCount));
+        }
+        return warehouses.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Draw a product id from the demand distribution
+     */
+    public long sampleProductId(Random random) {
+        int rank = Arrays.binarySearch(demandCdf, random.nextDouble());
+        return (rank >= 0 ? rank : -rank - 1) + 1L;
+    }
+
+    public boolean isHot(long productId) {
+        return productId <= hotProductCount;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public int getWarehouseCount() {
+        return warehouseCount;
+    }
+
+    private int stockLevel(long productId, long warehouseId) {
+        return isHot(productId) ? HOT_STOCK : 1 + Math.floorMod(mix(productId, warehouseId) >>> 8, 500);
+    }
+
+    private long mix(long productId, long warehouseId) {
+        long h = seed ^ (productId * 0x9E3779B97F4A7C15L) ^ (warehouseId * 0xC2B2AE3D27D4EB4FL);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cdf[rank] = total;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cdf[rank] /= total;
+        }
+        return cdf;
+    }
+}
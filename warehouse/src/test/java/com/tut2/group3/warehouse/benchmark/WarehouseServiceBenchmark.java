@@ -0,0 +1,224 @@
+package com.tut2.group3.warehouse.benchmark;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.config.GlobalConfig;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.tut2.group3.warehouse.config.LedgerProperties;
+import com.tut2.group3.warehouse.config.IdGeneratorConfig;
+import com.tut2.group3.warehouse.config.MyBatisPlusConfig;
+import com.tut2.group3.warehouse.config.ReservationProperties;
+import com.tut2.group3.warehouse.dto.request.CheckAvailabilityRequest;
+import com.tut2.group3.warehouse.dto.request.OrderValidationRequest;
+import com.tut2.group3.warehouse.dto.request.ReserveStockRequest;
+import com.tut2.group3.warehouse.dto.request.WarehouseAllocation;
+import com.tut2.group3.warehouse.service.CatalogVersionService;
+import com.tut2.group3.warehouse.service.InventoryLedgerService;
+import com.tut2.group3.warehouse.service.ProductSearchService;
+import com.tut2.group3.warehouse.service.ProductService;
+import com.tut2.group3.warehouse.service.WarehouseService;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs the hot warehouse service methods against generated datasets and reports throughput and latency
+ * per dataset size, so scaling regressions show up before deploy.
+ * The real services, mappers and transactions are wired onto H2 in MySQL mode with the production schema.
+ * Runs only with {@code mvn test -Pbenchmark}. Dataset sizes come from {@code -Dbenchmark.datasets},
+ * a comma separated list of productsxwarehouses such as {@code 1000000x50}.
+ */
+@Tag("benchmark")
+class WarehouseServiceBenchmark {
+
+    private static final String DEFAULT_DATASETS = "10000x10,100000x50";
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 4);
+    private static final int POINT_OPERATIONS = Integer.getInteger("benchmark.operations", 2_000);
+    private static final int CART_SIZE = 5;
+
+    static Stream<Arguments> datasets() {
+        return Arrays.stream(System.getProperty("benchmark.datasets", DEFAULT_DATASETS).split(","))
+                .map(String::trim)
+                .map(size -> size.split("x"))
+                .map(parts -> Arguments.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])));
+    }
+
+    @ParameterizedTest(name = "{0} products x {1} warehouses")
+    @MethodSource("datasets")
+    void serviceMethods(int productCount, int warehouseCount) throws Exception {
+        WarehouseDatasetGenerator generator = WarehouseDatasetGenerator.standard(productCount, warehouseCount);
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:warehouse-" + productCount + "x" + warehouseCount
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        long loadStarted = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            WarehouseDatasetGenerator.createSchema(connection);
+            generator.load(connection);
+        }
+        long loadMillis = (System.nanoTime() - loadStarted) / 1_000_000;
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(DataSource.class, () -> dataSource);
+            context.register(BenchmarkConfig.class);
+            context.refresh();
+            WarehouseService warehouseService = context.getBean(WarehouseService.class);
+            ProductService productService = context.getBean(ProductService.class);
+
+            System.out.printf("%n[warehouse services] products=%,d warehouses=%d load=%d ms threads=%d%n",
+                    productCount, warehouseCount, loadMillis, THREADS);
+
+            run("checkAvailability", POINT_OPERATIONS, (random, op) -> warehouseService.checkAvailability(
+                    new CheckAvailabilityRequest(generator.sampleProductId(random), 1)));
+
+            run("validateOrder", POINT_OPERATIONS, (random, op) -> {
+                List<OrderValidationRequest.OrderItem> items = new ArrayList<>(CART_SIZE);
+                for (int i = 0; i < CART_SIZE; i++) {
+                    items.add(new OrderValidationRequest.OrderItem(generator.sampleProductId(random), 1));
+                }
+                warehouseService.validateOrder(new OrderValidationRequest("BENCH-" + op, items));
+            });
+
+            run("reserveStock", POINT_OPERATIONS, (random, op) -> {
+                long productId = generator.sampleProductId(random);
+                long[] warehouses = generator.warehousesStocking(productId);
+                long warehouseId = warehouses[random.nextInt(warehouses.length)];
+                warehouseService.reserveStock(new ReserveStockRequest("BENCH-" + op, productId, 1,
+                        List.of(new WarehouseAllocation(warehouseId, 1)), null));
+            });
+
+            // The full catalog grows with the dataset, so fewer calls are enough to time it
+            int catalogOperations = Math.max(THREADS, 2_000_000 / productCount);
+            run("getAllProductsWithStock", catalogOperations, (random, op) -> productService.getAllProductsWithStock());
+        }
+    }
+
+    /**
+     * Spread operations over the worker threads, timing each one.
+     * Failures (e.g. a reservation losing its optimistic lock three times on a hot SKU) are counted, not timed.
+     */
+    private void run(String label, int operations, Operation operation) throws Exception {
+        // Warm up on one thread so JIT and statement caches settle before measuring
+        Random warmup = new Random(7);
+        for (int op = 0; op < Math.min(operations, 200); op++) {
+            try {
+                operation.run(warmup, -op - 1);
+            } catch (RuntimeException ignored) {
+                // Warm-up failures do not matter
+            }
+        }
+
+        long[] samples = new long[operations];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger measured = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                Random random = new Random(1_000 + thread);
+                workers.add(executor.submit(() -> {
+                    int op;
+                    while ((op = next.getAndIncrement()) < operations) {
+                        long opStarted = System.nanoTime();
+                        try {
+                            operation.run(random, op);
+                            samples[measured.getAndIncrement()] = System.nanoTime() - opStarted;
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsedNanos = System.nanoTime() - started;
+
+        long[] sorted = Arrays.copyOf(samples, measured.get());
+        Arrays.sort(sorted);
+        report(label, sorted, operations, failed.get(), elapsedNanos);
+    }
+
+    private void report(String label, long[] sortedNanos, int operations, int failed, long elapsedNanos) {
+        if (sortedNanos.length == 0) {
+            System.out.printf("  %-24s all %d operations failed%n", label, operations);
+            return;
+        }
+        double throughput = operations / (elapsedNanos / 1_000_000_000.0);
+        System.out.printf("  %-24s ops=%6d  failed=%4d  throughput=%9.1f ops/s  p50=%9.2f ms  p99=%9.2f ms  max=%9.2f ms%n",
+                label, operations, failed, throughput,
+                sortedNanos[sortedNanos.length / 2] / 1_000_000.0,
+                sortedNanos[(int) (sortedNanos.length * 0.99)] / 1_000_000.0,
+                sortedNanos[sortedNanos.length - 1] / 1_000_000.0);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(Random random, int op);
+    }
+
+    /**
+     * Just the services under test, their mappers and transactions; no web layer, RabbitMQ or schedulers.
+     * Inventory events are still published in-process, so the after-commit catalog version bump runs too.
+     */
+    @Configuration
+    @EnableTransactionManagement
+    @MapperScan(basePackages = "com.tut2.group3.warehouse.mapper", annotationClass = Mapper.class)
+    @Import({MyBatisPlusConfig.class, IdGeneratorConfig.class, ReservationProperties.class, LedgerProperties.class,
+            WarehouseService.class, ProductService.class, ProductSearchService.class,
+            InventoryLedgerService.class, CatalogVersionService.class})
+    static class BenchmarkConfig {
+
+        @Bean
+        public SqlSessionFactory sqlSessionFactory(DataSource dataSource, MybatisPlusInterceptor interceptor,
+                                                   MetaObjectHandler metaObjectHandler) throws Exception {
+            MybatisConfiguration configuration = new MybatisConfiguration();
+            configuration.setMapUnderscoreToCamelCase(true);
+            GlobalConfig globalConfig = new GlobalConfig();
+            globalConfig.setMetaObjectHandler(metaObjectHandler);
+
+            MybatisSqlSessionFactoryBean factory = new MybatisSqlSessionFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setConfiguration(configuration);
+            factory.setGlobalConfig(globalConfig);
+            factory.setPlugins(interceptor);
+            return factory.getObject();
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+    }
+}
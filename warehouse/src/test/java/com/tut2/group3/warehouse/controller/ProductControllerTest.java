@@ -0,0 +1,71 @@
+package com.tut2.group3.warehouse.controller;
+
+import com.tut2.group3.warehouse.dto.response.ProductWithStockDto;
+import com.tut2.group3.warehouse.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ProductControllerTest {
+
+    private static final String ETAG = "W/\"products-42-8-1760000000\"";
+
+    @Mock
+    private ProductService productService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(productService)).build();
+        when(productService.resolveCatalogFields(isNull())).thenReturn(ProductService.CATALOG_FIELDS);
+        // Behave like the service: check the current tag first and only then load the catalog
+        when(productService.getProductCatalog(isNull(), isNull(), eq(ProductService.CATALOG_FIELDS), any()))
+                .thenAnswer(invocation -> invocation.<Predicate<String>>getArgument(3).test(ETAG)
+                        ? null
+                        : List.of(new ProductWithStockDto(1L, "Laptop", null, new BigDecimal("999.00"), 5)));
+    }
+
+    @Test
+    void catalogCarriesETag() throws Exception {
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(jsonPath("$.data[0].name").value("Laptop"));
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModified() throws Exception {
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void staleIfNoneMatchGetsCatalog() throws Exception {
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, "W/\"products-41-8-1760000000\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG));
+    }
+}
@@ -0,0 +1,99 @@
+package com.tut2.group3.warehouse.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes between two in-memory H2 databases standing in for a primary and a replica.
+ * There is no real replication, so tests copy the heartbeat by hand to simulate the replica catching up.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate routed;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        lagMonitor = new ReplicaLagMonitor(primaryDataSource, replicaDataSource, 5000);
+        DataSource routing = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, lagMonitor));
+        routed = new JdbcTemplate(routing);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private DataSource h2(String role) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + role + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE replica_heartbeat (id TINYINT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+        jdbc.update("INSERT INTO replica_heartbeat (id, beat_millis) VALUES (1, 0)");
+        jdbc.execute("CREATE TABLE node (role VARCHAR(20))");
+        jdbc.update("INSERT INTO node (role) VALUES (?)", role);
+        return dataSource;
+    }
+
+    private String roleInReadOnly() {
+        return readOnly.execute(status -> routed.queryForObject("SELECT role FROM node", String.class));
+    }
+
+    private String roleInReadWrite() {
+        return readWrite.execute(status -> routed.queryForObject("SELECT role FROM node", String.class));
+    }
+
+    private void replicateHeartbeat() {
+        Long beat = primary.queryForObject("SELECT beat_millis FROM replica_heartbeat WHERE id = 1", Long.class);
+        replica.update("UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1", beat);
+    }
+
+    @Test
+    void readOnlyTransactionsUseFreshReplica() {
+        lagMonitor.probe();
+        replicateHeartbeat();
+        lagMonitor.probe();
+
+        assertTrue(lagMonitor.isReplicaFresh());
+        assertEquals("replica", roleInReadOnly());
+        assertEquals("primary", roleInReadWrite());
+        assertEquals("primary", routed.queryForObject("SELECT role FROM node", String.class));
+    }
+
+    @Test
+    void readsStayOnPrimaryUntilReplicaHasBeenProbed() {
+        assertFalse(lagMonitor.isReplicaFresh());
+        assertEquals("primary", roleInReadOnly());
+    }
+
+    @Test
+    void staleReplicaFallsBackToPrimary() {
+        replica.update("UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1", System.currentTimeMillis() - 60_000);
+        lagMonitor.probe();
+
+        assertFalse(lagMonitor.isReplicaFresh());
+        assertEquals("primary", roleInReadOnly());
+    }
+}
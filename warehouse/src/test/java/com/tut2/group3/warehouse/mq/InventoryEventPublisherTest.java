@@ -0,0 +1,161 @@
+package com.tut2.group3.warehouse.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tut2.group3.warehouse.config.InventoryEventProperties;
+import com.tut2.group3.warehouse.config.RabbitMQConfig;
+import com.tut2.group3.warehouse.dto.event.InventoryChangeEvent;
+import com.tut2.group3.warehouse.dto.event.InventoryEventType;
+import com.tut2.group3.warehouse.dto.event.InventoryLevel;
+import com.tut2.group3.warehouse.entity.InventoryEventOutbox;
+import com.tut2.group3.warehouse.mapper.InventoryEventOutboxMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryEventPublisherTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+    @Mock
+    private InventoryEventOutboxMapper outboxMapper;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private InventoryEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new InventoryEventPublisher(rabbitTemplate, outboxMapper, new TransactionTemplate(transactionManager),
+                objectMapper, new InventoryEventProperties());
+    }
+
+    @Test
+    void eventIsWrittenToTheOutboxInsteadOfBeingQueuedInMemory() throws Exception {
+        publisher.onInventoryChange(event("EVT-1", InventoryEventType.STOCK_RESERVED));
+
+        ArgumentCaptor<InventoryEventOutbox> row = ArgumentCaptor.forClass(InventoryEventOutbox.class);
+        verify(outboxMapper).insert(row.capture());
+        assertEquals("EVT-1", row.getValue().getEventId());
+        InventoryChangeEvent stored = objectMapper.readValue(row.getValue().getPayload(), InventoryChangeEvent.class);
+        assertEquals(InventoryEventType.STOCK_RESERVED, stored.getEventType());
+        assertEquals(7, stored.getLevels().get(0).getAvailableQuantity());
+        verify(rabbitTemplate, never()).convertAndSend(any(String.class), any(String.class), any(Object.class));
+    }
+
+    @Test
+    void relaySendsTheOldestEventsInOrderAndDeletesThemOnceConfirmed() throws Exception {
+        when(outboxMapper.lockOldest(100)).thenReturn(List.of(
+                row(1L, event("EVT-1", InventoryEventType.STOCK_RESERVED), null),
+                row(2L, event("EVT-2", InventoryEventType.STOCK_CONFIRMED), null)));
+        relayThroughTemplate();
+
+        assertEquals(2, publisher.relayBatch());
+
+        // The claim commits before the broker is waited on, and the delete runs in a transaction of its own
+        InOrder order = inOrder(rabbitTemplate, outboxMapper, transactionManager);
+        order.verify(outboxMapper).claim(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        order.verify(transactionManager).commit(any());
+        order.verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.WAREHOUSE_EXCHANGE),
+                eq(InventoryEventType.STOCK_RESERVED.getRoutingKey()), any(InventoryChangeEvent.class));
+        order.verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.WAREHOUSE_EXCHANGE),
+                eq(InventoryEventType.STOCK_CONFIRMED.getRoutingKey()), any(InventoryChangeEvent.class));
+        order.verify(rabbitTemplate).waitForConfirmsOrDie(5000L);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(outboxMapper).deleteSent(List.of(1L, 2L));
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void unconfirmedBatchIsReleasedAndStaysInTheOutbox() throws Exception {
+        when(outboxMapper.lockOldest(100)).thenReturn(List.of(row(1L, event("EVT-1", InventoryEventType.STOCK_RELEASED), null)));
+        relayThroughTemplate();
+        doThrow(new AmqpTimeoutException("no confirm")).when(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+
+        assertThrows(AmqpTimeoutException.class, () -> publisher.relayBatch());
+
+        verify(outboxMapper).releaseClaim(List.of(1L));
+        verify(outboxMapper, never()).deleteSent(any());
+    }
+
+    @Test
+    void batchClaimedByAnotherRelayIsLeftToIt() throws Exception {
+        when(outboxMapper.lockOldest(100)).thenReturn(List.of(
+                row(1L, event("EVT-1", InventoryEventType.STOCK_RESERVED), LocalDateTime.now().minusSeconds(2)),
+                row(2L, event("EVT-2", InventoryEventType.STOCK_CONFIRMED), null)));
+
+        assertEquals(0, publisher.relayBatch());
+
+        verify(outboxMapper, never()).claim(any(), any());
+        verify(rabbitTemplate, never()).invoke(any());
+    }
+
+    @Test
+    void claimOfARelayThatDiedIsTakenOver() throws Exception {
+        when(outboxMapper.lockOldest(100)).thenReturn(List.of(
+                row(1L, event("EVT-1", InventoryEventType.STOCK_RESERVED), LocalDateTime.now().minusMinutes(5)),
+                row(2L, event("EVT-2", InventoryEventType.STOCK_CONFIRMED), null)));
+        relayThroughTemplate();
+
+        assertEquals(2, publisher.relayBatch());
+
+        verify(outboxMapper).claim(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(outboxMapper).deleteSent(List.of(1L, 2L));
+    }
+
+    @Test
+    void emptyOutboxSendsNothing() {
+        when(outboxMapper.lockOldest(100)).thenReturn(List.of());
+
+        assertEquals(0, publisher.relayBatch());
+
+        verify(rabbitTemplate, never()).invoke(any());
+        verify(outboxMapper, never()).deleteSent(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void relayThroughTemplate() {
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<Object>>getArgument(0).doInRabbit(rabbitTemplate));
+    }
+
+    private InventoryEventOutbox row(Long id, InventoryChangeEvent event, LocalDateTime claimedAt) throws Exception {
+        return new InventoryEventOutbox(id, event.getEventId(), objectMapper.writeValueAsString(event), LocalDateTime.now(),
+                claimedAt);
+    }
+
+    private static InventoryChangeEvent event(String eventId, InventoryEventType type) {
+        return InventoryChangeEvent.builder()
+                .eventId(eventId)
+                .eventType(type)
+                .timestamp(LocalDateTime.now())
+                .orderId("ORD-1")
+                .levels(List.of(new InventoryLevel(1L, 2L, 7, 3, 12L)))
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.tut2.group3.warehouse.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.tut2.group3.warehouse.config.RabbitMQConfig;
+import com.tut2.group3.warehouse.service.WarehouseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageListenerTest {
+
+    @Mock
+    private WarehouseService warehouseService;
+    @Mock
+    private Channel channel;
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private MessageListener messageListener;
+
+    @BeforeEach
+    void setUp() {
+        messageListener = new MessageListener(warehouseService, new ObjectMapper(), rabbitTemplate);
+    }
+
+    private Message message(long deliveryTag, String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    @Test
+    void releasesWholeBatchInOneCallAndDeadLettersPoisonMessages() throws Exception {
+        when(warehouseService.releaseCancelledOrders(anyMap())).thenReturn(Set.of("ORD-1", "ORD-2"));
+
+        messageListener.handleOrderCancelled(List.of(
+                message(1, "{\"orderId\":\"ORD-1\",\"reason\":\"CUSTOMER_REQUESTED\"}"),
+                message(2, "not json"),
+                message(3, "{\"orderId\":\"ORD-2\"}"),
+                message(4, "{\"reason\":\"NO_ORDER\"}")), channel);
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("ORD-1", "CUSTOMER_REQUESTED");
+        expected.put("ORD-2", "ORDER_CANCELLED");
+        verify(warehouseService).releaseCancelledOrders(expected);
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(3, false);
+        verify(channel).basicNack(2, false, false);
+        verify(channel).basicNack(4, false, false);
+    }
+
+    @Test
+    void fallsBackToPerMessageReleaseWhenBatchFails() throws Exception {
+        when(warehouseService.releaseCancelledOrders(Map.of("ORD-1", "ORDER_CANCELLED", "ORD-2", "ORDER_CANCELLED")))
+                .thenThrow(new RuntimeException("batch failed"));
+        when(warehouseService.releaseCancelledOrders(Map.of("ORD-1", "ORDER_CANCELLED")))
+                .thenReturn(Set.of("ORD-1"));
+        when(warehouseService.releaseCancelledOrders(Map.of("ORD-2", "ORDER_CANCELLED")))
+                .thenThrow(new IllegalStateException("inventory out of step"));
+
+        messageListener.handleOrderCancelled(List.of(
+                message(1, "{\"orderId\":\"ORD-1\"}"),
+                message(2, "{\"orderId\":\"ORD-2\"}")), channel);
+
+        verify(channel).basicAck(1, false);
+        verify(channel).basicNack(2, false, false);
+    }
+
+    @Test
+    void parksMessageOnTheRetryQueueOnTransientDatabaseFailure() throws Exception {
+        when(warehouseService.releaseCancelledOrders(anyMap()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        Message message = message(7, "{\"orderId\":\"ORD-7\"}");
+
+        messageListener.handleOrderCancelled(List.of(message), channel);
+
+        verify(rabbitTemplate).send("", RabbitMQConfig.WAREHOUSE_ORDER_CANCELLED_RETRY_QUEUE, message);
+        verify(channel).basicAck(7, false);
+        verify(channel, never()).basicNack(eq(7L), eq(false), eq(true));
+    }
+}
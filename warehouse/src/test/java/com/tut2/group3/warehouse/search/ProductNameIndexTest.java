@@ -0,0 +1,85 @@
+package com.tut2.group3.warehouse.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductNameIndexTest {
+
+    @Test
+    void search_matches_substrings_case_insensitively() {
+        ProductNameIndex index = new ProductNameIndex();
+        index.rebuild(Map.of(
+                1L, "Laptop",
+                2L, "Wireless Mouse",
+                3L, "Mouse Pad",
+                4L, "Keyboard"));
+
+        ProductNameIndex.SearchResult result = index.search("MOUSE", 1, 10);
+
+        assertEquals(2, result.total());
+        assertEquals(List.of(3L, 2L), ids(result));
+    }
+
+    @Test
+    void search_ranks_exact_then_prefix_then_word_then_substring() {
+        ProductNameIndex index = new ProductNameIndex();
+        index.rebuild(Map.of(
+                1L, "Cablecar Toy",
+                2L, "USB Cable",
+                3L, "Cable",
+                4L, "Microcable Kit",
+                5L, "Cable Tie"));
+
+        ProductNameIndex.SearchResult result = index.search("cable", 1, 10);
+
+        assertEquals(List.of(3L, 5L, 1L, 2L, 4L), ids(result));
+    }
+
+    @Test
+    void search_pages_through_ranked_hits() {
+        ProductNameIndex index = new ProductNameIndex();
+        for (long id = 1; id <= 25; id++) {
+            index.put(id, "Lamp " + id);
+        }
+
+        ProductNameIndex.SearchResult secondPage = index.search("lamp", 2, 10);
+        ProductNameIndex.SearchResult lastPage = index.search("lamp", 3, 10);
+
+        assertEquals(25, secondPage.total());
+        assertEquals(10, secondPage.hits().size());
+        assertEquals(5, lastPage.hits().size());
+    }
+
+    @Test
+    void put_replaces_previous_name_and_remove_drops_product() {
+        ProductNameIndex index = new ProductNameIndex();
+        index.put(1L, "Desk Lamp");
+        index.put(2L, "Webcam");
+
+        index.put(1L, "Floor Lamp");
+        index.remove(2L);
+
+        assertTrue(index.search("desk", 1, 10).hits().isEmpty());
+        assertEquals(List.of(1L), ids(index.search("floor", 1, 10)));
+        assertTrue(index.search("webcam", 1, 10).hits().isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void short_queries_scan_names() {
+        ProductNameIndex index = new ProductNameIndex();
+        index.rebuild(Map.of(1L, "USB Cable", 2L, "Monitor"));
+
+        assertEquals(List.of(1L), ids(index.search("us", 1, 10)));
+        assertEquals(List.of(2L), ids(index.search("o", 1, 10)));
+    }
+
+    private List<Long> ids(ProductNameIndex.SearchResult result) {
+        return result.hits().stream().map(ProductNameIndex.Hit::productId).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package com.tut2.group3.warehouse.service;
+
+import com.tut2.group3.warehouse.config.LedgerProperties;
+import com.tut2.group3.warehouse.dto.response.StockAsOfResponse;
+import com.tut2.group3.warehouse.entity.InventoryLedger;
+import com.tut2.group3.warehouse.entity.InventorySnapshot;
+import com.tut2.group3.warehouse.entity.StockReservation;
+import com.tut2.group3.warehouse.mapper.InventoryLedgerMapper;
+import com.tut2.group3.warehouse.mapper.InventorySnapshotMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerServiceTest {
+
+    private static final LocalDateTime SNAPSHOT_AT = LocalDateTime.of(2025, 10, 12, 14, 25);
+    private static final LocalDateTime TS = LocalDateTime.of(2025, 10, 12, 14, 30);
+
+    @Mock
+    private InventoryLedgerMapper inventoryLedgerMapper;
+    @Mock
+    private InventorySnapshotMapper inventorySnapshotMapper;
+
+    private InventoryLedgerService inventoryLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryLedgerService = new InventoryLedgerService(inventoryLedgerMapper, inventorySnapshotMapper,
+                new LedgerProperties());
+    }
+
+    private static InventoryLedger movement(long warehouseId, long productId, int available, int reserved) {
+        return new InventoryLedger(null, warehouseId, productId, available, reserved, null, null, null);
+    }
+
+    @Test
+    void stockAsOfReplaysLedgerSinceLatestSnapshot() {
+        when(inventorySnapshotMapper.selectLatestSnapshotAt(TS)).thenReturn(SNAPSHOT_AT);
+        when(inventorySnapshotMapper.selectLatestAsOf(TS, null, null)).thenReturn(List.of(
+                new InventorySnapshot(1L, 2L, SNAPSHOT_AT, 100, 5),
+                new InventorySnapshot(1L, 1L, SNAPSHOT_AT.minusHours(1), 50, 0)));
+        when(inventoryLedgerMapper.sumMovements(SNAPSHOT_AT, TS, null, null)).thenReturn(List.of(
+                movement(1L, 2L, -3, 3),
+                movement(2L, 1L, 10, 0)));
+
+        StockAsOfResponse response = inventoryLedgerService.getStockAsOf(TS, null, null);
+
+        assertEquals(SNAPSHOT_AT, response.getSnapshotAt());
+        assertEquals(List.of(
+                new StockAsOfResponse.StockLevel(1L, 1L, 50, 0),
+                new StockAsOfResponse.StockLevel(1L, 2L, 97, 8),
+                new StockAsOfResponse.StockLevel(2L, 1L, 10, 0)), response.getStocks());
+    }
+
+    @Test
+    void stockAsOfWithoutSnapshotReplaysWholeLedger() {
+        when(inventoryLedgerMapper.sumMovements(null, TS, 1L, null)).thenReturn(List.of(movement(1L, 1L, 7, 2)));
+
+        StockAsOfResponse response = inventoryLedgerService.getStockAsOf(TS, 1L, null);
+
+        assertNull(response.getSnapshotAt());
+        assertEquals(List.of(new StockAsOfResponse.StockLevel(1L, 1L, 7, 2)), response.getStocks());
+        verify(inventorySnapshotMapper, never()).selectLatestAsOf(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void snapshotFoldsMovementsOntoPreviousSnapshot() {
+        when(inventorySnapshotMapper.selectLatestSnapshotAt(any())).thenReturn(SNAPSHOT_AT);
+        when(inventoryLedgerMapper.sumMovements(eq(SNAPSHOT_AT), any(), isNull(), isNull())).thenReturn(List.of(
+                movement(2L, 1L, 4, 0),
+                movement(1L, 1L, -2, 2)));
+        when(inventorySnapshotMapper.selectLatestAsOfForRows(eq(SNAPSHOT_AT), anyList()))
+                .thenReturn(List.of(new InventorySnapshot(1L, 1L, SNAPSHOT_AT, 20, 1)));
+
+        assertEquals(2, inventoryLedgerService.takeSnapshot());
+
+        ArgumentCaptor<List<InventorySnapshot>> written = ArgumentCaptor.forClass(List.class);
+        verify(inventorySnapshotMapper).insertBatch(written.capture());
+        List<InventorySnapshot> snapshots = written.getValue();
+        assertEquals(2, snapshots.size());
+        assertEquals(List.of(18, 4), snapshots.stream().map(InventorySnapshot::getAvailableQuantity).toList());
+        assertEquals(List.of(3, 0), snapshots.stream().map(InventorySnapshot::getReservedQuantity).toList());
+        assertEquals(1L, snapshots.get(0).getWarehouseId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservationMovementsCarrySignedDeltas() {
+        StockReservation reservation = new StockReservation();
+        reservation.setOrderId("ORD-1");
+        reservation.setWarehouseId(1L);
+        reservation.setProductId(2L);
+        reservation.setQuantity(3);
+
+        inventoryLedgerService.recordReservations(List.of(reservation), "RESERVE");
+        inventoryLedgerService.recordReservations(List.of(reservation), "CONFIRM");
+        inventoryLedgerService.recordReservations(List.of(reservation), "EXPIRE");
+
+        ArgumentCaptor<List<InventoryLedger>> entries = ArgumentCaptor.forClass(List.class);
+        verify(inventoryLedgerMapper, times(3)).insertBatch(entries.capture());
+        assertEquals(List.of(-3, 0, 3), entries.getAllValues().stream()
+                .map(list -> list.get(0).getAvailableDelta()).toList());
+        assertEquals(List.of(3, -3, -3), entries.getAllValues().stream()
+                .map(list -> list.get(0).getReservedDelta()).toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.tut2.group3.warehouse.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.tut2.group3.warehouse.entity.Product;
+import com.tut2.group3.warehouse.mapper.CatalogVersionMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchServiceTest {
+
+    @Mock
+    private ProductMapper productMapper;
+    @Mock
+    private CatalogVersionMapper catalogVersionMapper;
+
+    private ProductSearchService productSearchService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda selects resolve their columns from MyBatis-Plus table metadata
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Product.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        productSearchService = new ProductSearchService(productMapper, catalogVersionMapper);
+    }
+
+    @Test
+    void refreshPicksUpRenamedProducts() {
+        when(productMapper.selectList(any())).thenReturn(
+                List.of(product(1L, "Laptop"), product(2L, "Wireless Mouse")),
+                List.of(product(2L, "Wireless Trackball")));
+        productSearchService.buildIndex();
+
+        productSearchService.refreshIndex();
+
+        assertEquals(0, productSearchService.search("mouse", 1, 10).getTotalMatches());
+        assertEquals(2L, productSearchService.search("trackball", 1, 10).getResults().get(0).getId());
+    }
+
+    @Test
+    void reconcileDropsProductsDeletedFromTheTable() {
+        when(productMapper.selectList(any())).thenReturn(
+                List.of(product(1L, "Laptop"), product(2L, "Wireless Mouse"), product(3L, "Mouse Pad")),
+                List.of(product(1L, null), product(3L, null)));
+        productSearchService.buildIndex();
+        assertEquals(2, productSearchService.search("mouse", 1, 10).getTotalMatches());
+
+        productSearchService.reconcileRemovals();
+
+        assertEquals(1, productSearchService.search("mouse", 1, 10).getTotalMatches());
+        assertEquals(3L, productSearchService.search("mouse", 1, 10).getResults().get(0).getId());
+        assertEquals(1, productSearchService.search("laptop", 1, 10).getTotalMatches());
+    }
+
+    @Test
+    void productWriteCatchesTheIndexUpWithoutWaitingForTheTimedRefresh() {
+        when(productMapper.selectList(any())).thenReturn(
+                List.of(product(1L, "Laptop"), product(2L, "Wireless Mouse")),
+                List.of(product(3L, "Mouse Pad")),
+                List.of(product(1L, null), product(3L, null)));
+        productSearchService.buildIndex();
+
+        // Nothing written yet: no product query
+        productSearchService.followProductChanges();
+        assertEquals(1, productSearchService.search("mouse", 1, 10).getTotalMatches());
+
+        when(catalogVersionMapper.selectResourceVersion(ProductSearchService.PRODUCT_ROWS)).thenReturn(1L);
+        productSearchService.followProductChanges();
+        assertEquals(2, productSearchService.search("mouse", 1, 10).getTotalMatches());
+
+        when(catalogVersionMapper.selectResourceVersion(ProductSearchService.PRODUCT_DELETES)).thenReturn(1L);
+        productSearchService.followProductChanges();
+        assertEquals(1, productSearchService.search("mouse", 1, 10).getTotalMatches());
+        assertEquals(3L, productSearchService.search("mouse", 1, 10).getResults().get(0).getId());
+        verify(productMapper, times(3)).selectList(any());
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setUpdatedAt(LocalDateTime.now());
+        return product;
+    }
+}
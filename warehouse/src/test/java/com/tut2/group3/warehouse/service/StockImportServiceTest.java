@@ -0,0 +1,136 @@
+package com.tut2.group3.warehouse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tut2.group3.warehouse.config.StockImportProperties;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.response.StockImportResponse;
+import com.tut2.group3.warehouse.entity.Warehouse;
+import com.tut2.group3.warehouse.mapper.InventoryMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
+import com.tut2.group3.warehouse.mapper.WarehouseMapper;
+import com.tut2.group3.warehouse.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockImportServiceTest {
+
+    @Mock
+    private InventoryMapper inventoryMapper;
+    @Mock
+    private ProductMapper productMapper;
+    @Mock
+    private WarehouseMapper warehouseMapper;
+    @Mock
+    private ProductStockSummaryMapper productStockSummaryMapper;
+    @Mock
+    private InventoryLedgerService inventoryLedgerService;
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private StockImportService stockImportService;
+
+    @BeforeEach
+    void setUp() {
+        StockImportProperties properties = new StockImportProperties();
+        properties.setChunkSize(2);
+        stockImportService = new StockImportService(inventoryMapper, productMapper, warehouseMapper,
+                productStockSummaryMapper, inventoryLedgerService, applicationEventPublisher, transactionTemplate,
+                properties, new ObjectMapper(), new IdGenerator(1));
+    }
+
+    private void givenWarehouseAndInlineTransactions() {
+        Warehouse warehouse = new Warehouse();
+        warehouse.setId(1L);
+        when(warehouseMapper.selectList(null)).thenReturn(List.of(warehouse));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importsCsvInChunksAndReportsRejectedRows() throws Exception {
+        givenWarehouseAndInlineTransactions();
+        when(productMapper.selectExistingIds(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+                        .filter(id -> id != 99L).toList());
+
+        String csv = String.join("\n",
+                "warehouseId,productId,quantity",
+                "1,1,10",
+                "1,1,5",
+                "not,a,row",
+                "2,1,3",
+                "1,99,4",
+                "1,2,-1",
+                "1,3,7");
+
+        StockImportResponse response = stockImportService.importStock(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "text/csv");
+
+        assertEquals(7, response.getTotalRows());
+        assertEquals(3, response.getAppliedRows());
+        assertEquals(4, response.getRejectedRows());
+        assertEquals(List.of(4L, 5L, 7L, 6L),
+                response.getRejected().stream().map(StockImportResponse.RejectedRow::getLine).toList());
+        assertEquals(2, response.getChunks().size());
+        assertEquals(2, response.getChunks().get(0).getApplied());
+        assertEquals(1, response.getChunks().get(1).getApplied());
+        assertEquals(4, response.getChunks().get(1).getRejected());
+
+        // Duplicate rows in a chunk are merged into one upsert row
+        ArgumentCaptor<List<StockDelta>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(inventoryMapper, times(2)).addAvailableBatch(deltas.capture());
+        assertEquals(List.of(new StockDelta(1L, 1L, 15)), deltas.getAllValues().get(0));
+        assertEquals(List.of(new StockDelta(1L, 3L, 7)), deltas.getAllValues().get(1));
+    }
+
+    @Test
+    void importsNdjson() throws Exception {
+        givenWarehouseAndInlineTransactions();
+        when(productMapper.selectExistingIds(anyCollection())).thenReturn(List.of(1L));
+
+        String ndjson = "{\"warehouseId\":1,\"productId\":1,\"quantity\":4}\n{\"warehouseId\":1}\n";
+
+        StockImportResponse response = stockImportService.importStock(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), "application/x-ndjson");
+
+        assertEquals(1, response.getAppliedRows());
+        assertEquals(1, response.getRejectedRows());
+        assertEquals(2L, response.getRejected().get(0).getLine());
+    }
+
+    @Test
+    void rejectsUnsupportedFormat() {
+        assertThrows(IllegalArgumentException.class, () -> stockImportService.importStock(
+                new ByteArrayInputStream(new byte[0]), "application/json"));
+    }
+}
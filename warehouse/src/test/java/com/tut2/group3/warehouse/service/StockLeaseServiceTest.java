@@ -0,0 +1,131 @@
+package com.tut2.group3.warehouse.service;
+
+import com.tut2.group3.warehouse.config.LeaseProperties;
+import com.tut2.group3.warehouse.dto.query.StockDelta;
+import com.tut2.group3.warehouse.dto.request.AcquireLeaseRequest;
+import com.tut2.group3.warehouse.dto.response.StockLeaseResponse;
+import com.tut2.group3.warehouse.entity.Inventory;
+import com.tut2.group3.warehouse.entity.Product;
+import com.tut2.group3.warehouse.entity.StockLease;
+import com.tut2.group3.warehouse.mapper.InventoryMapper;
+import com.tut2.group3.warehouse.mapper.ProductMapper;
+import com.tut2.group3.warehouse.mapper.ProductStockSummaryMapper;
+import com.tut2.group3.warehouse.mapper.StockLeaseMapper;
+import com.tut2.group3.warehouse.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockLeaseServiceTest {
+
+    @Mock
+    private ProductMapper productMapper;
+    @Mock
+    private InventoryMapper inventoryMapper;
+    @Mock
+    private StockLeaseMapper stockLeaseMapper;
+    @Mock
+    private ProductStockSummaryMapper productStockSummaryMapper;
+    @Mock
+    private InventoryLedgerService inventoryLedgerService;
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private StockLeaseService stockLeaseService;
+
+    @BeforeEach
+    void setUp() {
+        stockLeaseService = new StockLeaseService(productMapper, inventoryMapper, stockLeaseMapper,
+                productStockSummaryMapper, inventoryLedgerService, applicationEventPublisher, new LeaseProperties(),
+                new IdGenerator(1));
+    }
+
+    private static Product product(boolean leaseEnabled) {
+        Product product = new Product();
+        product.setId(2L);
+        product.setLeaseEnabled(leaseEnabled);
+        return product;
+    }
+
+    private static StockLease lease(long id, int granted, int settled) {
+        return new StockLease(id, "LEASE-" + id, "store-1", 1L, 2L, granted, settled, "ACTIVE",
+                LocalDateTime.now().minusSeconds(1), null, null);
+    }
+
+    @Test
+    void acquireLeaseGrantsWhatTheDeepestRowHolds() {
+        when(productMapper.selectById(2L)).thenReturn(product(true));
+        when(inventoryMapper.selectDeepestRow(2L)).thenReturn(new Inventory(7L, 1L, 2L, 30, 0, null, null, 4));
+        when(inventoryMapper.reserveStock(1L, 2L, 30, 4)).thenReturn(1);
+
+        StockLeaseResponse response = stockLeaseService.acquireLease(new AcquireLeaseRequest("store-1", 2L, 50, null));
+
+        assertEquals(30, response.getGrantedQuantity());
+        assertEquals(1L, response.getWarehouseId());
+        assertEquals("ACTIVE", response.getStatus());
+        verify(productStockSummaryMapper).applyAvailableDelta(2L, -30);
+        verify(stockLeaseMapper).insert(any(StockLease.class));
+        verify(inventoryLedgerService).recordLeaseMovements(anyList(), any(), eq("LEASE"));
+    }
+
+    @Test
+    void acquireLeaseRejectsProductsNotFlagged() {
+        when(productMapper.selectById(2L)).thenReturn(product(false));
+
+        assertThrows(RuntimeException.class,
+                () -> stockLeaseService.acquireLease(new AcquireLeaseRequest("store-1", 2L, 10, null)));
+        verify(inventoryMapper, never()).reserveStock(any(), any(), any(), any());
+    }
+
+    @Test
+    void settleShipsOnlyUnitsSoldSinceLastSettle() {
+        when(stockLeaseMapper.lockByLeaseId("LEASE-1")).thenReturn(lease(1L, 50, 10));
+        when(stockLeaseMapper.updateSettled(1L, 25, "ACTIVE")).thenReturn(1);
+        when(inventoryMapper.confirmReservationBatch(List.of(new StockDelta(1L, 2L, 15)))).thenReturn(1);
+
+        StockLeaseResponse response = stockLeaseService.settleLease("LEASE-1", 25);
+
+        assertEquals(25, response.getSettledQuantity());
+        verify(inventoryMapper).confirmReservationBatch(List.of(new StockDelta(1L, 2L, 15)));
+    }
+
+    @Test
+    void staleSettleChangesNothing() {
+        when(stockLeaseMapper.lockByLeaseId("LEASE-1")).thenReturn(lease(1L, 50, 10));
+
+        StockLeaseResponse response = stockLeaseService.settleLease("LEASE-1", 8);
+
+        assertEquals(10, response.getSettledQuantity());
+        verify(stockLeaseMapper, never()).updateSettled(any(), any(), any());
+        verify(inventoryMapper, never()).confirmReservationBatch(anyList());
+    }
+
+    @Test
+    void expiryReturnsUnsoldUnitsGroupedByRow() {
+        when(stockLeaseMapper.lockExpired(any(), eq(100))).thenReturn(List.of(lease(1L, 50, 10), lease(2L, 20, 20)));
+        when(stockLeaseMapper.updateActiveStatusByIds(List.of(1L, 2L), "EXPIRED")).thenReturn(2);
+        when(inventoryMapper.releaseStockBatch(List.of(new StockDelta(1L, 2L, 40)))).thenReturn(1);
+
+        assertEquals(2, stockLeaseService.expireLeases(100));
+
+        verify(productStockSummaryMapper).applyAvailableDeltas(Map.of(2L, 40));
+        verify(inventoryLedgerService).recordLeaseMovements(anyList(), any(), eq("LEASE_EXPIRE"));
+    }
+}